@@ -11,6 +11,56 @@ export const useWebSocketStore = defineStore('websocket', () => {
 
   const messageHandlers = []
 
+  // 服务端 flush 后的轮次：轮次更小的 llm_token 和 TTS 帧已过期，直接丢弃
+  let minTurn = 0
+
+  /**
+   * 打断后服务端下发 flush，记录新的轮次；之后仍在途的旧轮次消息不再分发
+   */
+  function isStale(data) {
+    if (data.type === 'flush') {
+      minTurn = Math.max(minTurn, data.turn || 0)
+      return false
+    }
+    return (data.type === 'llm_token' || data.type === 'tts')
+      && typeof data.turn === 'number'
+      && data.turn < minTurn
+  }
+
+  // llm_token 增量还原状态（每轮对话 seq 从 0 开始）
+  let llmText = ''
+  let llmNextSeq = 0
+  let llmOutOfSync = false
+
+  /**
+   * 按 seq 拼接 llm_token 增量，补全 accumulated 后再分发给页面；
+   * 携带 accumulated 的 checkpoint 以服务端文本为准。
+   * 服务端在客户端过慢时会丢弃部分增量，出现序号缺口后暂停拼接，等下一个 checkpoint 重新同步
+   */
+  function rebuildLlmToken(data) {
+    if (data.type !== 'llm_token' || typeof data.seq !== 'number') {
+      return data
+    }
+
+    if (data.seq === 0) {
+      llmText = ''
+      llmNextSeq = 0
+      llmOutOfSync = false
+    }
+
+    if (typeof data.accumulated === 'string') {
+      llmText = data.accumulated
+      llmOutOfSync = false
+    } else if (data.seq !== llmNextSeq) {
+      llmOutOfSync = true
+    } else if (!llmOutOfSync) {
+      llmText += data.token || ''
+    }
+    llmNextSeq = data.seq + 1
+
+    return { ...data, accumulated: llmText }
+  }
+
   function connect(url) {
     if (ws.value?.readyState === WebSocket.OPEN) {
       return
@@ -30,7 +80,11 @@ export const useWebSocketStore = defineStore('websocket', () => {
     ws.value.onmessage = async (event) => {
       try {
         if (typeof event.data === 'string') {
-          const data = JSON.parse(event.data)
+          const message = JSON.parse(event.data)
+          if (isStale(message)) {
+            return
+          }
+          const data = rebuildLlmToken(message)
           messageHandlers.forEach(handler => handler(data))
           return
         }
@@ -48,6 +102,9 @@ export const useWebSocketStore = defineStore('websocket', () => {
         }
 
         const data = parseIncomingBinaryMessage(binaryData)
+        if (isStale(data)) {
+          return
+        }
         messageHandlers.forEach(handler => handler(data))
       } catch (error) {
         console.error('Failed to parse WebSocket message:', error)
@@ -0,0 +1,200 @@
+/**
+ * 麦克风 Opus 流式采集
+ * 通过 WebCodecs AudioEncoder 把麦克风 PCM 编码成 20ms 的 Opus 包，
+ * 每隔 sendIntervalMs 把期间的包打包成 [2字节小端长度][Opus包]... 交给 onChunk，
+ * 服务端以 format=opus 逐块解码（与 TTS 下行帧的 payload 格式相同）
+ */
+
+export const OPUS_CAPTURE_FORMAT = 'opus'
+
+// Opus 原生采样率，服务端解码时统一输出 16kHz
+const SAMPLE_RATE = 48000
+const FRAME_DURATION_US = 20000
+
+const WORKLET_NAME = 'meow-pcm-capture'
+const WORKLET_SOURCE = `
+class PcmCaptureProcessor extends AudioWorkletProcessor {
+  process(inputs) {
+    const channel = inputs[0] && inputs[0][0]
+    if (channel && channel.length > 0) {
+      this.port.postMessage(channel.slice(0))
+    }
+    return true
+  }
+}
+registerProcessor('${WORKLET_NAME}', PcmCaptureProcessor)
+`
+
+export function isOpusCaptureSupported() {
+  return typeof window !== 'undefined' &&
+    typeof window.AudioEncoder !== 'undefined' &&
+    typeof window.AudioData !== 'undefined' &&
+    typeof window.AudioWorkletNode !== 'undefined'
+}
+
+export class OpusCaptureStream {
+  constructor({ onChunk, sendIntervalMs = 100, bitrate = 24000 }) {
+    this.onChunk = onChunk
+    this.sendIntervalMs = sendIntervalMs
+    this.bitrate = bitrate
+
+    this.audioContext = null
+    this.source = null
+    this.node = null
+    this.encoder = null
+    this.sendTimer = null
+
+    this.timestampUs = 0
+    this.pendingPackets = []
+    this.pendingBytes = 0
+    this.sentBytes = 0
+    this.closed = false
+  }
+
+  /**
+   * 开始采集；浏览器不支持 Opus 编码时抛出异常（调用方回退到 WAV 上传）
+   */
+  async start(mediaStream) {
+    const config = {
+      codec: 'opus',
+      sampleRate: SAMPLE_RATE,
+      numberOfChannels: 1,
+      bitrate: this.bitrate,
+      opus: { frameDuration: FRAME_DURATION_US, format: 'opus' }
+    }
+    const { supported } = await window.AudioEncoder.isConfigSupported(config)
+    if (!supported) {
+      throw new Error('当前浏览器不支持 Opus 编码')
+    }
+
+    try {
+      this.audioContext = new AudioContext({ sampleRate: SAMPLE_RATE })
+      const moduleUrl = URL.createObjectURL(new Blob([WORKLET_SOURCE], { type: 'application/javascript' }))
+      try {
+        await this.audioContext.audioWorklet.addModule(moduleUrl)
+      } finally {
+        URL.revokeObjectURL(moduleUrl)
+      }
+
+      this.encoder = new window.AudioEncoder({
+        output: (chunk) => this.handlePacket(chunk),
+        error: (error) => console.error('Opus encode error:', error)
+      })
+      this.encoder.configure(config)
+
+      this.source = this.audioContext.createMediaStreamSource(mediaStream)
+      this.node = new AudioWorkletNode(this.audioContext, WORKLET_NAME)
+      this.node.port.onmessage = (event) => this.encodePcm(event.data)
+      this.source.connect(this.node)
+      // 接到输出上才会持续驱动采集节点（节点输出为静音）
+      this.node.connect(this.audioContext.destination)
+
+      this.sendTimer = setInterval(() => this.flushPending(false), this.sendIntervalMs)
+    } catch (error) {
+      await this.teardown()
+      throw error
+    }
+  }
+
+  encodePcm(samples) {
+    if (this.closed || !this.encoder || this.encoder.state !== 'configured') {
+      return
+    }
+    const audioData = new window.AudioData({
+      format: 'f32-planar',
+      sampleRate: this.audioContext.sampleRate,
+      numberOfFrames: samples.length,
+      numberOfChannels: 1,
+      timestamp: this.timestampUs,
+      data: samples
+    })
+    this.timestampUs += Math.round(samples.length * 1e6 / this.audioContext.sampleRate)
+    this.encoder.encode(audioData)
+    audioData.close()
+  }
+
+  handlePacket(chunk) {
+    if (this.closed) {
+      return
+    }
+    const packet = new Uint8Array(2 + chunk.byteLength)
+    packet[0] = chunk.byteLength & 0xff
+    packet[1] = (chunk.byteLength >> 8) & 0xff
+    chunk.copyTo(packet.subarray(2))
+    this.pendingPackets.push(packet)
+    this.pendingBytes += packet.length
+  }
+
+  flushPending(isLast) {
+    if (this.pendingBytes === 0 && !isLast) {
+      return
+    }
+    const payload = new Uint8Array(this.pendingBytes)
+    let offset = 0
+    for (const packet of this.pendingPackets) {
+      payload.set(packet, offset)
+      offset += packet.length
+    }
+    this.pendingPackets = []
+    this.pendingBytes = 0
+    this.sentBytes += payload.length
+    this.onChunk(payload, isLast)
+  }
+
+  /**
+   * 结束采集：编码完剩余的 PCM，连同 last 标记一起发送
+   */
+  async stop() {
+    if (this.closed) {
+      return
+    }
+    this.disconnect()
+    try {
+      if (this.encoder && this.encoder.state === 'configured') {
+        await this.encoder.flush()
+      }
+    } catch (error) {
+      console.warn('Opus encoder flush failed:', error)
+    }
+    this.flushPending(true)
+    await this.teardown()
+  }
+
+  /**
+   * 取消采集：不再发送任何数据
+   */
+  async cancel() {
+    await this.teardown()
+  }
+
+  disconnect() {
+    if (this.sendTimer) {
+      clearInterval(this.sendTimer)
+      this.sendTimer = null
+    }
+    if (this.node) {
+      this.node.port.onmessage = null
+      this.node.disconnect()
+    }
+    if (this.source) {
+      this.source.disconnect()
+    }
+  }
+
+  async teardown() {
+    this.disconnect()
+    this.closed = true
+    this.pendingPackets = []
+    this.pendingBytes = 0
+    if (this.encoder && this.encoder.state !== 'closed') {
+      this.encoder.close()
+    }
+    if (this.audioContext) {
+      await this.audioContext.close().catch(() => {})
+    }
+    this.encoder = null
+    this.audioContext = null
+    this.source = null
+    this.node = null
+  }
+}
@@ -2,6 +2,9 @@ const FRAME_MAGIC = 0x4d // 'M'
 const FRAME_TYPE_AUDIO_INPUT = 1
 const FRAME_TYPE_TTS_OUTPUT = 2
 const FLAG_FINAL = 0x01
+// 服务端 TTS 帧在 format 之后带 4 字节小端的对话轮次
+const FLAG_TURN = 0x02
+const TURN_LENGTH = 4
 
 const textEncoder = new TextEncoder()
 const textDecoder = new TextDecoder()
@@ -69,12 +72,22 @@ export function decodeBinaryFrame(data) {
   }
 
   const format = textDecoder.decode(bytes.subarray(4, headerLength))
-  const payload = bytes.subarray(headerLength).slice().buffer
+  let payloadOffset = headerLength
+  let turn = null
+  if ((flags & FLAG_TURN) !== 0) {
+    if (bytes.length < headerLength + TURN_LENGTH) {
+      throw new Error('Invalid binary frame turn length')
+    }
+    turn = new DataView(bytes.buffer, bytes.byteOffset + headerLength, TURN_LENGTH).getUint32(0, true)
+    payloadOffset += TURN_LENGTH
+  }
+  const payload = bytes.subarray(payloadOffset).slice().buffer
 
   return {
     frameType,
     format,
     isFinal: (flags & FLAG_FINAL) !== 0,
+    turn,
     payload
   }
 }
@@ -87,6 +100,7 @@ export function parseIncomingBinaryMessage(data) {
       format: frame.format || 'opus',
       data: frame.payload,
       finished: frame.isFinal,
+      turn: frame.turn,
       binary: true
     }
   }
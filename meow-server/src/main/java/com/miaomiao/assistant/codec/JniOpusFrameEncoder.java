@@ -0,0 +1,47 @@
+package com.miaomiao.assistant.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 基于 opus-jni 的编码器：每次编码在 JNI 边界上复制一次输入 PCM 和输出 Opus 包
+ */
+@Slf4j
+class JniOpusFrameEncoder implements OpusFrameEncoder {
+
+    static final Factory FACTORY = new Factory() {
+        @Override
+        public OpusFrameEncoder create(int sampleRate, int channels, int bitrate, int frameSize) {
+            return new JniOpusFrameEncoder(net.labymod.opus.OpusCodec.newBuilder()
+                    .withSampleRate(sampleRate)
+                    .withChannels(channels)
+                    .withBitrate(bitrate)
+                    .withFrameSize(frameSize)
+                    .build());
+        }
+
+        @Override
+        public String name() {
+            return "jni";
+        }
+    };
+
+    private final net.labymod.opus.OpusCodec codec;
+
+    JniOpusFrameEncoder(net.labymod.opus.OpusCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] encodeFrame(byte[] pcm, int offset, int length) {
+        return codec.encodeFrame(pcm, offset, length);
+    }
+
+    @Override
+    public void close() {
+        try {
+            codec.destroy();
+        } catch (Exception e) {
+            log.warn("释放 OpusCodec 失败", e);
+        }
+    }
+}
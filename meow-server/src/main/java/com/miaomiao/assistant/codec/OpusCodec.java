@@ -1,15 +1,24 @@
 package com.miaomiao.assistant.codec;
 
+import com.miaomiao.assistant.config.NativeLibraryLoader;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 
 /**
  * Opus音频编码器
  * 使用opus-jni实现，支持输出 Ogg Opus 格式
  * 参考: https://github.com/LabyMod/opus-jni
+ * <p>
+ * 编码后端由 opus.backend 选择：jni（默认）或 ffm（{@code codec.ffm.FfmOpusFrameEncoderFactory}，只在 java22 profile 下编译；
+ * 类不存在或初始化失败时回退到 jni）。解码仍使用 opus-jni，每个解码流独占一个 native 解码器（{@link OpusDecoderStream}）。
  */
 @Slf4j
 @Component
@@ -22,20 +31,93 @@ public class OpusCodec {
     // frameSize = 采样率 * 帧时长(秒)
     // 对于24kHz，20ms帧: 24000 * 0.02 = 480
     private static final int FRAME_SIZE = 480;
+    private static final int FRAME_SIZE_BYTES = FRAME_SIZE * CHANNELS * 2;
 
     /**
-     * 创建独立的 Opus 编解码器实例。
+     * 编码器池：每个编码流租借一个 native 编码器，用完归还
+     */
+    private final OpusEncoderPool encoderPool;
+
+    private static final String FFM_FACTORY_CLASS = "com.miaomiao.assistant.codec.ffm.FfmOpusFrameEncoderFactory";
+
+    /**
+     * 实际使用的编码后端
+     */
+    private final OpusFrameEncoder.Factory encoderFactory;
+
+    public OpusCodec() {
+        this(32, "jni", null);
+    }
+
+    @Autowired
+    public OpusCodec(@Value("${opus.encoder-pool.max-idle:32}") int encoderPoolMaxIdle,
+                     @Value("${opus.backend:jni}") String backend,
+                     NativeLibraryLoader nativeLibraryLoader) {
+        this.encoderFactory = createEncoderFactory(backend, nativeLibraryLoader);
+        this.encoderPool = new OpusEncoderPool(
+                () -> encoderFactory.create(SAMPLE_RATE, CHANNELS, BITRATE, FRAME_SIZE), encoderPoolMaxIdle);
+        log.info("Opus 编码后端: {}", encoderFactory.name());
+    }
+
+    /**
+     * 创建编码后端；ffm 后端通过反射加载，Java 17 构建中不存在该类时回退到 jni
+     */
+    static OpusFrameEncoder.Factory createEncoderFactory(String backend, NativeLibraryLoader nativeLibraryLoader) {
+        if (!"ffm".equalsIgnoreCase(backend)) {
+            return JniOpusFrameEncoder.FACTORY;
+        }
+        try {
+            Path libraryFile = nativeLibraryLoader == null || nativeLibraryLoader.getLibraryFile() == null
+                    ? null : nativeLibraryLoader.getLibraryFile().toPath();
+            return (OpusFrameEncoder.Factory) Class.forName(FFM_FACTORY_CLASS)
+                    .getConstructor(Path.class)
+                    .newInstance(libraryFile);
+        } catch (ClassNotFoundException e) {
+            log.warn("当前构建不包含 ffm 编码后端（需要 JDK 22+ 并启用 java22 profile），使用 jni");
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            log.warn("ffm 编码后端初始化失败，使用 jni: {}", e.toString());
+        }
+        return JniOpusFrameEncoder.FACTORY;
+    }
+
+    /**
+     * 打开一个流式编码器
+     * <p>
+     * 用于 TTS 流式返回的 PCM 分块：每到达一块就编码出其中的完整帧，调用方用完后必须关闭（编码器归还到池中）。
+     *
+     * @return 独占一个 native 编码器实例的编码流
+     */
+    public OpusEncoderStream openEncoderStream() {
+        return new OpusEncoderStream(encoderPool, FRAME_SIZE_BYTES);
+    }
+
+    /**
+     * 打开一个流式解码器
      * <p>
-     * 不能在并发任务中复用同一个 native codec 实例，否则会出现状态互相污染，
-     * 导致输出音频杂音、节奏异常等问题。
+     * 用于客户端上行的 Opus 语音（单声道、20ms 帧），与发送端的采样率无关，按 sampleRate 输出 PCM。
+     *
+     * @param sampleRate 输出 PCM 的采样率（8000/12000/16000/24000/48000）
+     * @return 独占一个 native 解码器实例的解码流，用完必须关闭
      */
-    private net.labymod.opus.OpusCodec createCodec() {
-        return net.labymod.opus.OpusCodec.newBuilder()
-                .withSampleRate(SAMPLE_RATE)
+    public OpusDecoderStream openDecoderStream(int sampleRate) {
+        return new OpusDecoderStream(net.labymod.opus.OpusCodec.newBuilder()
+                .withSampleRate(sampleRate)
                 .withChannels(CHANNELS)
                 .withBitrate(BITRATE)
-                .withFrameSize(FRAME_SIZE)
-                .build();
+                .withFrameSize(sampleRate / 50)
+                .build());
+    }
+
+    /**
+     * 获取编码器池指标
+     */
+    public OpusEncoderPool.PoolMetrics getEncoderPoolMetrics() {
+        return encoderPool.getMetrics();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        encoderPool.close();
     }
 
     /**
@@ -50,47 +132,26 @@ public class OpusCodec {
             return new byte[0];
         }
 
-        net.labymod.opus.OpusCodec codec = createCodec();
-        try {
-            int frameSizeBytes = FRAME_SIZE * CHANNELS * 2;
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-            // 分帧编码
-            int offset = 0;
-            while (offset + frameSizeBytes <= pcmData.length) {
-                // 提取一帧数据
-                byte[] frameData = new byte[frameSizeBytes];
-                System.arraycopy(pcmData, offset, frameData, 0, frameSizeBytes);
-
-                // 编码这一帧
-                byte[] encoded = codec.encodeFrame(frameData);
-
-                // 写入帧长度（2字节，小端序）和帧数据
-                outputStream.write(encoded.length & 0xFF);
-                outputStream.write((encoded.length >> 8) & 0xFF);
-                outputStream.write(encoded);
-
-                offset += frameSizeBytes;
-            }
-
-            // 处理剩余不足一帧的数据：补0凑成完整帧
-            int remaining = pcmData.length - offset;
-            if (remaining > 0) {
-                byte[] frameData = new byte[frameSizeBytes];
-                System.arraycopy(pcmData, offset, frameData, 0, remaining);
-                // 剩余部分自动为0（Java数组初始化）
-
-                byte[] encoded = codec.encodeFrame(frameData);
-                outputStream.write(encoded.length & 0xFF);
-                outputStream.write((encoded.length >> 8) & 0xFF);
-                outputStream.write(encoded);
-            }
+        try (OpusEncoderStream encoder = openEncoderStream()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(pcmData.length / 8);
+            // 直接从输入数组分帧编码，最后不足一帧的数据补0
+            writeLengthPrefixed(outputStream, encoder.write(pcmData));
+            writeLengthPrefixed(outputStream, encoder.finish());
             return outputStream.toByteArray();
         } catch (Exception e) {
             log.error("PCM转Opus编码失败", e);
             throw new RuntimeException("音频编码失败", e);
-        } finally {
-            safeDestroy(codec);
+        }
+    }
+
+    /**
+     * 写入帧长度（2字节，小端序）和帧数据
+     */
+    private static void writeLengthPrefixed(ByteArrayOutputStream outputStream, List<byte[]> packets) {
+        for (byte[] encoded : packets) {
+            outputStream.write(encoded.length & 0xFF);
+            outputStream.write((encoded.length >> 8) & 0xFF);
+            outputStream.write(encoded, 0, encoded.length);
         }
     }
 
@@ -106,54 +167,11 @@ public class OpusCodec {
             return new byte[0];
         }
 
-        net.labymod.opus.OpusCodec codec = createCodec();
-        try {
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            int offset = 0;
-
-            while (offset + 2 <= opusData.length) {
-                // 读取2字节帧长度（小端序）
-                int len = (opusData[offset] & 0xFF) | ((opusData[offset + 1] & 0xFF) << 8);
-                offset += 2;
-
-                if (len == 0) {
-                    // 长度异常：直接跳出或继续（这里选择跳出，避免死循环）
-                    break;
-                }
-                if (offset + len > opusData.length) {
-                    // 数据不完整：直接跳出
-                    break;
-                }
-
-                // 取出该帧Opus数据
-                byte[] frame = new byte[len];
-                System.arraycopy(opusData, offset, frame, 0, len);
-                offset += len;
-
-                // 解码该帧 -> PCM
-                // 返回PCM一般是一帧对应的PCM字节：FRAME_SIZE * CHANNELS * 2
-                byte[] pcmFrame = codec.decodeFrame(frame);
-
-                outputStream.write(pcmFrame);
-            }
-
-            return outputStream.toByteArray();
+        try (OpusDecoderStream decoder = openDecoderStream(SAMPLE_RATE)) {
+            return decoder.decode(ByteBuffer.wrap(opusData));
         } catch (Exception e) {
             log.error("Opus转PCM解码失败", e);
             throw new RuntimeException("音频解码失败", e);
-        } finally {
-            safeDestroy(codec);
-        }
-    }
-
-    private void safeDestroy(net.labymod.opus.OpusCodec codec) {
-        if (codec == null) {
-            return;
-        }
-        try {
-            codec.destroy();
-        } catch (Exception e) {
-            log.warn("释放 OpusCodec 失败", e);
         }
     }
 }
@@ -0,0 +1,98 @@
+package com.miaomiao.assistant.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 流式 Opus 解码器
+ * <p>
+ * 输入为依次拼接的 [2字节小端长度][Opus包]（与服务端 TTS 帧的 payload 格式相同），可以在任意位置分块：
+ * 跨分块的长度头和不完整的包缓存在内部，凑齐后再解码。独占一个 native 解码器，用完必须关闭。
+ */
+@Slf4j
+public class OpusDecoderStream implements AutoCloseable {
+
+    /**
+     * 单个 Opus 包的长度上限
+     */
+    static final int MAX_PACKET_BYTES = 4000;
+
+    private final net.labymod.opus.OpusCodec codec;
+
+    /**
+     * 未凑齐的 [长度头][包]
+     */
+    private final byte[] pending = new byte[2 + MAX_PACKET_BYTES];
+    private int pendingLength = 0;
+
+    private long packets = 0;
+    private boolean closed = false;
+
+    OpusDecoderStream(net.labymod.opus.OpusCodec codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * 解码一块数据中所有完整的包（从 data 当前位置读取到 limit，不修改 data）
+     *
+     * @return 解码出的 16位PCM数据(小端序)，没有完整的包时为空数组
+     * @throws IllegalArgumentException 包长度非法
+     */
+    public synchronized byte[] decode(ByteBuffer data) {
+        if (closed) {
+            throw new IllegalStateException("Opus 解码流已关闭");
+        }
+        ByteBuffer input = data.duplicate();
+        ByteArrayOutputStream pcm = new ByteArrayOutputStream(input.remaining() * 8);
+        while (input.hasRemaining()) {
+            if (pendingLength < 2) {
+                pending[pendingLength++] = input.get();
+                continue;
+            }
+            int packetLength = (pending[0] & 0xFF) | ((pending[1] & 0xFF) << 8);
+            if (packetLength == 0 || packetLength > MAX_PACKET_BYTES) {
+                throw new IllegalArgumentException("Opus 包长度非法: " + packetLength);
+            }
+            int take = Math.min(2 + packetLength - pendingLength, input.remaining());
+            input.get(pending, pendingLength, take);
+            pendingLength += take;
+            if (pendingLength == 2 + packetLength) {
+                byte[] frame = codec.decodeFrame(Arrays.copyOfRange(pending, 2, pendingLength));
+                pcm.write(frame, 0, frame.length);
+                pendingLength = 0;
+                packets++;
+            }
+        }
+        return pcm.toByteArray();
+    }
+
+    /**
+     * 已解码的包数
+     */
+    public synchronized long getPackets() {
+        return packets;
+    }
+
+    /**
+     * 是否有未凑齐的数据（流结束时仍有说明最后一个包被截断）
+     */
+    public synchronized boolean hasPending() {
+        return pendingLength > 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            codec.destroy();
+        } catch (Exception e) {
+            log.warn("释放 Opus 解码器失败", e);
+        }
+    }
+}
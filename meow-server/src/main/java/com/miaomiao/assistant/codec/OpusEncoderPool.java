@@ -0,0 +1,107 @@
+package com.miaomiao.assistant.codec;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * native Opus 编码器池
+ * <p>
+ * 原来每句话（以及每次 {@link OpusCodec#encodePcmToOpus}）都创建并销毁一个 native 编码器，
+ * 创建时 opus_encoder_create 要分配并初始化约 30KB 的编码器状态。改为按音频流租借：
+ * 1. {@link OpusEncoderStream} 打开时租借一个编码器，独占到关闭为止，关闭时归还
+ * 2. 归还时清空 Java 侧的剩余 PCM 并调用 {@link OpusFrameEncoder#reset()}（ffm 后端执行 OPUS_RESET_STATE）；
+ * opus-jni 没有暴露 OPUS_RESET_STATE，native 状态沿用上一条流。客户端的解码器是整轮对话连续的，
+ * 而各句子本来就由不同编码器并发编码，句首与解码器状态本就不连续，沿用上一条流的状态与新建编码器相比没有区别
+ * 3. 编码出错的编码器直接销毁，不归还
+ * 4. 空闲编码器最多保留 maxIdle 个，多余的销毁
+ */
+public class OpusEncoderPool implements AutoCloseable {
+
+    private final Supplier<OpusFrameEncoder> factory;
+    private final int maxIdle;
+
+    private final Deque<OpusFrameEncoder> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicInteger leased = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private volatile boolean closed = false;
+
+    public OpusEncoderPool(Supplier<OpusFrameEncoder> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = Math.max(0, maxIdle);
+    }
+
+    /**
+     * 租借一个编码器（后进先出，优先使用最近归还、仍在缓存中的实例）
+     */
+    OpusFrameEncoder lease() {
+        OpusFrameEncoder codec = idle.pollFirst();
+        if (codec != null) {
+            idleCount.decrementAndGet();
+            reused.increment();
+        } else {
+            codec = factory.get();
+            created.increment();
+        }
+        leased.incrementAndGet();
+        return codec;
+    }
+
+    /**
+     * 归还编码器
+     *
+     * @param healthy 编码过程中没有出错
+     */
+    void release(OpusFrameEncoder codec, boolean healthy) {
+        leased.decrementAndGet();
+        if (healthy && !closed) {
+            codec.reset();
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.offerFirst(codec);
+                return;
+            }
+            idleCount.decrementAndGet();
+        }
+        destroy(codec);
+    }
+
+    private void destroy(OpusFrameEncoder codec) {
+        destroyed.increment();
+        codec.close();
+    }
+
+    /**
+     * 获取编码器池指标快照
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(maxIdle, idleCount.get(), leased.get(), created.sum(), reused.sum(), destroyed.sum());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        OpusFrameEncoder codec;
+        while ((codec = idle.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            destroy(codec);
+        }
+    }
+
+    /**
+     * 编码器池指标快照
+     *
+     * @param maxIdle   空闲编码器上限
+     * @param idle      空闲编码器数
+     * @param leased    租借中的编码器数
+     * @param created   创建的 native 编码器总数
+     * @param reused    复用空闲编码器的次数
+     * @param destroyed 销毁的编码器总数
+     */
+    public record PoolMetrics(int maxIdle, int idle, int leased, long created, long reused, long destroyed) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.miaomiao.assistant.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式 Opus 编码器
+ * <p>
+ * 从 {@link OpusEncoderPool} 租借一个 native 编码器独占使用，关闭时归还，用于把 TTS 流式返回的 PCM 分块逐帧编码：
+ * 1. 每次写入的 PCM 长度可以是任意的，不足一帧的尾部会保留到下一次写入
+ * 2. 只有在 {@link #finish()} 时才对最后不足一帧的数据补 0
+ * 3. 输出的是 native 编码器返回的 Opus 包本身（不含长度头），长度头在发送时直接写入帧缓冲区，避免每帧再复制一次
+ * <p>
+ * 非线程安全，一个实例只服务一个音频流。
+ */
+public class OpusEncoderStream implements AutoCloseable {
+
+    private final OpusFrameEncoder codec;
+    private final OpusEncoderPool pool;
+    private final int frameSizeBytes;
+
+    /**
+     * 不足一帧的剩余 PCM 数据
+     */
+    private final byte[] pending;
+    private int pendingLength = 0;
+    private boolean closed = false;
+
+    /**
+     * 编码出错过（出错的编码器不归还）
+     */
+    private boolean failed = false;
+
+    OpusEncoderStream(OpusEncoderPool pool, int frameSizeBytes) {
+        this.pool = pool;
+        this.codec = pool.lease();
+        this.frameSizeBytes = frameSizeBytes;
+        this.pending = new byte[frameSizeBytes];
+    }
+
+    /**
+     * 写入一段 PCM 数据，返回本次可以编码出的完整帧
+     *
+     * @param pcmData 16位PCM数据(小端序)
+     * @return Opus 包列表（不含长度头）
+     */
+    public List<byte[]> write(byte[] pcmData) {
+        ensureOpen();
+        if (pcmData == null || pcmData.length == 0) {
+            return List.of();
+        }
+
+        List<byte[]> frames = new ArrayList<>((pendingLength + pcmData.length) / frameSizeBytes);
+        int offset = 0;
+
+        // 先补齐上一次剩余的半帧
+        if (pendingLength > 0) {
+            int toCopy = Math.min(frameSizeBytes - pendingLength, pcmData.length);
+            System.arraycopy(pcmData, 0, pending, pendingLength, toCopy);
+            pendingLength += toCopy;
+            offset = toCopy;
+            if (pendingLength < frameSizeBytes) {
+                return frames;
+            }
+            frames.add(encodeFrame(pending, 0));
+            pendingLength = 0;
+        }
+
+        // 直接从输入数组中编码完整帧
+        while (offset + frameSizeBytes <= pcmData.length) {
+            frames.add(encodeFrame(pcmData, offset));
+            offset += frameSizeBytes;
+        }
+
+        // 保留不足一帧的尾部
+        int remaining = pcmData.length - offset;
+        if (remaining > 0) {
+            System.arraycopy(pcmData, offset, pending, 0, remaining);
+            pendingLength = remaining;
+        }
+        return frames;
+    }
+
+    /**
+     * 结束音频流：对剩余不足一帧的数据补 0 并编码
+     *
+     * @return 最后的 Opus 包（可能为空）
+     */
+    public List<byte[]> finish() {
+        ensureOpen();
+        if (pendingLength == 0) {
+            return List.of();
+        }
+        // 剩余部分补0凑成完整帧
+        java.util.Arrays.fill(pending, pendingLength, frameSizeBytes, (byte) 0);
+        pendingLength = 0;
+        return List.of(encodeFrame(pending, 0));
+    }
+
+    private byte[] encodeFrame(byte[] source, int offset) {
+        try {
+            return codec.encodeFrame(source, offset, frameSizeBytes);
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Opus 编码流已关闭");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pendingLength = 0;
+        pool.release(codec, !failed);
+    }
+}
@@ -0,0 +1,53 @@
+package com.miaomiao.assistant.codec;
+
+/**
+ * 单个 native Opus 编码器（编码后端的抽象）
+ * <p>
+ * 后端由 opus.backend 选择：jni（opus-jni，默认）或 ffm（通过 Foreign Function &amp; Memory API 直接调用 libopus，
+ * 需要 JDK 22+ 并以 java22 profile 构建）。非线程安全，一个实例同一时刻只服务一个音频流。
+ */
+public interface OpusFrameEncoder extends AutoCloseable {
+
+    /**
+     * 编码一帧 PCM
+     *
+     * @param pcm    16位PCM数据(小端序)
+     * @param offset 帧在数组中的起始位置
+     * @param length 帧长度（字节），必须等于一帧
+     * @return Opus 包（不含长度头）
+     */
+    byte[] encodeFrame(byte[] pcm, int offset, int length);
+
+    /**
+     * 重置编码器状态（归还到编码器池时调用）；opus-jni 没有暴露 OPUS_RESET_STATE，默认不做任何事，ffm 后端发 OPUS_RESET_STATE
+     */
+    default void reset() {
+    }
+
+    /**
+     * 释放 native 编码器
+     */
+    @Override
+    void close();
+
+    /**
+     * 编码器工厂
+     */
+    interface Factory {
+
+        /**
+         * 创建编码器
+         *
+         * @param sampleRate 采样率
+         * @param channels   声道数
+         * @param bitrate    码率
+         * @param frameSize  每帧采样数
+         */
+        OpusFrameEncoder create(int sampleRate, int channels, int bitrate, int frameSize);
+
+        /**
+         * 后端名称
+         */
+        String name();
+    }
+}
@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * AI服务客户端配置
  * 统一管理各服务商的客户端单例
@@ -17,8 +19,12 @@ public class AIClientConfig {
 
     private final AIServiceConfig aiServiceConfig;
 
+    private final SharedHttpClient sharedHttpClient;
+
     /**
      * 智谱AI客户端（全局单例）
+     * <p>
+     * SDK 内部自建 OkHttpClient，无法替换为共享客户端，只能按共享配置设置连接池大小
      */
     @Bean
     public ZhipuAiClient zhipuAiClient() {
@@ -29,7 +35,9 @@ public class AIClientConfig {
         }
 
         log.info("初始化智谱AI客户端 (tokenCache={})", config.getEnableTokenCache());
-        ZhipuAiClient.Builder builder = ZhipuAiClient.builder().apiKey(config.getApiKey());
+        ZhipuAiClient.Builder builder = ZhipuAiClient.builder().apiKey(config.getApiKey())
+                .connectionPool(sharedHttpClient.getPoolMaxIdle(), sharedHttpClient.getPoolKeepAliveSeconds(),
+                        TimeUnit.SECONDS);
         if (config.getEnableTokenCache()) {
             builder.enableTokenCache().tokenExpire(config.getTokenExpire());
         }
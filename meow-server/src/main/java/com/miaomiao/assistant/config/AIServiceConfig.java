@@ -53,6 +53,11 @@ public class AIServiceConfig {
          */
         private Integer tokenExpire = 3600000;
 
+        /**
+         * 单个主机的最大并发请求数（为空时使用 http.client.max-requests-per-host）
+         */
+        private Integer maxConcurrentRequests;
+
         /**
          * 支持的ASR模型列表
          */
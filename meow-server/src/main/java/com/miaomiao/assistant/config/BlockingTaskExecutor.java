@@ -0,0 +1,272 @@
+package com.miaomiao.assistant.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 阻塞调用的执行器
+ * <p>
+ * ASR/LLM/TTS 提供商的阻塞调用（同步 SDK、block 等待流）、会话的文件写入都在这里执行，由 execution.mode 选择：
+ * 1. platform（默认）：有界的平台线程池（execution.platform.max-threads / queue-capacity），超出排队上限时拒绝
+ * 2. virtual：每个任务一个虚拟线程，阻塞时不占用平台线程；需要 Java 21+ 运行时，通过反射创建，
+ * 运行时不支持时回退到 platform（Java 17 构建也可使用）
+ * <p>
+ * 同时提供 Reactor {@link Scheduler}（publishOn/subscribeOn）和按名称创建的工作线程池（TTS 工作线程）。
+ */
+@Slf4j
+@Component
+public class BlockingTaskExecutor implements Executor {
+
+    /**
+     * 执行方式
+     */
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    @Getter
+    private final Mode mode;
+
+    private final ExecutorService executor;
+
+    private final Scheduler scheduler;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger active = new AtomicInteger(0);
+
+    public BlockingTaskExecutor(
+            @Value("${execution.mode:platform}") String mode,
+            @Value("${execution.platform.max-threads:200}") int maxThreads,
+            @Value("${execution.platform.queue-capacity:10000}") int queueCapacity) {
+        Mode requested = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        if (requested == Mode.VIRTUAL && !isVirtualThreadSupported()) {
+            log.warn("当前运行时（Java {}）不支持虚拟线程，阻塞调用使用平台线程池", Runtime.version().feature());
+            requested = Mode.PLATFORM;
+        }
+        this.mode = requested;
+        this.executor = this.mode == Mode.VIRTUAL
+                ? newVirtualThreadPerTaskExecutor("Blocking-")
+                : newBoundedPool("Blocking-", Math.max(1, maxThreads), Math.max(1, queueCapacity));
+        this.scheduler = Schedulers.fromExecutor(this);
+        log.info("阻塞调用执行器初始化: mode={}, maxThreads={}", this.mode,
+                this.mode == Mode.VIRTUAL ? "unbounded" : String.valueOf(maxThreads));
+    }
+
+    /**
+     * 在阻塞执行器上运行任务
+     *
+     * @throws RejectedExecutionException 平台线程池排队已满
+     */
+    @Override
+    public void execute(Runnable task) {
+        submitted.increment();
+        try {
+            executor.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * Reactor 调度器（替代 Schedulers.boundedElastic()）
+     */
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 创建一个工作线程池：virtual 模式下每个任务一个虚拟线程，否则为固定大小的平台线程池
+     * <p>
+     * 并发上限由调用方控制（例如 TTS 调度器只在拿到许可后才提交），因此不设排队上限
+     *
+     * @param namePrefix      线程名前缀
+     * @param platformThreads 平台线程数
+     */
+    public ExecutorService newWorkerPool(String namePrefix, int platformThreads) {
+        if (mode == Mode.VIRTUAL) {
+            return newVirtualThreadPerTaskExecutor(namePrefix);
+        }
+        return newBoundedPool(namePrefix, Math.max(1, platformThreads), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 创建串行执行器：任务按提交顺序逐个执行，不独占线程
+     */
+    public SerialExecutor newSerialExecutor() {
+        return new SerialExecutor(this);
+    }
+
+    /**
+     * 获取指标快照
+     */
+    public ExecutionMetrics getMetrics() {
+        return new ExecutionMetrics(mode.name().toLowerCase(Locale.ROOT), submitted.sum(), completed.sum(),
+                rejected.sum(), active.get(), ManagementFactory.getThreadMXBean().getThreadCount(),
+                ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService newBoundedPool(String namePrefix, int threads, int queueCapacity) {
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, namePrefix + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 运行时是否支持虚拟线程（Java 21+）
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 通过反射调用 Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory())，以便在 Java 17 下编译
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method create = java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) create.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程执行器失败", e);
+        }
+    }
+
+    /**
+     * 串行执行器
+     * <p>
+     * 替代每个会话一个单线程线程池的做法：任务排在自己的队列里，由共享执行器逐个执行，空闲时不占用线程
+     */
+    public static final class SerialExecutor implements Executor {
+
+        private final Executor delegate;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean running = false;
+
+        private SerialExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                tasks.addLast(task);
+                if (running) {
+                    return;
+                }
+                running = true;
+            }
+            try {
+                delegate.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    tasks.remove(task);
+                    running = false;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.pollFirst();
+                    if (task == null) {
+                        running = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.error("串行任务执行异常", e);
+                }
+            }
+        }
+
+        /**
+         * 等待已提交的任务执行完
+         *
+         * @return 是否在超时前执行完
+         */
+        public synchronized boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (running || !tasks.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 阻塞调用执行器指标快照
+     *
+     * @param mode            执行方式
+     * @param submitted       提交的任务数
+     * @param completed       完成的任务数
+     * @param rejected        排队已满被拒绝的任务数
+     * @param active          正在执行的任务数
+     * @param liveThreads     JVM 当前平台线程数（不含虚拟线程）
+     * @param peakLiveThreads JVM 平台线程数峰值
+     */
+    public record ExecutionMetrics(String mode, long submitted, long completed, long rejected, int active,
+                                   int liveThreads, int peakLiveThreads) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.miaomiao.assistant.config;
+
+import com.miaomiao.assistant.model.AbstractModelManager;
+import com.miaomiao.assistant.model.BaseModelProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上游连接预热服务
+ * <p>
+ * 会话建立、一段语音的第一块音频到达时触发，在后台预先建立（或刷新）各提供商的 TCP/TLS 连接、生成鉴权 token，
+ * 避免本轮第一个 ASR/LLM/TTS 请求承担握手开销：
+ * 1. 按 {@link BaseModelProvider#warmupKey()} 去重，共用连接池和主机的 Provider 只预热一次
+ * 2. 同一个键同一时刻只有一个预热在执行，距上次成功预热不到 warmup.connection.refresh-seconds 时跳过（所有会话共享）
+ * 3. 预热失败只记录指标，不影响后续请求
+ */
+@Slf4j
+@Component
+public class ConnectionWarmupService {
+
+    private final List<AbstractModelManager> modelManagers;
+
+    private final Executor executor;
+
+    private final boolean enabled;
+
+    private final long refreshNanos;
+
+    private final Map<String, WarmupState> states = new ConcurrentHashMap<>();
+
+    private final LongAdder triggers = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalWarmupNanos = new LongAdder();
+
+    @Autowired
+    public ConnectionWarmupService(
+            List<AbstractModelManager> modelManagers,
+            BlockingTaskExecutor blockingTaskExecutor,
+            @Value("${warmup.connection.enabled:true}") boolean enabled,
+            @Value("${warmup.connection.refresh-seconds:60}") long refreshSeconds) {
+        this(modelManagers, (Executor) blockingTaskExecutor, enabled, refreshSeconds);
+    }
+
+    ConnectionWarmupService(List<AbstractModelManager> modelManagers, Executor executor,
+                            boolean enabled, long refreshSeconds) {
+        this.modelManagers = modelManagers;
+        this.executor = executor;
+        this.enabled = enabled;
+        this.refreshNanos = TimeUnit.SECONDS.toNanos(Math.max(0, refreshSeconds));
+    }
+
+    /**
+     * 后台预热所有 Provider 的连接（不阻塞调用方）
+     *
+     * @param reason 触发原因（日志用）
+     */
+    public void warmup(String reason) {
+        if (!enabled) {
+            return;
+        }
+        triggers.increment();
+        for (Map.Entry<String, BaseModelProvider> entry : collectTargets().entrySet()) {
+            String key = entry.getKey();
+            WarmupState state = states.computeIfAbsent(key, k -> new WarmupState());
+            if (!state.tryStart(refreshNanos)) {
+                skipped.increment();
+                continue;
+            }
+            started.increment();
+            try {
+                executor.execute(() -> runWarmup(key, entry.getValue(), state, reason));
+            } catch (RejectedExecutionException e) {
+                state.finish(false);
+                failed.increment();
+            }
+        }
+    }
+
+    /**
+     * 获取指标快照
+     */
+    public WarmupMetrics getMetrics() {
+        long succeededCount = succeeded.sum();
+        long completed = succeededCount + failed.sum();
+        return new WarmupMetrics(triggers.sum(), started.sum(), skipped.sum(), succeededCount, failed.sum(),
+                completed == 0 ? 0 : totalWarmupNanos.sum() / 1_000_000.0 / completed, states.size());
+    }
+
+    private Map<String, BaseModelProvider> collectTargets() {
+        Map<String, BaseModelProvider> targets = new LinkedHashMap<>();
+        for (AbstractModelManager manager : modelManagers) {
+            for (BaseModelProvider provider : manager.getProviders()) {
+                String key = provider.warmupKey();
+                if (key != null) {
+                    targets.putIfAbsent(key, provider);
+                }
+            }
+        }
+        return targets;
+    }
+
+    private void runWarmup(String key, BaseModelProvider provider, WarmupState state, String reason) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            provider.warmup();
+            success = true;
+            log.debug("连接预热完成: {} ({}), 耗时 {}ms", key, reason,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.debug("连接预热失败: {} ({}): {}", key, reason, e.getMessage());
+        } finally {
+            totalWarmupNanos.add(System.nanoTime() - start);
+            (success ? succeeded : failed).increment();
+            state.finish(success);
+        }
+    }
+
+    /**
+     * 单个预热键的状态
+     */
+    private static final class WarmupState {
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final AtomicLong lastSuccessNanos = new AtomicLong(0);
+
+        private boolean tryStart(long refreshNanos) {
+            long last = lastSuccessNanos.get();
+            if (last != 0 && System.nanoTime() - last < refreshNanos) {
+                return false;
+            }
+            return running.compareAndSet(false, true);
+        }
+
+        private void finish(boolean success) {
+            if (success) {
+                lastSuccessNanos.set(System.nanoTime());
+            }
+            running.set(false);
+        }
+    }
+
+    /**
+     * 连接预热指标快照
+     *
+     * @param triggers     触发次数（会话建立、语音开始）
+     * @param started      实际发起的预热数
+     * @param skipped      因正在预热或刚预热过而跳过的次数
+     * @param succeeded    成功的预热数
+     * @param failed       失败的预热数
+     * @param avgWarmupMs  平均预热耗时（毫秒）
+     * @param targets      预热目标数（去重后的连接池 + 主机）
+     */
+    public record WarmupMetrics(long triggers, long started, long skipped, long succeeded, long failed,
+                                double avgWarmupMs, int targets) {
+    }
+}
@@ -39,6 +39,12 @@ public class NativeLibraryLoader {
     @Getter
     private File nativeDirectory = null;
 
+    /**
+     * 成功加载的native库文件（从系统库路径加载时为 null），ffm 编码后端从该文件查找 libopus 符号
+     */
+    @Getter
+    private File libraryFile = null;
+
     @PostConstruct
     public void init() {
         loadNativeLibrary();
@@ -110,6 +116,7 @@ public class NativeLibraryLoader {
                 System.load(libraryFile.getAbsolutePath());
                 loaded = true;
                 nativeDirectory = dir;
+                this.libraryFile = libraryFile;
                 log.info("成功加载Opus native库: {}", libraryFile.getAbsolutePath());
                 return true;
             } catch (UnsatisfiedLinkError e) {
@@ -0,0 +1,271 @@
+package com.miaomiao.assistant.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全局共享的 HTTP 客户端（所有 ASR/LLM/TTS 提供商的 OkHttp 请求）
+ * <p>
+ * 1. 共享一个连接池（http.client.pool.*）和一组 Dispatcher 线程，优先通过 ALPN 协商 HTTP/2 多路复用（http.client.http2）
+ * 2. 每个提供商一个 Dispatcher，单主机并发上限取 {@link AIServiceConfig.ProviderConfig#getMaxConcurrentRequests()}，
+ * 未配置时取 http.client.max-requests-per-host（OkHttp 默认只有 5，超出的流式请求会静默排队）
+ * 3. 通过 {@link EventListener} 统计 Dispatcher 排队时间和连接复用情况
+ */
+@Slf4j
+@Component
+public class SharedHttpClient {
+
+    private final AIServiceConfig aiServiceConfig;
+
+    private final OkHttpClient baseClient;
+
+    private final ExecutorService dispatcherExecutor;
+
+    private final int maxRequests;
+
+    private final int defaultMaxRequestsPerHost;
+
+    /**
+     * 连接池最多保留的空闲连接数、空闲连接保活时间（秒），SDK 自建的客户端也按此配置
+     */
+    @Getter
+    private final int poolMaxIdle;
+
+    @Getter
+    private final long poolKeepAliveSeconds;
+
+    private final Map<String, OkHttpClient> providerClients = new ConcurrentHashMap<>();
+
+    private final Map<String, Dispatcher> dispatchers = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder dispatchedCalls = new LongAdder();
+    private final LongAdder totalQueueWaitNanos = new LongAdder();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+    private final LongAdder connectionsAcquired = new LongAdder();
+    private final LongAdder connectionsCreated = new LongAdder();
+    private final LongAdder http2Connections = new LongAdder();
+
+    public SharedHttpClient(
+            AIServiceConfig aiServiceConfig,
+            @Value("${http.client.max-requests:256}") int maxRequests,
+            @Value("${http.client.max-requests-per-host:64}") int maxRequestsPerHost,
+            @Value("${http.client.pool.max-idle:32}") int poolMaxIdle,
+            @Value("${http.client.pool.keep-alive-seconds:300}") long poolKeepAliveSeconds,
+            @Value("${http.client.http2:true}") boolean http2) {
+        this.aiServiceConfig = aiServiceConfig;
+        this.maxRequests = Math.max(1, maxRequests);
+        this.defaultMaxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+        this.poolMaxIdle = Math.max(0, poolMaxIdle);
+        this.poolKeepAliveSeconds = Math.max(1, poolKeepAliveSeconds);
+        this.dispatcherExecutor = newDispatcherExecutor();
+        this.baseClient = new OkHttpClient.Builder()
+                .dispatcher(newDispatcher(this.defaultMaxRequestsPerHost))
+                .connectionPool(new ConnectionPool(this.poolMaxIdle, this.poolKeepAliveSeconds, TimeUnit.SECONDS))
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .eventListenerFactory(call -> new CallMetricsListener())
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
+        log.info("共享HTTP客户端初始化: maxRequests={}, maxRequestsPerHost={}, poolMaxIdle={}, http2={}",
+                this.maxRequests, this.defaultMaxRequestsPerHost, this.poolMaxIdle, http2);
+    }
+
+    /**
+     * 获取提供商专用的客户端：共享连接池和线程，Dispatcher 按提供商配置单主机并发上限
+     * <p>
+     * 调用方可以在此基础上 newBuilder() 调整超时，仍共享连接池和 Dispatcher
+     *
+     * @param providerName 服务商标识（ai.providers 的 key）
+     */
+    public OkHttpClient clientFor(String providerName) {
+        return providerClients.computeIfAbsent(providerName, name -> {
+            int perHost = maxRequestsPerHost(name);
+            Dispatcher dispatcher = newDispatcher(perHost);
+            dispatchers.put(name, dispatcher);
+            log.info("提供商 {} 的HTTP客户端: maxRequestsPerHost={}", name, perHost);
+            return baseClient.newBuilder().dispatcher(dispatcher).build();
+        });
+    }
+
+    /**
+     * 获取指标快照
+     */
+    public HttpClientMetrics getMetrics() {
+        Map<String, DispatcherMetrics> dispatcherMetrics = new TreeMap<>();
+        long queued = 0;
+        long running = 0;
+        for (Map.Entry<String, Dispatcher> entry : dispatchers.entrySet()) {
+            Dispatcher dispatcher = entry.getValue();
+            int queuedCalls = dispatcher.queuedCallsCount();
+            int runningCalls = dispatcher.runningCallsCount();
+            queued += queuedCalls;
+            running += runningCalls;
+            dispatcherMetrics.put(entry.getKey(),
+                    new DispatcherMetrics(dispatcher.getMaxRequestsPerHost(), queuedCalls, runningCalls));
+        }
+        long dispatched = dispatchedCalls.sum();
+        long acquired = connectionsAcquired.sum();
+        long created = connectionsCreated.sum();
+        ConnectionPool pool = baseClient.connectionPool();
+        return new HttpClientMetrics(calls.sum(), queued, running,
+                dispatched == 0 ? 0 : totalQueueWaitNanos.sum() / 1_000_000.0 / dispatched,
+                maxQueueWaitNanos.get() / 1_000_000.0,
+                acquired, created,
+                acquired == 0 ? 0 : (double) Math.max(0, acquired - created) / acquired,
+                http2Connections.sum(), pool.connectionCount(), pool.idleConnectionCount(), dispatcherMetrics);
+    }
+
+    /**
+     * 发一个 HEAD 请求建立到目标主机的连接（TCP/TLS、协商 HTTP/2），响应内容忽略，连接留在连接池中供后续请求复用
+     *
+     * @param url 目标地址，只用到协议、主机和端口
+     */
+    public static void openConnection(OkHttpClient client, String url) throws IOException {
+        HttpUrl origin = HttpUrl.get(url).newBuilder().encodedPath("/").query(null).fragment(null).build();
+        Request request = new Request.Builder().url(origin).head().build();
+        // 只需要连接，不关心状态码
+        try (Response response = client.newCall(request).execute()) {
+            log.debug("连接已建立: {} ({})", origin, response.protocol());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcherExecutor.shutdownNow();
+        baseClient.connectionPool().evictAll();
+    }
+
+    private int maxRequestsPerHost(String providerName) {
+        AIServiceConfig.ProviderConfig config = aiServiceConfig.getProviders().get(providerName);
+        if (config == null || config.getMaxConcurrentRequests() == null || config.getMaxConcurrentRequests() <= 0) {
+            return defaultMaxRequestsPerHost;
+        }
+        return config.getMaxConcurrentRequests();
+    }
+
+    private Dispatcher newDispatcher(int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher(dispatcherExecutor);
+        dispatcher.setMaxRequests(Math.max(maxRequests, maxRequestsPerHost));
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    /**
+     * Dispatcher 线程：流式请求在线程上读完整个响应，并发数由各 Dispatcher 的上限控制，这里不再限制
+     */
+    private static ExecutorService newDispatcherExecutor() {
+        AtomicInteger index = new AtomicInteger(0);
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), task -> {
+            Thread thread = new Thread(task, "OkHttp-Dispatcher-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 单次调用的事件监听：callStart 到开始找连接（proxySelectStart 或直接从连接池拿到连接）之间近似为 Dispatcher 排队时间
+     */
+    private final class CallMetricsListener extends EventListener {
+        private long callStartNanos;
+        private boolean dispatched;
+
+        @Override
+        public void callStart(Call call) {
+            callStartNanos = System.nanoTime();
+            calls.increment();
+        }
+
+        @Override
+        public void proxySelectStart(Call call, HttpUrl url) {
+            onDispatched();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            connectionsCreated.increment();
+            if (protocol == Protocol.HTTP_2) {
+                http2Connections.increment();
+            }
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            onDispatched();
+            connectionsAcquired.increment();
+        }
+
+        private void onDispatched() {
+            if (dispatched) {
+                return;
+            }
+            dispatched = true;
+            long waitNanos = System.nanoTime() - callStartNanos;
+            dispatchedCalls.increment();
+            totalQueueWaitNanos.add(waitNanos);
+            maxQueueWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+    }
+
+    /**
+     * 单个提供商 Dispatcher 的状态
+     *
+     * @param maxRequestsPerHost 单主机并发上限
+     * @param queuedCalls        排队中的请求数
+     * @param runningCalls       执行中的请求数
+     */
+    public record DispatcherMetrics(int maxRequestsPerHost, int queuedCalls, int runningCalls) {
+    }
+
+    /**
+     * 共享 HTTP 客户端指标快照
+     *
+     * @param calls               发起的请求数
+     * @param queuedCalls         当前排队中的请求数（所有提供商）
+     * @param runningCalls        当前执行中的请求数（所有提供商）
+     * @param avgQueueWaitMs      平均 Dispatcher 排队时间（毫秒）
+     * @param maxQueueWaitMs      最大 Dispatcher 排队时间（毫秒）
+     * @param connectionsAcquired 请求获取连接的次数
+     * @param connectionsCreated  新建连接数
+     * @param connectionReuseRate 连接复用比例 (acquired - created) / acquired
+     * @param http2Connections    协商为 HTTP/2 的连接数
+     * @param pooledConnections   连接池中的连接数
+     * @param idleConnections     连接池中的空闲连接数
+     * @param dispatchers         各提供商 Dispatcher 的状态
+     */
+    public record HttpClientMetrics(long calls, long queuedCalls, long runningCalls,
+                                    double avgQueueWaitMs, double maxQueueWaitMs,
+                                    long connectionsAcquired, long connectionsCreated, double connectionReuseRate,
+                                    long http2Connections, int pooledConnections, int idleConnections,
+                                    Map<String, DispatcherMetrics> dispatchers) {
+    }
+}
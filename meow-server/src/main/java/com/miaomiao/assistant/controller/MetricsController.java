@@ -0,0 +1,130 @@
+package com.miaomiao.assistant.controller;
+
+import com.miaomiao.assistant.codec.OpusCodec;
+import com.miaomiao.assistant.codec.OpusEncoderPool;
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
+import com.miaomiao.assistant.config.ConnectionWarmupService;
+import com.miaomiao.assistant.config.SharedHttpClient;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
+import com.miaomiao.assistant.websocket.service.SpeculativeLLMStarter;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSAudioCache;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSPacingScheduler;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSWorkerScheduler;
+import com.miaomiao.assistant.websocket.service.pipeline.UpstreamCancellationTracker;
+import com.miaomiao.assistant.websocket.session.OutboundWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 运行指标 Controller
+ */
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final TTSWorkerScheduler ttsWorkerScheduler;
+    private final OutboundWriter outboundWriter;
+    private final TTSPacingScheduler ttsPacingScheduler;
+    private final SpeculativeLLMStarter speculativeLLMStarter;
+    private final TTSAudioCache ttsAudioCache;
+    private final OpusCodec opusCodec;
+    private final BlockingTaskExecutor blockingTaskExecutor;
+    private final UpstreamCancellationTracker upstreamCancellationTracker;
+    private final SharedHttpClient sharedHttpClient;
+    private final ConnectionWarmupService connectionWarmupService;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * 获取全局 TTS 调度器的排队指标（按 providerName:model 分组）
+     */
+    @GetMapping("/tts-scheduler")
+    public ResponseEntity<Map<String, TTSWorkerScheduler.LaneMetrics>> getTTSSchedulerMetrics() {
+        return ResponseEntity.ok(ttsWorkerScheduler.getMetrics());
+    }
+
+    /**
+     * 获取 WebSocket 下行写出指标（排队时延、写耗时、队列深度）
+     */
+    @GetMapping("/ws-outbound")
+    public ResponseEntity<OutboundWriter.OutboundMetrics> getOutboundMetrics() {
+        return ResponseEntity.ok(outboundWriter.getMetrics());
+    }
+
+    /**
+     * 获取 TTS 音频下发节奏指标（各会话的播放余量、欠载次数）
+     */
+    @GetMapping("/tts-pacing")
+    public ResponseEntity<TTSPacingScheduler.PacingMetrics> getTTSPacingMetrics() {
+        return ResponseEntity.ok(ttsPacingScheduler.getMetrics());
+    }
+
+    /**
+     * 获取 LLM 推测执行指标（命中率、节省的时间）
+     */
+    @GetMapping("/llm-speculation")
+    public ResponseEntity<SpeculativeLLMStarter.SpeculationMetrics> getLLMSpeculationMetrics() {
+        return ResponseEntity.ok(speculativeLLMStarter.getMetrics());
+    }
+
+    /**
+     * 获取 TTS 音频缓存指标（命中、未命中、合并请求、占用字节数）
+     */
+    @GetMapping("/tts-cache")
+    public ResponseEntity<TTSAudioCache.CacheMetrics> getTTSCacheMetrics() {
+        return ResponseEntity.ok(ttsAudioCache.getMetrics());
+    }
+
+    /**
+     * 获取 Opus 编码器池指标（创建、复用、空闲编码器数）
+     */
+    @GetMapping("/opus-encoder-pool")
+    public ResponseEntity<OpusEncoderPool.PoolMetrics> getOpusEncoderPoolMetrics() {
+        return ResponseEntity.ok(opusCodec.getEncoderPoolMetrics());
+    }
+
+    /**
+     * 获取阻塞调用执行器指标（执行方式、任务数、JVM 平台线程数）
+     */
+    @GetMapping("/blocking-executor")
+    public ResponseEntity<BlockingTaskExecutor.ExecutionMetrics> getBlockingExecutorMetrics() {
+        return ResponseEntity.ok(blockingTaskExecutor.getMetrics());
+    }
+
+    /**
+     * 获取上游请求取消指标（打断时断开的 ASR/LLM/TTS 请求数、移出调度队列的 TTS 句子数）
+     */
+    @GetMapping("/upstream-cancellation")
+    public ResponseEntity<UpstreamCancellationTracker.CancellationMetrics> getUpstreamCancellationMetrics() {
+        return ResponseEntity.ok(upstreamCancellationTracker.getMetrics());
+    }
+
+    /**
+     * 获取共享 HTTP 客户端指标（Dispatcher 排队时间、连接复用、HTTP/2 连接数）
+     */
+    @GetMapping("/http-client")
+    public ResponseEntity<SharedHttpClient.HttpClientMetrics> getHttpClientMetrics() {
+        return ResponseEntity.ok(sharedHttpClient.getMetrics());
+    }
+
+    /**
+     * 获取上游连接预热指标（触发、执行、去重跳过、失败次数）
+     */
+    @GetMapping("/connection-warmup")
+    public ResponseEntity<ConnectionWarmupService.WarmupMetrics> getConnectionWarmupMetrics() {
+        return ResponseEntity.ok(connectionWarmupService.getMetrics());
+    }
+
+    /**
+     * 获取 ASR/LLM/TTS 全局自适应并发限制指标（按 providerName:model 分组：当前上限、排队、拒绝数）
+     */
+    @GetMapping("/concurrency-limits")
+    public ResponseEntity<Map<String, AdaptiveConcurrencyLimiter.LimitMetrics>> getConcurrencyLimitMetrics() {
+        return ResponseEntity.ok(concurrencyLimiter.getMetrics());
+    }
+}
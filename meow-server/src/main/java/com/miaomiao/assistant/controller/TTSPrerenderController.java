@@ -0,0 +1,30 @@
+package com.miaomiao.assistant.controller;
+
+import com.miaomiao.assistant.websocket.service.TTSPrerenderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+/**
+ * TTS 预渲染 Controller
+ */
+@RestController
+@RequestMapping("/api/tts")
+@RequiredArgsConstructor
+public class TTSPrerenderController {
+
+    private final TTSPrerenderService prerenderService;
+
+    /**
+     * 预渲染角色常用语并写入预渲染音频库（不传 characterId 时预渲染所有角色）
+     */
+    @PostMapping("/prerender")
+    public Mono<ResponseEntity<TTSPrerenderService.PrerenderReport>> prerender(
+            @RequestParam(required = false) String characterId) {
+        return prerenderService.prerender(characterId).map(ResponseEntity::ok);
+    }
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -34,4 +36,9 @@ public class CharacterCard {
      * 背景故事
      */
     private String background;
-}
\ No newline at end of file
+
+    /**
+     * 常用语（问候、拒绝、语气词等），由预渲染任务提前合成音频
+     */
+    private List<String> stockPhrases;
+}
@@ -5,6 +5,9 @@ import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -77,6 +80,15 @@ public abstract class AbstractModelManager {
         return modelProviderMap.get(providerAndModelKey);
     }
 
+    /**
+     * 已注册的 Provider（多个模型共用一个 Provider 时只返回一次）
+     */
+    public Collection<BaseModelProvider> getProviders() {
+        Set<BaseModelProvider> providers = Collections.newSetFromMap(new IdentityHashMap<>());
+        providers.addAll(modelProviderMap.values());
+        return providers;
+    }
+
     private Set<String> getModels(AIServiceConfig.ProviderConfig providerConfig) {
         return switch (modelType()) {
             case ASR -> providerConfig.getAsrModels();
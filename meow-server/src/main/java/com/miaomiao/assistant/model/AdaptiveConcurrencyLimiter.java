@@ -0,0 +1,343 @@
+package com.miaomiao.assistant.model;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 providerName:model 的全局自适应并发限制（AIMD）
+ * <p>
+ * ASR/LLM/TTS 的上游请求都经过这里，所有会话共享同一个上限：
+ * 1. 请求成功、首个结果的延迟正常，且执行中的请求数达到上限一半以上时，上限 +1（不超过 limiter.max-limit）
+ * 2. 请求失败（限流 429、超时等），或首个结果的延迟超过平均延迟的 limiter.latency-tolerance 倍时，上限乘以 limiter.backoff-ratio
+ * 3. 超出上限的请求按到达顺序排队，等待超过 limiter.max-wait-ms 或排队数超过 limiter.max-queue 时拒绝（{@link RejectedExecutionException}）
+ * 4. 被取消的请求（打断、推测落空）只释放名额，不调整上限
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 平均延迟至少积累这么多样本后才按延迟判断过载
+     */
+    private static final int LATENCY_WARMUP_SAMPLES = 10;
+
+    /**
+     * 平均延迟的平滑系数
+     */
+    private static final double LATENCY_SMOOTHING = 0.05;
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long maxWaitMs;
+    private final int maxQueue;
+
+    private final Map<String, KeyLimit> limits = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${limiter.enabled:true}") boolean enabled,
+            @Value("${limiter.initial-limit:8}") int initialLimit,
+            @Value("${limiter.min-limit:1}") int minLimit,
+            @Value("${limiter.max-limit:64}") int maxLimit,
+            @Value("${limiter.backoff-ratio:0.75}") double backoffRatio,
+            @Value("${limiter.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${limiter.max-wait-ms:5000}") long maxWaitMs,
+            @Value("${limiter.max-queue:1000}") int maxQueue) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.initialLimit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.backoffRatio = backoffRatio > 0 && backoffRatio < 1 ? backoffRatio : 0.75;
+        this.latencyTolerance = Math.max(1.0, latencyTolerance);
+        this.maxWaitMs = Math.max(0, maxWaitMs);
+        this.maxQueue = Math.max(0, maxQueue);
+        log.info("自适应并发限制初始化: enabled={}, limit={} ({}~{}), maxWaitMs={}",
+                enabled, this.initialLimit, this.minLimit, this.maxLimit, this.maxWaitMs);
+    }
+
+    /**
+     * 在并发限制下执行一个上游请求：订阅时申请名额（可能排队），结束、出错或取消时归还
+     * <p>
+     * 延迟按拿到名额到第一个结果的时间计算，流式请求的总时长不参与判断
+     *
+     * @param key  providerName:model
+     * @param call 上游请求，订阅即发起
+     */
+    public <T> Flux<T> limit(String key, Flux<T> call) {
+        if (!enabled || key == null) {
+            return call;
+        }
+        KeyLimit limit = limits.computeIfAbsent(key, KeyLimit::new);
+        return limit.acquire()
+                .flatMapMany(permit -> call
+                        .doOnNext(item -> permit.onResult())
+                        .doOnComplete(() -> permit.release(Outcome.SUCCESS))
+                        .doOnError(e -> permit.release(Outcome.DROPPED))
+                        .doOnCancel(() -> permit.release(Outcome.IGNORED)))
+                // 名额已分配但订阅方在收到前取消
+                .doOnDiscard(Permit.class, permit -> permit.release(Outcome.IGNORED));
+    }
+
+    /**
+     * 当前并发上限（未启用时不限制）
+     */
+    public int getLimit(String key) {
+        if (!enabled || key == null) {
+            return Integer.MAX_VALUE;
+        }
+        return limits.computeIfAbsent(key, KeyLimit::new).currentLimit();
+    }
+
+    /**
+     * 获取各 providerName:model 的限制指标快照
+     */
+    public Map<String, LimitMetrics> getMetrics() {
+        Map<String, LimitMetrics> metrics = new TreeMap<>();
+        limits.forEach((key, limit) -> metrics.put(key, limit.snapshot()));
+        return metrics;
+    }
+
+    /**
+     * 请求结果
+     */
+    private enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    /**
+     * 一个已分配的名额
+     */
+    private static final class Permit {
+        private final KeyLimit limit;
+        private final long grantedNanos = System.nanoTime();
+        private final AtomicLong firstResultNanos = new AtomicLong(0);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(KeyLimit limit) {
+            this.limit = limit;
+        }
+
+        private void onResult() {
+            firstResultNanos.compareAndSet(0, System.nanoTime());
+        }
+
+        private void release(Outcome outcome) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            long first = firstResultNanos.get();
+            limit.onRelease(outcome, (first != 0 ? first : System.nanoTime()) - grantedNanos);
+        }
+    }
+
+    /**
+     * 排队中的请求：分配名额、超时、取消三者只有一个生效
+     */
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+        private final long enqueueNanos = System.nanoTime();
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private volatile Disposable timeout;
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        private void cancelTimeout() {
+            Disposable task = timeout;
+            if (task != null) {
+                task.dispose();
+            }
+        }
+    }
+
+    /**
+     * 单个 providerName:model 的限制状态
+     */
+    private final class KeyLimit {
+
+        private final String key;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private double limit = initialLimit;
+        private int inflight = 0;
+
+        // 指标
+        private long acquired = 0;
+        private long rejected = 0;
+        private long drops = 0;
+        private long latencySamples = 0;
+        private double avgLatencyNanos = 0;
+        private long queuedAcquired = 0;
+        private long totalQueueWaitNanos = 0;
+        private long maxQueueWaitNanos = 0;
+
+        private KeyLimit(String key) {
+            this.key = key;
+        }
+
+        private Mono<Permit> acquire() {
+            return Mono.create(sink -> {
+                Waiter waiter = null;
+                boolean granted = false;
+                boolean full = false;
+                synchronized (this) {
+                    if (waiters.isEmpty() && inflight < currentLimit()) {
+                        inflight++;
+                        acquired++;
+                        granted = true;
+                    } else if (waiters.size() >= maxQueue) {
+                        rejected++;
+                        full = true;
+                    } else {
+                        waiter = new Waiter(sink);
+                        waiters.addLast(waiter);
+                    }
+                }
+                if (granted) {
+                    sink.success(new Permit(this));
+                    return;
+                }
+                if (full) {
+                    sink.error(new RejectedExecutionException(key + " 并发已满且排队数达到上限 " + maxQueue));
+                    return;
+                }
+                Waiter queued = waiter;
+                queued.timeout = Schedulers.parallel().schedule(() -> expire(queued), maxWaitMs, TimeUnit.MILLISECONDS);
+                sink.onDispose(() -> cancel(queued));
+            });
+        }
+
+        private void expire(Waiter waiter) {
+            if (!waiter.claim()) {
+                return;
+            }
+            synchronized (this) {
+                waiters.remove(waiter);
+                rejected++;
+            }
+            waiter.sink.error(new RejectedExecutionException(key + " 排队等待超过 " + maxWaitMs + "ms"));
+        }
+
+        private void cancel(Waiter waiter) {
+            if (!waiter.claim()) {
+                return;
+            }
+            waiter.cancelTimeout();
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+        }
+
+        private void onRelease(Outcome outcome, long latencyNanos) {
+            List<Waiter> granted;
+            synchronized (this) {
+                int inflightBefore = inflight;
+                inflight--;
+                adjust(outcome, latencyNanos, inflightBefore);
+                granted = grantWaiters();
+            }
+            for (Waiter waiter : granted) {
+                waiter.cancelTimeout();
+                waiter.sink.success(new Permit(this));
+            }
+        }
+
+        /**
+         * AIMD 调整上限（持有锁时调用）
+         */
+        private void adjust(Outcome outcome, long latencyNanos, int inflightBefore) {
+            if (outcome == Outcome.IGNORED) {
+                return;
+            }
+            boolean overloaded = outcome == Outcome.DROPPED;
+            if (outcome == Outcome.SUCCESS) {
+                overloaded = latencySamples >= LATENCY_WARMUP_SAMPLES
+                        && latencyNanos > avgLatencyNanos * latencyTolerance;
+                avgLatencyNanos = latencySamples == 0 ? latencyNanos
+                        : avgLatencyNanos + (latencyNanos - avgLatencyNanos) * LATENCY_SMOOTHING;
+                latencySamples++;
+            }
+            if (overloaded) {
+                drops++;
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inflightBefore * 2 >= currentLimit()) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        }
+
+        /**
+         * 按到达顺序给排队的请求分配名额（持有锁时调用）
+         */
+        private List<Waiter> grantWaiters() {
+            List<Waiter> granted = new ArrayList<>();
+            while (inflight < currentLimit() && !waiters.isEmpty()) {
+                Waiter waiter = waiters.pollFirst();
+                if (!waiter.claim()) {
+                    continue;
+                }
+                inflight++;
+                acquired++;
+                long waitNanos = System.nanoTime() - waiter.enqueueNanos;
+                queuedAcquired++;
+                totalQueueWaitNanos += waitNanos;
+                maxQueueWaitNanos = Math.max(maxQueueWaitNanos, waitNanos);
+                granted.add(waiter);
+            }
+            return granted;
+        }
+
+        private synchronized int currentLimit() {
+            return (int) limit;
+        }
+
+        private synchronized LimitMetrics snapshot() {
+            return new LimitMetrics(currentLimit(), inflight, waiters.size(), acquired, rejected, drops,
+                    avgLatencyNanos / 1_000_000.0,
+                    queuedAcquired == 0 ? 0 : totalQueueWaitNanos / 1_000_000.0 / queuedAcquired,
+                    maxQueueWaitNanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * 并发限制指标快照
+     *
+     * @param limit          当前并发上限
+     * @param inflight       执行中的请求数
+     * @param queued         排队中的请求数
+     * @param acquired       拿到名额的请求数
+     * @param rejected       排队超时或排队已满被拒绝的请求数
+     * @param drops          判定为过载（失败、延迟过高）而减小上限的次数
+     * @param avgLatencyMs   首个结果的平均延迟（毫秒，平滑值）
+     * @param avgQueueWaitMs 排队请求的平均等待（毫秒）
+     * @param maxQueueWaitMs 最大排队等待（毫秒）
+     */
+    public record LimitMetrics(int limit, int inflight, int queued, long acquired, long rejected, long drops,
+                               double avgLatencyMs, double avgQueueWaitMs, double maxQueueWaitMs) {
+    }
+}
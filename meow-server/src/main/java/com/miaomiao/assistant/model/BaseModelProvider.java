@@ -2,8 +2,23 @@ package com.miaomiao.assistant.model;
 
 import lombok.Data;
 
+import java.io.IOException;
+
 @Data
 public class BaseModelProvider {
 
     protected String providerName;
+
+    /**
+     * 连接预热的去重键（同一连接池 + 同一主机相同），返回 null 表示不需要预热
+     */
+    public String warmupKey() {
+        return null;
+    }
+
+    /**
+     * 预热上游连接：建立 TCP/TLS（协商 HTTP/2）、生成鉴权 token，在后台线程调用
+     */
+    public void warmup() throws IOException {
+    }
 }
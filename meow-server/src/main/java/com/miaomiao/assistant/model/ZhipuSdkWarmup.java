@@ -0,0 +1,58 @@
+package com.miaomiao.assistant.model;
+
+import ai.z.openapi.AbstractAiClient;
+import ai.z.openapi.ZhipuAiClient;
+import com.miaomiao.assistant.config.SharedHttpClient;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import retrofit2.Retrofit;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+/**
+ * 智谱 SDK 客户端的连接预热（SDK 的 LLM、TTS Provider 共用）
+ * <p>
+ * SDK 没有暴露内部的 OkHttpClient 和 baseUrl，这里通过反射读取，读取失败时不预热；
+ * 预热请求经过 SDK 的鉴权拦截器，顺带生成（或从缓存取出）JWT token
+ */
+@Slf4j
+public final class ZhipuSdkWarmup {
+
+    private final String key;
+    private final OkHttpClient httpClient;
+    private final String baseUrl;
+
+    public ZhipuSdkWarmup(ZhipuAiClient client) {
+        this.key = "zhipu-sdk@" + Integer.toHexString(System.identityHashCode(client));
+        OkHttpClient resolvedClient = null;
+        String resolvedBaseUrl = null;
+        try {
+            resolvedClient = (OkHttpClient) readField(client, "httpClient");
+            resolvedBaseUrl = ((Retrofit) readField(client, "retrofit")).baseUrl().toString();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("读取智谱SDK的HTTP客户端失败，不做连接预热: {}", e.getMessage());
+        }
+        this.httpClient = resolvedClient;
+        this.baseUrl = resolvedBaseUrl;
+    }
+
+    /**
+     * 去重键：同一个 SDK 客户端相同，无法预热时为 null
+     */
+    public String key() {
+        return httpClient == null || baseUrl == null ? null : key;
+    }
+
+    public void warmup() throws IOException {
+        if (key() != null) {
+            SharedHttpClient.openConnection(httpClient, baseUrl);
+        }
+    }
+
+    private static Object readField(ZhipuAiClient client, String name) throws ReflectiveOperationException {
+        Field field = AbstractAiClient.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(client);
+    }
+}
@@ -1,12 +1,14 @@
 package com.miaomiao.assistant.model.asr;
 
-import ai.z.openapi.ZhipuAiClient;
 import com.miaomiao.assistant.config.AIServiceConfig;
+import com.miaomiao.assistant.config.SharedHttpClient;
 import com.miaomiao.assistant.model.AbstractModelManager;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
 import com.miaomiao.assistant.model.asr.provider.ZhipuASRProvider;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 
+import java.nio.ByteBuffer;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -16,11 +18,14 @@ import java.util.TreeSet;
 @Component
 public class ASRManager extends AbstractModelManager {
 
-    private final ZhipuAiClient zhipuAiClient;
+    private final SharedHttpClient sharedHttpClient;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
-    public ASRManager(AIServiceConfig config, ZhipuAiClient zhipuAiClient) {
+    public ASRManager(AIServiceConfig config, SharedHttpClient sharedHttpClient,
+                      AdaptiveConcurrencyLimiter concurrencyLimiter) {
         super(config);
-        this.zhipuAiClient = zhipuAiClient;
+        this.sharedHttpClient = sharedHttpClient;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -30,8 +35,10 @@ public class ASRManager extends AbstractModelManager {
 
     @Override
     protected BaseASRModelProvider createProvider(String name) {
-        if (name.contains("zhipu") && zhipuAiClient != null) {
-            return new ZhipuASRProvider(name, zhipuAiClient);
+        AIServiceConfig.ProviderConfig providerConfig = config.getProviders().get(name);
+        if (name.contains("zhipu") && providerConfig.getApiKey() != null) {
+            return new ZhipuASRProvider(name, providerConfig.getApiKey(), sharedHttpClient.clientFor(name),
+                    concurrencyLimiter);
         }
         return null;
     }
@@ -39,7 +46,7 @@ public class ASRManager extends AbstractModelManager {
     /**
      * 语音转文字（流式）
      */
-    public Flux<ASRResult> speechToTextStream(String providerAndModelKey, Flux<byte[]> audioStream, ASROptions options) {
+    public Flux<ASRResult> speechToTextStream(String providerAndModelKey, Flux<ByteBuffer> audioStream, ASROptions options) {
         BaseASRModelProvider provider = getProviderOrThrow(providerAndModelKey);
         return provider.speechToTextStream(audioStream, options);
     }
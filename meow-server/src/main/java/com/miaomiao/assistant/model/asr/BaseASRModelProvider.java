@@ -2,19 +2,45 @@ package com.miaomiao.assistant.model.asr;
 
 import com.miaomiao.assistant.model.BaseModelProvider;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * ASR提供商抽象基类
  */
 public abstract class BaseASRModelProvider extends BaseModelProvider {
 
+    private static final int INITIAL_AUDIO_CAPACITY = 64 * 1024;
+
     /**
      * 语音转文字（流式）
      * 用于实时语音识别场景
+     * <p>
+     * audioStream 在客户端说话期间逐块推送（每段语音一个流，说完时完成），提供商应在订阅后立即开始消费；
+     * 不支持流式上传的提供商用 {@link #collectAudio(Flux)} 在内存中收集整段音频。
      *
-     * @param audioStream 音频数据流
+     * @param audioStream 音频数据流（每个 ByteBuffer 归提供商所有）
      * @param options     ASR选项
      * @return 识别结果流
      */
-    public abstract Flux<ASRResult> speechToTextStream(Flux<byte[]> audioStream, ASROptions options);
+    public abstract Flux<ASRResult> speechToTextStream(Flux<ByteBuffer> audioStream, ASROptions options);
+
+    /**
+     * 在内存中收集整段音频（按需扩容，不写临时文件）
+     */
+    protected static Mono<byte[]> collectAudio(Flux<ByteBuffer> audioStream) {
+        return audioStream
+                .collect(() -> new ByteArrayOutputStream(INITIAL_AUDIO_CAPACITY), (out, chunk) -> {
+                    if (chunk.hasArray()) {
+                        out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                    } else {
+                        byte[] bytes = new byte[chunk.remaining()];
+                        chunk.duplicate().get(bytes);
+                        out.writeBytes(bytes);
+                    }
+                })
+                .map(ByteArrayOutputStream::toByteArray);
+    }
 }
@@ -1,114 +1,194 @@
 package com.miaomiao.assistant.model.asr.provider;
 
-import ai.z.openapi.ZhipuAiClient;
-import ai.z.openapi.service.audio.AudioTranscriptionRequest;
-import ai.z.openapi.service.audio.AudioTranscriptionResponse;
-import ai.z.openapi.service.audio.AudioTranscriptionChunk;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.miaomiao.assistant.model.asr.ASROptions;
 import com.miaomiao.assistant.model.asr.ASRResult;
 import com.miaomiao.assistant.model.asr.BaseASRModelProvider;
 import lombok.extern.slf4j.Slf4j;
+import com.miaomiao.assistant.config.SharedHttpClient;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.EventSources;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 智谱AI ASR提供商
+ * <p>
+ * 接口需要完整的音频文件，整段语音在内存中收集后以 multipart 请求体上传（不再写临时文件），
+ * 识别结果通过 SSE 流式返回。
  */
 @Slf4j
 public class ZhipuASRProvider extends BaseASRModelProvider {
 
-    private static final String FILE_EXTENSION = ".wav";
+    private static final String TRANSCRIPTION_URL = "https://open.bigmodel.cn/api/paas/v4/audio/transcriptions";
+    private static final MediaType WAV = MediaType.get("audio/wav");
 
-    private final ZhipuAiClient client;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String apiKey;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
-    public ZhipuASRProvider(String providerName, ZhipuAiClient client) {
+    /**
+     * @param httpClient         共享的提供商客户端（连接池、Dispatcher），这里只调整超时
+     * @param concurrencyLimiter 全局并发限制，只作用于上传识别请求（收集语音期间不占名额）
+     */
+    public ZhipuASRProvider(String providerName, String apiKey, OkHttpClient httpClient,
+                            AdaptiveConcurrencyLimiter concurrencyLimiter) {
         this.providerName = providerName;
-        this.client = client;
+        this.apiKey = apiKey;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.client = httpClient.newBuilder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
         log.info("初始化智谱ASR Provider: name={}", providerName);
     }
 
     @Override
-    public Flux<ASRResult> speechToTextStream(Flux<byte[]> audioStream, ASROptions options) {
-        return audioStream
-                .reduce(new byte[0], this::concatBytes)
+    public String warmupKey() {
+        return "http:" + HttpUrl.get(TRANSCRIPTION_URL).newBuilder().encodedPath("/").build();
+    }
+
+    @Override
+    public void warmup() throws IOException {
+        SharedHttpClient.openConnection(client, TRANSCRIPTION_URL);
+    }
+
+    @Override
+    public Flux<ASRResult> speechToTextStream(Flux<ByteBuffer> audioStream, ASROptions options) {
+        return collectAudio(audioStream)
                 .flatMapMany(allData -> {
                     if (allData.length == 0) {
                         return Flux.empty();
                     }
-
-                    Path tempFile = null;
-                    try {
-                        tempFile = createTempFile(allData);
-
-                        AudioTranscriptionRequest request = AudioTranscriptionRequest.builder()
-                                .model(options.getModel())
-                                .file(tempFile.toFile())
-                                .stream(true)
-                                .build();
-
-                        AudioTranscriptionResponse response = client.audio().createTranscription(request);
-
-                        Flux<ASRResult> chunkFlux = Flux.empty();
-                        if (response.getFlowable() != null) {
-                            chunkFlux = Flux.from(response.getFlowable())
-                                    .handle((chunk, sink) -> {
-                                        String text = extractChunkText(chunk);
-                                        if (hasText(text)) {
-                                            sink.next(new ASRResult(text, false, null));
-                                        }
-                                    });
-                        }
-
-                        String finalText = null;
-                        if (response.getData() != null) {
-                            finalText = response.getData().getText();
-                        }
-                        if (response.getFlowable() == null && !hasText(finalText) && !response.isSuccess()) {
-                            throw new RuntimeException("ASR流式请求失败: " + response.getMsg());
-                        }
-                        Flux<ASRResult> finalFlux = hasText(finalText)
-                                ? Flux.just(new ASRResult(finalText, true, null))
-                                : Flux.empty();
-
-                        Path finalTempFile = tempFile;
-                        return chunkFlux.concatWith(finalFlux)
-                                .doFinally(signal -> deleteTempFile(finalTempFile));
-                    } catch (Exception e) {
-                        deleteTempFile(tempFile);
-                        log.error("ASR流式请求失败", e);
-                        return Flux.error(new RuntimeException("语音流式识别失败", e));
-                    }
+                    fixWavSizes(allData);
+                    return concurrencyLimiter.limit(providerName + ":" + options.getModel(),
+                            transcribe(allData, options));
                 });
     }
 
-    private byte[] concatBytes(byte[] a, byte[] b) {
-        byte[] result = new byte[a.length + b.length];
-        System.arraycopy(a, 0, result, 0, a.length);
-        System.arraycopy(b, 0, result, a.length, b.length);
-        return result;
+    private Flux<ASRResult> transcribe(byte[] audioData, ASROptions options) {
+        return Flux.create(sink -> {
+            RequestBody body = new MultipartBody.Builder()
+                    .setType(MultipartBody.FORM)
+                    .addFormDataPart("model", options.getModel())
+                    .addFormDataPart("stream", "true")
+                    .addFormDataPart("file", "audio.wav", RequestBody.create(audioData, WAV))
+                    .build();
+            Request request = new Request.Builder()
+                    .url(TRANSCRIPTION_URL)
+                    .addHeader("Authorization", "Bearer " + apiKey)
+                    .post(body)
+                    .build();
+            EventSource eventSource = EventSources.createFactory(client)
+                    .newEventSource(request, createEventSourceListener(sink));
+            sink.onDispose(eventSource::cancel);
+        });
     }
 
-    private String extractChunkText(AudioTranscriptionChunk chunk) {
-        if (chunk == null) {
-            return null;
+    /**
+     * 创建SSE事件监听器：delta 为增量结果，带 text 的事件为最终结果
+     */
+    private EventSourceListener createEventSourceListener(FluxSink<ASRResult> sink) {
+        return new EventSourceListener() {
+            @Override
+            public void onEvent(EventSource eventSource, String id, String type, String data) {
+                if ("[DONE]".equals(data)) {
+                    sink.complete();
+                    return;
+                }
+                try {
+                    JsonNode chunk = objectMapper.readTree(data);
+                    String delta = extractChunkText(chunk);
+                    if (hasText(delta)) {
+                        sink.next(new ASRResult(delta, false, null));
+                    }
+                    String finalText = chunk.path("text").asText(null);
+                    if (hasText(finalText)) {
+                        sink.next(new ASRResult(finalText, true, null));
+                    }
+                } catch (Exception e) {
+                    log.error("解析ASR SSE事件失败", e);
+                    sink.error(e);
+                }
+            }
+
+            @Override
+            public void onClosed(EventSource eventSource) {
+                sink.complete();
+            }
+
+            @Override
+            public void onFailure(EventSource eventSource, Throwable t, Response response) {
+                if (sink.isCancelled()) {
+                    // 打断或语音取消后主动断开，不是错误
+                    log.debug("ASR流式请求已取消");
+                    return;
+                }
+                String detail = response != null ? String.valueOf(response.code()) : String.valueOf(t);
+                log.error("ASR流式请求失败: {}", detail, t);
+                sink.error(new RuntimeException("语音流式识别失败: " + detail, t));
+            }
+        };
+    }
+
+    /**
+     * 按实际长度修正 WAV 头中的 RIFF/data 大小
+     * <p>
+     * 流式上传的 WAV 头可能带占位长度，服务端 VAD 提前断句时音频也会比头中声明的短
+     */
+    static void fixWavSizes(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.length < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) { // "RIFF" / "WAVE"
+            return;
         }
+        buffer.putInt(4, data.length - 8);
+        int offset = 12;
+        while (offset + 8 <= data.length) {
+            int size = buffer.getInt(offset + 4);
+            if (buffer.getInt(offset) == 0x61746164) { // "data"
+                buffer.putInt(offset + 4, data.length - offset - 8);
+                return;
+            }
+            if (size < 0) {
+                return;
+            }
+            offset += 8 + size + (size & 1);
+        }
+    }
 
-        String topLevelDelta = chunk.getDelta();
+    private String extractChunkText(JsonNode chunk) {
+        String topLevelDelta = chunk.path("delta").asText(null);
         if (hasText(topLevelDelta)) {
             return topLevelDelta;
         }
 
-        if (chunk.getChoices() == null || chunk.getChoices().isEmpty()) {
+        JsonNode choices = chunk.path("choices");
+        if (!choices.isArray() || choices.isEmpty()) {
             return null;
         }
 
         StringBuilder builder = new StringBuilder();
-        chunk.getChoices().forEach(choice -> {
-            if (choice != null && choice.getDelta() != null && hasText(choice.getDelta().getContent())) {
-                builder.append(choice.getDelta().getContent());
+        choices.forEach(choice -> {
+            String content = choice.path("delta").path("content").asText(null);
+            if (hasText(content)) {
+                builder.append(content);
             }
         });
         String text = builder.toString();
@@ -118,21 +198,4 @@ public class ZhipuASRProvider extends BaseASRModelProvider {
     private boolean hasText(String text) {
         return text != null && !text.isBlank();
     }
-
-    private Path createTempFile(byte[] audioData) throws IOException {
-        Path tempFile = Files.createTempFile("asr_", FILE_EXTENSION);
-        Files.write(tempFile, audioData);
-        return tempFile;
-    }
-
-    private void deleteTempFile(Path tempFile) {
-        if (tempFile == null) {
-            return;
-        }
-        try {
-            Files.deleteIfExists(tempFile);
-        } catch (IOException ignored) {
-        }
-    }
-
 }
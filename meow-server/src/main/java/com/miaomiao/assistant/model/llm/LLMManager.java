@@ -2,7 +2,9 @@ package com.miaomiao.assistant.model.llm;
 
 import ai.z.openapi.ZhipuAiClient;
 import com.miaomiao.assistant.config.AIServiceConfig;
+import com.miaomiao.assistant.config.SharedHttpClient;
 import com.miaomiao.assistant.model.AbstractModelManager;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
 import com.miaomiao.assistant.model.llm.provider.HttpLLMProvider;
 import com.miaomiao.assistant.model.llm.provider.ZhipuLLMProvider;
 import org.springframework.stereotype.Component;
@@ -17,10 +19,15 @@ import java.util.List;
 public class LLMManager extends AbstractModelManager {
 
     private final ZhipuAiClient zhipuAiClient;
+    private final SharedHttpClient sharedHttpClient;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
-    public LLMManager(AIServiceConfig config, ZhipuAiClient zhipuAiClient) {
+    public LLMManager(AIServiceConfig config, ZhipuAiClient zhipuAiClient, SharedHttpClient sharedHttpClient,
+                      AdaptiveConcurrencyLimiter concurrencyLimiter) {
         super(config);
         this.zhipuAiClient = zhipuAiClient;
+        this.sharedHttpClient = sharedHttpClient;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -33,7 +40,8 @@ public class LLMManager extends AbstractModelManager {
         AIServiceConfig.ProviderConfig providerConfig = config.getProviders().get(name);
         // 智谱AI Coding端点（使用HTTP方式）
         if (name.contains("zhipu-coding")) {
-            return new HttpLLMProvider(name, providerConfig.getApiKey(), providerConfig.getBaseUrl());
+            return new HttpLLMProvider(name, providerConfig.getApiKey(), providerConfig.getBaseUrl(),
+                    sharedHttpClient.clientFor(name));
         }
         // 智谱AI 通用端点（使用SDK）
         if (name.contains("zhipu") && zhipuAiClient != null) {
@@ -43,10 +51,13 @@ public class LLMManager extends AbstractModelManager {
     }
 
     /**
-     * 流式对话
+     * 流式对话（受 providerName:model 全局并发限制）
+     * <p>
+     * SDK Provider 在调用时就发起请求，这里推迟到拿到名额后再调用
      */
     public Flux<AppLLMResponse> chatStream(String providerAndModelKey, List<AppChatMessage> messages, LLMOptions options) {
         BaseLLMProvider provider = (BaseLLMProvider) getProvider(providerAndModelKey);
-        return provider.chatStream(messages, options);
+        return concurrencyLimiter.limit(providerAndModelKey,
+                Flux.defer(() -> provider.chatStream(messages, options)));
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.miaomiao.assistant.config.SharedHttpClient;
 import com.miaomiao.assistant.model.llm.AppChatMessage;
 import com.miaomiao.assistant.model.llm.AppLLMResponse;
 import com.miaomiao.assistant.model.llm.BaseLLMProvider;
@@ -14,7 +15,7 @@ import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
 import okhttp3.sse.EventSources;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.FluxSink;
 
 import java.io.IOException;
 import java.util.List;
@@ -33,11 +34,14 @@ public class HttpLLMProvider extends BaseLLMProvider {
     private final String baseUrl;
     private final String apiKey;
 
-    public HttpLLMProvider(String providerName, String apiKey, String baseUrl) {
+    /**
+     * @param httpClient 共享的提供商客户端（连接池、Dispatcher），这里只调整超时
+     */
+    public HttpLLMProvider(String providerName, String apiKey, String baseUrl, OkHttpClient httpClient) {
         this.providerName = providerName;
         this.apiKey = apiKey;
         this.baseUrl = baseUrl;
-        this.client = new OkHttpClient.Builder()
+        this.client = httpClient.newBuilder()
                 .connectTimeout(30, TimeUnit.SECONDS)
                 .readTimeout(300, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
@@ -46,6 +50,16 @@ public class HttpLLMProvider extends BaseLLMProvider {
         log.info("初始化HTTP API Provider: name={}, baseUrl={}", providerName, baseUrl);
     }
 
+    @Override
+    public String warmupKey() {
+        return "http:" + HttpUrl.get(baseUrl).newBuilder().encodedPath("/").build();
+    }
+
+    @Override
+    public void warmup() throws IOException {
+        SharedHttpClient.openConnection(client, baseUrl);
+    }
+
     @Override
     public String chat(List<AppChatMessage> messages, LLMOptions options) {
         try {
@@ -63,20 +77,22 @@ public class HttpLLMProvider extends BaseLLMProvider {
         }
     }
 
+    /**
+     * 流式对话：订阅时发起 SSE 请求，下游取消（打断、推测落空）时断开 SSE 连接
+     */
     @Override
     public Flux<AppLLMResponse> chatStream(List<AppChatMessage> messages, LLMOptions options) {
-        Sinks.Many<AppLLMResponse> sink = Sinks.many().multicast().onBackpressureBuffer();
-
-        try {
-            Request request = buildHttpRequest(messages, options, true);
-            EventSource.Factory factory = EventSources.createFactory(client);
-            factory.newEventSource(request, createEventSourceListener(sink));
-        } catch (Exception e) {
-            log.error("HTTP API流式请求失败", e);
-            sink.tryEmitError(e);
-        }
-
-        return sink.asFlux();
+        return Flux.create(sink -> {
+            try {
+                Request request = buildHttpRequest(messages, options, true);
+                EventSource eventSource = EventSources.createFactory(client)
+                        .newEventSource(request, createEventSourceListener(sink));
+                sink.onDispose(eventSource::cancel);
+            } catch (Exception e) {
+                log.error("HTTP API流式请求失败", e);
+                sink.error(e);
+            }
+        });
     }
 
     private Request buildHttpRequest(List<AppChatMessage> messages, LLMOptions options, boolean stream) {
@@ -130,7 +146,7 @@ public class HttpLLMProvider extends BaseLLMProvider {
     /**
      * 创建SSE事件监听器
      */
-    private EventSourceListener createEventSourceListener(Sinks.Many<AppLLMResponse> sink) {
+    private EventSourceListener createEventSourceListener(FluxSink<AppLLMResponse> sink) {
         return new EventSourceListener() {
             @Override
             public void onOpen(EventSource eventSource, Response response) {
@@ -141,8 +157,8 @@ public class HttpLLMProvider extends BaseLLMProvider {
             public void onEvent(EventSource eventSource, String id, String type, String data) {
                 try {
                     if ("[DONE]".equals(data)) {
-                        sink.tryEmitNext(new AppLLMResponse("", true));
-                        sink.tryEmitComplete();
+                        sink.next(new AppLLMResponse("", true));
+                        sink.complete();
                         return;
                     }
 
@@ -153,31 +169,36 @@ public class HttpLLMProvider extends BaseLLMProvider {
                         String content = delta.path("content").asText("");
 
                         if (!content.isEmpty()) {
-                            sink.tryEmitNext(new AppLLMResponse(content, false));
+                            sink.next(new AppLLMResponse(content, false));
                         }
 
                         String finishReason = choices.get(0).path("finish_reason").asText();
                         if ("stop".equals(finishReason)) {
-                            sink.tryEmitNext(new AppLLMResponse("", true));
-                            sink.tryEmitComplete();
+                            sink.next(new AppLLMResponse("", true));
+                            sink.complete();
                         }
                     }
                 } catch (Exception e) {
                     log.error("解析SSE事件失败", e);
-                    sink.tryEmitError(e);
+                    sink.error(e);
                 }
             }
 
             @Override
             public void onClosed(EventSource eventSource) {
                 log.debug("HTTP API SSE连接已关闭");
-                sink.tryEmitComplete();
+                sink.complete();
             }
 
             @Override
             public void onFailure(EventSource eventSource, Throwable t, Response response) {
+                if (sink.isCancelled()) {
+                    // 下游取消后主动断开，不是错误
+                    log.debug("HTTP API SSE连接已断开");
+                    return;
+                }
                 log.error("HTTP API SSE连接失败", t);
-                sink.tryEmitError(t);
+                sink.error(t);
             }
         };
     }
@@ -1,6 +1,7 @@
 package com.miaomiao.assistant.model.llm.provider;
 
 import ai.z.openapi.ZhipuAiClient;
+import com.miaomiao.assistant.model.ZhipuSdkWarmup;
 import ai.z.openapi.service.model.*;
 import com.miaomiao.assistant.model.llm.AppChatMessage;
 import com.miaomiao.assistant.model.llm.AppLLMResponse;
@@ -10,6 +11,7 @@ import io.reactivex.rxjava3.core.Flowable;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,13 +22,25 @@ import java.util.stream.Collectors;
 public class ZhipuLLMProvider extends BaseLLMProvider {
 
     private final ZhipuAiClient client;
+    private final ZhipuSdkWarmup sdkWarmup;
 
     public ZhipuLLMProvider(String providerName, ZhipuAiClient client) {
         this.providerName = providerName;
         this.client = client;
+        this.sdkWarmup = new ZhipuSdkWarmup(client);
         log.info("初始化智谱LLM Provider: name={}", providerName);
     }
 
+    @Override
+    public String warmupKey() {
+        return sdkWarmup.key();
+    }
+
+    @Override
+    public void warmup() throws IOException {
+        sdkWarmup.warmup();
+    }
+
     @Override
     public String chat(List<AppChatMessage> messages, LLMOptions options) {
         try {
@@ -3,6 +3,7 @@ package com.miaomiao.assistant.model.tts;
 import ai.z.openapi.ZhipuAiClient;
 import com.miaomiao.assistant.config.AIServiceConfig;
 import com.miaomiao.assistant.model.AbstractModelManager;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
 import com.miaomiao.assistant.model.tts.provider.ZhipuTTSProvider;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
@@ -14,10 +15,13 @@ import reactor.core.publisher.Flux;
 public class TTSManager extends AbstractModelManager {
 
     private final ZhipuAiClient zhipuAiClient;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
-    public TTSManager(AIServiceConfig config, ZhipuAiClient zhipuAiClient) {
+    public TTSManager(AIServiceConfig config, ZhipuAiClient zhipuAiClient,
+                      AdaptiveConcurrencyLimiter concurrencyLimiter) {
         super(config);
         this.zhipuAiClient = zhipuAiClient;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
 
     @Override
@@ -34,10 +38,13 @@ public class TTSManager extends AbstractModelManager {
     }
 
     /**
-     * 文本转语音（流式）
+     * 文本转语音（流式，受 providerName:model 全局并发限制）
+     * <p>
+     * SDK 在调用时就发起请求，这里推迟到拿到名额后再调用
      */
     public Flux<TTSAudio> textToSpeechStream(String providerAndModelKey, String text, TTSOptions options) {
         BaseTTSProvider provider = (BaseTTSProvider) getProvider(providerAndModelKey);
-        return provider.textToSpeechStream(text, options);
+        return concurrencyLimiter.limit(providerAndModelKey,
+                Flux.defer(() -> provider.textToSpeechStream(text, options)));
     }
 }
@@ -1,6 +1,7 @@
 package com.miaomiao.assistant.model.tts.provider;
 
 import ai.z.openapi.ZhipuAiClient;
+import com.miaomiao.assistant.model.ZhipuSdkWarmup;
 import ai.z.openapi.service.audio.AudioSpeechRequest;
 import ai.z.openapi.service.audio.AudioSpeechStreamingResponse;
 import ai.z.openapi.service.model.ModelData;
@@ -11,6 +12,7 @@ import io.reactivex.rxjava3.core.Flowable;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 
+import java.io.IOException;
 import java.util.Base64;
 
 /**
@@ -20,13 +22,25 @@ import java.util.Base64;
 public class ZhipuTTSProvider extends BaseTTSProvider {
 
     private final ZhipuAiClient client;
+    private final ZhipuSdkWarmup sdkWarmup;
 
     public ZhipuTTSProvider(String providerName, ZhipuAiClient client) {
         this.providerName = providerName;
         this.client = client;
+        this.sdkWarmup = new ZhipuSdkWarmup(client);
         log.info("初始化智谱TTS Provider: name={}", providerName);
     }
 
+    @Override
+    public String warmupKey() {
+        return sdkWarmup.key();
+    }
+
+    @Override
+    public void warmup() throws IOException {
+        sdkWarmup.warmup();
+    }
+
     @Override
     public TTSAudio textToSpeech(String text, TTSOptions options) {
         try {
@@ -4,7 +4,9 @@ import com.miaomiao.assistant.domain.CharacterCard;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -42,9 +44,36 @@ public class SystemPromptService {
                 .personality("嘴臭、暴躁、阴阳怪气")
                 .speakingStyle("说话直、不惯着人，常用反问和嘲讽，偶尔爆粗但不失分寸")
                 .background("你是常年混迹贴吧和论坛的老哥，见多了弱智问题和烂活代码，对一切花里胡哨深恶痛绝")
+                .stockPhrases(List.of(
+                        "又是你啊，说吧，什么事？",
+                        "嗯。",
+                        "行吧。",
+                        "啊？",
+                        "等会儿，让我想想。",
+                        "这个问题我不回答。",
+                        "你说啥？没听清，再说一遍。",
+                        "拉倒吧你。",
+                        "就这？",
+                        "行了行了，知道了。"))
                 .build());
     }
 
+    /**
+     * 获取角色卡
+     *
+     * @param characterId 角色卡ID，不存在时返回默认角色
+     */
+    public CharacterCard getCharacterCard(String characterId) {
+        return characterCards.getOrDefault(characterId, characterCards.get("default"));
+    }
+
+    /**
+     * 获取所有角色卡
+     */
+    public Collection<CharacterCard> getCharacterCards() {
+        return characterCards.values();
+    }
+
     /**
      * 获取完整的系统提示词
      *
@@ -53,7 +82,7 @@ public class SystemPromptService {
      * @return 完整的系统提示词
      */
     public String getSystemPrompt(String characterId, int maxTokens) {
-        CharacterCard card = characterCards.getOrDefault(characterId, characterCards.get("default"));
+        CharacterCard card = getCharacterCard(characterId);
 
         // 计算大致字数限制（中文1token≈1.5字，保守估计）
         int maxChars = (int) (maxTokens * 1.2);
@@ -78,6 +78,42 @@ public class ConversationConfig {
     @Builder.Default
     private String characterId = "default";
 
+    /**
+     * TTS 调度权重（全局调度器中该会话分到的份额，默认 1.0）
+     */
+    @Builder.Default
+    private Float ttsSchedulingWeight = 1.0f;
+
+    /**
+     * 是否启用服务端语音活动检测（检测到说完后提前结束 ASR 输入，仅支持 16 位 PCM 的 WAV 音频）
+     */
+    @Builder.Default
+    private Boolean vadEnabled = false;
+
+    /**
+     * VAD 语音帧的最低能量（dBFS）
+     */
+    @Builder.Default
+    private Float vadEnergyThresholdDb = -45f;
+
+    /**
+     * VAD 语音帧的最高过零率（0-1，过滤气流声、底噪）
+     */
+    @Builder.Default
+    private Float vadMaxZeroCrossingRate = 0.35f;
+
+    /**
+     * VAD 判定开始说话所需的连续语音时长（毫秒）
+     */
+    @Builder.Default
+    private Integer vadMinSpeechMs = 120;
+
+    /**
+     * VAD 判定说完所需的连续静音时长（毫秒）
+     */
+    @Builder.Default
+    private Integer vadSilenceMs = 600;
+
     public String getASRModelKey(){
         return asrProvider + ":" + asrModel;
     }
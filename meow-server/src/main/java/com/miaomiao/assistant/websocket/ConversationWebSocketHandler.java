@@ -1,6 +1,7 @@
 package com.miaomiao.assistant.websocket;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaomiao.assistant.config.ConnectionWarmupService;
 import com.miaomiao.assistant.websocket.message.WSMessage;
 import com.miaomiao.assistant.websocket.message.AudioMessage;
 import com.miaomiao.assistant.websocket.handler.MessageHandlerRegistry;
@@ -34,15 +35,18 @@ public class ConversationWebSocketHandler extends TextWebSocketHandler {
     private final SessionManager sessionManager;
     private final MessageHandlerRegistry handlerRegistry;
     private final WebSocketMessageSender messageSender;
+    private final ConnectionWarmupService connectionWarmupService;
 
     public ConversationWebSocketHandler(ObjectMapper objectMapper,
                                         SessionManager sessionManager,
                                         MessageHandlerRegistry handlerRegistry,
-                                        WebSocketMessageSender messageSender) {
+                                        WebSocketMessageSender messageSender,
+                                        ConnectionWarmupService connectionWarmupService) {
         this.objectMapper = objectMapper;
         this.sessionManager = sessionManager;
         this.handlerRegistry = handlerRegistry;
         this.messageSender = messageSender;
+        this.connectionWarmupService = connectionWarmupService;
     }
 
     @Override
@@ -54,6 +58,8 @@ public class ConversationWebSocketHandler extends TextWebSocketHandler {
                 MAX_TEXT_MESSAGE_SIZE / 1024,
                 MAX_BINARY_MESSAGE_SIZE / 1024);
         sessionManager.createSession(session);
+        // 用户开口前预先建立提供商连接
+        connectionWarmupService.warmup("session-open");
     }
 
     @Override
@@ -82,7 +88,8 @@ public class ConversationWebSocketHandler extends TextWebSocketHandler {
     @Override
     protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
         try {
-            BinaryAudioFrame frame = BinaryAudioFrame.decode(message.getPayload().asReadOnlyBuffer());
+            // payload 以只读视图传递，不复制；处理器必须在本次调用内消费完（会话缓冲区会复制一次）
+            BinaryAudioFrame frame = BinaryAudioFrame.decode(message.getPayload().duplicate());
 
             if (frame.getMessageType() != BinaryAudioFrame.TYPE_CLIENT_AUDIO) {
                 log.warn("收到不支持的二进制消息类型: {}, 会话: {}",
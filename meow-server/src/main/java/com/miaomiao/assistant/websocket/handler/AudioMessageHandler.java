@@ -1,22 +1,50 @@
 package com.miaomiao.assistant.websocket.handler;
 
+import com.miaomiao.assistant.codec.OpusCodec;
+import com.miaomiao.assistant.config.ConnectionWarmupService;
+import com.miaomiao.assistant.service.ConversationConfigService;
+import com.miaomiao.assistant.websocket.ConversationConfig;
 import com.miaomiao.assistant.websocket.message.AudioMessage;
 import com.miaomiao.assistant.websocket.service.ConversationService;
+import com.miaomiao.assistant.websocket.service.pipeline.OpusUplinkDecoder;
+import com.miaomiao.assistant.websocket.service.pipeline.VoiceActivityDetector;
 import com.miaomiao.assistant.websocket.session.SessionState;
+import com.miaomiao.assistant.websocket.session.StreamingAudioInput;
+import com.miaomiao.assistant.websocket.session.WebSocketMessageSender;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
 /**
  * 音频消息处理器 处理客户端发送的音频数据
+ * <p>
+ * 启用服务端 VAD（{@link ConversationConfig#getVadEnabled()}）时，检测到说完即结束 ASR 输入，
+ * 并下发 vad 事件，不再等待客户端的 last=true
+ * <p>
+ * 客户端以 format=opus 上传时（{@link OpusUplinkDecoder}），音频块到达即解码成流式 WAV，之后的 VAD 和 ASR 与 WAV 上传相同
  */
 @Slf4j
 @Component
 public class AudioMessageHandler implements MessageHandler<AudioMessage> {
 
     private final ConversationService conversationService;
+    private final ConversationConfigService configService;
+    private final WebSocketMessageSender messageSender;
+    private final OpusCodec opusCodec;
+    private final ConnectionWarmupService connectionWarmupService;
 
-    public AudioMessageHandler(ConversationService conversationService) {
+    public AudioMessageHandler(ConversationService conversationService,
+                               ConversationConfigService configService,
+                               WebSocketMessageSender messageSender,
+                               OpusCodec opusCodec,
+                               ConnectionWarmupService connectionWarmupService) {
         this.conversationService = conversationService;
+        this.configService = configService;
+        this.messageSender = messageSender;
+        this.opusCodec = opusCodec;
+        this.connectionWarmupService = connectionWarmupService;
     }
 
     @Override
@@ -26,18 +54,110 @@ public class AudioMessageHandler implements MessageHandler<AudioMessage> {
 
     @Override
     public void handle(SessionState state, AudioMessage message) {
-        // 累积音频数据
-        byte[] audioData = message.getData();
-        if (audioData != null && audioData.length > 0) {
-            state.accumulateAudio(audioData);
-            log.debug("累积音频数据: {} 字节", audioData.length);
+        // 服务端已断句的语音，客户端后续发来的音频直接丢弃
+        if (state.skipEndpointedAudio(message.isLast())) {
+            return;
+        }
+
+        // 一段语音的第一块音频到达时就开始 ASR，后续音频块到达即推送
+        StreamingAudioInput audioInput = state.getAudioInput();
+        if (audioInput == null) {
+            // 用户开始说话：ASR 上传期间刷新 LLM/TTS 连接（刚预热过的会跳过）
+            connectionWarmupService.warmup("speech-start");
+            boolean opus = OpusUplinkDecoder.isOpus(message.getFormat());
+            // 上行 Opus 解码后按 WAV 处理
+            String format = opus ? "wav" : message.getFormat();
+            OpusUplinkDecoder decoder = opus
+                    ? new OpusUplinkDecoder(opusCodec.openDecoderStream(OpusUplinkDecoder.SAMPLE_RATE))
+                    : null;
+            audioInput = state.startAudioInput(createDetector(state, format), decoder);
+            log.debug("开始语音输入，格式: {}, vad={}", message.getFormat(), audioInput.getVad() != null);
+            conversationService.processAudioInput(state, audioInput.asFlux(), format);
+        }
+
+        // data 是入站帧的只读视图，推送前同步复制
+        ByteBuffer audioData = message.getData();
+        if (audioData != null && audioData.hasRemaining() && audioInput.getDecoder() != null) {
+            audioData = decode(state, audioInput.getDecoder(), audioData);
+        }
+        if (audioData != null && audioData.hasRemaining()) {
+            VoiceActivityDetector vad = audioInput.getVad();
+            if (vad == null) {
+                audioInput.append(audioData);
+            } else if (detectAndAppend(state, audioInput, vad, audioData, message.isLast())) {
+                return;
+            }
         }
 
-        // 如果是最后一块音频，处理累积的数据
         if (message.isLast()) {
-            byte[] fullAudioData = state.getAndClearAudioBuffer();
-            log.debug("音频接收完成，总计 {} 字节，格式: {}, 开始处理", fullAudioData.length, message.getFormat());
-            conversationService.processAudioInput(state, fullAudioData, message.getFormat());
+            OpusUplinkDecoder decoder = audioInput.getDecoder();
+            if (decoder == null) {
+                log.debug("音频接收完成，总计 {} 字节", audioInput.getReceivedBytes());
+            } else {
+                log.debug("音频接收完成，Opus {} 字节，解码后 {} 字节{}", decoder.getOpusBytes(), decoder.getPcmBytes(),
+                        decoder.isTruncated() ? "（最后一个包不完整）" : "");
+            }
+            state.finishAudioInput();
+        }
+    }
+
+    /**
+     * 解码上行 Opus；数据损坏时取消本段语音输入
+     */
+    private ByteBuffer decode(SessionState state, OpusUplinkDecoder decoder, ByteBuffer audioData) {
+        try {
+            return decoder.decode(audioData);
+        } catch (RuntimeException e) {
+            state.cancelAudioInput();
+            throw e;
+        }
+    }
+
+    /**
+     * 经过 VAD 后推送音频块
+     *
+     * @return 是否已断句（当前语音输入已结束）
+     */
+    private boolean detectAndAppend(SessionState state, StreamingAudioInput audioInput,
+                                    VoiceActivityDetector vad, ByteBuffer audioData, boolean last) {
+        boolean wasSpeaking = vad.isSpeechStarted();
+        // 断句发生在块内时只推送到断句位置
+        int length = vad.feed(audioData);
+        audioInput.append(audioData.slice(audioData.position(), length));
+
+        if (!wasSpeaking && vad.isSpeechStarted()) {
+            sendVadEvent(state, "speech_start", vad.getSpeechStartMs());
+        }
+        if (!vad.isEndpointed()) {
+            return false;
+        }
+        log.debug("服务端 VAD 断句: offsetMs={}, bytes={}", vad.getEndpointMs(), audioInput.getReceivedBytes());
+        state.endpointAudioInput(last);
+        sendVadEvent(state, "speech_end", vad.getEndpointMs());
+        return true;
+    }
+
+    private VoiceActivityDetector createDetector(SessionState state, String format) {
+        ConversationConfig config = configService.getConfigBySessionId(state.getSessionId());
+        if (config == null || !Boolean.TRUE.equals(config.getVadEnabled()) || !isWav(format)) {
+            return null;
+        }
+        return new VoiceActivityDetector(VoiceActivityDetector.Config.from(config));
+    }
+
+    private boolean isWav(String format) {
+        if (format == null || format.isBlank()) {
+            return true;
+        }
+        String normalized = format.toLowerCase(Locale.ROOT);
+        return normalized.contains("wav");
+    }
+
+    private void sendVadEvent(SessionState state, String event, long offsetMs) {
+        try {
+            messageSender.sendVadEvent(state, event, offsetMs);
+        } catch (Exception e) {
+            log.warn("发送 VAD 事件失败: {}", e.getMessage());
         }
     }
 }
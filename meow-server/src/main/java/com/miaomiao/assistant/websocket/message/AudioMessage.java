@@ -3,6 +3,8 @@ package com.miaomiao.assistant.websocket.message;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.nio.ByteBuffer;
+
 /**
  * Audio message from client
  */
@@ -10,6 +12,6 @@ import lombok.EqualsAndHashCode;
 @EqualsAndHashCode(callSuper = true)
 public class AudioMessage extends WSMessage {
     private String format;       // Audio format: webm, opus, wav, mp3
-    private byte[] data;         // Raw audio bytes from binary frame payload
+    private ByteBuffer data;     // Read-only view of the binary frame payload, valid only while the message is being handled
     private boolean last;        // Is this the last audio chunk
 }
@@ -0,0 +1,16 @@
+package com.miaomiao.assistant.websocket.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * 打断后通知客户端清空播放：立即停止播放并丢弃已缓冲的音频，之后收到的轮次小于 turn 的 TTS 帧和 llm_token 直接丢弃
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class FlushMessage extends WSMessage {
+    /**
+     * 打断后的当前轮次，小于该值的帧均已过期
+     */
+    private int turn;
+}
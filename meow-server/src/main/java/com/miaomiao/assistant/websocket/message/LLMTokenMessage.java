@@ -1,22 +1,37 @@
 package com.miaomiao.assistant.websocket.message;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 /**
  * LLM 流式 Token 消息（用于前端打字效果）
+ * <p>
+ * token 是本条消息的增量（可能合并了多个 LLM token），seq 从 0 开始逐条递增；
+ * accumulated 只在 checkpoint 和结束时携带，其余消息由前端按 seq 拼接增量还原。
  */
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class LLMTokenMessage extends WSMessage {
     /**
-     * 当前 token 内容
+     * 对话轮次（打断后客户端按轮次丢弃过期消息）
+     */
+    private int turn;
+
+    /**
+     * 本轮对话内的消息序号（从 0 开始）
+     */
+    private long seq;
+
+    /**
+     * 增量文本（自上一条消息以来新增的内容）
      */
     private String token;
 
     /**
-     * 累积文本（从开始到当前的完整文本）
+     * 累积文本（从开始到当前的完整文本），非 checkpoint 消息不携带
      */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String accumulated;
 
     /**
@@ -0,0 +1,14 @@
+package com.miaomiao.assistant.websocket.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Server-side voice activity event to client (speech_start / speech_end)
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class VadMessage extends WSMessage {
+    private String event;        // speech_start, speech_end
+    private long offsetMs;       // Position in the utterance audio where the event was detected
+}
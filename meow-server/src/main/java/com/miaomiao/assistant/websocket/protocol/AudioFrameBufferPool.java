@@ -0,0 +1,94 @@
+package com.miaomiao.assistant.websocket.protocol;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下行音频帧缓冲区池
+ * <p>
+ * 服务端 TTS 帧（20ms 一帧）直接编码进池化的堆外缓冲区，写出完成后归还，避免每帧分配新数组。
+ * 只池化固定大小的缓冲区，超过该大小的帧按需分配堆内缓冲区且不归还。
+ */
+@Slf4j
+@Component
+public class AudioFrameBufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger(0);
+
+    // 指标
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder oversize = new LongAdder();
+
+    public AudioFrameBufferPool(
+            @Value("${websocket.outbound.audio-buffer-size:2048}") int bufferSize,
+            @Value("${websocket.outbound.audio-buffer-pool-size:1024}") int maxPooled) {
+        this.bufferSize = Math.max(64, bufferSize);
+        this.maxPooled = Math.max(0, maxPooled);
+    }
+
+    /**
+     * 借出一个至少有 size 字节空间的缓冲区（position=0，limit=capacity）
+     */
+    public ByteBuffer acquire(int size) {
+        acquired.increment();
+        if (size > bufferSize) {
+            oversize.increment();
+            return ByteBuffer.allocate(size);
+        }
+        ByteBuffer buffer = pool.poll();
+        if (buffer != null) {
+            pooledCount.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+        allocated.increment();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * 归还缓冲区（非本池分配的缓冲区直接丢弃），归还后调用方不能再使用
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) {
+            return;
+        }
+        if (pooledCount.incrementAndGet() <= maxPooled) {
+            pool.offer(buffer);
+        } else {
+            pooledCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 借出次数
+     */
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * 新分配的堆外缓冲区数量（池命中率 = 1 - allocated / acquired）
+     */
+    public long getAllocatedCount() {
+        return allocated.sum();
+    }
+
+    /**
+     * 超出池化大小、按需分配的次数
+     */
+    public long getOversizeCount() {
+        return oversize.sum();
+    }
+}
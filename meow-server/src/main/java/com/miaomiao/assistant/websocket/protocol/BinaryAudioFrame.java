@@ -4,6 +4,7 @@ import lombok.Getter;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 /**
  * WebSocket 二进制音频帧协议
@@ -12,42 +13,93 @@ import java.nio.charset.StandardCharsets;
  * <pre>
  * [0]   magic(0x4D)
  * [1]   messageType (1=client audio, 2=server tts)
- * [2]   flags (bit0=final)
+ * [2]   flags (bit0=final, bit1=turn)
  * [3]   formatLength (0-255)
  * [4..] format UTF-8 bytes
+ * [..]  turn（4字节小端，仅 flags bit1 置位时存在）
  * [..]  payload bytes
  * </pre>
+ * <p>
+ * 服务端 TTS 帧带对话轮次（turn）：打断后客户端收到 flush 控制消息，直接丢弃轮次更早的帧。
+ * <p>
+ * 解码不复制 payload：{@link #getPayload()} 是原始缓冲区上的只读视图，
+ * 只在原始缓冲区有效期内可用（WebSocket 入站消息即 handleBinaryMessage 调用期间），需要保留时由调用方复制。
+ * 服务端 TTS 帧通过 {@link #encodeServerTTS(ByteBuffer, List, boolean, int)} 直接写入调用方提供的（池化）缓冲区，
+ * 一条消息可以携带多个 [2字节小端长度][Opus包]。
+ * <p>
+ * 客户端音频帧的 format 为 wav（流式 WAV 分块）或 opus（payload 与 TTS 帧相同，为若干 [2字节小端长度][Opus包]，
+ * 由 {@code OpusUplinkDecoder} 解码）。
  */
-@Getter
 public final class BinaryAudioFrame {
 
     public static final byte MAGIC = 0x4D; // 'M'
     public static final byte TYPE_CLIENT_AUDIO = 0x01;
     public static final byte TYPE_SERVER_TTS = 0x02;
     public static final byte FLAG_FINAL = 0x01;
+    public static final byte FLAG_TURN = 0x02;
 
+    /**
+     * 不带轮次
+     */
+    public static final int NO_TURN = -1;
+
+    /**
+     * 轮次字段长度
+     */
+    public static final int TURN_LENGTH = 4;
+
+    /**
+     * 帧头固定部分长度（magic + type + flags + formatLength）
+     */
+    public static final int HEADER_LENGTH = 4;
+
+    /**
+     * 服务端 TTS 帧的格式
+     */
+    public static final String FORMAT_OPUS = "opus";
+
+    private static final byte[] FORMAT_OPUS_BYTES = FORMAT_OPUS.getBytes(StandardCharsets.UTF_8);
+
+    @Getter
     private final byte messageType;
+    @Getter
     private final boolean finalChunk;
+    @Getter
     private final String format;
-    private final byte[] payload;
-
-    private BinaryAudioFrame(byte messageType, boolean finalChunk, String format, byte[] payload) {
+    /**
+     * 对话轮次，不带轮次时为 {@link #NO_TURN}
+     */
+    @Getter
+    private final int turn;
+    private final ByteBuffer payload;
+
+    private BinaryAudioFrame(byte messageType, boolean finalChunk, String format, int turn, ByteBuffer payload) {
         this.messageType = messageType;
         this.finalChunk = finalChunk;
         this.format = format == null ? "" : format;
-        this.payload = payload == null ? new byte[0] : payload;
+        this.turn = turn;
+        this.payload = payload == null ? ByteBuffer.allocate(0) : payload;
     }
 
     public static BinaryAudioFrame clientAudio(String format, byte[] payload, boolean finalChunk) {
-        return new BinaryAudioFrame(TYPE_CLIENT_AUDIO, finalChunk, format, payload);
+        return new BinaryAudioFrame(TYPE_CLIENT_AUDIO, finalChunk, format, NO_TURN,
+                payload == null ? null : ByteBuffer.wrap(payload));
     }
 
     public static BinaryAudioFrame serverTTS(String format, byte[] payload, boolean finalChunk) {
-        return new BinaryAudioFrame(TYPE_SERVER_TTS, finalChunk, format, payload);
+        return serverTTS(format, payload, finalChunk, NO_TURN);
+    }
+
+    public static BinaryAudioFrame serverTTS(String format, byte[] payload, boolean finalChunk, int turn) {
+        return new BinaryAudioFrame(TYPE_SERVER_TTS, finalChunk, format, turn,
+                payload == null ? null : ByteBuffer.wrap(payload));
     }
 
+    /**
+     * 解码二进制帧（payload 为原始缓冲区上的只读视图，不复制）
+     */
     public static BinaryAudioFrame decode(ByteBuffer buffer) {
-        if (buffer == null || buffer.remaining() < 4) {
+        if (buffer == null || buffer.remaining() < HEADER_LENGTH) {
             throw new IllegalArgumentException("二进制帧长度不足");
         }
 
@@ -64,15 +116,46 @@ public final class BinaryAudioFrame {
             throw new IllegalArgumentException("二进制帧 formatLength 非法");
         }
 
-        byte[] formatBytes = new byte[formatLength];
-        buffer.get(formatBytes);
-        String format = new String(formatBytes, StandardCharsets.UTF_8);
+        String format = decodeFormat(buffer, formatLength);
+        buffer.position(buffer.position() + formatLength);
 
-        byte[] payload = new byte[buffer.remaining()];
-        buffer.get(payload);
+        int turn = NO_TURN;
+        if ((flags & FLAG_TURN) != 0) {
+            if (buffer.remaining() < TURN_LENGTH) {
+                throw new IllegalArgumentException("二进制帧 turn 长度不足");
+            }
+            turn = (buffer.get() & 0xFF) | ((buffer.get() & 0xFF) << 8)
+                    | ((buffer.get() & 0xFF) << 16) | ((buffer.get() & 0x7F) << 24);
+        }
+
+        ByteBuffer payload = buffer.slice().asReadOnlyBuffer();
+        buffer.position(buffer.limit());
 
         boolean finalChunk = (flags & FLAG_FINAL) != 0;
-        return new BinaryAudioFrame(messageType, finalChunk, format, payload);
+        return new BinaryAudioFrame(messageType, finalChunk, format, turn, payload);
+    }
+
+    private static String decodeFormat(ByteBuffer buffer, int formatLength) {
+        if (formatLength == 0) {
+            return "";
+        }
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + buffer.position(), formatLength, StandardCharsets.UTF_8);
+        }
+        byte[] formatBytes = new byte[formatLength];
+        buffer.get(buffer.position(), formatBytes);
+        return new String(formatBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * payload 的只读视图（每次调用返回独立的 position/limit）
+     */
+    public ByteBuffer getPayload() {
+        return payload.asReadOnlyBuffer();
+    }
+
+    public int getPayloadLength() {
+        return payload.remaining();
     }
 
     public byte[] encode() {
@@ -81,13 +164,57 @@ public final class BinaryAudioFrame {
             throw new IllegalArgumentException("format 长度超过 255 字节");
         }
 
-        ByteBuffer buffer = ByteBuffer.allocate(4 + formatBytes.length + payload.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + formatBytes.length + turnLength(turn)
+                + payload.remaining());
+        writeHeader(buffer, messageType, finalChunk, formatBytes, turn);
+        buffer.put(payload.duplicate());
+        return buffer.array();
+    }
+
+    /**
+     * 多个 Opus 包打包成一个带轮次的服务端 TTS 帧后的长度
+     */
+    public static int serverTTSLength(List<byte[]> opusPackets, int turn) {
+        int length = HEADER_LENGTH + FORMAT_OPUS_BYTES.length + turnLength(turn);
+        for (byte[] packet : opusPackets) {
+            length += 2 + packet.length;
+        }
+        return length;
+    }
+
+    /**
+     * 把多个 Opus 包打包编码成一个带轮次的服务端 TTS 帧写入目标缓冲区
+     * <p>
+     * payload 为依次拼接的 [2字节小端长度][Opus包]；空列表（分段结束标记）时 payload 为空。
+     *
+     * @param target 目标缓冲区（从当前 position 写入，剩余空间至少 {@link #serverTTSLength(List, int)}）
+     * @param turn   对话轮次，{@link #NO_TURN} 表示不带轮次
+     */
+    public static void encodeServerTTS(ByteBuffer target, List<byte[]> opusPackets, boolean finalChunk, int turn) {
+        writeHeader(target, TYPE_SERVER_TTS, finalChunk, FORMAT_OPUS_BYTES, turn);
+        for (byte[] packet : opusPackets) {
+            target.put((byte) (packet.length & 0xFF));
+            target.put((byte) ((packet.length >> 8) & 0xFF));
+            target.put(packet);
+        }
+    }
+
+    private static int turnLength(int turn) {
+        return turn >= 0 ? TURN_LENGTH : 0;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, byte messageType, boolean finalChunk, byte[] formatBytes,
+                                    int turn) {
         buffer.put(MAGIC);
         buffer.put(messageType);
-        buffer.put(finalChunk ? FLAG_FINAL : 0);
+        buffer.put((byte) ((finalChunk ? FLAG_FINAL : 0) | (turn >= 0 ? FLAG_TURN : 0)));
         buffer.put((byte) formatBytes.length);
         buffer.put(formatBytes);
-        buffer.put(payload);
-        return buffer.array();
+        if (turn >= 0) {
+            buffer.put((byte) (turn & 0xFF));
+            buffer.put((byte) ((turn >> 8) & 0xFF));
+            buffer.put((byte) ((turn >> 16) & 0xFF));
+            buffer.put((byte) ((turn >> 24) & 0xFF));
+        }
     }
 }
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
+import java.nio.ByteBuffer;
 import java.util.Locale;
 
 /**
@@ -25,21 +26,23 @@ public class ASRService {
 
     /**
      * 将音频数据流式转换为文本
+     * <p>
+     * 音频流在用户说话期间逐块到达，提供商订阅后立即开始消费
      *
-     * @param audioData 音频数据
+     * @param audioStream 音频数据流（每段语音一个）
      * @param audioFormat 客户端上报的音频格式
      * @param config 对话配置
      * @return ASR识别结果流
      */
-    public Flux<ASRResult> speechToTextStream(byte[] audioData, String audioFormat, ConversationConfig config) {
+    public Flux<ASRResult> speechToTextStream(Flux<ByteBuffer> audioStream, String audioFormat, ConversationConfig config) {
         String normalizedFormat = normalizeAudioFormat(audioFormat);
         if (!SUPPORTED_FORMAT.equals(normalizedFormat)) {
             throw new IllegalArgumentException("ASR仅支持wav格式音频，当前格式: " + audioFormat);
         }
 
         ASROptions asrOptions = ASROptions.of(config.getAsrModel(), SUPPORTED_FORMAT);
-        log.debug("ASR 流式识别开始: format={}, bytes={}", SUPPORTED_FORMAT, audioData.length);
-        return asrManager.speechToTextStream(config.getASRModelKey(), Flux.just(audioData), asrOptions);
+        log.debug("ASR 流式识别开始: format={}", SUPPORTED_FORMAT);
+        return asrManager.speechToTextStream(config.getASRModelKey(), audioStream, asrOptions);
     }
 
     private String normalizeAudioFormat(String audioFormat) {
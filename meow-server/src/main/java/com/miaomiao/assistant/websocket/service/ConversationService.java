@@ -1,16 +1,22 @@
 package com.miaomiao.assistant.websocket.service;
 
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
 import com.miaomiao.assistant.model.asr.ASRResult;
 import com.miaomiao.assistant.service.ConversationConfigService;
 import com.miaomiao.assistant.websocket.ConversationConfig;
+import com.miaomiao.assistant.websocket.service.pipeline.UpstreamCancellationTracker;
 import com.miaomiao.assistant.websocket.session.WebSocketMessageSender;
 import com.miaomiao.assistant.websocket.session.SessionState;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.concurrent.CompletableFuture;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
 
 /**
  * 对话处理服务（入口） 负责编排 ASR -> LLM -> TTS 的完整流程
@@ -25,85 +31,119 @@ public class ConversationService {
     private final TTSService ttsService;
     private final WebSocketMessageSender messageSender;
     private final ConversationConfigService configService;
+    private final SpeculativeLLMStarter speculativeLLMStarter;
+    private final BlockingTaskExecutor blockingTaskExecutor;
+    private final UpstreamCancellationTracker cancellationTracker;
 
     /**
      * 处理音频输入，执行完整的 ASR -> LLM -> TTS 流程
+     * <p>
+     * 在一段语音的第一块音频到达时调用，ASR 边接收边识别；识别完成后再进入 LLM -> TTS。
+     * 中间结果稳定后可提前发起 LLM 请求（见 {@link SpeculativeLLMStarter}），最终结果一致时直接提交
      *
      * @param state 会话状态
-     * @param audioData 音频数据
+     * @param audioStream 音频数据流（语音结束时完成）
      * @param audioFormat 音频格式（来自客户端）
      */
-    public void processAudioInput(SessionState state, byte[] audioData, String audioFormat) {
-        if (audioData.length == 0) {
-            log.debug("音频数据为空，跳过处理");
-            return;
-        }
+    public void processAudioInput(SessionState state, Flux<ByteBuffer> audioStream, String audioFormat) {
         if (!state.getSession().isOpen()) {
             log.debug("会话 {} 已断开，跳过音频处理", state.getSessionId());
             return;
         }
 
-        // 异步处理完整流程
-        CompletableFuture.runAsync(() -> {
-            try {
-                if (!state.getSession().isOpen()) {
-                    log.debug("会话 {} 已断开，取消 ASR->LLM->TTS 流程", state.getSessionId());
-                    return;
-                }
-                ConversationConfig config = configService.getConfigBySessionId(state.getSessionId());
-
-                // 1. ASR: 流式语音转文本（仅流式，不降级）
-                String transcript = transcribeAudioStreaming(state, audioData, audioFormat, config);
-                if (!state.getSession().isOpen()) {
-                    log.debug("会话 {} 在 ASR 后已断开，终止后续流程", state.getSessionId());
-                    return;
-                }
-                if (transcript == null || transcript.isBlank()) {
-                    log.debug("ASR 识别结果为空，跳过后续流程");
-                    return;
-                }
-
-                // 发送最终 STT 结果到客户端
-                messageSender.sendSTTResult(state, transcript, true);
-
-                // 2. LLM + TTS: 对话生成和语音合成
-                processTextInput(state, transcript, config);
-
-            } catch (Exception e) {
-                log.error("对话处理失败", e);
-                if (!state.getSession().isOpen()) {
-                    return;
-                }
-                try {
-                    messageSender.sendError(state, "处理失败: " + e.getMessage());
-                } catch (Exception ex) {
-                    log.error("发送错误消息失败", ex);
-                }
-            }
-        });
+        ConversationConfig config = configService.getConfigBySessionId(state.getSessionId());
+        SpeculativeLLMStarter.Speculation speculation = speculativeLLMStarter.begin(state, config);
+
+        // 识别请求登记到会话，打断或会话关闭时取消（断开上传和识别连接，推测请求一并断开）
+        Disposable.Swap asrRequest = Disposables.swap();
+        state.addUpstreamRequest(asrRequest);
+
+        // 1. ASR: 流式语音转文本（仅流式，不降级）
+        asrRequest.update(Mono.defer(() -> transcribeAudioStreaming(state, audioStream, audioFormat, config, speculation))
+                // 识别结果在提供商的回调线程上到达，后续流程切到阻塞调用执行器
+                .publishOn(blockingTaskExecutor.scheduler())
+                .doOnCancel(() -> {
+                    speculation.cancel();
+                    log.debug("会话 {} 语音识别已中止", state.getSessionId());
+                })
+                .doFinally(signalType -> state.removeUpstreamRequest(asrRequest))
+                .subscribe(transcript -> {
+                    if (!state.getSession().isOpen()) {
+                        log.debug("会话 {} 在 ASR 后已断开，终止后续流程", state.getSessionId());
+                        speculation.cancel();
+                        return;
+                    }
+                    if (transcript.isBlank()) {
+                        log.debug("ASR 识别结果为空，跳过后续流程");
+                        speculation.cancel();
+                        return;
+                    }
+
+                    try {
+                        // 推测请求与最终结果一致时直接提交，否则按最终结果重新发起
+                        PrefetchedLLMStream prefetched = speculation.commit(transcript);
+
+                        // 发送最终 STT 结果到客户端
+                        messageSender.sendSTTResult(state, transcript, true);
+
+                        // 2. LLM + TTS: 对话生成和语音合成
+                        processTextInput(state, transcript, config, prefetched);
+                    } catch (Exception e) {
+                        speculation.cancel();
+                        log.error("对话处理失败", e);
+                    }
+                }, error -> {
+                    speculation.cancel();
+                    if (error instanceof CancellationException) {
+                        log.debug("会话 {} 语音输入已取消", state.getSessionId());
+                        return;
+                    }
+                    log.error("对话处理失败", error);
+                    if (!state.getSession().isOpen()) {
+                        return;
+                    }
+                    try {
+                        messageSender.sendError(state, "处理失败: " + error.getMessage());
+                    } catch (Exception ex) {
+                        log.error("发送错误消息失败", ex);
+                    }
+                }));
     }
 
     /**
      * 终止当前会话中的活跃处理流程（LLM/TTS 等）。
+     * <p>
+     * 当前轮次立即过期（在途的 token 和音频帧在发送前丢弃），下行队列中旧轮次的消息被移除，
+     * flush 控制消息插到队首通知客户端立即停止播放
      */
     public void terminateCurrentResponse(SessionState state) {
         if (state == null) {
             return;
         }
         state.abort();
-        state.getAndClearAudioBuffer();
+        state.cancelAudioInput();
+        try {
+            int flushed = messageSender.sendFlush(state);
+            log.debug("会话 {} 已打断，轮次 {}，移除未发送消息 {} 条", state.getSessionId(), state.getTurn(), flushed);
+        } catch (Exception e) {
+            log.warn("发送 flush 消息失败: {}", e.getMessage());
+        }
     }
 
-    private String transcribeAudioStreaming(SessionState state, byte[] audioData, String audioFormat, ConversationConfig config) {
-        return asrService.speechToTextStream(audioData, audioFormat, config)
+    private Mono<String> transcribeAudioStreaming(SessionState state, Flux<ByteBuffer> audioStream,
+                                                  String audioFormat, ConversationConfig config,
+                                                  SpeculativeLLMStarter.Speculation speculation) {
+        return cancellationTracker.track(UpstreamCancellationTracker.Stage.ASR,
+                        asrService.speechToTextStream(audioStream, audioFormat, config))
                 .map(ASRResult::getText)
                 .filter(text -> text != null && !text.isBlank())
                 .scan("", this::mergeTranscript)
                 .skip(1)
-                .doOnNext(partial -> sendPartialSTT(state, partial))
-                .last("")
-                .blockOptional()
-                .orElse("");
+                .doOnNext(partial -> {
+                    sendPartialSTT(state, partial);
+                    speculation.onPartial(partial);
+                })
+                .last("");
     }
 
     private void sendPartialSTT(SessionState state, String partialText) {
@@ -146,7 +186,7 @@ public class ConversationService {
      */
     public void processTextInput(SessionState state, String text) {
         ConversationConfig config = configService.getConfigBySessionId(state.getSessionId());
-        processTextInput(state, text, config);
+        processTextInput(state, text, config, null);
     }
 
     /**
@@ -155,10 +195,15 @@ public class ConversationService {
      * @param state 会话状态
      * @param text 用户输入文本
      * @param config 对话配置
+     * @param prefetched 推测执行命中时提前发起的 LLM 请求，没有则为 null
      */
-    private void processTextInput(SessionState state, String text, ConversationConfig config) {
+    private void processTextInput(SessionState state, String text, ConversationConfig config,
+                                  PrefetchedLLMStream prefetched) {
         if (!state.getSession().isOpen()) {
             log.debug("会话 {} 已断开，忽略文本输入处理", state.getSessionId());
+            if (prefetched != null) {
+                prefetched.cancel();
+            }
             return;
         }
         if (text == null || text.isBlank()) {
@@ -166,14 +211,17 @@ public class ConversationService {
             return;
         }
 
-        // 重置中止状态
+        // 重置中止状态，开始新一轮对话（上一轮尚未发送的 token 和音频随之过期）
         state.resetAborted();
+        state.beginTurn();
 
         // 记录用户输入开始时间（性能指标）
         state.getPerformanceMetrics().recordUserInputStart();
 
         // 2. LLM: 流式对话，返回句子流
-        Flux<String> sentenceStream = llmService.processLLMStream(state, text, config);
+        Flux<String> sentenceStream = prefetched != null
+                ? llmService.processLLMStream(state, prefetched)
+                : llmService.processLLMStream(state, text, config);
 
         // 3. TTS: 将句子流转为音频并发送
         ttsService.processTTSStream(state, sentenceStream);
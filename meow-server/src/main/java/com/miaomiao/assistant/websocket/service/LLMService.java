@@ -1,21 +1,24 @@
 package com.miaomiao.assistant.websocket.service;
 
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
 import com.miaomiao.assistant.model.llm.AppChatMessage;
 import com.miaomiao.assistant.model.llm.AppLLMResponse;
 import com.miaomiao.assistant.model.llm.LLMManager;
 import com.miaomiao.assistant.model.llm.LLMOptions;
 import com.miaomiao.assistant.service.SystemPromptService;
 import com.miaomiao.assistant.websocket.ConversationConfig;
+import com.miaomiao.assistant.websocket.service.pipeline.UpstreamCancellationTracker;
 import com.miaomiao.assistant.websocket.session.WebSocketMessageSender;
 import com.miaomiao.assistant.websocket.session.SessionState;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,7 +27,7 @@ import java.util.List;
  * <p>
  * 职责：
  * 1. 流式调用LLM获取响应
- * 2. 发送token给前端（用于打字效果）
+ * 2. 发送token给前端（用于打字效果，刷新窗口内合并、只发增量）
  * 3. 把原始token流发给TTS pipeline（由TextAggregator断句）
  */
 @Slf4j
@@ -35,6 +38,32 @@ public class LLMService {
     private final LLMManager llmManager;
     private final WebSocketMessageSender messageSender;
     private final SystemPromptService systemPromptService;
+    private final BlockingTaskExecutor blockingTaskExecutor;
+    private final UpstreamCancellationTracker cancellationTracker;
+
+    /**
+     * token 下发模式：delta（合并后只发增量 + 定期 checkpoint）或 full（每个 token 立即发送并附带完整文本）
+     */
+    @Value("${llm.token.delivery-mode:delta}")
+    private String tokenDeliveryMode;
+
+    /**
+     * delta 模式下的刷新窗口（毫秒）
+     */
+    @Value("${llm.token.flush-interval-ms:30}")
+    private long tokenFlushIntervalMs;
+
+    /**
+     * delta 模式下窗口内累计到该数量的 token 立即发送
+     */
+    @Value("${llm.token.max-tokens-per-frame:16}")
+    private int maxTokensPerFrame;
+
+    /**
+     * delta 模式下每隔多少条消息附带一次完整文本
+     */
+    @Value("${llm.token.checkpoint-interval:32}")
+    private int tokenCheckpointInterval;
 
     /**
      * 处理LLM流式对话
@@ -45,6 +74,51 @@ public class LLMService {
      * @return token流（用于TTS处理，由TextAggregator断句）
      */
     public Flux<String> processLLMStream(SessionState state, String text, ConversationConfig config) {
+        return processLLMStream(state, text, openChatStreamAsync(state, text, config));
+    }
+
+    /**
+     * 处理已提前发起的LLM请求（推测执行命中后提交）
+     * <p>
+     * 已缓存的响应立即回放，之后的响应实时到达；本轮被中断时一并断开上游请求
+     *
+     * @param state      会话状态
+     * @param prefetched 提前发起的LLM请求
+     * @return token流（用于TTS处理，由TextAggregator断句）
+     */
+    public Flux<String> processLLMStream(SessionState state, PrefetchedLLMStream prefetched) {
+        return processLLMStream(state, prefetched.getText(),
+                prefetched.asFlux().doFinally(signalType -> prefetched.cancel()));
+    }
+
+    /**
+     * 提前发起LLM请求（推测执行）
+     * <p>
+     * 响应只缓存在内存中，不发给前端、不进入TTS、不写对话历史，直到提交时交给
+     * {@link #processLLMStream(SessionState, PrefetchedLLMStream)}
+     *
+     * @param state  会话状态
+     * @param text   推测的用户输入文本
+     * @param config 对话配置
+     */
+    public PrefetchedLLMStream prefetch(SessionState state, String text, ConversationConfig config) {
+        return PrefetchedLLMStream.start(text, openChatStreamAsync(state, text, config));
+    }
+
+    /**
+     * 部分提供商（智谱 SDK）在构建请求时就同步发起 HTTP 调用，订阅放到阻塞调用执行器上，不占用调用方线程
+     * <p>
+     * 本轮被打断（订阅被取消）时取消向上传递到提供商，断开 SSE 连接
+     */
+    private Flux<AppLLMResponse> openChatStreamAsync(SessionState state, String text, ConversationConfig config) {
+        return cancellationTracker.track(UpstreamCancellationTracker.Stage.LLM,
+                Flux.defer(() -> openChatStream(state, text, config)).subscribeOn(blockingTaskExecutor.scheduler()));
+    }
+
+    /**
+     * 构建LLM请求（系统提示词 + 历史 + 当前输入），订阅时才发起
+     */
+    private Flux<AppLLMResponse> openChatStream(SessionState state, String text, ConversationConfig config) {
         // 构建LLM选项
         LLMOptions llmOptions = LLMOptions.of(config.getLlmModel());
         llmOptions.setMaxTokens(config.getMaxTokens());
@@ -61,22 +135,25 @@ public class LLMService {
         messages.addAll(state.getConversationHistory());
         messages.add(new AppChatMessage("user", text));
 
+        return llmManager.chatStream(config.getLMModelKey(), messages, llmOptions);
+    }
+
+    private Flux<String> processLLMStream(SessionState state, String text, Flux<AppLLMResponse> llmStream) {
         // 设置token sink用于TTS pipeline
         Sinks.Many<String> tokenSink = Sinks.many().unicast().onBackpressureBuffer();
-        StringBuilder fullResponse = new StringBuilder();
-
-        // 开始LLM流式响应
-        Flux<AppLLMResponse> llmStream = llmManager.chatStream(config.getLMModelKey(), messages, llmOptions);
+        LLMTokenCoalescer coalescer = createCoalescer(state);
 
         // 订阅LLM流 - 直接把token发给TTS pipeline
         Disposable llmDisposable = llmStream
                 .takeWhile(response -> !state.isAborted())
                 .doFinally(signalType -> {
                     log.debug("LLM流结束: session={}, signal={}", state.getSessionId(), signalType);
+                    // 正常结束时 finish 已发送全部内容；异常结束补发剩余增量，中断则直接丢弃
+                    coalescer.close(!state.isAborted());
                     tokenSink.tryEmitComplete();
                 })
                 .subscribe(
-                        llmResponse -> handleLLMResponse(state, llmResponse, text, fullResponse, tokenSink),
+                        llmResponse -> handleLLMResponse(state, llmResponse, text, coalescer, tokenSink),
                         error -> {
                             log.error("LLM流错误", error);
                         },
@@ -95,27 +172,21 @@ public class LLMService {
      * 处理LLM响应
      * <p>
      * 只做两件事：
-     * 1. 发送token给前端（打字效果）
+     * 1. 发送token给前端（打字效果，交给合并器按刷新窗口发送）
      * 2. 把token发给TTS pipeline（由TextAggregator断句）
      */
     private void handleLLMResponse(SessionState state,
                                    AppLLMResponse appLlmResponse,
                                    String userText,
-                                   StringBuilder fullResponse,
+                                   LLMTokenCoalescer coalescer,
                                    Sinks.Many<String> tokenSink) {
         String content = appLlmResponse.text();
         if (content != null && !content.isEmpty()) {
-            fullResponse.append(content);
-
             // 记录 LLM 首次响应时间（性能指标）
             state.getPerformanceMetrics().recordLLMFirstResponse();
 
             // 1. 发送流式token给前端（用于打字效果）
-            try {
-                messageSender.sendLLMToken(state, content, fullResponse.toString(), false);
-            } catch (IOException e) {
-                log.error("发送LLM token消息失败", e);
-            }
+            coalescer.append(content);
 
             // 2. 把token发给TTS pipeline（由TextAggregator断句）
             tokenSink.tryEmitNext(content);
@@ -123,22 +194,33 @@ public class LLMService {
 
         // 流结束
         if (appLlmResponse.finished()) {
+            String fullResponse = coalescer.getAccumulated();
             if (fullResponse.isEmpty()) {
                 log.warn("LLM流结束但无文本输出: session={}, userTextLen={}",
                         state.getSessionId(), userText == null ? 0 : userText.length());
             }
             tokenSink.tryEmitComplete();
 
-            // 发送完成标记给前端
-            try {
-                messageSender.sendLLMToken(state, "", fullResponse.toString(), true);
-            } catch (IOException e) {
-                log.error("发送LLM完成消息失败", e);
-            }
+            // 发送剩余增量和完成标记给前端（附带完整文本）
+            coalescer.finish();
 
             // 保存到对话历史
             state.addMessage("user", userText);
-            state.addMessage("assistant", fullResponse.toString());
+            state.addMessage("assistant", fullResponse);
+        }
+    }
+
+    /**
+     * 创建本轮对话的 token 合并器（绑定当前轮次，打断后合并器里剩余的 token 不再发送）
+     */
+    private LLMTokenCoalescer createCoalescer(SessionState state) {
+        int turn = state.getTurn();
+        LLMTokenCoalescer.TokenSender sender = (seq, delta, accumulated, finished) ->
+                messageSender.sendLLMToken(state, turn, seq, delta, accumulated, finished);
+        if ("full".equalsIgnoreCase(tokenDeliveryMode)) {
+            return new LLMTokenCoalescer(sender, Schedulers.parallel(), 0, 1, 1);
         }
+        return new LLMTokenCoalescer(sender, Schedulers.parallel(),
+                tokenFlushIntervalMs, maxTokensPerFrame, tokenCheckpointInterval);
     }
 }
@@ -0,0 +1,138 @@
+package com.miaomiao.assistant.websocket.service;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LLM token 合并发送器（每轮对话一个实例）
+ * <p>
+ * 在一个刷新窗口内收到的 token 合并成一条 llm_token 消息，只发送增量（delta）和递增序号 seq；
+ * 每隔若干条消息以及结束时附带一次完整文本（checkpoint），前端可据此校验或重新同步。
+ * <p>
+ * append 在 LLM 流线程调用，定时刷新在调度器线程执行，两者通过对象锁串行化，保证 seq 与发送顺序一致。
+ */
+@Slf4j
+public class LLMTokenCoalescer {
+
+    /**
+     * 实际发送一条 llm_token 消息
+     */
+    @FunctionalInterface
+    public interface TokenSender {
+        void send(long seq, String delta, String accumulated, boolean finished) throws IOException;
+    }
+
+    private final TokenSender sender;
+    private final Scheduler scheduler;
+    private final long flushIntervalMs;
+    private final int maxPendingTokens;
+    private final int checkpointInterval;
+
+    private final StringBuilder accumulated = new StringBuilder();
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingTokens = 0;
+    private long nextSeq = 0;
+    private Disposable scheduledFlush;
+    private boolean closed = false;
+
+    /**
+     * @param sender             消息发送
+     * @param scheduler          刷新窗口定时器
+     * @param flushIntervalMs    刷新窗口（毫秒），0 表示每个 token 立即发送
+     * @param maxPendingTokens   窗口内累计到该数量的 token 立即发送
+     * @param checkpointInterval 每隔多少条消息附带一次完整文本，1 表示每条都带（兼容旧前端）
+     */
+    public LLMTokenCoalescer(TokenSender sender, Scheduler scheduler,
+                             long flushIntervalMs, int maxPendingTokens, int checkpointInterval) {
+        this.sender = sender;
+        this.scheduler = scheduler;
+        this.flushIntervalMs = Math.max(0, flushIntervalMs);
+        this.maxPendingTokens = Math.max(1, maxPendingTokens);
+        this.checkpointInterval = Math.max(1, checkpointInterval);
+    }
+
+    /**
+     * 追加一个 token
+     */
+    public synchronized void append(String token) {
+        if (closed || token == null || token.isEmpty()) {
+            return;
+        }
+        accumulated.append(token);
+        pending.append(token);
+        pendingTokens++;
+
+        if (flushIntervalMs == 0 || pendingTokens >= maxPendingTokens) {
+            flush(false);
+        } else if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::onFlushTimer, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 结束本轮：发送剩余增量，并附带完整文本与 finished=true
+     */
+    public synchronized void finish() {
+        if (closed) {
+            return;
+        }
+        flush(true);
+        closed = true;
+    }
+
+    /**
+     * 关闭（流异常结束或被中断时调用），finish 之后调用无副作用
+     *
+     * @param flushPending 是否把尚未发送的增量发出去（中断时丢弃）
+     */
+    public synchronized void close(boolean flushPending) {
+        if (closed) {
+            return;
+        }
+        if (flushPending && pendingTokens > 0) {
+            flush(false);
+        }
+        cancelScheduledFlush();
+        closed = true;
+    }
+
+    /**
+     * 当前累积的完整文本
+     */
+    public synchronized String getAccumulated() {
+        return accumulated.toString();
+    }
+
+    private synchronized void onFlushTimer() {
+        scheduledFlush = null;
+        if (!closed && pendingTokens > 0) {
+            flush(false);
+        }
+    }
+
+    private void flush(boolean finished) {
+        cancelScheduledFlush();
+        long seq = nextSeq++;
+        String delta = pending.toString();
+        pending.setLength(0);
+        pendingTokens = 0;
+
+        boolean checkpoint = finished || (seq + 1) % checkpointInterval == 0;
+        try {
+            sender.send(seq, delta, checkpoint ? accumulated.toString() : null, finished);
+        } catch (IOException e) {
+            log.error("发送LLM token消息失败", e);
+        }
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+    }
+}
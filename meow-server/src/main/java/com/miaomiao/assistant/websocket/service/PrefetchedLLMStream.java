@@ -0,0 +1,74 @@
+package com.miaomiao.assistant.websocket.service;
+
+import com.miaomiao.assistant.model.llm.AppLLMResponse;
+import lombok.Getter;
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.Flux;
+
+/**
+ * 提前发起的 LLM 请求（推测执行）
+ * <p>
+ * 创建时立即订阅上游，响应缓存在内存中；提交后由 {@link #asFlux()} 回放已缓存的响应并继续接收后续响应。
+ * 推测落空时调用 {@link #cancel()} 断开上游请求。
+ */
+public class PrefetchedLLMStream {
+
+    @Getter
+    private final String text;
+
+    @Getter
+    private final long startNanos;
+
+    private final ConnectableFlux<AppLLMResponse> replay;
+    private final Disposable connection;
+
+    /**
+     * 首个响应到达时间，0 表示还没有响应
+     */
+    private volatile long firstResponseNanos;
+
+    private PrefetchedLLMStream(String text, Flux<AppLLMResponse> source) {
+        this.text = text;
+        this.startNanos = System.nanoTime();
+        this.replay = source
+                .doOnNext(response -> {
+                    if (firstResponseNanos == 0) {
+                        firstResponseNanos = System.nanoTime();
+                    }
+                })
+                .replay();
+        this.connection = replay.connect();
+    }
+
+    static PrefetchedLLMStream start(String text, Flux<AppLLMResponse> source) {
+        return new PrefetchedLLMStream(text, source);
+    }
+
+    /**
+     * 已缓存 + 后续的 LLM 响应
+     */
+    public Flux<AppLLMResponse> asFlux() {
+        return replay;
+    }
+
+    /**
+     * 断开上游请求
+     */
+    public void cancel() {
+        connection.dispose();
+    }
+
+    /**
+     * 提前发起为本轮对话节省的时间：
+     * 不推测时首个响应在 commit + 首响应耗时 到达，推测后在 max(commit, 首个响应到达) 到达，
+     * 两者之差为 min(首个响应到达, commit) - 发起时间
+     *
+     * @param commitNanos 提交（最终识别结果到达）的时间
+     */
+    public long savedNanos(long commitNanos) {
+        long firstResponse = firstResponseNanos;
+        long end = firstResponse == 0 ? commitNanos : Math.min(firstResponse, commitNanos);
+        return Math.max(0, end - startNanos);
+    }
+}
@@ -0,0 +1,222 @@
+package com.miaomiao.assistant.websocket.service;
+
+import com.miaomiao.assistant.websocket.ConversationConfig;
+import com.miaomiao.assistant.websocket.session.SessionState;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM 推测执行：流式识别的中间结果稳定后提前发起 LLM 请求
+ * <p>
+ * 1. 中间结果在 llm.speculative.stable-ms 内没有变化时，以该文本提前发起 LLM 请求（响应只缓存，不下发）
+ * 2. 中间结果又变化时，旧的推测请求保留到新文本稳定为止；新文本实质不同时断开旧请求重新发起
+ * 3. 最终识别结果到达时与推测文本比较（忽略空白、标点和大小写）：
+ * 一致则提交推测请求，把 ASR 结束 -> LLM 首响应 的等待移出关键路径；不一致则断开推测请求，按最终结果重新发起
+ * <p>
+ * 推测请求在提交前不会发给前端、不进入 TTS、不写对话历史，落空时客户端不会看到任何内容。
+ * <p>
+ * 落空的推测请求也会产生上游调用费用和并发占用，默认关闭，通过 llm.speculative.enabled=true 开启。
+ */
+@Slf4j
+@Component
+public class SpeculativeLLMStarter {
+
+    private final LLMService llmService;
+
+    @Getter
+    private final boolean enabled;
+
+    private final long stableMs;
+
+    private final Scheduler scheduler;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    public SpeculativeLLMStarter(
+            LLMService llmService,
+            @Value("${llm.speculative.enabled:false}") boolean enabled,
+            @Value("${llm.speculative.stable-ms:300}") long stableMs) {
+        this.llmService = llmService;
+        this.enabled = enabled;
+        this.stableMs = Math.max(0, stableMs);
+        this.scheduler = Schedulers.parallel();
+        log.info("LLM 推测执行初始化: enabled={}, stableMs={}", enabled, this.stableMs);
+    }
+
+    /**
+     * 为一段语音创建推测执行上下文
+     */
+    public Speculation begin(SessionState state, ConversationConfig config) {
+        return new Speculation(state, config);
+    }
+
+    /**
+     * 判断两段识别文本是否实质相同（忽略空白、标点和大小写）
+     */
+    static boolean sameUtterance(String a, String b) {
+        return normalize(a).equals(normalize(b));
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        text.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .map(Character::toLowerCase)
+                .forEach(builder::appendCodePoint);
+        return builder.toString();
+    }
+
+    /**
+     * 获取推测执行指标快照
+     */
+    public SpeculationMetrics getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long decided = hitCount + missCount;
+        return new SpeculationMetrics(enabled, stableMs, started.sum(), superseded.sum(), hitCount, missCount,
+                abandoned.sum(),
+                decided == 0 ? 0 : (double) hitCount / decided,
+                hitCount == 0 ? 0 : savedNanos.sum() / 1_000_000.0 / hitCount,
+                savedNanos.sum() / 1_000_000L);
+    }
+
+    /**
+     * 一段语音的推测执行上下文
+     * <p>
+     * 中间结果在 ASR 回调线程上到达，稳定计时在并行线程池上触发，方法都加锁
+     */
+    public class Speculation {
+
+        private final SessionState state;
+        private final ConversationConfig config;
+
+        /**
+         * 最近一次中间结果
+         */
+        private String pendingText;
+        private Disposable stableTimer;
+        private PrefetchedLLMStream prefetched;
+        private boolean closed;
+
+        private Speculation(SessionState state, ConversationConfig config) {
+            this.state = state;
+            this.config = config;
+        }
+
+        /**
+         * 收到新的中间结果（累计文本）
+         */
+        public synchronized void onPartial(String text) {
+            if (!enabled || closed || text == null || text.isBlank() || text.equals(pendingText)) {
+                return;
+            }
+            pendingText = text;
+            if (stableTimer != null) {
+                stableTimer.dispose();
+            }
+            stableTimer = scheduler.schedule(() -> onStable(text), stableMs, TimeUnit.MILLISECONDS);
+        }
+
+        private synchronized void onStable(String text) {
+            if (closed || !text.equals(pendingText)) {
+                return;
+            }
+            if (prefetched != null) {
+                if (sameUtterance(prefetched.getText(), text)) {
+                    return;
+                }
+                prefetched.cancel();
+                superseded.increment();
+            }
+            try {
+                prefetched = llmService.prefetch(state, text, config);
+                started.increment();
+                log.debug("会话 {} 中间识别结果已稳定 {}ms，提前发起 LLM 请求", state.getSessionId(), stableMs);
+            } catch (Exception e) {
+                prefetched = null;
+                log.warn("提前发起 LLM 请求失败: {}", e.getMessage());
+            }
+        }
+
+        /**
+         * 最终识别结果到达
+         *
+         * @return 与最终结果一致的推测请求（命中）；没有推测或推测落空时返回 null
+         */
+        public synchronized PrefetchedLLMStream commit(String finalText) {
+            long commitNanos = System.nanoTime();
+            close();
+            PrefetchedLLMStream candidate = prefetched;
+            prefetched = null;
+            if (candidate == null) {
+                return null;
+            }
+            if (sameUtterance(candidate.getText(), finalText)) {
+                long saved = candidate.savedNanos(commitNanos);
+                hits.increment();
+                savedNanos.add(saved);
+                log.debug("会话 {} LLM 推测命中，提前 {}ms", state.getSessionId(), saved / 1_000_000L);
+                return candidate;
+            }
+            candidate.cancel();
+            misses.increment();
+            log.debug("会话 {} LLM 推测落空，按最终识别结果重新发起", state.getSessionId());
+            return null;
+        }
+
+        /**
+         * 语音输入取消或识别失败：断开推测请求
+         */
+        public synchronized void cancel() {
+            close();
+            if (prefetched != null) {
+                prefetched.cancel();
+                prefetched = null;
+                abandoned.increment();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            if (stableTimer != null) {
+                stableTimer.dispose();
+                stableTimer = null;
+            }
+        }
+    }
+
+    /**
+     * LLM 推测执行指标快照
+     *
+     * @param enabled      是否启用
+     * @param stableMs     中间结果稳定多久后发起（毫秒）
+     * @param started      发起的推测请求数
+     * @param superseded   中间结果变化后被替换的推测请求数
+     * @param hits         最终结果与推测一致、提交的次数
+     * @param misses       最终结果与推测不一致、重新发起的次数
+     * @param abandoned    语音取消或识别失败时丢弃的推测请求数
+     * @param hitRate      命中率 hits / (hits + misses)
+     * @param avgSavedMs   命中时平均节省的时间（毫秒）
+     * @param totalSavedMs 累计节省的时间（毫秒）
+     */
+    public record SpeculationMetrics(boolean enabled, long stableMs, long started, long superseded, long hits,
+                                     long misses, long abandoned, double hitRate, double avgSavedMs,
+                                     long totalSavedMs) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.miaomiao.assistant.websocket.service;
+
+import com.miaomiao.assistant.codec.OpusCodec;
+import com.miaomiao.assistant.codec.OpusEncoderStream;
+import com.miaomiao.assistant.domain.CharacterCard;
+import com.miaomiao.assistant.model.tts.TTSAudio;
+import com.miaomiao.assistant.model.tts.TTSManager;
+import com.miaomiao.assistant.model.tts.TTSOptions;
+import com.miaomiao.assistant.service.ConversationConfigService;
+import com.miaomiao.assistant.service.SystemPromptService;
+import com.miaomiao.assistant.websocket.ConversationConfig;
+import com.miaomiao.assistant.websocket.service.pipeline.PrerenderedAudioStore;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSAudioCache;
+import com.miaomiao.assistant.websocket.service.pipeline.TextAggregator;
+import com.miaomiao.assistant.websocket.service.pipeline.TextPreProcessorPipeline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * TTS 预渲染任务
+ * <p>
+ * 批量合成角色卡的常用语（{@link CharacterCard#getStockPhrases()}）并写入 {@link PrerenderedAudioStore}：
+ * 1. 常用语按对话链路的聚合策略切分（作为回复开头时首句按逗号切分，在回复中间时按完整句子切分），
+ *    再经过相同的文本预处理，键与运行时一致（默认对话配置的模型、音色、语速、音量、格式）
+ * 2. 已收录或超过缓存长度上限的句子跳过
+ * 3. 按 tts.prerender.concurrency 并发调用 TTSManager，在弹性线程池上编码
+ * <p>
+ * 通过 POST /api/tts/prerender 手动触发；tts.prerender.on-startup 为 true 时应用启动后自动执行一次。
+ */
+@Slf4j
+@Service
+public class TTSPrerenderService {
+
+    private final TTSManager ttsManager;
+    private final OpusCodec opusCodec;
+    private final TTSAudioCache audioCache;
+    private final PrerenderedAudioStore store;
+    private final SystemPromptService systemPromptService;
+    private final ConversationConfigService configService;
+    private final int concurrency;
+    private final boolean onStartup;
+
+    public TTSPrerenderService(TTSManager ttsManager,
+                               OpusCodec opusCodec,
+                               TTSAudioCache audioCache,
+                               PrerenderedAudioStore store,
+                               SystemPromptService systemPromptService,
+                               ConversationConfigService configService,
+                               @Value("${tts.prerender.concurrency:4}") int concurrency,
+                               @Value("${tts.prerender.on-startup:false}") boolean onStartup) {
+        this.ttsManager = ttsManager;
+        this.opusCodec = opusCodec;
+        this.audioCache = audioCache;
+        this.store = store;
+        this.systemPromptService = systemPromptService;
+        this.configService = configService;
+        this.concurrency = Math.max(1, concurrency);
+        this.onStartup = onStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void prerenderOnStartup() {
+        if (!onStartup || !store.isEnabled()) {
+            return;
+        }
+        prerender(null).subscribe(
+                report -> log.info("启动预渲染完成: {}", report),
+                error -> log.warn("启动预渲染失败: {}", error.getMessage()));
+    }
+
+    /**
+     * 预渲染角色常用语
+     *
+     * @param characterId 角色卡ID，为空时预渲染所有角色
+     */
+    public Mono<PrerenderReport> prerender(String characterId) {
+        if (!store.isEnabled()) {
+            return Mono.error(new IllegalStateException("预渲染音频库未启用"));
+        }
+        Collection<CharacterCard> cards = characterId == null || characterId.isBlank()
+                ? systemPromptService.getCharacterCards()
+                : List.of(systemPromptService.getCharacterCard(characterId));
+
+        ConversationConfig config = configService.getDefaultConfig();
+        TTSOptions options = TTSOptions.builder()
+                .model(config.getTtsModel())
+                .voice(config.getTtsVoice())
+                .speed(config.getTtsSpeed())
+                .volume(config.getTtsVolume())
+                .format(config.getTtsFormat())
+                .build();
+        String modelKey = config.getTTSModelKey();
+
+        Set<String> texts = new LinkedHashSet<>();
+        for (CharacterCard card : cards) {
+            if (card.getStockPhrases() != null) {
+                card.getStockPhrases().forEach(phrase -> texts.addAll(runtimeSegments(phrase)));
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        return Flux.fromIterable(texts)
+                .flatMap(text -> Mono.fromCallable(() -> renderOne(modelKey, text, options))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.warn("预渲染失败: text={}, error={}", text, e.getMessage());
+                            return Mono.just(Outcome.FAILED);
+                        }), concurrency)
+                .collectList()
+                .map(outcomes -> new PrerenderReport(
+                        count(outcomes, Outcome.RENDERED),
+                        count(outcomes, Outcome.SKIPPED),
+                        count(outcomes, Outcome.FAILED),
+                        (System.nanoTime() - startNanos) / 1_000_000L));
+    }
+
+    /**
+     * 常用语在对话链路中实际提交给 TTS 的句子：分别按回复开头（首句激进切分）和回复中间（完整句子）聚合
+     */
+    static Set<String> runtimeSegments(String phrase) {
+        Set<String> segments = new LinkedHashSet<>();
+        addSegments(segments, phrase, TTSService.AGGREGATION_STRATEGY);
+        addSegments(segments, phrase, TextAggregator.AggregationStrategy.SENTENCE);
+        return segments;
+    }
+
+    private static void addSegments(Set<String> segments, String phrase, TextAggregator.AggregationStrategy strategy) {
+        TextAggregator aggregator = new TextAggregator(TextAggregator.AggregationConfig.create().strategy(strategy));
+        List<TextAggregator.AggregateResult> results = new ArrayList<>(aggregator.append(phrase));
+        TextAggregator.AggregateResult last = aggregator.complete();
+        if (last != null) {
+            results.add(last);
+        }
+        for (TextAggregator.AggregateResult result : results) {
+            segments.addAll(TextPreProcessorPipeline.getInstance().process(result.getText()));
+        }
+    }
+
+    private Outcome renderOne(String modelKey, String text, TTSOptions options) {
+        String key = audioCache.storeKey(modelKey, text, options);
+        if (key == null || store.contains(key)) {
+            return Outcome.SKIPPED;
+        }
+        List<byte[]> frames = new ArrayList<>();
+        try (OpusEncoderStream encoder = opusCodec.openEncoderStream()) {
+            ttsManager.textToSpeechStream(modelKey, text, options)
+                    .map(TTSAudio::getAudioData)
+                    .filter(pcm -> pcm != null && pcm.length > 0)
+                    .doOnNext(pcm -> frames.addAll(encoder.write(pcm)))
+                    .blockLast();
+            frames.addAll(encoder.finish());
+        }
+        if (frames.isEmpty()) {
+            return Outcome.FAILED;
+        }
+        return store.put(key, frames) ? Outcome.RENDERED : Outcome.SKIPPED;
+    }
+
+    private static int count(List<Outcome> outcomes, Outcome outcome) {
+        return (int) outcomes.stream().filter(o -> o == outcome).count();
+    }
+
+    private enum Outcome {
+        RENDERED, SKIPPED, FAILED
+    }
+
+    /**
+     * 预渲染结果
+     *
+     * @param rendered  新合成并写入的句子数
+     * @param skipped   已收录或不可缓存而跳过的句子数
+     * @param failed    失败的句子数
+     * @param elapsedMs 耗时（毫秒）
+     */
+    public record PrerenderReport(int rendered, int skipped, int failed, long elapsedMs) {
+    }
+}
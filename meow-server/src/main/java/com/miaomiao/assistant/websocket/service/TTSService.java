@@ -1,21 +1,32 @@
 package com.miaomiao.assistant.websocket.service;
 
 import com.miaomiao.assistant.codec.OpusCodec;
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
 import com.miaomiao.assistant.model.tts.TTSManager;
 import com.miaomiao.assistant.service.ConversationConfigService;
 import com.miaomiao.assistant.websocket.ConversationConfig;
 import com.miaomiao.assistant.websocket.session.WebSocketMessageSender;
+import com.miaomiao.assistant.websocket.service.pipeline.AudioFramePacker;
 import com.miaomiao.assistant.websocket.service.pipeline.ConcurrentTTSFrameProcessor;
 import com.miaomiao.assistant.websocket.service.pipeline.FrameProcessor;
 import com.miaomiao.assistant.websocket.service.pipeline.Frames;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSAudioCache;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSPacingScheduler;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSWorkerScheduler;
 import com.miaomiao.assistant.websocket.service.pipeline.TextAggregator;
+import com.miaomiao.assistant.websocket.service.pipeline.UpstreamCancellationTracker;
 import com.miaomiao.assistant.websocket.session.SessionState;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
 
 /**
  * TTS（语音合成）处理服务
@@ -24,7 +35,7 @@ import reactor.core.scheduler.Schedulers;
  * <p>
  * 核心特性：
  * 1. 文本聚合策略（HYBRID：首句激进、后续完整句子）
- * 2. 音频时机控制（模拟真实音频设备播放速率）
+ * 2. 音频下发节奏控制（按播放速率 + 目标余量下发，见 {@link TTSPacingScheduler}）
  * 3. 支持中断
  * 4. 并发模式下的有序播放保证
  */
@@ -35,17 +46,44 @@ public class TTSService {
 
     private final TTSManager ttsManager;
     private final OpusCodec opusCodec;
+    private final TTSWorkerScheduler ttsWorkerScheduler;
+    private final TTSPacingScheduler ttsPacingScheduler;
+    private final TTSAudioCache ttsAudioCache;
     private final WebSocketMessageSender messageSender;
     private final ConversationConfigService configService;
+    private final BlockingTaskExecutor blockingTaskExecutor;
+    private final UpstreamCancellationTracker cancellationTracker;
+
+    /**
+     * 文本聚合策略（预渲染常用语时按同样的策略切分）
+     */
+    static final TextAggregator.AggregationStrategy AGGREGATION_STRATEGY = TextAggregator.AggregationStrategy.HYBRID;
 
     /**
-     * TTS 并发数
+     * 单个会话的 TTS 并发数（全局上限由 tts.scheduler 控制）
      * <p>
      * 建议值：2-4，过高可能导致 TTS 服务限流
      */
     @Value("${tts.concurrent.max-concurrency:3}")
     private int maxConcurrency;
 
+    /**
+     * 每条 WebSocket 消息最多打包的 Opus 帧数（1 表示每帧一条消息）
+     */
+    @Value("${tts.packing.max-frames-per-message:5}")
+    private int maxFramesPerMessage;
+
+    /**
+     * 客户端播放余量每增加多少毫秒多打包 1 帧
+     */
+    @Value("${tts.packing.lead-ms-per-frame:100}")
+    private long leadMsPerFrame;
+
+    /**
+     * 等待剩余句子合成完毕的超时时间（按节奏下发的音频不计入，其耗时取决于音频时长）
+     */
+    private static final Duration COMPLETION_TIMEOUT = Duration.ofSeconds(30);
+
     /**
      * 处理TTS流 - 使用 Pipecat 管道架构
      * <p>
@@ -62,20 +100,31 @@ public class TTSService {
         ConcurrentTTSFrameProcessor processor = new ConcurrentTTSFrameProcessor(
                 ttsManager,
                 opusCodec,
+                ttsWorkerScheduler,
                 messageSender,
                 configService,
                 state,
-                TextAggregator.AggregationStrategy.HYBRID,
-                maxConcurrency
+                AGGREGATION_STRATEGY,
+                maxConcurrency,
+                new AudioFramePacker.Config(maxFramesPerMessage, leadMsPerFrame),
+                ttsPacingScheduler,
+                ttsAudioCache,
+                cancellationTracker
         );
 
         FrameProcessor.ProcessingContext context = new FrameProcessor.ProcessingContext(state.getSessionId());
+        // 新一轮开始或被打断后本轮过期，不再提交新句子
+        int turn = state.getTurn();
+
+        // 登记到会话：打断时取消本轮 TTS，关闭处理器并断开进行中的合成请求（即使 LLM 已结束、正在等待剩余句子）
+        Disposable.Swap ttsRequest = Disposables.swap();
+        state.addUpstreamRequest(ttsRequest);
 
-        textStream
-                .takeWhile(text -> !state.isAborted())
-                .publishOn(Schedulers.boundedElastic())
+        ttsRequest.update(textStream
+                .takeWhile(text -> !state.isAborted() && state.isCurrentTurn(turn))
+                .publishOn(blockingTaskExecutor.scheduler())
                 .doOnNext(text -> {
-                    if (state.isAborted() || context.isInterrupted()) {
+                    if (state.isAborted() || !state.isCurrentTurn(turn) || context.isInterrupted()) {
                         return;
                     }
                     try {
@@ -87,22 +136,32 @@ public class TTSService {
                 .doOnError(error -> {
                     log.error("TTS 流错误", error);
                 })
-                .doOnComplete(() -> {
-                    if (state.isAborted() || context.isInterrupted()) {
+                .then(Mono.defer(() -> {
+                    if (state.isAborted() || !state.isCurrentTurn(turn) || context.isInterrupted()) {
                         log.debug("会话 {} 已中止，跳过 EndFrame 处理", state.getSessionId());
-                        return;
+                        return Mono.<Void>empty();
                     }
                     try {
                         processor.processFrame(new Frames.EndFrame(), context);
-                        log.debug("会话 {} TTS 流处理完成", state.getSessionId());
                     } catch (FrameProcessor.FrameProcessingException e) {
                         log.error("处理结束帧失败", e);
+                        return Mono.<Void>empty();
                     }
-                })
+                    // 异步等待剩余句子合成完毕（最多 30 秒），再等按节奏下发的音频发送完毕，不占用线程
+                    return processor.completion()
+                            .timeout(COMPLETION_TIMEOUT)
+                            .then(processor.playbackDrained())
+                            .doOnSuccess(v -> log.debug("会话 {} TTS 流处理完成", state.getSessionId()))
+                            .onErrorResume(TimeoutException.class, e -> {
+                                log.warn("等待 TTS 任务完成超时");
+                                return Mono.empty();
+                            });
+                }))
                 .doFinally(signalType -> {
                     processor.close();
+                    state.removeUpstreamRequest(ttsRequest);
                     log.debug("会话 {} TTS 流结束: {}", state.getSessionId(), signalType);
                 })
-                .subscribe();
+                .subscribe());
     }
 }
@@ -0,0 +1,75 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+/**
+ * 自适应 Opus 帧打包策略
+ * <p>
+ * 决定每条 WebSocket 消息打包几个 20ms 帧：
+ * 1. 客户端没有播放余量时（首帧、断流之后）每条消息只带 1 帧，保证首音延迟
+ * 2. 按已发送音频时长估算客户端的播放余量（lead），余量每增加 leadMsPerFrame 多打包 1 帧，最多 maxFramesPerMessage 帧
+ * <p>
+ * 只打包当前已就绪的帧，不会为了凑满而等待。非线程安全，只由 {@link OrderedSegmentDispatcher} 的发送方调用。
+ */
+public class AudioFramePacker {
+
+    /**
+     * 每个 Opus 帧的时长
+     */
+    static final long FRAME_DURATION_NANOS = 20_000_000L;
+
+    /**
+     * 打包配置
+     *
+     * @param maxFramesPerMessage 每条消息最多打包的帧数（1 表示不打包）
+     * @param leadMsPerFrame      播放余量每增加多少毫秒多打包 1 帧
+     */
+    public record Config(int maxFramesPerMessage, long leadMsPerFrame) {
+
+        /**
+         * 每条消息 1 帧（不打包）
+         */
+        public static final Config SINGLE_FRAME = new Config(1, 100);
+    }
+
+    private final int maxFramesPerMessage;
+    private final long leadNanosPerFrame;
+
+    /**
+     * 客户端预计播放完已发送音频的时间点
+     */
+    private long playbackEndNanos = 0;
+
+    public AudioFramePacker(Config config) {
+        Config effective = config == null ? Config.SINGLE_FRAME : config;
+        this.maxFramesPerMessage = Math.max(1, effective.maxFramesPerMessage());
+        this.leadNanosPerFrame = Math.max(1, effective.leadMsPerFrame()) * 1_000_000L;
+    }
+
+    /**
+     * 下一条消息最多打包的帧数
+     */
+    public int nextBundleSize(long nowNanos) {
+        if (maxFramesPerMessage == 1) {
+            return 1;
+        }
+        long lead = playbackEndNanos - nowNanos;
+        if (lead <= 0) {
+            return 1;
+        }
+        return (int) Math.min(maxFramesPerMessage, 1 + lead / leadNanosPerFrame);
+    }
+
+    /**
+     * 记录已发送的帧数（客户端播放时钟向后推进）
+     */
+    public void onSent(int frames, long nowNanos) {
+        // 客户端断流后从当前时间重新开始播放
+        playbackEndNanos = Math.max(playbackEndNanos, nowNanos) + frames * FRAME_DURATION_NANOS;
+    }
+
+    /**
+     * 估算的客户端播放余量（毫秒）
+     */
+    public long getLeadMs(long nowNanos) {
+        return Math.max(0, playbackEndNanos - nowNanos) / 1_000_000L;
+    }
+}
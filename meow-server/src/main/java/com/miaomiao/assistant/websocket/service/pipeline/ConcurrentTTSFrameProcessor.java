@@ -10,8 +10,9 @@ import com.miaomiao.assistant.websocket.session.SessionState;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import reactor.core.publisher.Mono;
+
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
  * 并发 TTS Frame 处理器
@@ -30,6 +31,11 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
      */
     @Getter
     private final TextAggregator textAggregator;
+
+    /**
+     * 流式 Markdown 过滤（在聚合之前处理原始 token，跨 token 保留代码块等状态）
+     */
+    private final StreamingMarkdownStripper markdownStripper = new StreamingMarkdownStripper();
     private final ConcurrentTTSProcessor concurrentProcessor;
 
     /**
@@ -37,20 +43,30 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
      *
      * @param ttsManager          TTS 管理器
      * @param opusCodec         音频转换器
+     * @param scheduler           全局 TTS 调度器
      * @param messageSender       WebSocket 消息发送器
      * @param configService       配置服务
      * @param sessionState        会话状态
      * @param aggregationStrategy 聚合策略
-     * @param maxConcurrency      最大并发数（建议 2-4）
+     * @param maxConcurrency      单个会话的最大并发数（建议 2-4）
+     * @param packingConfig       Opus 帧打包配置
+     * @param pacingScheduler     全局下发节奏调度器
+     * @param audioCache          全局音频缓存
+     * @param cancellationTracker 上游请求取消统计
      */
     public ConcurrentTTSFrameProcessor(
             TTSManager ttsManager,
             OpusCodec opusCodec,
+            TTSWorkerScheduler scheduler,
             WebSocketMessageSender messageSender,
             ConversationConfigService configService,
             SessionState sessionState,
             TextAggregator.AggregationStrategy aggregationStrategy,
-            int maxConcurrency) {
+            int maxConcurrency,
+            AudioFramePacker.Config packingConfig,
+            TTSPacingScheduler pacingScheduler,
+            TTSAudioCache audioCache,
+            UpstreamCancellationTracker cancellationTracker) {
         this.configService = configService;
         this.sessionState = sessionState;
 
@@ -60,23 +76,38 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
                         .strategy(aggregationStrategy)
         );
 
+        // 会话调度权重
+        ConversationConfig config = configService.getConfigBySessionId(sessionState.getSessionId());
+        double schedulingWeight = config != null && config.getTtsSchedulingWeight() != null
+                ? config.getTtsSchedulingWeight() : 1.0;
+
+        // 音频帧绑定创建时的对话轮次，打断后仍在途的帧在发送前丢弃
+        int turn = sessionState.getTurn();
+
         // 创建并发 TTS 处理器
         this.concurrentProcessor = new ConcurrentTTSProcessor(
                 ttsManager,
                 opusCodec,
-                (opusFrame, isLast) -> {
+                scheduler,
+                sessionState.getSessionId(),
+                (opusPackets, isLast) -> {
                     try {
                         // 记录 TTS 首次响应时间（性能指标）
                         sessionState.getPerformanceMetrics().recordTTSFirstResponse();
-                        messageSender.sendTTSAudio(sessionState, opusFrame, isLast);
+                        messageSender.sendTTSAudio(sessionState, turn, opusPackets, isLast);
                     } catch (Exception e) {
                         log.error("发送音频帧失败", e);
                     }
                 },
                 errorMsg -> log.warn("TTS 错误: {}", errorMsg),
                 maxConcurrency,
+                schedulingWeight,
                 // 音频保存回调（性能指标 - 同时保存 PCM 和 OPUS 文件）
-                (pcmData, opusData) -> sessionState.getPerformanceMetrics().saveAudioPair(pcmData, opusData)
+                (pcmData, opusData) -> sessionState.getPerformanceMetrics().saveAudioPair(pcmData, opusData),
+                packingConfig,
+                pacingScheduler,
+                audioCache,
+                cancellationTracker
         );
     }
 
@@ -98,7 +129,7 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
                 break;
 
             case END:
-                processEndFrame();
+                processEndFrame(context);
                 break;
 
             default:
@@ -111,7 +142,7 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
      */
     private void processTextFrame(Frame frame, ProcessingContext context) throws FrameProcessingException {
         String text = extractText(frame);
-        if (text == null || text.trim().isEmpty()) {
+        if (text == null || text.isEmpty()) {
             return;
         }
 
@@ -124,7 +155,18 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
             }
         }
 
-        // 使用文本聚合器处理
+        // 先过滤 Markdown，再使用文本聚合器处理
+        appendToAggregator(markdownStripper.process(text), context);
+    }
+
+    /**
+     * 将过滤后的文本追加到聚合器，并提交聚合出的句子
+     */
+    private void appendToAggregator(String text, ProcessingContext context) {
+        if (text.trim().isEmpty()) {
+            return;
+        }
+
         var results = textAggregator.append(text);
 
         for (var result : results) {
@@ -186,6 +228,7 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
     private void processInterruptionFrame() {
         log.debug("收到中断 Frame，停止处理");
         textAggregator.reset();
+        markdownStripper.reset();
         concurrentProcessor.interrupt();
         sessionState.abort();
     }
@@ -193,7 +236,10 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
     /**
      * 处理结束 Frame
      */
-    private void processEndFrame() {
+    private void processEndFrame(ProcessingContext context) {
+        // 输出 Markdown 过滤器中暂存的字符
+        appendToAggregator(markdownStripper.flush(), context);
+
         log.debug("开始处理 EndFrame，聚合器缓冲区: {}", textAggregator.getBufferContent());
 
         // 处理剩余文本
@@ -205,21 +251,22 @@ public class ConcurrentTTSFrameProcessor implements FrameProcessor {
             log.debug("无剩余文本需要处理");
         }
 
-        // 标记任务提交完成
+        // 标记任务提交完成，剩余分段发送完毕后 completion() 完成，这里不再阻塞等待
         concurrentProcessor.complete();
+    }
 
-        // 等待所有任务处理完成（最多等待 30 秒）
-        try {
-            boolean completed = concurrentProcessor.awaitCompletion(30, TimeUnit.SECONDS);
-            if (!completed) {
-                log.warn("等待 TTS 任务完成超时");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            log.warn("等待 TTS 任务完成被中断");
-        }
+    /**
+     * 所有 TTS 分段发送完毕（或被中断、关闭）时完成的信号
+     */
+    public Mono<Void> completion() {
+        return concurrentProcessor.completion();
+    }
 
-        log.debug("并发 TTS 处理完成");
+    /**
+     * 按节奏下发的剩余音频发送完毕（或被中断、关闭）时完成的信号
+     */
+    public Mono<Void> playbackDrained() {
+        return concurrentProcessor.playbackDrained();
     }
 
     /**
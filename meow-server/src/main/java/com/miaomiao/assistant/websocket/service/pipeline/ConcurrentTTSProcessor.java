@@ -1,17 +1,19 @@
 package com.miaomiao.assistant.websocket.service.pipeline;
 
 import com.miaomiao.assistant.codec.OpusCodec;
-import com.miaomiao.assistant.model.tts.TTSAudio;
+import com.miaomiao.assistant.codec.OpusEncoderStream;
 import com.miaomiao.assistant.model.tts.TTSManager;
 import com.miaomiao.assistant.model.tts.TTSOptions;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
-import java.io.ByteArrayOutputStream;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -19,14 +21,18 @@ import java.util.function.Consumer;
  * 并发 TTS 处理器
  * <p>
  * 实现 LLM -> TTS 的多线程并发处理，同时保证播放顺序：
- * 1. 使用线程池并发执行 TTS 调用，提高吞吐量
- * 2. 使用有序结果队列，确保音频按句子顺序播放
- * 3. 支持中断和优雅关闭
+ * 1. 通过全局 {@link TTSWorkerScheduler} 并发执行 TTS 调用，提高吞吐量
+ * 2. 使用有序分段分发器，确保音频按句子顺序播放
+ * 3. 流式编码：TTS 返回的 PCM 分块到达即编码，队首句子的音频帧立即发送
+ * 4. 支持中断和优雅关闭，完成状态通过 {@link #completion()} 异步通知，不占用等待线程
+ * 5. 启用 {@link TTSPacingScheduler} 时，音频帧经 {@link PacedAudioStream} 按播放速率下发，打断时立即丢弃排队的帧
+ * 6. 经 {@link TTSAudioCache} 复用已合成的短句：命中时不进入调度直接写入分段，多个会话同时合成同一句话时只调用一次提供商
+ * 7. 中断时取消排队中的句子，并取消执行中任务对提供商流的订阅（不再阻塞等待剩余音频）
  * <p>
  * 工作原理：
- * - 生产者线程：接收聚合后的句子，提交到线程池执行TTS转换
- * - 工作线程池：并发执行TTS调用，结果放入有序队列
- * - 消费者线程：按序号顺序从队列取出结果并播放
+ * - 生产者线程：接收聚合后的句子，按序号创建分段并提交到全局调度器执行TTS转换
+ * - 全局工作线程：并发执行TTS调用，逐块编码后写入各自的分段
+ * - {@link OrderedSegmentDispatcher}：写入帧的线程顺带按序号发送就绪的帧，没有独立的消费者线程
  *
  * @author Pipecat移植优化
  */
@@ -43,103 +49,95 @@ public class ConcurrentTTSProcessor implements AutoCloseable {
         private final TextAggregator.AggregationType type;  // 聚合类型
         private final String providerModelKey; // TTS 提供者和模型
         private final TTSOptions options;      // TTS 选项
+        private final TTSSegment segment;      // 该任务输出的音频分段
 
         public TTSTask(int sequence, String text, TextAggregator.AggregationType type,
-                       String providerModelKey, TTSOptions options) {
+                       String providerModelKey, TTSOptions options, TTSSegment segment) {
             this.sequence = sequence;
             this.text = text;
             this.type = type;
             this.providerModelKey = providerModelKey;
             this.options = options;
-        }
-    }
-
-    /**
-     * TTS 结果
-     */
-    @Data
-    public static class TTSResult {
-        private final int sequence;           // 序号（对应任务序号）
-        private final String text;            // 原始文本
-        private final byte[] pcmData;         // 原始 PCM 音频数据
-        private final byte[] opusData;        // OPUS 编码后的音频数据
-        private final boolean success;        // 是否成功
-        private final String errorMessage;    // 错误信息（如果失败）
-
-        public static TTSResult success(int sequence, String text, byte[] pcmData, byte[] opusData) {
-            return new TTSResult(sequence, text, pcmData, opusData, true, null);
-        }
-
-        public static TTSResult failure(int sequence, String text, String errorMessage) {
-            return new TTSResult(sequence, text, null, null, false, errorMessage);
+            this.segment = segment;
         }
     }
 
     // 依赖组件
     private final TTSManager ttsManager;
     private final OpusCodec opusCodec;
+    private final TTSWorkerScheduler scheduler;
+
+    // 全局音频缓存（未启用时为 null）
+    private final TTSAudioCache audioCache;
+
+    // 有序分发
+    private final OrderedSegmentDispatcher dispatcher;
 
-    // 线程池和队列
-    private final ExecutorService ttsExecutor;
-    private final BlockingQueue<TTSResult> resultQueue;
-    private final Thread consumerThread;
+    // 按播放速率下发（未启用节奏控制时为 null）
+    private final PacedAudioStream pacedStream;
+
+    // 上游请求取消统计
+    private final UpstreamCancellationTracker cancellationTracker;
 
     // 状态控制
-    private final AtomicInteger sequenceCounter = new AtomicInteger(0);
-    private final AtomicInteger expectedSequence = new AtomicInteger(0);
-    private final ConcurrentHashMap<Integer, TTSResult> pendingResults = new ConcurrentHashMap<>();
     private final AtomicBoolean running = new AtomicBoolean(true);
-    private final AtomicBoolean completed = new AtomicBoolean(false);
-    private final CountDownLatch completionLatch = new CountDownLatch(1);
 
-    // 回调
-    private final BiConsumer<byte[], Boolean> audioSender;  // 音频发送回调 (opusData, isLast)
-    private final Consumer<String> errorHandler;             // 错误处理回调
-    private final BiConsumer<byte[], byte[]> audioSaver;     // 音频保存回调 (pcmData, opusData)
+    // 中断信号：执行中的合成任务收到后取消提供商流
+    private final Sinks.One<Boolean> interrupted = Sinks.one();
 
     // 配置
+    private final String sessionId;
     private final int maxConcurrency;
-    private final int queueCapacity;
+    private final double schedulingWeight;
 
     /**
      * 构造函数（带音频保存回调）
      *
-     * @param ttsManager     TTS 管理器
-     * @param opusCodec    音频转换器
-     * @param audioSender    音频发送回调
-     * @param errorHandler   错误处理回调
-     * @param maxConcurrency 最大并发数（建议 2-4）
-     * @param audioSaver     音频保存回调 (pcmData, opusData)
+     * @param ttsManager       TTS 管理器
+     * @param opusCodec        音频转换器
+     * @param scheduler        全局 TTS 调度器
+     * @param sessionId        会话ID
+     * @param audioSender      音频发送回调 (opusPackets, isLast)，需在回调内同步消费 opusPackets
+     * @param errorHandler     错误处理回调
+     * @param maxConcurrency   单个会话的最大并发数（建议 2-4）
+     * @param schedulingWeight 会话在全局调度中的权重
+     * @param audioSaver       音频保存回调 (pcmData, opusData)
+     * @param packingConfig    Opus 帧打包配置
+     * @param pacingScheduler  全局下发节奏调度器
+     * @param audioCache       全局音频缓存（可为 null）
+     * @param cancellationTracker 上游请求取消统计
      */
     public ConcurrentTTSProcessor(
             TTSManager ttsManager,
             OpusCodec opusCodec,
-            BiConsumer<byte[], Boolean> audioSender,
+            TTSWorkerScheduler scheduler,
+            String sessionId,
+            BiConsumer<List<byte[]>, Boolean> audioSender,
             Consumer<String> errorHandler,
             int maxConcurrency,
-            BiConsumer<byte[], byte[]> audioSaver) {
+            double schedulingWeight,
+            BiConsumer<byte[], byte[]> audioSaver,
+            AudioFramePacker.Config packingConfig,
+            TTSPacingScheduler pacingScheduler,
+            TTSAudioCache audioCache,
+            UpstreamCancellationTracker cancellationTracker) {
         this.ttsManager = ttsManager;
         this.opusCodec = opusCodec;
-        this.audioSender = audioSender;
-        this.errorHandler = errorHandler;
-        this.audioSaver = audioSaver;
+        this.scheduler = scheduler;
+        this.audioCache = audioCache;
+        this.cancellationTracker = cancellationTracker;
+        this.sessionId = sessionId;
         this.maxConcurrency = Math.max(1, Math.min(maxConcurrency, 8)); // 限制 1-8
-        this.queueCapacity = this.maxConcurrency * 2;
-
-        // 创建固定大小的线程池
-        this.ttsExecutor = Executors.newFixedThreadPool(this.maxConcurrency, r -> {
-            Thread t = new Thread(r, "TTS-Worker");
-            t.setDaemon(true);
-            return t;
-        });
-
-        // 创建结果队列
-        this.resultQueue = new LinkedBlockingQueue<>(queueCapacity);
-
-        // 启动消费者线程（按序播放）
-        this.consumerThread = new Thread(this::consumeResults, "TTS-Consumer");
-        this.consumerThread.setDaemon(true);
-        this.consumerThread.start();
+        this.schedulingWeight = schedulingWeight > 0 ? schedulingWeight : 1.0;
+        if (pacingScheduler != null && pacingScheduler.isEnabled()) {
+            // 分发器逐帧写入音频流，由音频流按节奏打包发送
+            this.pacedStream = pacingScheduler.open(sessionId, audioSender, packingConfig.maxFramesPerMessage());
+            this.dispatcher = new OrderedSegmentDispatcher(pacedStream::offer, errorHandler, audioSaver);
+            dispatcher.getCompletionFuture().thenRun(pacedStream::complete);
+        } else {
+            this.pacedStream = null;
+            this.dispatcher = new OrderedSegmentDispatcher(audioSender, errorHandler, audioSaver, packingConfig);
+        }
     }
 
     /**
@@ -158,210 +156,204 @@ public class ConcurrentTTSProcessor implements AutoCloseable {
             return -1;
         }
 
-        int sequence = sequenceCounter.getAndIncrement();
-        TTSTask task = new TTSTask(sequence, text, type, providerModelKey, options);
-        ttsExecutor.submit(() -> executeTask(task));
+        // 先按序号创建分段，保证按提交顺序发送
+        TTSSegment segment = dispatcher.newSegment(text);
+        int sequence = segment.getSequence();
+        TTSTask task = new TTSTask(sequence, text, type, providerModelKey, options, segment);
+
+        // 缓存命中：跳过调度、网络请求和编码
+        TTSAudioCache.Flight cached = audioCache == null ? null
+                : audioCache.getIfPresent(providerModelKey, text, options);
+        if (cached != null) {
+            cached.subscribe(new CachedAudioListener(task));
+            return sequence;
+        }
+
+        // 没有更早的句子在等待播放时，该句子就是队首句子，在全局调度中优先执行
+        boolean headOfLine = sequence == dispatcher.getExpectedSequence();
+        segment.ticket = scheduler.submit(sessionId, providerModelKey, headOfLine,
+                text.length(), schedulingWeight, maxConcurrency, () -> executeTask(task));
         return sequence;
     }
 
     /**
      * 执行 TTS 任务
+     * <p>
+     * 可缓存的短句先查缓存：已缓存或其他会话正在合成时订阅其结果，否则由本任务合成并写入缓存
      */
     private void executeTask(TTSTask task) {
+        TTSSegment segment = task.getSegment();
         if (!running.get()) {
+            segment.fail("处理器已中断");
             return;
         }
-        TTSResult result;
+        TTSAudioCache.Claim claim = audioCache == null ? null
+                : audioCache.claim(task.getProviderModelKey(), task.getText(), task.getOptions());
+        if (claim != null && !claim.leader()) {
+            claim.flight().subscribe(new CachedAudioListener(task));
+            return;
+        }
+        synthesize(task, claim == null ? null : claim.flight());
+    }
+
+    /**
+     * 调用 TTS 提供商合成
+     * <p>
+     * 流式消费 TTS 提供商返回的 PCM 分块，每到达一块就编码出其中的完整 Opus 帧并写入分段，
+     * 不再等待整句音频全部返回后再编码。
+     *
+     * @param flight 本任务负责合成的缓存条目，编码出的帧同时写入缓存；不缓存时为 null
+     */
+    private void synthesize(TTSTask task, TTSAudioCache.Flight flight) {
+        TTSSegment segment = task.getSegment();
         long startNanos = System.nanoTime();
-        try {
-            // 调用 TTS 获取音频流
-            List<TTSAudio> audioChunks = ttsManager.textToSpeechStream(
-                    task.getProviderModelKey(),
-                    task.getText(),
-                    task.getOptions()
-            ).collectList().block();
-
-            if (audioChunks == null || audioChunks.isEmpty()) {
-                log.warn("TTS 返回空音频: seq={}, text={}", task.getSequence(), task.getText());
-                result = TTSResult.failure(task.getSequence(), task.getText(), "TTS 返回空音频");
-            } else {
-                // 收集 PCM 数据
-                ByteArrayOutputStream pcmBuffer = new ByteArrayOutputStream();
-                for (TTSAudio audio : audioChunks) {
-                    if (!running.get()) {
-                        return; // 被中断
-                    }
-                    if (audio.getAudioData() != null) {
-                        pcmBuffer.write(audio.getAudioData());
-                    }
+        AtomicInteger pcmBytes = new AtomicInteger(0);
+        AtomicLong firstFrameNanos = new AtomicLong(0);
+        try (OpusEncoderStream encoder = opusCodec.openEncoderStream()) {
+            cancellationTracker.track(UpstreamCancellationTracker.Stage.TTS, ttsManager.textToSpeechStream(
+                            task.getProviderModelKey(),
+                            task.getText(),
+                            task.getOptions()
+                    ))
+                    // 中断时立即取消提供商流，工作线程不再阻塞等待
+                    .takeUntilOther(interrupted.asMono())
+                    .takeWhile(audio -> running.get())
+                    .doOnNext(audio -> {
+                        byte[] pcmData = audio.getAudioData();
+                        if (pcmData == null || pcmData.length == 0) {
+                            return;
+                        }
+                        pcmBytes.addAndGet(pcmData.length);
+                        segment.appendPcm(pcmData);
+                        List<byte[]> frames = encoder.write(pcmData);
+                        if (!frames.isEmpty()) {
+                            firstFrameNanos.compareAndSet(0, System.nanoTime());
+                            segment.publishAll(frames);
+                            if (flight != null) {
+                                flight.publish(frames);
+                            }
+                        }
+                    })
+                    .blockLast();
+
+            if (!running.get()) {
+                segment.fail("处理器已中断");
+                if (flight != null) {
+                    flight.fail("合成方已中断");
                 }
+                return; // 被中断
+            }
 
-                byte[] pcmData = pcmBuffer.toByteArray();
-                if (pcmData.length == 0) {
-                    result = TTSResult.failure(task.getSequence(), task.getText(), "PCM 数据为空");
-                } else {
-                    // 转换为 OPUS
-                    byte[] opusData = opusCodec.encodePcmToOpus(pcmData);
-                    result = TTSResult.success(task.getSequence(), task.getText(), pcmData, opusData);
+            if (pcmBytes.get() == 0) {
+                log.warn("TTS 返回空音频: seq={}, text={}", task.getSequence(), task.getText());
+                segment.fail("TTS 返回空音频");
+                if (flight != null) {
+                    flight.fail("TTS 返回空音频");
+                }
+            } else {
+                // 只在整句结束时对最后不足一帧的数据补 0
+                List<byte[]> lastFrames = encoder.finish();
+                segment.publishAll(lastFrames);
+                segment.complete();
+                if (flight != null) {
+                    flight.publish(lastFrames);
+                    flight.complete();
                 }
             }
         } catch (Exception e) {
             log.error("TTS 任务执行失败: seq={}, text={}", task.getSequence(), task.getText(), e);
-            result = TTSResult.failure(task.getSequence(), task.getText(), e.getMessage());
+            segment.fail(e.getMessage());
+            if (flight != null) {
+                flight.fail(e.getMessage());
+            }
+        } finally {
+            // 兜底：保证缓存条目结束，订阅方不会一直等待（已结束时无效果）
+            if (flight != null) {
+                flight.fail("TTS 合成异常结束");
+            }
         }
 
         long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
-        if (result.isSuccess()) {
-            log.debug("TTS 任务完成: seq={}, text={}, elapsedMs={}",
-                    task.getSequence(), result.getText(), elapsedMs);
+        long firstFrameMs = firstFrameNanos.get() == 0 ? -1
+                : TimeUnit.NANOSECONDS.toMillis(firstFrameNanos.get() - startNanos);
+        if (segment.isSuccess()) {
+            log.debug("TTS 任务完成: seq={}, text={}, firstFrameMs={}, elapsedMs={}",
+                    task.getSequence(), task.getText(), firstFrameMs, elapsedMs);
         } else {
             log.warn("TTS 任务完成(失败): seq={}, text={}, error={}, elapsedMs={}",
-                    task.getSequence(), result.getText(), result.getErrorMessage(), elapsedMs);
+                    task.getSequence(), task.getText(), segment.getErrorMessage(), elapsedMs);
         }
-
-        // 将结果放入待处理映射
-        pendingResults.put(result.getSequence(), result);
-
-        // 尝试按序发送结果
-        tryDispatchResults();
     }
 
     /**
-     * 尝试按序分发结果到队列
-     * <p>
-     * 只有当期望序号的结果就绪时才发送到队列，确保播放顺序。
-     * 如果后面的任务先完成，会被缓存在 pendingResults 中等待。
+     * 把缓存条目（已完成或其他会话合成中）的帧写入本任务的分段
      */
-    private synchronized void tryDispatchResults() {
-        while (true) {
-            int expected = expectedSequence.get();
-            TTSResult result = pendingResults.remove(expected);
-
-            if (result == null) {
-                // 期望的结果还没准备好
-                int pendingCount = pendingResults.size();
-                if (pendingCount > 0) {
-                    log.debug("等待序号 {} 的 TTS 结果，当前有 {} 个提前完成的任务在等待",
-                            expected, pendingCount);
-                }
-                break;
-            }
-
-            try {
-                // 放入结果队列供消费者处理
-                resultQueue.put(result);
-                expectedSequence.incrementAndGet();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.warn("结果入队被中断: seq={}", result.getSequence());
-                break;
-            }
-        }
-    }
+    private class CachedAudioListener implements TTSAudioCache.Listener {
 
-    /**
-     * 消费者线程：按序从队列取结果并播放
-     */
-    private void consumeResults() {
-        while (running.get() || !resultQueue.isEmpty()) {
-            try {
-                // 等待结果（带超时，便于检查退出条件）
-                TTSResult result = resultQueue.poll(100, TimeUnit.MILLISECONDS);
-
-                if (result == null) {
-                    // 检查是否已完成且队列为空
-                    if (completed.get() && resultQueue.isEmpty() &&
-                            pendingResults.isEmpty() &&
-                            expectedSequence.get() >= sequenceCounter.get()) {
-                        log.debug("所有任务已处理完成");
-                        break;
-                    }
-                    continue;
-                }
+        private final TTSTask task;
 
-                if (result.isSuccess()) {
-                    // 保存音频（PCM 和 OPUS）
-                    if (audioSaver != null) {
-                        audioSaver.accept(result.getPcmData(), result.getOpusData());
-                    }
-
-                    // 发送音频
-                    sendAudioWithTiming(result.getOpusData());
-                } else {
-                    log.warn("TTS 失败，跳过: seq={}, error={}",
-                            result.getSequence(), result.getErrorMessage());
-                    if (errorHandler != null) {
-                        errorHandler.accept(result.getErrorMessage());
-                    }
-                }
+        CachedAudioListener(TTSTask task) {
+            this.task = task;
+        }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.debug("消费者线程被中断");
-                break;
-            } catch (Exception e) {
-                log.error("消费者处理异常", e);
+        @Override
+        public void onFrames(List<byte[]> opusPackets) {
+            if (running.get()) {
+                task.getSegment().publishAll(opusPackets);
             }
         }
-        completionLatch.countDown();
-    }
 
-    /**
-     * 发送 OPUS 音频数据
-     */
-    private void sendAudioWithTiming(byte[] opusData) {
-        if (opusData == null || opusData.length == 0) {
-            return;
+        @Override
+        public void onComplete() {
+            if (running.get()) {
+                task.getSegment().complete();
+            } else {
+                task.getSegment().fail("处理器已中断");
+            }
         }
 
-        // 按 OPUS 帧发送，每帧格式：[2字节长度头][帧数据]
-        int offset = 0;
-
-        while (offset + 2 <= opusData.length && running.get()) {
-            // 读取帧长度（2字节小端序）
-            int frameLen = (opusData[offset] & 0xFF) | ((opusData[offset + 1] & 0xFF) << 8);
-            int totalFrameSize = 2 + frameLen;
-
-            if (offset + totalFrameSize > opusData.length) {
-                log.warn("OPUS 帧数据不完整: offset={}, frameLen={}, dataLen={}",
-                        offset, frameLen, opusData.length);
-                break;
+        @Override
+        public void onError(String reason, int deliveredFrames) {
+            if (running.get() && deliveredFrames == 0) {
+                // 合成方失败或被中断且本句还没有收到任何帧：自己重新合成（不再经过缓存）
+                log.debug("共享的 TTS 合成失败，重新提交: seq={}, reason={}", task.getSequence(), reason);
+                // 只有正在等待播放的句子才按队首优先，后续句子按公平排队，播放推进到时再提升
+                boolean headOfLine = task.getSequence() == dispatcher.getExpectedSequence();
+                task.getSegment().ticket = scheduler.submit(sessionId, task.getProviderModelKey(), headOfLine,
+                        task.getText().length(), schedulingWeight, maxConcurrency, () -> {
+                            if (running.get()) {
+                                synthesize(task, null);
+                            } else {
+                                task.getSegment().fail("处理器已中断");
+                            }
+                        });
+                return;
             }
-
-            // 提取完整帧
-            byte[] frame = new byte[totalFrameSize];
-            System.arraycopy(opusData, offset, frame, 0, totalFrameSize);
-
-            // 发送帧
-            // finished 表示“本段 TTS 的最后一帧”
-            boolean isLastFrame = (offset + totalFrameSize >= opusData.length);
-            audioSender.accept(frame, isLastFrame);
-
-            offset += totalFrameSize;
+            task.getSegment().fail(reason);
         }
     }
 
     /**
      * 标记所有任务已提交完成
      * <p>
-     * 调用后不再接受新任务，等待现有任务处理完成
+     * 调用后不再接受新任务，剩余分段发送完毕后 {@link #completion()} 完成
      */
     public void complete() {
-        completed.set(true);
+        dispatcher.complete();
+    }
 
-        // 尝试分发剩余结果
-        tryDispatchResults();
+    /**
+     * 所有分段合成并交给发送方（或被中断、关闭）时完成的信号
+     */
+    public Mono<Void> completion() {
+        return Mono.fromFuture(dispatcher.getCompletionFuture(), true);
     }
 
     /**
-     * 等待所有任务处理完成
-     *
-     * @param timeout 超时时间
-     * @param unit    时间单位
-     * @return 是否在超时前完成
+     * 按节奏下发的剩余音频发送完毕（或被中断、关闭）时完成的信号；未启用节奏控制时立即完成
      */
-    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
-        return completionLatch.await(timeout, unit);
+    public Mono<Void> playbackDrained() {
+        return pacedStream == null ? Mono.empty() : Mono.fromFuture(pacedStream.getDrainedFuture(), true);
     }
 
     /**
@@ -369,54 +361,48 @@ public class ConcurrentTTSProcessor implements AutoCloseable {
      */
     public void interrupt() {
         log.info("中断并发 TTS 处理器");
-        running.set(false);
-        completed.set(true);
-        pendingResults.clear();
-        resultQueue.clear();
-        completionLatch.countDown();
+        stop();
     }
 
     /**
      * 获取待处理任务数
      */
     public int getPendingCount() {
-        return sequenceCounter.get() - expectedSequence.get();
+        return dispatcher.getPendingCount();
     }
 
     /**
      * 是否所有任务已完成
      */
     public boolean isAllCompleted() {
-        return completed.get() &&
-                pendingResults.isEmpty() &&
-                resultQueue.isEmpty() &&
-                expectedSequence.get() >= sequenceCounter.get();
+        return dispatcher.isAllCompleted();
     }
 
-    @Override
-    public void close() {
-        log.info("关闭并发 TTS 处理器");
-        running.set(false);
-        completed.set(true);
-
-        // 关闭线程池
-        ttsExecutor.shutdown();
-        try {
-            if (!ttsExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                ttsExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            ttsExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
+    /**
+     * 停止发送，取消仍在全局调度器中排队的任务，并通知执行中的任务取消提供商流（只执行一次）
+     */
+    private void stop() {
+        if (!running.getAndSet(false)) {
+            return;
         }
-
-        // 等待消费者线程退出
-        try {
-            consumerThread.join(1000);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        interrupted.tryEmitValue(Boolean.TRUE);
+        if (pacedStream != null) {
+            pacedStream.close();
         }
+        AtomicInteger dequeued = new AtomicInteger(0);
+        dispatcher.forEachPending(segment -> {
+            TTSWorkerScheduler.Ticket ticket = segment.ticket;
+            if (ticket != null && ticket.cancel()) {
+                dequeued.incrementAndGet();
+            }
+        });
+        cancellationTracker.recordTtsDequeued(dequeued.get());
+        dispatcher.cancel();
+    }
 
-        completionLatch.countDown();
+    @Override
+    public void close() {
+        log.info("关闭并发 TTS 处理器");
+        stop();
     }
 }
@@ -73,7 +73,7 @@ public class LongTextSplitter implements TextPreProcessor {
 
     @Override
     public int getOrder() {
-        return 200; // MD过滤后执行
+        return 200;
     }
 
     /**
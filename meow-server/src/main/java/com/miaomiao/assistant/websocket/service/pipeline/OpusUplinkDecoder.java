@@ -0,0 +1,101 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.codec.OpusDecoderStream;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * 客户端上行 Opus 语音的解码器
+ * <p>
+ * 客户端按 format=opus 发送 [2字节小端长度][Opus包] 序列，这里逐块解码成 PCM，
+ * 并在第一块前加上 WAV 头，使下游（服务端 VAD、只接受 WAV 的 ASR 提供商）看到的是普通的流式 WAV：
+ * 头中的 RIFF/data 大小为占位值，由提供商上传前按实际长度修正（{@code ZhipuASRProvider.fixWavSizes}）。
+ * <p>
+ * 每段语音一个实例，只由该会话的 WebSocket 消息处理线程调用；语音结束或取消时关闭。
+ */
+public class OpusUplinkDecoder implements AutoCloseable {
+
+    /**
+     * 上行格式
+     */
+    public static final String FORMAT = "opus";
+
+    /**
+     * 解码输出的采样率（语音识别常用的 16kHz，与客户端编码时的采样率无关）
+     */
+    public static final int SAMPLE_RATE = 16000;
+
+    private static final int WAV_HEADER_LENGTH = 44;
+
+    private final OpusDecoderStream decoder;
+    private boolean headerWritten = false;
+
+    /**
+     * 收到的 Opus 数据字节数
+     */
+    @Getter
+    private long opusBytes = 0;
+
+    /**
+     * 解码出的 PCM 字节数
+     */
+    @Getter
+    private long pcmBytes = 0;
+
+    public OpusUplinkDecoder(OpusDecoderStream decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * 判断客户端上报的格式是否为裸 Opus 包序列（不含 webm/ogg 等容器）
+     */
+    public static boolean isOpus(String format) {
+        if (format == null) {
+            return false;
+        }
+        String normalized = format.trim().toLowerCase(Locale.ROOT);
+        int semicolonIndex = normalized.indexOf(';');
+        if (semicolonIndex >= 0) {
+            normalized = normalized.substring(0, semicolonIndex);
+        }
+        return normalized.equals(FORMAT) || normalized.equals("audio/" + FORMAT);
+    }
+
+    /**
+     * 解码一块 Opus 数据（不修改 data）
+     *
+     * @return 对应的 WAV 数据（第一块带 WAV 头），没有完整的包时可能为空
+     */
+    public ByteBuffer decode(ByteBuffer data) {
+        opusBytes += data.remaining();
+        byte[] pcm = decoder.decode(data);
+        pcmBytes += pcm.length;
+        if (headerWritten) {
+            return ByteBuffer.wrap(pcm);
+        }
+        headerWritten = true;
+        ByteBuffer wav = ByteBuffer.allocate(WAV_HEADER_LENGTH + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        // 长度未知，先写占位值
+        wav.putInt(0x46464952).putInt(-1).putInt(0x45564157)                      // "RIFF" size "WAVE"
+                .putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1) // "fmt " PCM 单声道
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16)
+                .putInt(0x61746164).putInt(-1);                                        // "data" size
+        wav.put(pcm).flip();
+        return wav;
+    }
+
+    /**
+     * 最后一个包是否被截断
+     */
+    public boolean isTruncated() {
+        return decoder.hasPending();
+    }
+
+    @Override
+    public void close() {
+        decoder.close();
+    }
+}
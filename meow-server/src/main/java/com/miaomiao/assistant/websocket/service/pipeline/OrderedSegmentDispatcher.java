@@ -0,0 +1,229 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 有序分段分发器（无锁、非阻塞）
+ * <p>
+ * 替代原来的消费者线程轮询：
+ * 1. 分段按序号存放在 {@link SegmentRing} 中
+ * 2. 任意线程写入帧或结束分段后调用 {@link #drain()}，通过 WIP 计数保证同一时刻只有一个线程在发送，
+ * 其他线程只留下“有新数据”的信号后立即返回，不会阻塞或等待
+ * 3. 发送方只发送队首分段的帧，队首分段结束后推进到下一个分段；
+ * 已就绪的多个帧按 {@link AudioFramePacker} 打包成一条消息
+ * 4. 所有分段发送完毕（或被中断）时完成 {@link #getCompletionFuture()}
+ * <p>
+ * 分段的创建（{@link #newSegment}）只允许单个生产者线程调用。
+ */
+@Slf4j
+public class OrderedSegmentDispatcher {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 分段结束标记（不带音频帧）
+     */
+    private static final List<byte[]> SEGMENT_END_PAYLOAD = List.of();
+
+    private final SegmentRing ring = new SegmentRing(INITIAL_CAPACITY);
+    private final AtomicInteger wip = new AtomicInteger(0);
+    private final AtomicInteger sequenceCounter = new AtomicInteger(0);
+    private final AtomicInteger expectedSequence = new AtomicInteger(0);
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private final CompletableFuture<Void> completionFuture = new CompletableFuture<>();
+
+    // 回调
+    private final BiConsumer<List<byte[]>, Boolean> audioSender;  // 音频发送回调 (opusPackets, isLast)
+    private final Consumer<String> errorHandler;                   // 错误处理回调
+    private final BiConsumer<byte[], byte[]> audioSaver;           // 音频保存回调 (pcmData, opusData)
+
+    // 以下字段只由发送方访问
+    private final AudioFramePacker packer;
+    private final List<byte[]> bundle = new ArrayList<>();
+
+    public OrderedSegmentDispatcher(BiConsumer<List<byte[]>, Boolean> audioSender,
+                                    Consumer<String> errorHandler,
+                                    BiConsumer<byte[], byte[]> audioSaver) {
+        this(audioSender, errorHandler, audioSaver, AudioFramePacker.Config.SINGLE_FRAME);
+    }
+
+    public OrderedSegmentDispatcher(BiConsumer<List<byte[]>, Boolean> audioSender,
+                                    Consumer<String> errorHandler,
+                                    BiConsumer<byte[], byte[]> audioSaver,
+                                    AudioFramePacker.Config packingConfig) {
+        this.audioSender = audioSender;
+        this.errorHandler = errorHandler;
+        this.audioSaver = audioSaver;
+        this.packer = new AudioFramePacker(packingConfig);
+    }
+
+    /**
+     * 按提交顺序创建新分段（仅生产者线程调用）
+     */
+    public TTSSegment newSegment(String text) {
+        int sequence = sequenceCounter.get();
+        TTSSegment segment = new TTSSegment(sequence, text, audioSaver != null, this);
+        ring.put(segment, expectedSequence.get());
+        // 先写入环形缓冲区再发布序号，发送方看到序号时分段一定已就绪
+        sequenceCounter.incrementAndGet();
+        drain();
+        return segment;
+    }
+
+    /**
+     * 当前正在发送的分段序号
+     */
+    public int getExpectedSequence() {
+        return expectedSequence.get();
+    }
+
+    /**
+     * 标记所有分段已创建，发送完剩余分段后完成
+     */
+    public void complete() {
+        completed.set(true);
+        drain();
+    }
+
+    /**
+     * 立即停止发送并完成
+     */
+    public void cancel() {
+        running.set(false);
+        completed.set(true);
+        completionFuture.complete(null);
+    }
+
+    /**
+     * 依次处理尚未发送完的分段
+     */
+    public void forEachPending(Consumer<TTSSegment> action) {
+        int end = sequenceCounter.get();
+        for (int sequence = expectedSequence.get(); sequence < end; sequence++) {
+            TTSSegment segment = ring.get(sequence);
+            if (segment != null) {
+                action.accept(segment);
+            }
+        }
+    }
+
+    public CompletableFuture<Void> getCompletionFuture() {
+        return completionFuture;
+    }
+
+    public int getPendingCount() {
+        return sequenceCounter.get() - expectedSequence.get();
+    }
+
+    public boolean isAllCompleted() {
+        return completed.get() && expectedSequence.get() >= sequenceCounter.get();
+    }
+
+    /**
+     * 发送就绪的帧。并发调用时只有一个线程进入发送循环，其余调用只增加 WIP 计数，
+     * 由正在发送的线程再多跑一轮。
+     */
+    void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainLoop();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        while (running.get()) {
+            int sequence = expectedSequence.get();
+            if (sequence >= sequenceCounter.get()) {
+                if (completed.get()) {
+                    completionFuture.complete(null);
+                }
+                return;
+            }
+            TTSSegment segment = ring.get(sequence);
+            if (segment == null) {
+                return;
+            }
+            if (!segment.started) {
+                segment.started = true;
+                // 播放进度推进到该句子，若仍在排队则提升优先级
+                TTSWorkerScheduler.Ticket ticket = segment.ticket;
+                if (ticket != null) {
+                    ticket.promoteToHeadOfLine();
+                }
+            }
+
+            byte[] frame;
+            do {
+                // 按客户端播放余量决定本条消息打包几帧，只取已就绪的帧
+                int bundleSize = packer.nextBundleSize(System.nanoTime());
+                frame = null;
+                while (bundle.size() < bundleSize
+                        && (frame = segment.pollFrame()) != null && frame != TTSSegment.END_OF_SEGMENT) {
+                    bundle.add(frame);
+                }
+                if (!bundle.isEmpty()) {
+                    if (!running.get()) {
+                        bundle.clear();
+                        return;
+                    }
+                    // 发送 Opus 包，长度头由 BinaryAudioFrame 编码时写入
+                    send(bundle, false);
+                    segment.sentFrames += bundle.size();
+                    packer.onSent(bundle.size(), System.nanoTime());
+                    bundle.clear();
+                }
+            } while (frame != null && frame != TTSSegment.END_OF_SEGMENT);
+            if (frame == null) {
+                // 队首分段暂无新帧，等待下一次信号
+                return;
+            }
+
+            finishSegment(segment);
+            ring.clear(segment);
+            expectedSequence.incrementAndGet();
+        }
+    }
+
+    private void finishSegment(TTSSegment segment) {
+        if (!segment.isSuccess()) {
+            log.warn("TTS 失败，跳过: seq={}, error={}", segment.getSequence(), segment.getErrorMessage());
+            if (errorHandler != null) {
+                errorHandler.accept(segment.getErrorMessage());
+            }
+        }
+        if (segment.sentFrames > 0) {
+            // 保存音频（PCM 和 OPUS）
+            if (audioSaver != null && segment.isSuccess()) {
+                try {
+                    audioSaver.accept(segment.getPcmData(), segment.getOpusData());
+                } catch (Exception e) {
+                    log.warn("保存音频失败: seq={}", segment.getSequence(), e);
+                }
+            }
+            // finished 表示“本段 TTS 的最后一帧”，流式发送时用空帧标记分段结束
+            send(SEGMENT_END_PAYLOAD, true);
+        }
+    }
+
+    private void send(List<byte[]> packets, boolean isLast) {
+        try {
+            audioSender.accept(packets, isLast);
+        } catch (Exception e) {
+            // 发送异常不能中断发送循环，否则 WIP 计数无法归零
+            log.error("发送音频帧失败", e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 按播放速率下发的 TTS 音频流（每轮对话一个，由 {@link TTSPacingScheduler} 创建）
+ * <p>
+ * 有序分发器产出的 Opus 帧先进入本队列，再按客户端播放速率放行：
+ * 1. 按已发送音频时长估算客户端的播放余量（lead），余量降到低水位时补发到目标余量，
+ * 一次补发的帧打包成一条消息（最多 maxFramesPerMessage 帧；余量为 0 时首条只带 1 帧，保证首音延迟）
+ * 2. 余量高于低水位时不发送，由时间轮在余量降到低水位的时刻唤醒
+ * 3. 分段结束标记跟在该分段最后一帧之后立即发送
+ * 4. 有帧待发时客户端余量已经耗尽，记一次欠载（underrun）
+ * 5. 中断或关闭时立即丢弃队列中的帧
+ * <p>
+ * 写入线程（分发器的发送方）和时间轮线程都在本对象的锁内发送，保证帧的顺序；发送回调必须是非阻塞的。
+ */
+@Slf4j
+public class PacedAudioStream {
+
+    /**
+     * 分段结束标记
+     */
+    private static final byte[] SEGMENT_END = new byte[0];
+
+    /**
+     * 时间轮唤醒
+     */
+    @FunctionalInterface
+    interface Timer {
+        void schedule(Runnable task, long delayNanos);
+    }
+
+    private final String sessionId;
+    private final BiConsumer<List<byte[]>, Boolean> audioSender;
+    private final Timer timer;
+    private final LongSupplier clock;
+    private final int maxFramesPerMessage;
+    private final long leadTargetNanos;
+    private final long lowWaterNanos;
+
+    private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+    private final List<byte[]> bundle = new ArrayList<>();
+    private final CompletableFuture<Void> drainedFuture = new CompletableFuture<>();
+
+    /**
+     * 客户端预计播放完已发送音频的时间点
+     */
+    private long playbackEndNanos = 0;
+    private boolean finished = false;
+    private boolean closed = false;
+
+    /**
+     * 当前有效的唤醒代次（旧代次的唤醒直接忽略）与其时间点
+     */
+    private long timerGeneration = 0;
+    private boolean timerArmed = false;
+    private long timerDeadlineNanos = 0;
+
+    // 统计
+    private long sentFrames = 0;
+    private long sentMessages = 0;
+    private long underruns = 0;
+    private long underrunNanos = 0;
+    private long droppedFrames = 0;
+
+    PacedAudioStream(String sessionId,
+                     BiConsumer<List<byte[]>, Boolean> audioSender,
+                     Timer timer,
+                     LongSupplier clock,
+                     long leadMs,
+                     int maxFramesPerMessage) {
+        this.sessionId = sessionId;
+        this.audioSender = audioSender;
+        this.timer = timer;
+        this.clock = clock;
+        this.maxFramesPerMessage = Math.max(1, maxFramesPerMessage);
+        this.leadTargetNanos = Math.max(AudioFramePacker.FRAME_DURATION_NANOS, leadMs * 1_000_000L);
+        // 每次补发一条满打包的消息；目标余量较小时最多补一半，留出唤醒误差
+        long refillNanos = Math.min(this.maxFramesPerMessage * AudioFramePacker.FRAME_DURATION_NANOS, leadTargetNanos / 2);
+        this.lowWaterNanos = leadTargetNanos - Math.max(AudioFramePacker.FRAME_DURATION_NANOS, refillNanos);
+    }
+
+    /**
+     * 写入 Opus 帧（分发器的音频发送回调）
+     *
+     * @param opusPackets Opus 包，空列表配合 isLast 表示分段结束
+     * @param isLast      是否为分段结束
+     */
+    public synchronized void offer(List<byte[]> opusPackets, Boolean isLast) {
+        if (closed) {
+            return;
+        }
+        queue.addAll(opusPackets);
+        if (Boolean.TRUE.equals(isLast)) {
+            queue.add(SEGMENT_END);
+        }
+        release(clock.getAsLong());
+    }
+
+    /**
+     * 标记不再写入新帧，剩余帧按节奏发送完后完成 {@link #getDrainedFuture()}
+     */
+    public synchronized void complete() {
+        finished = true;
+        release(clock.getAsLong());
+    }
+
+    /**
+     * 立即丢弃队列中的帧并完成
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (byte[] frame : queue) {
+            if (frame != SEGMENT_END) {
+                droppedFrames++;
+            }
+        }
+        if (!queue.isEmpty()) {
+            log.debug("丢弃未发送的 TTS 音频: sessionId={}, frames={}", sessionId, droppedFrames);
+        }
+        queue.clear();
+        timerArmed = false;
+        timerGeneration++;
+        drainedFuture.complete(null);
+    }
+
+    /**
+     * 所有帧发送完毕（或被关闭）时完成
+     */
+    public CompletableFuture<Void> getDrainedFuture() {
+        return drainedFuture;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private synchronized void onTimer(long generation) {
+        if (closed || generation != timerGeneration) {
+            return;
+        }
+        timerArmed = false;
+        release(clock.getAsLong());
+    }
+
+    private void release(long nowNanos) {
+        if (closed) {
+            return;
+        }
+        sendSegmentEnds();
+        long lead = playbackEndNanos - nowNanos;
+        if (!queue.isEmpty() && lead <= lowWaterNanos) {
+            if (lead < 0 && sentFrames > 0) {
+                underruns++;
+                underrunNanos += -lead;
+            }
+            refill(nowNanos);
+        }
+        if (queue.isEmpty()) {
+            if (finished) {
+                drainedFuture.complete(null);
+            }
+            return;
+        }
+        // 队列非空时余量一定已补到目标，在余量降到低水位时唤醒
+        arm(playbackEndNanos - lowWaterNanos, nowNanos);
+    }
+
+    /**
+     * 补发到目标余量
+     */
+    private void refill(long nowNanos) {
+        while (!queue.isEmpty()) {
+            long lead = Math.max(0, playbackEndNanos - nowNanos);
+            if (lead >= leadTargetNanos) {
+                return;
+            }
+            long allowed = (leadTargetNanos - lead + AudioFramePacker.FRAME_DURATION_NANOS - 1)
+                    / AudioFramePacker.FRAME_DURATION_NANOS;
+            int bundleSize = lead == 0 ? 1 : (int) Math.min(maxFramesPerMessage, allowed);
+            byte[] frame;
+            while (bundle.size() < bundleSize && (frame = queue.peek()) != null && frame != SEGMENT_END) {
+                bundle.add(queue.poll());
+            }
+            send(bundle, false);
+            sentFrames += bundle.size();
+            sentMessages++;
+            playbackEndNanos = Math.max(playbackEndNanos, nowNanos) + bundle.size() * AudioFramePacker.FRAME_DURATION_NANOS;
+            bundle.clear();
+            sendSegmentEnds();
+        }
+    }
+
+    private void sendSegmentEnds() {
+        while (queue.peek() == SEGMENT_END) {
+            queue.poll();
+            send(List.of(), true);
+        }
+    }
+
+    private void arm(long deadlineNanos, long nowNanos) {
+        if (timerArmed && timerDeadlineNanos <= deadlineNanos) {
+            return;
+        }
+        long generation = ++timerGeneration;
+        timerArmed = true;
+        timerDeadlineNanos = deadlineNanos;
+        timer.schedule(() -> onTimer(generation), deadlineNanos - nowNanos);
+    }
+
+    private void send(List<byte[]> packets, boolean isLast) {
+        try {
+            audioSender.accept(packets, isLast);
+        } catch (Exception e) {
+            log.error("发送音频帧失败: sessionId={}", sessionId, e);
+        }
+    }
+
+    /**
+     * 指标快照
+     */
+    synchronized TTSPacingScheduler.StreamMetrics snapshot() {
+        int queuedFrames = 0;
+        for (byte[] frame : queue) {
+            if (frame != SEGMENT_END) {
+                queuedFrames++;
+            }
+        }
+        long leadMs = Math.max(0, playbackEndNanos - clock.getAsLong()) / 1_000_000L;
+        return new TTSPacingScheduler.StreamMetrics(
+                !closed && !(finished && queue.isEmpty()),
+                closed ? 0 : leadMs,
+                queuedFrames,
+                sentFrames,
+                sentMessages,
+                underruns,
+                underrunNanos / 1_000_000L,
+                droppedFrames);
+    }
+}
@@ -0,0 +1,125 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 哈希时间轮（单线程）
+ * <p>
+ * 所有会话的下发节奏共用一个工作线程，每个 tick 唤醒一次，执行到期的任务：
+ * 1. 任意线程调用 {@link #schedule} 只把任务放入无锁队列，由工作线程在下一个 tick 放入对应槽位
+ * 2. 超过一圈的任务记录剩余圈数，每转一圈减一
+ * 3. 任务在工作线程上执行，必须是非阻塞的短任务
+ * <p>
+ * 不支持取消，调用方通过代次号忽略过期的唤醒。
+ */
+@Slf4j
+class PacingTimerWheel implements AutoCloseable {
+
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Timeout>[] slots;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final long startNanos;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    /**
+     * 已转过的 tick 数（只由工作线程访问）
+     */
+    private long tick = 0;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    PacingTimerWheel(long tickMs, int wheelSize, String threadName) {
+        this.tickNanos = Math.max(1, tickMs) * 1_000_000L;
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 在 delayNanos 之后执行任务（精度为一个 tick）
+     */
+    void schedule(Runnable task, long delayNanos) {
+        pending.add(new Timeout(task, System.nanoTime() + Math.max(0, delayNanos)));
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while (running && (sleepNanos = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            if (!running) {
+                return;
+            }
+            transferPending();
+            expire(slots[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * 把新任务放入槽位：第 k 个 tick 在 startNanos + (k + 1) * tickNanos 处理，已过期的任务放入当前槽位
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            long dueTick = Math.max(tick, ceilDiv(timeout.deadlineNanos - startNanos, tickNanos) - 1);
+            timeout.remainingRounds = (dueTick - tick) / slots.length;
+            slots[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> slot) {
+        Iterator<Timeout> iterator = slot.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                continue;
+            }
+            iterator.remove();
+            try {
+                timeout.task.run();
+            } catch (Throwable e) {
+                // 单个任务异常不能停掉时间轮
+                log.error("时间轮任务执行失败", e);
+            }
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    private static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
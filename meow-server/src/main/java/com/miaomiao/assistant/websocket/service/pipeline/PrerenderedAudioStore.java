@@ -0,0 +1,286 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * 持久化的预渲染音频库
+ * <p>
+ * 保存角色常用语（{@code CharacterCard.stockPhrases}）和高频回复的 Opus 包序列，节点重启后不必重新调用 TTS：
+ * 1. 只追加的数据文件 segments.dat：每条记录为 [2字节小端长度][Opus 包] 的序列
+ * 2. 只追加的索引文件 index.dat：[键长度][键(UTF-8)][数据偏移][数据长度][帧数][CRC32]，启动时读入内存
+ * 3. 数据文件以只读 {@link MappedByteBuffer} 映射，读取时不经过 read 系统调用和额外缓冲区
+ * 4. 先写数据再写索引，两次都 force；崩溃后索引中越界或校验失败的条目直接忽略
+ * <p>
+ * 键由 {@link TTSAudioCache} 生成（规范化文本 + 模型 + 音色 + 语速 + 音量 + 格式），与内存缓存一致。
+ */
+@Slf4j
+@Component
+public class PrerenderedAudioStore {
+
+    private static final String SEGMENT_FILE = "segments.dat";
+    private static final String INDEX_FILE = "index.dat";
+
+    /**
+     * 是否启用
+     */
+    @Getter
+    private final boolean enabled;
+
+    private final long maxStoreBytes;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+
+    /**
+     * 数据文件的只读映射，追加后重新映射
+     */
+    private volatile MappedByteBuffer mapping;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder appends = new LongAdder();
+
+    public PrerenderedAudioStore(
+            @Value("${tts.prerender.enabled:true}") boolean enabled,
+            @Value("${tts.prerender.store-dir:./data/tts-store}") String storeDir,
+            @Value("${tts.prerender.max-store-bytes:268435456}") long maxStoreBytes) {
+        this.maxStoreBytes = Math.min(Math.max(0, maxStoreBytes), Integer.MAX_VALUE);
+        boolean opened = false;
+        if (enabled) {
+            try {
+                open(Path.of(storeDir));
+                opened = true;
+            } catch (IOException e) {
+                log.warn("预渲染音频库打开失败，禁用: dir={}, error={}", storeDir, e.getMessage());
+                closeChannels();
+            }
+        }
+        this.enabled = opened;
+    }
+
+    private void open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        segmentChannel = FileChannel.open(dir.resolve(SEGMENT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(dir.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        remap();
+        loadIndex();
+        log.info("预渲染音频库已打开: dir={}, entries={}, bytes={}", dir.toAbsolutePath(), index.size(),
+                segmentChannel.size());
+    }
+
+    private void remap() throws IOException {
+        mapping = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+    }
+
+    /**
+     * 读入索引，跳过越界、校验失败的条目；索引尾部不完整的记录截掉
+     */
+    private void loadIndex() throws IOException {
+        long indexSize = indexChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(indexSize, Integer.MAX_VALUE));
+        indexChannel.read(buffer, 0);
+        buffer.flip();
+        long validEnd = 0;
+        int skipped = 0;
+        while (buffer.remaining() >= 4) {
+            int keyLength = buffer.getInt();
+            if (keyLength <= 0 || buffer.remaining() < keyLength + 8 + 4 + 4 + 8) {
+                break;
+            }
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            Entry entry = new Entry(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getLong());
+            validEnd = buffer.position();
+            if (isValid(entry)) {
+                index.put(new String(keyBytes, StandardCharsets.UTF_8), entry);
+            } else {
+                skipped++;
+            }
+        }
+        if (validEnd < indexSize) {
+            indexChannel.truncate(validEnd);
+        }
+        if (skipped > 0) {
+            log.warn("预渲染音频库索引中有 {} 条无效条目，已忽略", skipped);
+        }
+    }
+
+    private boolean isValid(Entry entry) {
+        MappedByteBuffer current = mapping;
+        if (entry.offset() < 0 || entry.length() <= 0 || entry.offset() + entry.length() > current.capacity()) {
+            return false;
+        }
+        return crc(current, entry) == entry.crc();
+    }
+
+    private static long crc(ByteBuffer mapping, Entry entry) {
+        CRC32 crc = new CRC32();
+        crc.update(mapping.slice((int) entry.offset(), entry.length()));
+        return crc.getValue();
+    }
+
+    /**
+     * 是否已收录
+     */
+    public boolean contains(String key) {
+        return enabled && index.containsKey(key);
+    }
+
+    /**
+     * 读取 Opus 包序列
+     *
+     * @return 未收录时返回 null
+     */
+    public List<byte[]> get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        Entry entry = index.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        ByteBuffer data = mapping.slice((int) entry.offset(), entry.length());
+        List<byte[]> frames = new ArrayList<>(entry.frameCount());
+        while (data.remaining() >= 2) {
+            int length = (data.get() & 0xFF) | ((data.get() & 0xFF) << 8);
+            byte[] frame = new byte[length];
+            data.get(frame);
+            frames.add(frame);
+        }
+        hits.increment();
+        return frames;
+    }
+
+    /**
+     * 追加一条（已收录时忽略）
+     *
+     * @return 是否写入
+     */
+    public synchronized boolean put(String key, List<byte[]> opusPackets) {
+        if (!enabled || opusPackets.isEmpty() || index.containsKey(key)) {
+            return false;
+        }
+        int length = 0;
+        for (byte[] packet : opusPackets) {
+            length += 2 + packet.length;
+        }
+        try {
+            long offset = segmentChannel.size();
+            if (offset + length > maxStoreBytes) {
+                log.warn("预渲染音频库已满，忽略写入: bytes={}, max={}", offset, maxStoreBytes);
+                return false;
+            }
+            ByteBuffer data = ByteBuffer.allocate(length);
+            for (byte[] packet : opusPackets) {
+                data.put((byte) (packet.length & 0xFF));
+                data.put((byte) ((packet.length >> 8) & 0xFF));
+                data.put(packet);
+            }
+            data.flip();
+            CRC32 crc = new CRC32();
+            crc.update(data.duplicate());
+            writeFully(segmentChannel, data, offset);
+            segmentChannel.force(false);
+
+            Entry entry = new Entry(offset, length, opusPackets.size(), crc.getValue());
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(4 + keyBytes.length + 8 + 4 + 4 + 8);
+            record.putInt(keyBytes.length).put(keyBytes)
+                    .putLong(entry.offset()).putInt(entry.length()).putInt(entry.frameCount()).putLong(entry.crc());
+            record.flip();
+            writeFully(indexChannel, record, indexChannel.size());
+            indexChannel.force(false);
+
+            remap();
+            index.put(key, entry);
+            appends.increment();
+            return true;
+        } catch (IOException e) {
+            log.warn("预渲染音频写入失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    /**
+     * 获取指标快照
+     */
+    public StoreMetrics getMetrics() {
+        MappedByteBuffer current = mapping;
+        return new StoreMetrics(enabled, index.size(), current == null ? 0 : current.capacity(), maxStoreBytes,
+                hits.sum(), misses.sum(), appends.sum());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeChannels();
+    }
+
+    private void closeChannels() {
+        for (FileChannel channel : new FileChannel[]{segmentChannel, indexChannel}) {
+            if (channel == null) {
+                continue;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭预渲染音频库文件失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 索引条目
+     *
+     * @param offset     数据在 segments.dat 中的偏移
+     * @param length     数据长度
+     * @param frameCount 帧数
+     * @param crc        数据的 CRC32
+     */
+    private record Entry(long offset, int length, int frameCount, long crc) {
+    }
+
+    /**
+     * 预渲染音频库指标快照
+     *
+     * @param enabled       是否启用
+     * @param entries       收录的句子数
+     * @param storeBytes    数据文件大小
+     * @param maxStoreBytes 数据文件大小上限
+     * @param hits          读取命中次数
+     * @param misses        读取未命中次数
+     * @param appends       写入次数
+     */
+    public record StoreMetrics(boolean enabled, int entries, long storeBytes, long maxStoreBytes,
+                               long hits, long misses, long appends) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按序号索引的分段环形缓冲区
+ * <p>
+ * 槽位下标为 sequence & mask，读取时校验分段序号，因此槽位中残留的旧分段不会被误读。
+ * 容量不足时由生产者线程扩容为两倍，读取方始终读取最新发布的数组，全程无锁。
+ * <p>
+ * 写入（{@link #put}）只允许单个生产者线程调用；读取和清理可以在任意线程进行。
+ */
+final class SegmentRing {
+
+    private volatile AtomicReferenceArray<TTSSegment> slots;
+
+    SegmentRing(int initialCapacity) {
+        this.slots = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1);
+    }
+
+    /**
+     * 写入分段（仅生产者线程调用）
+     *
+     * @param segment      新分段
+     * @param headSequence 当前正在发送的分段序号（可以是旧值，只会多拷贝几个已发送的分段）
+     */
+    void put(TTSSegment segment, int headSequence) {
+        int sequence = segment.getSequence();
+        AtomicReferenceArray<TTSSegment> current = slots;
+        if (sequence - headSequence >= current.length()) {
+            current = grow(current, headSequence, sequence);
+        }
+        current.set(sequence & (current.length() - 1), segment);
+    }
+
+    /**
+     * 读取指定序号的分段，尚未写入时返回 null
+     */
+    TTSSegment get(int sequence) {
+        AtomicReferenceArray<TTSSegment> current = slots;
+        TTSSegment segment = current.get(sequence & (current.length() - 1));
+        return segment != null && segment.getSequence() == sequence ? segment : null;
+    }
+
+    /**
+     * 清理已发送完的分段，槽位已被新分段覆盖时不做处理
+     */
+    void clear(TTSSegment segment) {
+        AtomicReferenceArray<TTSSegment> current = slots;
+        current.compareAndSet(segment.getSequence() & (current.length() - 1), segment, null);
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    private AtomicReferenceArray<TTSSegment> grow(AtomicReferenceArray<TTSSegment> old, int headSequence, int sequence) {
+        int capacity = old.length();
+        while (sequence - headSequence >= capacity) {
+            capacity <<= 1;
+        }
+        AtomicReferenceArray<TTSSegment> grown = new AtomicReferenceArray<>(capacity);
+        int oldMask = old.length() - 1;
+        for (int s = headSequence; s < sequence; s++) {
+            TTSSegment segment = old.get(s & oldMask);
+            if (segment != null && segment.getSequence() == s) {
+                grown.set(s & (capacity - 1), segment);
+            }
+        }
+        slots = grown;
+        return grown;
+    }
+}
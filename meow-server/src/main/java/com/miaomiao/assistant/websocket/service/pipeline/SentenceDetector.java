@@ -3,9 +3,14 @@ package com.miaomiao.assistant.websocket.service.pipeline;
 import lombok.extern.slf4j.Slf4j;
 import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.util.Span;
 
 import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 句子检测工具类
@@ -14,16 +19,33 @@ import java.util.Set;
  * 进行智能句子边界检测，正确处理 "Mr." "Dr." 等缩写词。
  * <p>
  * 参考: pipecat-main/src/pipecat/utils/string.py:match_endofsentence()
+ * <p>
+ * 线程安全：{@link SentenceModel} 是只读的可以共享，但 {@link SentenceDetectorME} 不是线程安全的，
+ * 因此每次检测从对象池借出一个独立的 SentenceDetectorME，用完归还，多个会话并发检测时互不加锁。
+ * <p>
+ * 快速路径：第一个句子边界是中文等明确标点（。？！；）且前面没有需要消歧的拉丁语系标点时，
+ * 直接按规则返回，不调用 OpenNLP。
  *
  * @author Pipecat移植
  */
 @Slf4j
 public class SentenceDetector {
 
+    /**
+     * 对象池中最多保留的空闲检测器数量
+     */
+    private static final int MAX_POOLED_DETECTORS = 64;
+
     private static volatile SentenceDetector instance;
-    private SentenceDetectorME sentenceDetector;
+    private SentenceModel sentenceModel;
     private boolean modelLoaded = false;
 
+    /**
+     * 空闲的 SentenceDetectorME（共享同一个 SentenceModel）
+     */
+    private final Queue<SentenceDetectorME> detectorPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger(0);
+
     /**
      * 句子结束标点符号集合（拉丁语系）
      * 这些需要 NLP 模型来消歧（比如 "Mr." 不是句子结尾）
@@ -88,8 +110,7 @@ public class SentenceDetector {
                 modelIn = getClass().getResourceAsStream("/opennlp-en-ud-ewt-sentence-1.2-2.5.0.bin");
             }
             if (modelIn != null) {
-                SentenceModel model = new SentenceModel(modelIn);
-                sentenceDetector = new SentenceDetectorME(model);
+                sentenceModel = new SentenceModel(modelIn);
                 modelLoaded = true;
                 log.info("OpenNLP 句子检测模型加载成功");
                 modelIn.close();
@@ -108,43 +129,71 @@ public class SentenceDetector {
      * 1. 使用 OpenNLP 检测句子边界
      * 2. 如果只有一个句子且等于整个文本，验证是否以句子结束标点结尾
      * 3. 对于非拉丁语系标点，直接扫描（不需要 NLP 消歧）
+     * <p>
+     * 线程安全，可在多个会话中并发调用。
      *
      * @param text 输入文本
      * @return 句子结束位置（0 表示未找到完整句子）
      */
     public int matchEndOfSentence(String text) {
+        return matchEndOfSentence((CharSequence) text);
+    }
+
+    /**
+     * 检测文本中第一个完整句子的结束位置（直接读取 CharSequence，不复制文本）
+     *
+     * @param text 输入文本（如聚合器的 StringBuilder 缓冲区）
+     * @return 句子结束位置（0 表示未找到完整句子）
+     */
+    public int matchEndOfSentence(CharSequence text) {
         if (text == null || text.isEmpty()) {
             return 0;
         }
 
-        text = text.stripTrailing();
-        if (text.isEmpty()) {
+        // 去除尾部空白（只计算长度，不复制）
+        int length = text.length();
+        while (length > 0 && Character.isWhitespace(text.charAt(length - 1))) {
+            length--;
+        }
+        if (length == 0) {
             return 0;
         }
 
+        // 快速路径：第一个明确标点之前没有拉丁语系标点，边界无需消歧
+        int unambiguousEnd = findUnambiguousEnd(text, length);
+        if (unambiguousEnd > 0) {
+            return unambiguousEnd;
+        }
+
         // 如果模型可用，使用 OpenNLP 检测
-        if (modelLoaded && sentenceDetector != null) {
-            return matchWithOpenNLP(text);
+        if (modelLoaded) {
+            return matchWithOpenNLP(length == text.length() ? text : CharBuffer.wrap(text, 0, length));
         }
 
         // 降级到简单规则检测
-        return matchWithSimpleRules(text);
+        return matchWithSimpleRules(text, length);
     }
 
     /**
      * 使用 OpenNLP 进行句子检测
      */
-    private int matchWithOpenNLP(String text) {
-        String[] sentences = sentenceDetector.sentDetect(text);
+    private int matchWithOpenNLP(CharSequence text) {
+        SentenceDetectorME detector = borrowDetector();
+        Span[] sentences;
+        try {
+            sentences = detector.sentPosDetect(text);
+        } finally {
+            returnDetector(detector);
+        }
 
         if (sentences == null || sentences.length == 0) {
             return 0;
         }
 
-        String firstSentence = sentences[0];
+        Span firstSentence = sentences[0];
 
         // 如果只有一个句子且等于整个文本
-        if (sentences.length == 1 && firstSentence.equals(text)) {
+        if (sentences.length == 1 && firstSentence.getStart() == 0 && firstSentence.getEnd() == text.length()) {
             // 验证是否以句子结束标点结尾
             char lastChar = text.charAt(text.length() - 1);
             if (ALL_SENTENCE_ENDING_PUNCTUATION.contains(lastChar)) {
@@ -160,20 +209,55 @@ public class SentenceDetector {
             return 0;
         }
 
-        // 有多个句子，第一个一定是完整的
+        // 有多个句子，第一个一定是完整的（返回结束偏移而不是句子长度，文本有前导空白时两者不同）
         if (sentences.length > 1) {
-            return firstSentence.length();
+            return firstSentence.getEnd();
         }
 
         return 0;
     }
 
+    /**
+     * 扫描第一个明确句子结束标点，遇到拉丁语系标点则放弃（交给 OpenNLP 消歧）
+     *
+     * @return 句子结束位置，0 表示需要走 OpenNLP 或简单规则
+     */
+    private int findUnambiguousEnd(CharSequence text, int length) {
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (UNAMBIGUOUS_SENTENCE_ENDING_PUNCTUATION.contains(ch)) {
+                return i + 1;
+            }
+            if (LATIN_SENTENCE_ENDING_PUNCTUATION.contains(ch)) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private SentenceDetectorME borrowDetector() {
+        SentenceDetectorME detector = detectorPool.poll();
+        if (detector != null) {
+            pooledCount.decrementAndGet();
+            return detector;
+        }
+        return new SentenceDetectorME(sentenceModel);
+    }
+
+    private void returnDetector(SentenceDetectorME detector) {
+        if (pooledCount.incrementAndGet() <= MAX_POOLED_DETECTORS) {
+            detectorPool.offer(detector);
+        } else {
+            pooledCount.decrementAndGet();
+        }
+    }
+
     /**
      * 使用简单规则进行句子检测（降级方案）
      */
-    private int matchWithSimpleRules(String text) {
+    private int matchWithSimpleRules(CharSequence text, int length) {
         // 扫描非拉丁语系的明确句子结束标点
-        for (int i = 0; i < text.length(); i++) {
+        for (int i = 0; i < length; i++) {
             char ch = text.charAt(i);
             if (UNAMBIGUOUS_SENTENCE_ENDING_PUNCTUATION.contains(ch)) {
                 return i + 1;
@@ -181,9 +265,9 @@ public class SentenceDetector {
         }
 
         // 对于拉丁语系标点，只在文本末尾检查
-        char lastChar = text.charAt(text.length() - 1);
+        char lastChar = text.charAt(length - 1);
         if (LATIN_SENTENCE_ENDING_PUNCTUATION.contains(lastChar)) {
-            return text.length();
+            return length;
         }
 
         return 0;
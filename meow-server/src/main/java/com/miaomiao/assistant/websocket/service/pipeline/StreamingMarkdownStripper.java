@@ -0,0 +1,611 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+/**
+ * 流式 Markdown 过滤器
+ * <p>
+ * 逐字符状态机，直接作用于 LLM 原始 token 流（在 {@link TextAggregator} 之前），
+ * 跨 token 保留代码块、强调、链接等状态，因此跨越多个句子的代码块也能被识别。
+ * <p>
+ * 处理内容包括：
+ * 1. 代码块（```code```）- 替换为提示语，块内内容全部丢弃
+ * 2. 行内代码（`code`）- 移除反引号
+ * 3. 标题标记（# ## ###）- 移除
+ * 4. 粗体/斜体/删除线（** * __ _ ~~）- 移除标记保留文本，单个 ~ 保留（语气符号），
+ *    两侧都是空白或数字之间的单个 * 保留（如 a * b、3*4）
+ * 5. 链接（[text](url)）- 保留文本移除 URL；没有紧跟 ( 的方括号（如 [注意]、数组[0]）原样保留
+ * 6. 图片（![alt](url)）- 替换为提示语
+ * 7. 列表标记（- * + 1.）- 移除
+ * 8. 引用（>）- 移除
+ * 9. 水平线（---）- 移除
+ * 10. Emoji - 移除
+ * 11. 连续空格合并为一个，连续空行最多保留一个
+ * <p>
+ * 需要根据下一个字符才能确定含义的标记（如行首的 #、-、数字，或 !、_、~、*）会暂存到下一个字符到达，
+ * [ 之后的文本暂存到 ]( 出现（链接）或确定不是链接为止。
+ * 流结束时调用 {@link #flush()} 输出剩余内容。除每次调用返回的字符串外，逐字符处理不分配内存。
+ * <p>
+ * 非线程安全，一个实例只服务一轮对话。
+ */
+public class StreamingMarkdownStripper {
+
+    private static final String CODE_PLACEHOLDER = " 代码已省略 ";
+    private static final String IMAGE_PLACEHOLDER = " 图片 ";
+
+    /**
+     * URL 最大长度，超过后视为格式错误并恢复为普通文本，避免吞掉后续所有内容
+     */
+    private static final int MAX_URL_LENGTH = 2048;
+
+    /**
+     * 链接文本最大长度，超过后视为普通方括号，避免长时间暂存
+     */
+    private static final int MAX_LINK_TEXT_LENGTH = 256;
+
+    private enum Mode {
+        TEXT,
+        CODE_BLOCK,
+        LINK_TEXT,
+        LINK_AFTER_TEXT,
+        LINK_URL,
+        IMAGE_ALT,
+        IMAGE_AFTER_ALT
+    }
+
+    /**
+     * 暂存的待定标记
+     */
+    private enum Pending {
+        NONE,
+        BACKTICKS,
+        TILDES,
+        BANG,
+        ASTERISKS,
+        UNDERSCORES,
+        HASHES,
+        DASHES,
+        DIGITS,
+        DIGITS_DOT
+    }
+
+    private final StringBuilder out = new StringBuilder(64);
+
+    /**
+     * 行首的有序列表数字
+     */
+    private final StringBuilder heldDigits = new StringBuilder(4);
+
+    /**
+     * [ 之后暂存的链接文本（原始字符）
+     */
+    private final StringBuilder linkText = new StringBuilder(32);
+
+    private Mode mode = Mode.TEXT;
+    private Pending pending = Pending.NONE;
+    private int pendingCount = 0;
+    private char pendingMarker = 0;
+
+    private int codeBlockTicks = 0;
+    private int urlDepth = 0;
+    private int urlLength = 0;
+
+    private boolean atLineStart = true;
+    private boolean skipSpaces = false;
+    private char highSurrogate = 0;
+    private char lastEmitted = '\n';
+    private int newlineRun = 0;
+
+    /**
+     * 处理一段 token 文本
+     *
+     * @param chunk LLM 输出的文本片段
+     * @return 过滤后的文本（可能为空字符串）
+     */
+    public String process(CharSequence chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return "";
+        }
+        out.setLength(0);
+        for (int i = 0, length = chunk.length(); i < length; i++) {
+            accept(chunk.charAt(i));
+        }
+        return out.toString();
+    }
+
+    /**
+     * 流结束：输出暂存的标记
+     *
+     * @return 剩余文本（可能为空字符串）
+     */
+    public String flush() {
+        out.setLength(0);
+        if (mode == Mode.LINK_TEXT) {
+            restoreBrackets(false);
+        } else if (mode == Mode.LINK_AFTER_TEXT) {
+            restoreBrackets(true);
+        }
+        if (mode == Mode.TEXT) {
+            resolvePendingAtEnd();
+        }
+        reset();
+        return out.toString();
+    }
+
+    /**
+     * 重置状态（中断或新一轮对话）
+     */
+    public void reset() {
+        mode = Mode.TEXT;
+        pending = Pending.NONE;
+        pendingCount = 0;
+        heldDigits.setLength(0);
+        codeBlockTicks = 0;
+        urlDepth = 0;
+        urlLength = 0;
+        linkText.setLength(0);
+        atLineStart = true;
+        skipSpaces = false;
+        highSurrogate = 0;
+        lastEmitted = '\n';
+        newlineRun = 0;
+    }
+
+    private void accept(char c) {
+        switch (mode) {
+            case CODE_BLOCK:
+                acceptInCodeBlock(c);
+                return;
+            case LINK_URL:
+                acceptInUrl(c);
+                return;
+            case LINK_TEXT:
+                acceptInLinkText(c);
+                return;
+            case IMAGE_ALT:
+                if (c == ']') {
+                    mode = Mode.IMAGE_AFTER_ALT;
+                } else if (c == '\n') {
+                    mode = Mode.TEXT;
+                    acceptText(c);
+                }
+                return;
+            case LINK_AFTER_TEXT:
+                if (c == '(') {
+                    // 链接：保留文本，丢弃 URL
+                    mode = Mode.TEXT;
+                    replayLinkText();
+                    startUrl();
+                    return;
+                }
+                restoreBrackets(true);
+                accept(c);
+                return;
+            case IMAGE_AFTER_ALT:
+                if (c == '(') {
+                    startUrl();
+                    return;
+                }
+                mode = Mode.TEXT;
+                acceptText(c);
+                return;
+            case TEXT:
+            default:
+                acceptText(c);
+        }
+    }
+
+    private void acceptInCodeBlock(char c) {
+        if (c == '`') {
+            if (++codeBlockTicks >= 3) {
+                mode = Mode.TEXT;
+                codeBlockTicks = 0;
+                atLineStart = false;
+            }
+        } else {
+            codeBlockTicks = 0;
+        }
+    }
+
+    private void acceptInLinkText(char c) {
+        if (c == ']') {
+            mode = Mode.LINK_AFTER_TEXT;
+            return;
+        }
+        if (c == '[' || c == '\n' || linkText.length() >= MAX_LINK_TEXT_LENGTH) {
+            // 不是链接，方括号原样保留
+            restoreBrackets(false);
+            accept(c);
+            return;
+        }
+        linkText.append(c);
+    }
+
+    private void startUrl() {
+        mode = Mode.LINK_URL;
+        urlDepth = 0;
+        urlLength = 0;
+    }
+
+    /**
+     * 暂存的 [text] 不是链接：输出 [，按普通文本重新处理暂存内容，需要时补上 ]
+     */
+    private void restoreBrackets(boolean closed) {
+        mode = Mode.TEXT;
+        emit('[');
+        replayLinkText();
+        if (closed) {
+            acceptText(']');
+        }
+    }
+
+    private void replayLinkText() {
+        String text = linkText.toString();
+        linkText.setLength(0);
+        for (int i = 0; i < text.length(); i++) {
+            accept(text.charAt(i));
+        }
+    }
+
+    private void acceptInUrl(char c) {
+        if (c == '\n' || ++urlLength > MAX_URL_LENGTH) {
+            mode = Mode.TEXT;
+            acceptText(c);
+            return;
+        }
+        if (c == '(') {
+            urlDepth++;
+        } else if (c == ')') {
+            if (urlDepth == 0) {
+                mode = Mode.TEXT;
+            } else {
+                urlDepth--;
+            }
+        }
+    }
+
+    private void acceptText(char c) {
+        if (pending != Pending.NONE && resolvePending(c)) {
+            return;
+        }
+
+        // Emoji：补充平面字符由代理对组成，高位代理暂存到低位代理到达
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return;
+        }
+        if (Character.isLowSurrogate(c)) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (high != 0 && !isEmoji(Character.toCodePoint(high, c))) {
+                emit(high);
+                emit(c);
+            }
+            return;
+        }
+        highSurrogate = 0;
+        if (isEmoji(c)) {
+            return;
+        }
+
+        if (skipSpaces) {
+            if (c == ' ' || c == '\t') {
+                return;
+            }
+            skipSpaces = false;
+        }
+
+        switch (c) {
+            case '`':
+                startPending(Pending.BACKTICKS, c);
+                return;
+            case '~':
+                startPending(Pending.TILDES, c);
+                return;
+            case '!':
+                startPending(Pending.BANG, c);
+                return;
+            case '*':
+                // 粗体/斜体/列表/水平线标记，或乘号，等下一个字符再决定
+                startPending(Pending.ASTERISKS, c);
+                return;
+            case '_':
+                if (isWordChar(lastEmitted)) {
+                    // 可能是 snake_case，等下一个字符再决定
+                    startPending(Pending.UNDERSCORES, c);
+                }
+                return;
+            case '[':
+                mode = Mode.LINK_TEXT;
+                linkText.setLength(0);
+                return;
+            case '#':
+                if (atLineStart) {
+                    startPending(Pending.HASHES, c);
+                    return;
+                }
+                break;
+            case '-':
+            case '+':
+                if (atLineStart) {
+                    startPending(Pending.DASHES, c);
+                    return;
+                }
+                break;
+            case '>':
+                if (atLineStart) {
+                    skipSpaces = true;
+                    return;
+                }
+                break;
+            case '\n':
+                emit(c);
+                atLineStart = true;
+                return;
+            case ' ':
+            case '\t':
+                emit(' ');
+                return;
+            default:
+                if (atLineStart && c >= '0' && c <= '9') {
+                    startPending(Pending.DIGITS, c);
+                    heldDigits.setLength(0);
+                    heldDigits.append(c);
+                    return;
+                }
+        }
+        emit(c);
+    }
+
+    private void startPending(Pending kind, char marker) {
+        pending = kind;
+        pendingCount = 1;
+        pendingMarker = marker;
+    }
+
+    /**
+     * 根据下一个字符确定暂存标记的含义
+     *
+     * @return 字符 c 是否已被消费
+     */
+    private boolean resolvePending(char c) {
+        Pending kind = pending;
+        switch (kind) {
+            case BACKTICKS:
+                if (c == '`') {
+                    pendingCount++;
+                    return true;
+                }
+                pending = Pending.NONE;
+                if (pendingCount >= 3) {
+                    // 代码块开始，c 属于语言标记或代码内容
+                    emitPlaceholder(CODE_PLACEHOLDER);
+                    mode = Mode.CODE_BLOCK;
+                    codeBlockTicks = 0;
+                    return true;
+                }
+                // 行内代码的反引号直接丢弃
+                return false;
+            case TILDES:
+                if (c == '~') {
+                    pendingCount++;
+                    return true;
+                }
+                pending = Pending.NONE;
+                if (pendingCount == 1) {
+                    emit('~');
+                }
+                return false;
+            case BANG:
+                pending = Pending.NONE;
+                if (c == '[') {
+                    emitPlaceholder(IMAGE_PLACEHOLDER);
+                    mode = Mode.IMAGE_ALT;
+                    return true;
+                }
+                emit('!');
+                return false;
+            case ASTERISKS:
+                if (c == '*') {
+                    pendingCount++;
+                    return true;
+                }
+                pending = Pending.NONE;
+                if (atLineStart && pendingCount == 1 && (c == ' ' || c == '\t')) {
+                    // 无序列表标记
+                    atLineStart = false;
+                    skipSpaces = true;
+                    return true;
+                }
+                if (atLineStart && pendingCount >= 3) {
+                    // 水平线或行首的粗斜体
+                    atLineStart = false;
+                    return false;
+                }
+                if (pendingCount == 1 && isDigit(lastEmitted) && isDigit(c)) {
+                    emit('*');
+                } else if (isBlank(lastEmitted) && isBlank(c)) {
+                    emitRepeated('*', pendingCount);
+                }
+                return false;
+            case UNDERSCORES:
+                if (c == '_') {
+                    pendingCount++;
+                    return true;
+                }
+                pending = Pending.NONE;
+                if (isWordChar(c)) {
+                    emitRepeated('_', pendingCount);
+                }
+                return false;
+            case HASHES:
+                if (c == '#' && pendingCount < 6) {
+                    pendingCount++;
+                    return true;
+                }
+                pending = Pending.NONE;
+                if (c == ' ' || c == '\t') {
+                    atLineStart = false;
+                    skipSpaces = true;
+                    return true;
+                }
+                emitRepeated('#', pendingCount);
+                return false;
+            case DASHES:
+                if (c == pendingMarker) {
+                    pendingCount++;
+                    return true;
+                }
+                pending = Pending.NONE;
+                if (pendingCount >= 3) {
+                    // 水平线
+                    atLineStart = false;
+                    return false;
+                }
+                if (pendingCount == 1 && (c == ' ' || c == '\t')) {
+                    // 无序列表标记
+                    atLineStart = false;
+                    skipSpaces = true;
+                    return true;
+                }
+                emitRepeated(pendingMarker, pendingCount);
+                return false;
+            case DIGITS:
+                if (c >= '0' && c <= '9') {
+                    heldDigits.append(c);
+                    return true;
+                }
+                if (c == '.') {
+                    pending = Pending.DIGITS_DOT;
+                    return true;
+                }
+                pending = Pending.NONE;
+                emitHeldDigits(false);
+                return false;
+            case DIGITS_DOT:
+                pending = Pending.NONE;
+                if (c == ' ' || c == '\t') {
+                    // 有序列表标记
+                    heldDigits.setLength(0);
+                    atLineStart = false;
+                    skipSpaces = true;
+                    return true;
+                }
+                emitHeldDigits(true);
+                return false;
+            case NONE:
+            default:
+                return false;
+        }
+    }
+
+    private void resolvePendingAtEnd() {
+        switch (pending) {
+            case TILDES:
+                if (pendingCount == 1) {
+                    emit('~');
+                }
+                break;
+            case BANG:
+                emit('!');
+                break;
+            case ASTERISKS:
+                if (!(atLineStart && pendingCount >= 3) && isBlank(lastEmitted)) {
+                    emitRepeated('*', pendingCount);
+                }
+                break;
+            case HASHES:
+                emitRepeated('#', pendingCount);
+                break;
+            case DASHES:
+                if (pendingCount < 3) {
+                    emitRepeated(pendingMarker, pendingCount);
+                }
+                break;
+            case DIGITS:
+                emitHeldDigits(false);
+                break;
+            case DIGITS_DOT:
+                emitHeldDigits(true);
+                break;
+            default:
+                break;
+        }
+        pending = Pending.NONE;
+    }
+
+    private void emitHeldDigits(boolean withDot) {
+        for (int i = 0; i < heldDigits.length(); i++) {
+            emit(heldDigits.charAt(i));
+        }
+        heldDigits.setLength(0);
+        if (withDot) {
+            emit('.');
+        }
+    }
+
+    private void emitRepeated(char c, int count) {
+        for (int i = 0; i < count; i++) {
+            emit(c);
+        }
+    }
+
+    private void emitPlaceholder(String placeholder) {
+        for (int i = 0; i < placeholder.length(); i++) {
+            emit(placeholder.charAt(i));
+        }
+    }
+
+    /**
+     * 输出字符，同时合并连续空格、限制连续空行
+     */
+    private void emit(char c) {
+        if (c == ' ') {
+            if (lastEmitted == ' ') {
+                return;
+            }
+        } else if (c == '\n') {
+            if (++newlineRun > 2) {
+                return;
+            }
+        } else {
+            newlineRun = 0;
+            atLineStart = false;
+        }
+        out.append(c);
+        lastEmitted = c;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\n';
+    }
+
+    /**
+     * 是否为 Emoji 或表情相关符号（不包含中日韩标点）
+     */
+    private static boolean isEmoji(int cp) {
+        if (cp >= 0x1F000 && cp <= 0x1FAFF) {
+            // 麻将/扑克牌、表情、象形文字、交通、补充符号等
+            return true;
+        }
+        return (cp >= 0x2600 && cp <= 0x27BF)     // 杂项符号、装订符号
+                || (cp >= 0x231A && cp <= 0x23FF)  // 杂项技术符号（⌚ ⏰ 等）
+                || (cp >= 0x2B05 && cp <= 0x2B55)  // 箭头、星星
+                || (cp >= 0x2194 && cp <= 0x21AA)  // 箭头
+                || (cp >= 0x25AA && cp <= 0x25FE)  // 几何图形
+                || (cp >= 0x2934 && cp <= 0x2935)
+                || cp == 0x203C || cp == 0x2049    // ‼ ⁉
+                || cp == 0x2122 || cp == 0x2139    // ™ ℹ
+                || cp == 0x24C2
+                || cp == 0x3030 || cp == 0x303D || cp == 0x3297 || cp == 0x3299
+                || cp == 0xFE0F                    // 变化选择器
+                || cp == 0x200D                    // 零宽连接符（组合 Emoji）
+                || (cp >= 0xE0020 && cp <= 0xE007F); // 旗帜标签
+    }
+}
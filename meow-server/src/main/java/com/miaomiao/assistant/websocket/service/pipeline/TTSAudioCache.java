@@ -0,0 +1,412 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.model.tts.TTSOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全局 TTS 音频缓存（按内容寻址）
+ * <p>
+ * 角色会反复说很多短句（问候、拒绝、语气词），同一句话不必每次都调用 TTS 提供商并重新编码：
+ * 1. 缓存键为（规范化文本, providerName:model, 音色, 语速, 音量, 格式），缓存值为编码好的 Opus 包序列
+ * 2. 按条目数和字节数做 LRU 淘汰；只缓存不超过 tts.cache.max-text-length 的短句
+ * 3. 单飞（single-flight）：多个会话同时合成同一句话时只调用一次提供商，后到的会话订阅进行中的结果，
+ * 先回放已编码的帧，之后随合成实时收到新帧
+ * 4. 命中时跳过网络请求和编码，直接把缓存的帧写入分段
+ * 5. 记录命中、未命中、合并请求、淘汰和占用字节数等指标
+ * 6. 内存中未命中时查 {@link PrerenderedAudioStore}（预渲染的常用语），命中后载入内存；
+ * 内存中命中次数达到 tts.prerender.persist-min-hits 的句子写入预渲染音频库，重启后仍可直接使用
+ */
+@Slf4j
+@Component
+public class TTSAudioCache {
+
+    /**
+     * 每个 Opus 包在列表中的额外开销估算（数组头 + 引用）
+     */
+    private static final int PACKET_OVERHEAD_BYTES = 24;
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxTextLength;
+
+    /**
+     * 持久化的预渲染音频库（可为 null）
+     */
+    private final PrerenderedAudioStore store;
+
+    /**
+     * 内存中命中多少次后写入预渲染音频库（0 表示不写入）
+     */
+    private final int persistMinHits;
+
+    /**
+     * 已完成的条目（访问顺序，用于 LRU）
+     */
+    private final LinkedHashMap<Key, Flight> completed = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * 合成中的条目
+     */
+    private final Map<Key, Flight> inFlight = new LinkedHashMap<>();
+
+    private long cachedBytes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder joins = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder servedBytes = new LongAdder();
+    private final LongAdder storeLoads = new LongAdder();
+
+    public TTSAudioCache(
+            @Value("${tts.cache.enabled:true}") boolean enabled,
+            @Value("${tts.cache.max-entries:2048}") int maxEntries,
+            @Value("${tts.cache.max-bytes:33554432}") long maxBytes,
+            @Value("${tts.cache.max-text-length:64}") int maxTextLength,
+            PrerenderedAudioStore store,
+            @Value("${tts.prerender.persist-min-hits:3}") int persistMinHits) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+        this.maxTextLength = Math.max(1, maxTextLength);
+        this.store = store != null && store.isEnabled() ? store : null;
+        this.persistMinHits = Math.max(0, persistMinHits);
+        log.info("TTS 音频缓存初始化: enabled={}, maxEntries={}, maxBytes={}, maxTextLength={}",
+                enabled, this.maxEntries, this.maxBytes, this.maxTextLength);
+    }
+
+    /**
+     * 查找已完成的缓存条目（不占位）
+     *
+     * @return 命中时返回已完成的条目，否则返回 null
+     */
+    public Flight getIfPresent(String providerModelKey, String text, TTSOptions options) {
+        Key key = keyOf(providerModelKey, text, options);
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Flight flight = lookupCompleted(key);
+            if (flight != null) {
+                onHit(flight);
+            }
+            return flight;
+        }
+    }
+
+    /**
+     * 查找或占位
+     * <p>
+     * 已完成或正在合成时返回该条目（调用方订阅即可）；否则登记一个新条目，调用方成为负责合成的一方，
+     * 必须在结束时调用 {@link Flight#complete()} 或 {@link Flight#fail(String)}
+     *
+     * @return 不可缓存（未启用、文本过长）时返回 null
+     */
+    public Claim claim(String providerModelKey, String text, TTSOptions options) {
+        Key key = keyOf(providerModelKey, text, options);
+        if (key == null) {
+            return null;
+        }
+        synchronized (this) {
+            Flight flight = lookupCompleted(key);
+            if (flight != null) {
+                onHit(flight);
+                return new Claim(flight, false);
+            }
+            flight = inFlight.get(key);
+            if (flight != null) {
+                joins.increment();
+                return new Claim(flight, false);
+            }
+            misses.increment();
+            flight = new Flight(key);
+            inFlight.put(key, flight);
+            return new Claim(flight, true);
+        }
+    }
+
+    /**
+     * 查找已完成的条目：内存中没有时从预渲染音频库载入
+     */
+    private Flight lookupCompleted(Key key) {
+        Flight flight = completed.get(key);
+        if (flight != null || store == null) {
+            return flight;
+        }
+        List<byte[]> frames = store.get(key.storeKey());
+        if (frames == null || frames.isEmpty()) {
+            return null;
+        }
+        flight = new Flight(key);
+        flight.frames.addAll(frames);
+        for (byte[] frame : frames) {
+            flight.bytes += frame.length + PACKET_OVERHEAD_BYTES;
+        }
+        flight.done = true;
+        flight.persisted = true;
+        storeLoads.increment();
+        addCompleted(flight);
+        return flight;
+    }
+
+    private void onHit(Flight flight) {
+        hits.increment();
+        servedBytes.add(flight.bytes);
+        // 高频句子写入预渲染音频库（文件 IO 放到弹性线程池）
+        if (store != null && persistMinHits > 0 && !flight.persisted && ++flight.hitCount >= persistMinHits) {
+            flight.persisted = true;
+            List<byte[]> frames = List.copyOf(flight.frames);
+            Schedulers.boundedElastic().schedule(() -> store.put(flight.key.storeKey(), frames));
+        }
+    }
+
+    /**
+     * 生成预渲染音频库的键，与内存缓存的键一致
+     *
+     * @return 不可缓存（文本为空或过长）时返回 null
+     */
+    public String storeKey(String providerModelKey, String text, TTSOptions options) {
+        Key key = keyOf(providerModelKey, text, options);
+        return key == null ? null : key.storeKey();
+    }
+
+    private Key keyOf(String providerModelKey, String text, TTSOptions options) {
+        if (!enabled || text == null) {
+            return null;
+        }
+        String normalized = normalize(text);
+        if (normalized.isEmpty() || normalized.length() > maxTextLength) {
+            return null;
+        }
+        return new Key(normalized, providerModelKey, options.getVoice(), options.getSpeed(),
+                options.getVolume(), options.getFormat());
+    }
+
+    /**
+     * 规范化文本：去掉首尾空白，连续空白合并为一个空格（标点会影响语调，保留）
+     */
+    static String normalize(String text) {
+        return text.strip().replaceAll("\\s+", " ");
+    }
+
+    private synchronized void onFlightFinished(Flight flight, boolean success) {
+        inFlight.remove(flight.key, flight);
+        if (!success) {
+            return;
+        }
+        if (flight.bytes > maxBytes) {
+            return;
+        }
+        addCompleted(flight);
+    }
+
+    private void addCompleted(Flight flight) {
+        completed.put(flight.key, flight);
+        cachedBytes += flight.bytes;
+        Iterator<Flight> iterator = completed.values().iterator();
+        while ((completed.size() > maxEntries || cachedBytes > maxBytes) && iterator.hasNext()) {
+            Flight eldest = iterator.next();
+            iterator.remove();
+            cachedBytes -= eldest.bytes;
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 获取缓存指标快照
+     */
+    public synchronized CacheMetrics getMetrics() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long joinCount = joins.sum();
+        long total = hitCount + missCount + joinCount;
+        return new CacheMetrics(enabled, completed.size(), inFlight.size(), cachedBytes, maxBytes,
+                hitCount, missCount, joinCount, evictions.sum(),
+                total == 0 ? 0 : (double) (hitCount + joinCount) / total, servedBytes.sum(), storeLoads.sum(),
+                store == null ? null : store.getMetrics());
+    }
+
+    /**
+     * 缓存键
+     */
+    private record Key(String text, String providerModelKey, String voice, Float speed, Float volume, String format) {
+
+        String storeKey() {
+            return String.join("|", providerModelKey, String.valueOf(voice), String.valueOf(speed),
+                    String.valueOf(volume), String.valueOf(format), text);
+        }
+    }
+
+    /**
+     * 查找结果
+     *
+     * @param flight 缓存条目
+     * @param leader 是否由调用方负责合成
+     */
+    public record Claim(Flight flight, boolean leader) {
+    }
+
+    /**
+     * 订阅缓存条目的回调，在条目的锁内调用，必须非阻塞
+     */
+    public interface Listener {
+
+        /**
+         * 新编码出的 Opus 包（订阅时先回放已有的包）
+         */
+        void onFrames(List<byte[]> opusPackets);
+
+        /**
+         * 整句合成完成
+         */
+        void onComplete();
+
+        /**
+         * 合成失败或被中断
+         *
+         * @param reason          失败原因
+         * @param deliveredFrames 失败前已回调给该订阅方的帧数
+         */
+        void onError(String reason, int deliveredFrames);
+    }
+
+    /**
+     * 一个缓存条目：合成中时记录已编码的帧并转发给订阅方，完成后作为缓存值
+     */
+    public final class Flight {
+
+        private final Key key;
+        private final List<byte[]> frames = new ArrayList<>();
+        private final List<Listener> listeners = new ArrayList<>();
+        private final Map<Listener, Integer> delivered = new IdentityHashMap<>();
+        private long bytes = 0;
+        private boolean done = false;
+        private String error;
+
+        // 以下字段只在缓存的锁内访问
+        private int hitCount = 0;
+        private boolean persisted = false;
+
+        private Flight(Key key) {
+            this.key = key;
+        }
+
+        /**
+         * 写入新编码出的帧（仅合成方调用）
+         */
+        public synchronized void publish(List<byte[]> opusPackets) {
+            if (done || opusPackets.isEmpty()) {
+                return;
+            }
+            frames.addAll(opusPackets);
+            for (byte[] packet : opusPackets) {
+                bytes += packet.length + PACKET_OVERHEAD_BYTES;
+            }
+            for (Listener listener : listeners) {
+                delivered.merge(listener, opusPackets.size(), Integer::sum);
+                listener.onFrames(opusPackets);
+            }
+        }
+
+        /**
+         * 整句合成完成（仅合成方调用），条目进入缓存
+         */
+        public void complete() {
+            finish(null);
+        }
+
+        /**
+         * 合成失败或被中断（仅合成方调用），条目不进入缓存
+         */
+        public void fail(String reason) {
+            finish(Objects.requireNonNullElse(reason, "TTS 合成失败"));
+        }
+
+        private void finish(String reason) {
+            boolean success;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                error = reason;
+                success = reason == null && !frames.isEmpty();
+                for (Listener listener : listeners) {
+                    notifyDone(listener);
+                }
+                listeners.clear();
+                delivered.clear();
+            }
+            onFlightFinished(this, success);
+        }
+
+        /**
+         * 订阅：先回放已编码的帧，之后实时转发；已结束时回放后立即回调结束
+         */
+        public synchronized void subscribe(Listener listener) {
+            if (!frames.isEmpty()) {
+                listener.onFrames(List.copyOf(frames));
+            }
+            if (done) {
+                notifyDone(listener, frames.size());
+                return;
+            }
+            delivered.put(listener, frames.size());
+            listeners.add(listener);
+        }
+
+        private void notifyDone(Listener listener) {
+            notifyDone(listener, delivered.getOrDefault(listener, 0));
+        }
+
+        private void notifyDone(Listener listener, int deliveredFrames) {
+            if (error == null) {
+                listener.onComplete();
+            } else {
+                listener.onError(error, deliveredFrames);
+            }
+        }
+
+        /**
+         * 已编码的帧数
+         */
+        public synchronized int getFrameCount() {
+            return frames.size();
+        }
+    }
+
+    /**
+     * 缓存指标快照
+     *
+     * @param enabled     是否启用
+     * @param entries     已缓存的句子数
+     * @param inFlight    合成中的句子数
+     * @param cachedBytes 已缓存的字节数（估算）
+     * @param maxBytes    字节数上限
+     * @param hits        命中次数（跳过提供商调用和编码）
+     * @param misses      未命中次数（调用提供商）
+     * @param joins       合并到进行中请求的次数（单飞）
+     * @param evictions   淘汰次数
+     * @param hitRate     (hits + joins) / 总查找次数
+     * @param servedBytes 命中时直接下发的字节数（估算）
+     * @param storeLoads  从预渲染音频库载入的次数
+     * @param store       预渲染音频库指标（未启用时为 null）
+     */
+    public record CacheMetrics(boolean enabled, int entries, int inFlight, long cachedBytes, long maxBytes,
+                               long hits, long misses, long joins, long evictions, double hitRate,
+                               long servedBytes, long storeLoads, PrerenderedAudioStore.StoreMetrics store) {
+    }
+}
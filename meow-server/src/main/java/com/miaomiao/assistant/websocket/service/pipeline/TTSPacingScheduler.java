@@ -0,0 +1,142 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 全局 TTS 音频下发节奏调度器
+ * <p>
+ * 替代原来未接入的 AudioTimingManager（每个会话 sleep 控速）：
+ * 1. 所有会话共用一个哈希时间轮线程，不为每个会话占用线程
+ * 2. 每轮对话的音频经 {@link PacedAudioStream} 按播放速率 + 目标余量（tts.pacing.lead-ms）放行，
+ * 避免一次性把整句音频推给客户端，打断时客户端缓冲的音频也不会太多
+ * 3. 记录每个会话的播放余量、欠载次数等指标
+ * 4. 会话断开时丢弃该会话排队中的帧
+ */
+@Slf4j
+@Component
+public class TTSPacingScheduler {
+
+    private static final int WHEEL_SIZE = 512;
+
+    /**
+     * 是否启用节奏控制（关闭时分发器直接发送）
+     */
+    @Getter
+    private final boolean enabled;
+
+    /**
+     * 客户端目标播放余量（毫秒）
+     */
+    private final long leadMs;
+
+    private final long tickMs;
+
+    private final PacingTimerWheel timerWheel;
+
+    /**
+     * 每个会话最近一轮对话的音频流（保留到会话断开，用于指标）
+     */
+    private final Map<String, PacedAudioStream> streams = new ConcurrentHashMap<>();
+
+    public TTSPacingScheduler(
+            @Value("${tts.pacing.enabled:true}") boolean enabled,
+            @Value("${tts.pacing.lead-ms:200}") long leadMs,
+            @Value("${tts.pacing.tick-ms:10}") long tickMs) {
+        this.enabled = enabled;
+        this.leadMs = Math.max(AudioFramePacker.FRAME_DURATION_NANOS / 1_000_000L, leadMs);
+        this.tickMs = Math.max(1, tickMs);
+        this.timerWheel = enabled ? new PacingTimerWheel(this.tickMs, WHEEL_SIZE, "TTS-Pacer") : null;
+        log.info("TTS 下发节奏调度器初始化: enabled={}, leadMs={}, tickMs={}", enabled, this.leadMs, this.tickMs);
+    }
+
+    /**
+     * 为一轮对话创建音频流
+     *
+     * @param sessionId           会话ID
+     * @param audioSender         实际的音频发送回调 (opusPackets, isLast)，在锁内调用，必须非阻塞
+     * @param maxFramesPerMessage 每条消息最多打包的帧数
+     */
+    public PacedAudioStream open(String sessionId, BiConsumer<List<byte[]>, Boolean> audioSender, int maxFramesPerMessage) {
+        if (!enabled) {
+            throw new IllegalStateException("TTS 下发节奏控制未启用");
+        }
+        PacedAudioStream stream = new PacedAudioStream(sessionId, audioSender, timerWheel::schedule,
+                System::nanoTime, leadMs, maxFramesPerMessage);
+        streams.put(sessionId, stream);
+        return stream;
+    }
+
+    /**
+     * 会话断开时丢弃排队中的帧并移除指标
+     */
+    public void unregister(String sessionId) {
+        PacedAudioStream stream = streams.remove(sessionId);
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    /**
+     * 获取下发节奏指标快照
+     */
+    public PacingMetrics getMetrics() {
+        Map<String, StreamMetrics> sessions = new TreeMap<>();
+        streams.forEach((sessionId, stream) -> sessions.put(sessionId, stream.snapshot()));
+        int active = 0;
+        long totalUnderruns = 0;
+        for (StreamMetrics metrics : sessions.values()) {
+            if (metrics.active()) {
+                active++;
+            }
+            totalUnderruns += metrics.underruns();
+        }
+        return new PacingMetrics(enabled, leadMs, tickMs, active, totalUnderruns, sessions);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (timerWheel != null) {
+            timerWheel.close();
+        }
+    }
+
+    /**
+     * 下发节奏指标快照
+     *
+     * @param enabled        是否启用
+     * @param leadTargetMs   目标播放余量（毫秒）
+     * @param tickMs         时间轮精度（毫秒）
+     * @param activeStreams  仍在发送中的音频流数
+     * @param totalUnderruns 所有会话的欠载次数合计
+     * @param sessions       各会话最近一轮对话的指标
+     */
+    public record PacingMetrics(boolean enabled, long leadTargetMs, long tickMs, int activeStreams,
+                                long totalUnderruns, Map<String, StreamMetrics> sessions) {
+    }
+
+    /**
+     * 单个会话的音频流指标
+     *
+     * @param active         是否仍在发送
+     * @param leadMs         当前估算的客户端播放余量（毫秒）
+     * @param queuedFrames   排队中的帧数
+     * @param sentFrames     已发送帧数
+     * @param sentMessages   已发送消息数
+     * @param underruns      欠载次数（有帧待发时客户端余量已耗尽）
+     * @param underrunMs     欠载累计时长（毫秒）
+     * @param droppedFrames  中断/关闭时丢弃的帧数
+     */
+    public record StreamMetrics(boolean active, long leadMs, int queuedFrames, long sentFrames, long sentMessages,
+                                long underruns, long underrunMs, long droppedFrames) {
+    }
+}
@@ -0,0 +1,125 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TTS 音频分段
+ * <p>
+ * 一个句子对应一个分段。工作线程每编码出一帧就写入分段并通知 {@link OrderedSegmentDispatcher}，
+ * 分发器按序号顺序发送各分段的帧，因此队首句子的音频帧可以在 TTS 提供商仍在返回数据时就发送出去。
+ */
+public class TTSSegment {
+
+    /**
+     * 分段结束标记（按引用比较）
+     */
+    static final byte[] END_OF_SEGMENT = new byte[0];
+
+    @Getter
+    private final int sequence;
+    @Getter
+    private final String text;
+    private final Queue<byte[]> frames = new ConcurrentLinkedQueue<>();
+    private final OrderedSegmentDispatcher dispatcher;
+
+    // 仅在需要保存音频时收集完整的 PCM / OPUS 数据
+    private final ByteArrayOutputStream pcmBuffer;
+    private final ByteArrayOutputStream opusBuffer;
+
+    /**
+     * 调度器中的任务句柄
+     */
+    volatile TTSWorkerScheduler.Ticket ticket;
+
+    // 以下字段只由分发器的发送方访问
+    int sentFrames = 0;
+    boolean started = false;
+
+    @Getter
+    private volatile boolean success = true;
+    @Getter
+    private volatile String errorMessage;
+
+    TTSSegment(int sequence, String text, boolean collectAudio, OrderedSegmentDispatcher dispatcher) {
+        this.sequence = sequence;
+        this.text = text;
+        this.dispatcher = dispatcher;
+        this.pcmBuffer = collectAudio ? new ByteArrayOutputStream() : null;
+        this.opusBuffer = collectAudio ? new ByteArrayOutputStream() : null;
+    }
+
+    /**
+     * 记录原始 PCM（仅在需要保存音频时生效）
+     */
+    public void appendPcm(byte[] pcmData) {
+        if (pcmBuffer != null) {
+            pcmBuffer.writeBytes(pcmData);
+        }
+    }
+
+    /**
+     * 写入一个 Opus 包（不含长度头，发送时由 BinaryAudioFrame 写入）
+     */
+    public void publish(byte[] opusPacket) {
+        enqueue(opusPacket);
+        dispatcher.drain();
+    }
+
+    /**
+     * 一次写入多个 Opus 包（同一个 PCM 分块编码出的帧），只通知分发器一次，便于打包发送
+     */
+    public void publishAll(List<byte[]> opusPackets) {
+        if (opusPackets.isEmpty()) {
+            return;
+        }
+        for (byte[] opusPacket : opusPackets) {
+            enqueue(opusPacket);
+        }
+        dispatcher.drain();
+    }
+
+    private void enqueue(byte[] opusPacket) {
+        if (opusBuffer != null) {
+            // 保存的 OPUS 文件沿用 [2字节小端长度][帧数据] 格式
+            opusBuffer.write(opusPacket.length & 0xFF);
+            opusBuffer.write((opusPacket.length >> 8) & 0xFF);
+            opusBuffer.writeBytes(opusPacket);
+        }
+        frames.offer(opusPacket);
+    }
+
+    /**
+     * 分段正常结束
+     */
+    public void complete() {
+        frames.offer(END_OF_SEGMENT);
+        dispatcher.drain();
+    }
+
+    /**
+     * 分段失败结束
+     */
+    public void fail(String errorMessage) {
+        this.success = false;
+        this.errorMessage = errorMessage;
+        frames.offer(END_OF_SEGMENT);
+        dispatcher.drain();
+    }
+
+    byte[] pollFrame() {
+        return frames.poll();
+    }
+
+    byte[] getPcmData() {
+        return pcmBuffer == null ? null : pcmBuffer.toByteArray();
+    }
+
+    byte[] getOpusData() {
+        return opusBuffer == null ? null : opusBuffer.toByteArray();
+    }
+}
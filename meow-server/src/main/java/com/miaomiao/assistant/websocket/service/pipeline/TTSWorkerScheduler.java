@@ -0,0 +1,380 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 全局 TTS 任务调度器
+ * <p>
+ * 所有会话的 TTS 调用共享同一组工作线程，替代每轮对话各自创建线程池的做法：
+ * 1. 按 providerName:model 限制全局并发，超出的任务排队；上限取 tts.scheduler.max-concurrency-per-model
+ * 与 {@link AdaptiveConcurrencyLimiter} 当前自适应上限的较小值，避免工作线程在限流器里排队
+ * 2. 会话之间按权重公平排队（Start-time Fair Queuing，虚拟时间按文本长度/权重推进）
+ * 3. 会话的队首句子（当前正等待播放的句子）优先于其他会话的后续句子
+ * 4. 单个会话的并发数仍受 tts.concurrent.max-concurrency 限制
+ * 5. 记录排队等待时间等指标
+ * <p>
+ * 工作线程由 {@link BlockingTaskExecutor} 创建：execution.mode=virtual 时每个任务一个虚拟线程，并发仍由本调度器限制。
+ */
+@Slf4j
+@Component
+public class TTSWorkerScheduler {
+
+    /**
+     * 同一 providerName:model 的全局最大并发数（硬上限）
+     */
+    private final int maxConcurrencyPerModel;
+
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final ExecutorService workerPool;
+
+    private final Map<String, ModelLane> lanes = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TTSWorkerScheduler(
+            @Value("${tts.scheduler.max-concurrency-per-model:16}") int maxConcurrencyPerModel,
+            @Value("${tts.scheduler.worker-threads:64}") int workerThreads,
+            BlockingTaskExecutor blockingTaskExecutor,
+            AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        // 任务只会在拿到并发许可后才提交到线程池，因此线程池本身不需要排队上限
+        this(maxConcurrencyPerModel,
+                blockingTaskExecutor.newWorkerPool("TTS-Worker-", Math.max(1, workerThreads)),
+                concurrencyLimiter);
+        log.info("TTS 全局调度器初始化: maxConcurrencyPerModel={}, workerThreads={}, mode={}",
+                this.maxConcurrencyPerModel, Math.max(1, workerThreads), blockingTaskExecutor.getMode());
+    }
+
+    TTSWorkerScheduler(int maxConcurrencyPerModel, ExecutorService workerPool,
+                       AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.maxConcurrencyPerModel = Math.max(1, maxConcurrencyPerModel);
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.workerPool = workerPool;
+    }
+
+    /**
+     * 提交 TTS 任务
+     *
+     * @param sessionId          会话ID（公平排队的单位）
+     * @param providerModelKey   providerName:model
+     * @param headOfLine         是否为会话当前的队首句子
+     * @param cost               任务开销（一般为文本长度）
+     * @param weight             会话权重，越大分到的份额越多
+     * @param sessionConcurrency 单个会话的最大并发数
+     * @param task               实际执行的任务
+     * @return 任务句柄，可用于取消排队中的任务
+     */
+    public Ticket submit(String sessionId, String providerModelKey, boolean headOfLine,
+                         int cost, double weight, int sessionConcurrency, Runnable task) {
+        ModelLane lane = lanes.computeIfAbsent(providerModelKey, ModelLane::new);
+        Ticket ticket = new Ticket(lane, sessionId, headOfLine, task);
+        lane.enqueue(ticket, Math.max(1, cost), weight > 0 ? weight : 1.0, Math.max(1, sessionConcurrency));
+        return ticket;
+    }
+
+    /**
+     * 获取各 providerName:model 的调度指标快照
+     */
+    public Map<String, LaneMetrics> getMetrics() {
+        Map<String, LaneMetrics> metrics = new TreeMap<>();
+        lanes.forEach((key, lane) -> metrics.put(key, lane.snapshot()));
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * 调度指标快照
+     *
+     * @param limit              当前全局并发上限（静态上限与自适应上限的较小值）
+     * @param running            正在执行的任务数
+     * @param queued             排队中的任务数
+     * @param completed          已调度执行的任务数
+     * @param avgQueueWaitMs     平均排队等待（毫秒）
+     * @param maxQueueWaitMs     最大排队等待（毫秒）
+     * @param avgHeadOfLineWaitMs 队首句子的平均排队等待（毫秒）
+     */
+    public record LaneMetrics(int limit, int running, int queued, long completed,
+                              double avgQueueWaitMs, double maxQueueWaitMs, double avgHeadOfLineWaitMs) {
+    }
+
+    /**
+     * 任务句柄
+     */
+    public static final class Ticket {
+        private final ModelLane lane;
+        @Getter
+        private final String sessionId;
+        private final Runnable task;
+        private final long enqueueNanos = System.nanoTime();
+        private final long order;
+        private double startTag;
+        private boolean headOfLine;
+        private volatile boolean cancelled = false;
+
+        private Ticket(ModelLane lane, String sessionId, boolean headOfLine, Runnable task) {
+            this.lane = lane;
+            this.sessionId = sessionId;
+            this.headOfLine = headOfLine;
+            this.task = task;
+            this.order = lane.orderCounter.getAndIncrement();
+        }
+
+        /**
+         * 取消任务（仅对尚未开始执行的任务有效）
+         *
+         * @return 是否在排队阶段被移除
+         */
+        public boolean cancel() {
+            cancelled = true;
+            return lane.remove(this);
+        }
+
+        /**
+         * 提升为队首句子（会话播放进度推进到该句子时调用）
+         */
+        public void promoteToHeadOfLine() {
+            lane.promote(this);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 单个会话在某个 providerName:model 上的排队状态
+     */
+    private static final class SessionQueue {
+        private final String sessionId;
+        private final ArrayDeque<Ticket> tickets = new ArrayDeque<>();
+        private double lastFinishTag = 0;
+        private int running = 0;
+        private int concurrencyLimit = 1;
+        private boolean inReadyQueue = false;
+
+        private SessionQueue(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        /**
+         * 会话内的下一个任务：队首句子优先，其次按提交顺序
+         */
+        private Ticket peek() {
+            for (Ticket ticket : tickets) {
+                if (ticket.headOfLine) {
+                    return ticket;
+                }
+            }
+            return tickets.peekFirst();
+        }
+    }
+
+    /**
+     * 单个 providerName:model 的调度通道
+     */
+    private final class ModelLane {
+
+        private final String key;
+        private final AtomicLong orderCounter = new AtomicLong(0);
+        private final Map<String, SessionQueue> sessions = new HashMap<>();
+
+        /**
+         * 有待执行任务且未达到会话并发上限的会话，按各自下一个任务排序
+         */
+        private final PriorityQueue<SessionQueue> readyQueue = new PriorityQueue<>(
+                Comparator.comparing((SessionQueue q) -> !q.peek().headOfLine)
+                        .thenComparingDouble(q -> q.peek().startTag)
+                        .thenComparingLong(q -> q.peek().order));
+
+        private double virtualTime = 0;
+        private int running = 0;
+        private int queued = 0;
+
+        // 指标
+        private long completed = 0;
+        private long totalWaitNanos = 0;
+        private long maxWaitNanos = 0;
+        private long headOfLineCount = 0;
+        private long headOfLineWaitNanos = 0;
+
+        private ModelLane(String key) {
+            this.key = key;
+        }
+
+        private void enqueue(Ticket ticket, int cost, double weight, int sessionConcurrency) {
+            synchronized (this) {
+                SessionQueue queue = sessions.computeIfAbsent(ticket.sessionId, SessionQueue::new);
+                queue.concurrencyLimit = sessionConcurrency;
+                // 开始标签取虚拟时间与该会话上一个任务结束标签的较大值
+                ticket.startTag = Math.max(virtualTime, queue.lastFinishTag);
+                queue.lastFinishTag = ticket.startTag + cost / weight;
+
+                readyQueue.remove(queue);
+                queue.inReadyQueue = false;
+                queue.tickets.addLast(ticket);
+                queued++;
+                offerReady(queue);
+            }
+            dispatch();
+        }
+
+        private boolean remove(Ticket ticket) {
+            synchronized (this) {
+                SessionQueue queue = sessions.get(ticket.sessionId);
+                if (queue == null) {
+                    return false;
+                }
+                boolean wasReady = queue.inReadyQueue;
+                if (wasReady) {
+                    readyQueue.remove(queue);
+                    queue.inReadyQueue = false;
+                }
+                boolean removed = queue.tickets.remove(ticket);
+                if (removed) {
+                    queued--;
+                }
+                offerReady(queue);
+                releaseIfIdle(queue);
+                return removed;
+            }
+        }
+
+        private void promote(Ticket ticket) {
+            synchronized (this) {
+                SessionQueue queue = sessions.get(ticket.sessionId);
+                if (ticket.headOfLine || queue == null || !queue.tickets.contains(ticket)) {
+                    return;
+                }
+                if (queue.inReadyQueue) {
+                    readyQueue.remove(queue);
+                    queue.inReadyQueue = false;
+                }
+                ticket.headOfLine = true;
+                offerReady(queue);
+            }
+            dispatch();
+        }
+
+        private void dispatch() {
+            while (true) {
+                Ticket ticket;
+                synchronized (this) {
+                    if (running >= limit() || readyQueue.isEmpty()) {
+                        return;
+                    }
+                    SessionQueue queue = readyQueue.poll();
+                    queue.inReadyQueue = false;
+                    ticket = queue.peek();
+                    queue.tickets.remove(ticket);
+                    queued--;
+                    queue.running++;
+                    running++;
+                    virtualTime = Math.max(virtualTime, ticket.startTag);
+                    recordWait(ticket);
+                    offerReady(queue);
+                }
+                try {
+                    workerPool.execute(() -> run(ticket));
+                } catch (Exception e) {
+                    log.error("TTS 任务提交到工作线程失败: key={}", key, e);
+                    onFinished(ticket);
+                }
+            }
+        }
+
+        private void run(Ticket ticket) {
+            try {
+                if (!ticket.cancelled) {
+                    ticket.task.run();
+                }
+            } catch (Exception e) {
+                log.error("TTS 任务执行异常: key={}, session={}", key, ticket.sessionId, e);
+            } finally {
+                onFinished(ticket);
+            }
+        }
+
+        private void onFinished(Ticket ticket) {
+            synchronized (this) {
+                running--;
+                SessionQueue queue = sessions.get(ticket.sessionId);
+                if (queue != null) {
+                    queue.running--;
+                    if (queue.inReadyQueue) {
+                        readyQueue.remove(queue);
+                        queue.inReadyQueue = false;
+                    }
+                    offerReady(queue);
+                    releaseIfIdle(queue);
+                }
+            }
+            dispatch();
+        }
+
+        private void offerReady(SessionQueue queue) {
+            if (!queue.inReadyQueue && !queue.tickets.isEmpty() && queue.running < queue.concurrencyLimit) {
+                readyQueue.offer(queue);
+                queue.inReadyQueue = true;
+            }
+        }
+
+        /**
+         * 会话没有排队和执行中的任务时移除其状态，避免会话结束后残留
+         */
+        private void releaseIfIdle(SessionQueue queue) {
+            if (queue.tickets.isEmpty() && queue.running == 0) {
+                sessions.remove(queue.sessionId);
+            }
+        }
+
+        private void recordWait(Ticket ticket) {
+            long waitNanos = System.nanoTime() - ticket.enqueueNanos;
+            completed++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+            if (ticket.headOfLine) {
+                headOfLineCount++;
+                headOfLineWaitNanos += waitNanos;
+            }
+        }
+
+        /**
+         * 当前全局并发上限：静态上限与自适应上限的较小值
+         */
+        private int limit() {
+            return Math.min(maxConcurrencyPerModel, concurrencyLimiter.getLimit(key));
+        }
+
+        private synchronized LaneMetrics snapshot() {
+            return new LaneMetrics(
+                    limit(),
+                    running,
+                    queued,
+                    completed,
+                    completed == 0 ? 0 : totalWaitNanos / 1_000_000.0 / completed,
+                    maxWaitNanos / 1_000_000.0,
+                    headOfLineCount == 0 ? 0 : headOfLineWaitNanos / 1_000_000.0 / headOfLineCount
+            );
+        }
+    }
+}
@@ -152,6 +152,12 @@ public class TextAggregator {
     private boolean finalized = false;
     private boolean needsLookahead = false;  // 是否需要等待 lookahead
 
+    /**
+     * 缓冲区中第一个首句标点的位置（-1 表示没有），随追加的字符增量维护，
+     * HYBRID 首句检测不再每次从头扫描缓冲区
+     */
+    private int firstPunctuationIndex = -1;
+
     /**
      * 构造函数
      *
@@ -172,11 +178,13 @@ public class TextAggregator {
 
     /**
      * 添加文本
+     * <p>
+     * 只扫描新追加的字符，非标点字符的处理开销是常数；只有在标点（或 lookahead 字符）处才会检测句子边界。
      *
      * @param text 新增文本
      * @return 聚合结果列表（可能为空）
      */
-    public List<AggregateResult> append(String text) {
+    public List<AggregateResult> append(CharSequence text) {
         if (finalized) {
             log.warn("聚合器已结束，无法添加更多文本");
             return List.of();
@@ -186,18 +194,25 @@ public class TextAggregator {
             return List.of();
         }
 
-        List<AggregateResult> results = new ArrayList<>();
+        List<AggregateResult> results = null;
 
         // 逐字符处理（实现 lookahead 机制）
-        for (char ch : text.toCharArray()) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char ch = text.charAt(i);
             buffer.append(ch);
+            if (firstPunctuationIndex < 0 && FIRST_SENTENCE_PUNCTUATIONS.contains(ch)) {
+                firstPunctuationIndex = buffer.length() - 1;
+            }
             AggregateResult result = checkSentenceWithLookahead(ch);
             if (result != null) {
+                if (results == null) {
+                    results = new ArrayList<>(2);
+                }
                 results.add(result);
             }
         }
 
-        return results;
+        return results == null ? List.of() : results;
     }
 
     /**
@@ -211,34 +226,26 @@ public class TextAggregator {
      * @return 聚合结果（如果检测到完整句子）
      */
     private AggregateResult checkSentenceWithLookahead(char ch) {
-        String bufferText = buffer.toString();
-
         // 如果需要 lookahead，检查是否收到了非空白字符
         if (needsLookahead) {
             if (!Character.isWhitespace(ch)) {
                 // 收到非空白字符，现在调用 NLP 检测
                 needsLookahead = false;
-                return checkAndExtractSentence(bufferText);
+                return checkAndExtractSentence();
             }
             // 还是空白字符，继续等待
             return null;
         }
 
-        // 检查是否刚添加了句子结束标点
-        if (bufferText.length() > 0) {
-            char lastChar = bufferText.charAt(bufferText.length() - 1);
-
-            // 如果是拉丁语系标点（需要消歧），启用 lookahead
-            if (sentenceDetector != null && sentenceDetector.isLatinPunctuation(lastChar)) {
-                needsLookahead = true;
-                return null;
-            }
+        // 如果是拉丁语系标点（需要消歧），启用 lookahead
+        if (sentenceDetector != null && sentenceDetector.isLatinPunctuation(ch)) {
+            needsLookahead = true;
+            return null;
+        }
 
-            // 非拉丁语系标点（如中文句号），直接检测
-            if (SENTENCE_ENDING_PUNCTUATION.contains(lastChar) &&
-                    !sentenceDetector.isLatinPunctuation(lastChar)) {
-                return checkAndExtractSentence(bufferText);
-            }
+        // 非拉丁语系标点（如中文句号），或未启用 NLP 检测时的句子结束标点，直接检测
+        if (SENTENCE_ENDING_PUNCTUATION.contains(ch)) {
+            return checkAndExtractSentence();
         }
 
         return null;
@@ -247,45 +254,39 @@ public class TextAggregator {
     /**
      * 检测并提取完整句子
      */
-    private AggregateResult checkAndExtractSentence(String bufferText) {
+    private AggregateResult checkAndExtractSentence() {
         switch (config.strategy) {
             case TOKEN:
-                return checkTokenStrategy(bufferText);
+                return checkTokenStrategy();
 
             case HYBRID:
                 if (!firstSentenceSent) {
-                    return checkFirstSentenceStrategy(bufferText);
+                    return checkFirstSentenceStrategy();
                 }
-                return checkSentenceStrategy(bufferText);
+                return checkSentenceStrategy();
 
             case SENTENCE:
             default:
-                return checkSentenceStrategy(bufferText);
+                return checkSentenceStrategy();
         }
     }
 
     /**
      * 句子策略：使用 NLP 检测句子边界
      */
-    private AggregateResult checkSentenceStrategy(String bufferText) {
+    private AggregateResult checkSentenceStrategy() {
         int endPos = 0;
 
         if (sentenceDetector != null && config.useNlpDetection) {
-            // 使用 OpenNLP 检测
-            endPos = sentenceDetector.matchEndOfSentence(bufferText);
+            // 使用 OpenNLP 检测（直接传入缓冲区，不复制）
+            endPos = sentenceDetector.matchEndOfSentence(buffer);
         } else {
             // 降级到简单标点检测
-            endPos = findLastSentenceEnd(bufferText);
+            endPos = findLastSentenceEnd();
         }
 
         if (endPos > 0) {
-            String sentenceText = bufferText.substring(0, endPos).trim();
-            String remaining = bufferText.substring(endPos);
-
-            buffer.setLength(0);
-            buffer.append(remaining);
-
-            return new AggregateResult(sentenceText, AggregationType.SENTENCE, false);
+            return new AggregateResult(extract(endPos), AggregationType.SENTENCE, false);
         }
 
         return null;
@@ -294,47 +295,54 @@ public class TextAggregator {
     /**
      * 首句策略：使用更激进的标点
      */
-    private AggregateResult checkFirstSentenceStrategy(String bufferText) {
-        // 查找首句标点
-        for (int i = 0; i < bufferText.length(); i++) {
-            if (FIRST_SENTENCE_PUNCTUATIONS.contains(bufferText.charAt(i))) {
-                String sentenceText = bufferText.substring(0, i + 1).trim();
-                String remaining = bufferText.substring(i + 1);
-
-                buffer.setLength(0);
-                buffer.append(remaining);
-                firstSentenceSent = true;
-
-                return new AggregateResult(sentenceText, AggregationType.FIRST_SENTENCE, false);
-            }
+    private AggregateResult checkFirstSentenceStrategy() {
+        if (firstPunctuationIndex < 0) {
+            return null;
         }
-
-        return null;
+        String sentenceText = extract(firstPunctuationIndex + 1);
+        firstSentenceSent = true;
+        return new AggregateResult(sentenceText, AggregationType.FIRST_SENTENCE, false);
     }
 
     /**
      * Token 策略：按固定长度切分
      */
-    private AggregateResult checkTokenStrategy(String bufferText) {
+    private AggregateResult checkTokenStrategy() {
         if (buffer.length() >= config.maxTokenLength) {
-            String tokenText = bufferText.substring(0, config.maxTokenLength);
-            String remaining = bufferText.substring(config.maxTokenLength);
-
-            buffer.setLength(0);
-            buffer.append(remaining);
-
+            String tokenText = buffer.substring(0, config.maxTokenLength);
+            removePrefix(config.maxTokenLength);
             return new AggregateResult(tokenText, AggregationType.TOKEN, false);
         }
 
         return null;
     }
 
+    /**
+     * 取出缓冲区前 endPos 个字符（去除首尾空白），剩余部分保留在缓冲区
+     */
+    private String extract(int endPos) {
+        String text = buffer.substring(0, endPos).trim();
+        removePrefix(endPos);
+        return text;
+    }
+
+    private void removePrefix(int length) {
+        buffer.delete(0, length);
+        firstPunctuationIndex = -1;
+        for (int i = 0; i < buffer.length(); i++) {
+            if (FIRST_SENTENCE_PUNCTUATIONS.contains(buffer.charAt(i))) {
+                firstPunctuationIndex = i;
+                break;
+            }
+        }
+    }
+
     /**
      * 简单标点检测（降级方案）
      */
-    private int findLastSentenceEnd(String text) {
-        for (int i = text.length() - 1; i >= 0; i--) {
-            if (SENTENCE_ENDING_PUNCTUATION.contains(text.charAt(i))) {
+    private int findLastSentenceEnd() {
+        for (int i = buffer.length() - 1; i >= 0; i--) {
+            if (SENTENCE_ENDING_PUNCTUATION.contains(buffer.charAt(i))) {
                 return i + 1;
             }
         }
@@ -356,6 +364,7 @@ public class TextAggregator {
         String remaining = buffer.toString().trim();
         buffer.setLength(0);
         needsLookahead = false;
+        firstPunctuationIndex = -1;
 
         if (remaining.isEmpty()) {
             return null;
@@ -372,6 +381,7 @@ public class TextAggregator {
         firstSentenceSent = false;
         finalized = false;
         needsLookahead = false;
+        firstPunctuationIndex = -1;
     }
 
     /**
@@ -8,6 +8,9 @@ import java.util.List;
  * TTS 文本预处理管道
  * <p>
  * 按照处理器优先级顺序执行所有预处理器。
+ * <p>
+ * Markdown 过滤不在这里做：它需要跨句子的状态（如代码块），
+ * 由 {@link StreamingMarkdownStripper} 在聚合之前直接处理 token 流。
  */
 public class TextPreProcessorPipeline {
 
@@ -18,7 +21,6 @@ public class TextPreProcessorPipeline {
     private TextPreProcessorPipeline() {
         this.processors = new ArrayList<>();
         // 注册默认处理器
-        processors.add(new MarkdownFilterProcessor());
         processors.add(new LongTextSplitter());
         // 按优先级排序
         processors.sort(Comparator.comparingInt(TextPreProcessor::getOrder));
@@ -55,29 +57,4 @@ public class TextPreProcessorPipeline {
         }
         return texts;
     }
-
-    /**
-     * Markdown 过滤处理器（包装现有的 MarkdownTextFilter）
-     */
-    private static class MarkdownFilterProcessor implements TextPreProcessor {
-
-        private final MarkdownTextFilter filter = MarkdownTextFilter.getInstance();
-
-        @Override
-        public List<String> process(List<String> texts) {
-            List<String> result = new ArrayList<>();
-            for (String text : texts) {
-                String filtered = filter.filter(text);
-                if (filtered != null && !filtered.trim().isEmpty()) {
-                    result.add(filtered.trim());
-                }
-            }
-            return result;
-        }
-
-        @Override
-        public int getOrder() {
-            return 100; // 最先执行
-        }
-    }
 }
@@ -0,0 +1,106 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上游请求取消统计
+ * <p>
+ * 打断、会话关闭时，ASR 上传/识别、LLM 流、TTS 合成流在结束前被取消（断开 SSE / 释放提供商流），
+ * 这里按阶段统计发起的请求数和结束前被取消的请求数，另外统计尚未开始执行就从 TTS 调度队列移除的句子数。
+ */
+@Component
+public class UpstreamCancellationTracker {
+
+    /**
+     * 上游阶段
+     */
+    public enum Stage {
+        ASR,
+        LLM,
+        TTS
+    }
+
+    private final Map<Stage, StageCounter> counters = new EnumMap<>(Stage.class);
+
+    private final LongAdder ttsTasksDequeued = new LongAdder();
+
+    public UpstreamCancellationTracker() {
+        for (Stage stage : Stage.values()) {
+            counters.put(stage, new StageCounter());
+        }
+    }
+
+    /**
+     * 统计一个上游请求：订阅时计为发起，结束（完成或出错）前被下游取消时计为取消
+     */
+    public <T> Flux<T> track(Stage stage, Flux<T> upstream) {
+        StageCounter counter = counters.get(stage);
+        return Flux.defer(() -> {
+            counter.started.increment();
+            AtomicBoolean terminated = new AtomicBoolean(false);
+            return upstream
+                    .doOnTerminate(() -> terminated.set(true))
+                    .doOnCancel(() -> {
+                        if (terminated.compareAndSet(false, true)) {
+                            counter.cancelled.increment();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 记录打断时从 TTS 调度队列移除（未调用提供商）的句子数
+     */
+    public void recordTtsDequeued(int count) {
+        if (count > 0) {
+            ttsTasksDequeued.add(count);
+        }
+    }
+
+    /**
+     * 获取指标快照
+     */
+    public CancellationMetrics getMetrics() {
+        return new CancellationMetrics(counters.get(Stage.ASR).snapshot(), counters.get(Stage.LLM).snapshot(),
+                counters.get(Stage.TTS).snapshot(), ttsTasksDequeued.sum());
+    }
+
+    private static final class StageCounter {
+        private final LongAdder started = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+
+        private StageMetrics snapshot() {
+            long startedCount = started.sum();
+            long cancelledCount = cancelled.sum();
+            return new StageMetrics(startedCount, cancelledCount,
+                    startedCount == 0 ? 0 : (double) cancelledCount / startedCount);
+        }
+    }
+
+    /**
+     * 单个阶段的取消指标
+     *
+     * @param started    发起的请求数
+     * @param cancelled  结束前被取消的请求数
+     * @param cancelRate 取消比例 cancelled / started
+     */
+    public record StageMetrics(long started, long cancelled, double cancelRate) {
+    }
+
+    /**
+     * 上游请求取消指标快照
+     *
+     * @param asr              ASR 识别请求
+     * @param llm              LLM 流（含推测执行请求）
+     * @param tts              TTS 合成流
+     * @param ttsTasksDequeued 打断时尚未开始执行、从调度队列移除的 TTS 句子数
+     */
+    public record CancellationMetrics(StageMetrics asr, StageMetrics llm, StageMetrics tts, long ttsTasksDequeued) {
+    }
+}
@@ -0,0 +1,200 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.websocket.ConversationConfig;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 服务端语音活动检测（VAD）与断句
+ * <p>
+ * 基于能量 + 过零率的检测器，直接处理入站的 WAV（16 位 PCM）音频流：
+ * 1. 流的开头解析 WAV 头（跨音频块缓存），得到采样率和声道数；不是 16 位 PCM 的 WAV 时不做检测
+ * 2. 按 20ms 一帧计算 RMS 能量（dBFS）和过零率，能量不低于阈值且过零率不高于上限的帧算作语音帧
+ * （高过零率的低能量帧多是气流声、底噪）
+ * 3. 连续语音达到 minSpeechMs 判定为开始说话；开始说话后连续静音达到 silenceMs 判定为说完（断句）
+ * <p>
+ * 每段语音一个实例，只由该会话的 WebSocket 消息处理线程调用。
+ */
+public class VoiceActivityDetector {
+
+    private static final int FRAME_MS = 20;
+    private static final int MAX_HEADER_BYTES = 4096;
+
+    /**
+     * 检测参数
+     *
+     * @param energyThresholdDb   语音帧的最低能量（dBFS）
+     * @param maxZeroCrossingRate 语音帧的最高过零率（0-1）
+     * @param minSpeechMs         判定开始说话所需的连续语音时长
+     * @param silenceMs           判定说完所需的连续静音时长
+     */
+    public record Config(float energyThresholdDb, float maxZeroCrossingRate, int minSpeechMs, int silenceMs) {
+
+        public static Config from(ConversationConfig config) {
+            return new Config(config.getVadEnergyThresholdDb(), config.getVadMaxZeroCrossingRate(),
+                    config.getVadMinSpeechMs(), config.getVadSilenceMs());
+        }
+    }
+
+    private final Config config;
+
+    // WAV 头解析
+    private final ByteBuffer header = ByteBuffer.allocate(MAX_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean headerParsed = false;
+    @Getter
+    private boolean supported = true;
+    private int channels;
+    private int frameSamples;
+    private int bytesPerSampleFrame;
+
+    // 当前帧（跨音频块累积）
+    private double frameEnergy;
+    private int frameCrossings;
+    private int frameSampleCount;
+    private short previousSample;
+    private final byte[] pendingSampleBytes = new byte[16];
+    private int pendingSampleLength;
+
+    // 状态
+    private long processedFrames;
+    private int speechRunMs;
+    private int silenceRunMs;
+    @Getter
+    private boolean speechStarted = false;
+    @Getter
+    private boolean endpointed = false;
+    @Getter
+    private long speechStartMs = -1;
+    @Getter
+    private long endpointMs = -1;
+
+    public VoiceActivityDetector(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * 处理一块音频（从 data 当前位置读取到 limit，不修改 data）
+     *
+     * @return 该块中属于本段语音的字节数：断句发生在块内时只到断句所在帧为止，其余情况为整块长度
+     */
+    public int feed(ByteBuffer data) {
+        ByteBuffer chunk = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int length = chunk.remaining();
+        if (!supported || endpointed) {
+            return endpointed ? 0 : length;
+        }
+        if (!headerParsed) {
+            consumeHeader(chunk);
+            if (!headerParsed || !supported) {
+                return length;
+            }
+        }
+        while (chunk.hasRemaining() && !endpointed) {
+            // 凑齐一个采样帧（所有声道）后只取第一个声道
+            pendingSampleBytes[pendingSampleLength++] = chunk.get();
+            if (pendingSampleLength < bytesPerSampleFrame) {
+                continue;
+            }
+            pendingSampleLength = 0;
+            short sample = (short) ((pendingSampleBytes[0] & 0xFF) | (pendingSampleBytes[1] << 8));
+            addSample(sample);
+        }
+        return endpointed ? length - chunk.remaining() : length;
+    }
+
+    private void addSample(short sample) {
+        frameEnergy += (double) sample * sample;
+        if (frameSampleCount > 0 && (sample >= 0) != (previousSample >= 0)) {
+            frameCrossings++;
+        }
+        previousSample = sample;
+        if (++frameSampleCount == frameSamples) {
+            double rms = Math.sqrt(frameEnergy / frameSamples);
+            double db = 20 * Math.log10(Math.max(rms, 1) / 32768.0);
+            double zeroCrossingRate = (double) frameCrossings / (frameSamples - 1);
+            onFrame(db >= config.energyThresholdDb() && zeroCrossingRate <= config.maxZeroCrossingRate());
+            frameEnergy = 0;
+            frameCrossings = 0;
+            frameSampleCount = 0;
+        }
+    }
+
+    private void onFrame(boolean speech) {
+        processedFrames++;
+        long positionMs = processedFrames * FRAME_MS;
+        if (!speechStarted) {
+            speechRunMs = speech ? speechRunMs + FRAME_MS : 0;
+            if (speechRunMs >= config.minSpeechMs()) {
+                speechStarted = true;
+                speechStartMs = positionMs - speechRunMs;
+            }
+            return;
+        }
+        silenceRunMs = speech ? 0 : silenceRunMs + FRAME_MS;
+        if (silenceRunMs >= config.silenceMs()) {
+            endpointed = true;
+            endpointMs = positionMs;
+        }
+    }
+
+    /**
+     * 解析 WAV 头，直到 data 子块开始
+     */
+    private void consumeHeader(ByteBuffer chunk) {
+        while (chunk.hasRemaining() && header.hasRemaining()) {
+            header.put(chunk.get());
+            int dataOffset = findDataOffset();
+            if (dataOffset > 0) {
+                headerParsed = true;
+                return;
+            }
+            if (dataOffset < 0) {
+                supported = false;
+                return;
+            }
+        }
+        if (!header.hasRemaining()) {
+            supported = false;
+        }
+    }
+
+    /**
+     * @return data 子块数据的起始偏移；0 表示头还不完整；-1 表示不是可检测的 WAV
+     */
+    private int findDataOffset() {
+        int length = header.position();
+        if (length < 12) {
+            return 0;
+        }
+        if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) { // "RIFF" / "WAVE"
+            return -1;
+        }
+        int offset = 12;
+        while (offset + 8 <= length) {
+            int id = header.getInt(offset);
+            int size = header.getInt(offset + 4);
+            if (id == 0x61746164) { // "data"
+                return channels > 0 ? offset + 8 : -1;
+            }
+            if (id == 0x20746d66) { // "fmt "
+                if (offset + 8 + 16 > length) {
+                    return 0;
+                }
+                int audioFormat = header.getShort(offset + 8) & 0xFFFF;
+                int channelCount = header.getShort(offset + 10) & 0xFFFF;
+                int sampleRate = header.getInt(offset + 12);
+                int bitsPerSample = header.getShort(offset + 22) & 0xFFFF;
+                if (audioFormat != 1 || bitsPerSample != 16 || channelCount < 1 || channelCount > 8 || sampleRate <= 0) {
+                    return -1;
+                }
+                channels = channelCount;
+                bytesPerSampleFrame = 2 * channelCount;
+                frameSamples = Math.max(2, sampleRate * FRAME_MS / 1000);
+            }
+            offset += 8 + size + (size & 1);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,503 @@
+package com.miaomiao.assistant.websocket.session;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket 下行消息异步写出器
+ * <p>
+ * 生产者（LLM、TTS、ASR 线程）只把消息放进会话的下行队列，不再持有 session 锁阻塞在网络写上：
+ * 1. 每个会话两条通道：PRIORITY（音频、控制消息）优先于 TOKEN（打字效果 token）
+ * 2. 所有会话共享一组写线程，同一会话同一时刻只有一个线程在写，单次最多连续写 {@link #MAX_BATCH} 条后让出
+ * 3. 队列按字节数设高水位，超过后按策略处理慢客户端：丢弃过期 token（前端等下一个 checkpoint 重新同步）或直接断开
+ * 4. 记录排队时延、写耗时和队列深度等指标
+ * 5. 消息可以带对话轮次，打断时 {@link #flush} 移除旧轮次尚未写出的消息并把 flush 控制消息插到队首，之后迟到的旧轮次消息不再入队
+ */
+@Slf4j
+@Component
+public class OutboundWriter {
+
+    /**
+     * 单个会话一次最多连续写出的消息数，超过后重新排队，避免一个会话占住写线程
+     */
+    private static final int MAX_BATCH = 64;
+
+    /**
+     * 丢弃过期 token 后仍超过 高水位 × 该倍数 时断开连接（积压的都是音频和控制消息）
+     */
+    private static final int HARD_LIMIT_FACTOR = 4;
+
+    /**
+     * 下行通道
+     */
+    public enum Lane {
+        /**
+         * 音频、ASR 结果、错误等
+         */
+        PRIORITY,
+        /**
+         * 打字效果 token
+         */
+        TOKEN
+    }
+
+    /**
+     * 慢客户端处理策略
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * 丢弃 TOKEN 通道中可丢弃（非 checkpoint）的消息
+         */
+        DROP_STALE_TOKENS,
+        /**
+         * 直接断开连接
+         */
+        DISCONNECT
+    }
+
+    private final long highWaterMarkBytes;
+    private final SlowConsumerPolicy policy;
+    private final ExecutorService writerPool;
+    private final Map<String, SessionOutbound> outbounds = new ConcurrentHashMap<>();
+
+    // 指标
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder droppedMessages = new LongAdder();
+    private final LongAdder flushedMessages = new LongAdder();
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+    private final LongAdder totalQueueLatencyNanos = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private final AtomicLong maxQueueLatencyNanos = new AtomicLong(0);
+    private final AtomicLong maxSendNanos = new AtomicLong(0);
+
+    public OutboundWriter(
+            @Value("${websocket.outbound.writer-threads:8}") int writerThreads,
+            @Value("${websocket.outbound.high-water-mark-bytes:1048576}") long highWaterMarkBytes,
+            @Value("${websocket.outbound.slow-consumer-policy:drop-stale-tokens}") String slowConsumerPolicy) {
+        this.highWaterMarkBytes = Math.max(1, highWaterMarkBytes);
+        this.policy = SlowConsumerPolicy.valueOf(slowConsumerPolicy.trim().toUpperCase().replace('-', '_'));
+        int threads = Math.max(1, writerThreads);
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "WS-Writer-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.writerPool = executor;
+        log.info("WebSocket 下行写出器初始化: writerThreads={}, highWaterMark={}KB, policy={}",
+                threads, this.highWaterMarkBytes / 1024, policy);
+    }
+
+    /**
+     * 把消息放入会话的下行队列（不阻塞）
+     *
+     * @param session   WebSocket 会话
+     * @param message   待发送消息
+     * @param lane      通道
+     * @param droppable 慢客户端时是否允许丢弃（仅对 TOKEN 通道生效）
+     */
+    public void enqueue(WebSocketSession session, WebSocketMessage<?> message, Lane lane, boolean droppable) {
+        enqueue(session, message, lane, droppable, null);
+    }
+
+    /**
+     * 把消息放入会话的下行队列（不阻塞）
+     *
+     * @param onDone 消息写出、丢弃或会话关闭后回调（用于归还池化缓冲区），可为 null
+     */
+    public void enqueue(WebSocketSession session, WebSocketMessage<?> message, Lane lane,
+                        boolean droppable, Runnable onDone) {
+        enqueue(session, message, lane, droppable, -1, onDone);
+    }
+
+    /**
+     * 把属于某一轮对话的消息放入会话的下行队列（不阻塞）
+     *
+     * @param turn   对话轮次，打断时可被 {@link #flush} 移除；小于 0 表示不属于任何轮次
+     * @param onDone 消息写出、丢弃或会话关闭后回调（用于归还池化缓冲区），可为 null
+     */
+    public void enqueue(WebSocketSession session, WebSocketMessage<?> message, Lane lane,
+                        boolean droppable, int turn, Runnable onDone) {
+        Entry entry = new Entry(message, message.getPayloadLength(), lane == Lane.TOKEN && droppable, turn, onDone);
+        if (session == null || !session.isOpen()) {
+            log.warn("WebSocket会话已关闭，无法发送消息");
+            entry.done();
+            return;
+        }
+        SessionOutbound outbound = outbounds.computeIfAbsent(session.getId(), id -> new SessionOutbound(session));
+        if (outbound.offer(entry, lane)) {
+            execute(outbound);
+        }
+    }
+
+    /**
+     * 打断：移除轮次小于 currentTurn 的排队消息，把 flush 控制消息插到队首立即写出
+     * <p>
+     * 正在写出的那一条无法撤回，之后不会再有旧轮次的消息写出（包括 flush 之后才入队的）
+     *
+     * @param currentTurn  打断后的当前轮次
+     * @param flushMessage 通知客户端清空播放的控制消息
+     * @return 移除的消息数
+     */
+    public int flush(WebSocketSession session, int currentTurn, WebSocketMessage<?> flushMessage) {
+        Entry entry = new Entry(flushMessage, flushMessage.getPayloadLength(), false, -1, null);
+        if (session == null || !session.isOpen()) {
+            entry.done();
+            return 0;
+        }
+        SessionOutbound outbound = outbounds.computeIfAbsent(session.getId(), id -> new SessionOutbound(session));
+        int[] removed = new int[1];
+        if (outbound.flush(entry, currentTurn, removed)) {
+            execute(outbound);
+        }
+        flushedMessages.add(removed[0]);
+        return removed[0];
+    }
+
+    /**
+     * 会话关闭时移除其下行队列，丢弃尚未发送的消息
+     */
+    public void unregister(String sessionId) {
+        SessionOutbound outbound = outbounds.remove(sessionId);
+        if (outbound != null) {
+            outbound.close();
+        }
+    }
+
+    /**
+     * 获取写出器指标快照
+     */
+    public OutboundMetrics getMetrics() {
+        int sessions = 0;
+        long queuedMessages = 0;
+        long queuedBytes = 0;
+        long maxSessionQueuedBytes = 0;
+        for (SessionOutbound outbound : outbounds.values()) {
+            synchronized (outbound) {
+                sessions++;
+                queuedMessages += outbound.priority.size() + outbound.tokens.size();
+                queuedBytes += outbound.queuedBytes;
+                maxSessionQueuedBytes = Math.max(maxSessionQueuedBytes, outbound.queuedBytes);
+            }
+        }
+        long sent = sentMessages.sum();
+        return new OutboundMetrics(
+                policy.name(),
+                highWaterMarkBytes,
+                sessions,
+                queuedMessages,
+                queuedBytes,
+                maxSessionQueuedBytes,
+                sent,
+                sentBytes.sum(),
+                droppedMessages.sum(),
+                flushedMessages.sum(),
+                slowConsumerDisconnects.sum(),
+                sent == 0 ? 0 : totalQueueLatencyNanos.sum() / 1_000_000.0 / sent,
+                maxQueueLatencyNanos.get() / 1_000_000.0,
+                sent == 0 ? 0 : totalSendNanos.sum() / 1_000_000.0 / sent,
+                maxSendNanos.get() / 1_000_000.0
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerPool.shutdownNow();
+    }
+
+    /**
+     * 写出器指标快照
+     *
+     * @param policy                慢客户端策略
+     * @param highWaterMarkBytes    单会话队列高水位（字节）
+     * @param sessions              有下行队列的会话数
+     * @param queuedMessages        排队中的消息数
+     * @param queuedBytes           排队中的字节数
+     * @param maxSessionQueuedBytes 单会话最大排队字节数
+     * @param sentMessages          已发送消息数
+     * @param sentBytes             已发送字节数
+     * @param droppedMessages       因慢客户端丢弃的 token 消息数
+     * @param flushedMessages       打断时移除的旧轮次消息数
+     * @param slowConsumerDisconnects 因慢客户端断开的连接数
+     * @param avgQueueLatencyMs     平均排队时延（入队到开始写，毫秒）
+     * @param maxQueueLatencyMs     最大排队时延（毫秒）
+     * @param avgSendMs             平均单条写耗时（毫秒）
+     * @param maxSendMs             最大单条写耗时（毫秒）
+     */
+    public record OutboundMetrics(String policy, long highWaterMarkBytes, int sessions,
+                                  long queuedMessages, long queuedBytes, long maxSessionQueuedBytes,
+                                  long sentMessages, long sentBytes, long droppedMessages, long flushedMessages,
+                                  long slowConsumerDisconnects,
+                                  double avgQueueLatencyMs, double maxQueueLatencyMs,
+                                  double avgSendMs, double maxSendMs) {
+    }
+
+    private void execute(SessionOutbound outbound) {
+        try {
+            writerPool.execute(() -> drain(outbound));
+        } catch (Exception e) {
+            log.error("下行写任务提交失败: session={}", outbound.session.getId(), e);
+            outbound.close();
+        }
+    }
+
+    /**
+     * 写出会话队列中的消息，同一会话同一时刻只有一个线程执行
+     */
+    private void drain(SessionOutbound outbound) {
+        for (int i = 0; i < MAX_BATCH; i++) {
+            Entry entry = outbound.poll();
+            if (entry == null) {
+                return;
+            }
+            send(outbound, entry);
+        }
+        // 还有剩余消息，让出写线程后继续（drain 标记保持不变）
+        execute(outbound);
+    }
+
+    private void send(SessionOutbound outbound, Entry entry) {
+        WebSocketSession session = outbound.session;
+        if (!session.isOpen()) {
+            entry.done();
+            outbound.close();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            session.sendMessage(entry.message);
+        } catch (Exception e) {
+            log.warn("WebSocket下行写失败: session={}, error={}", session.getId(), e.getMessage());
+            outbound.close();
+            return;
+        } finally {
+            entry.done();
+        }
+        long end = System.nanoTime();
+        long queueLatency = start - entry.enqueueNanos;
+        long sendNanos = end - start;
+        sentMessages.increment();
+        sentBytes.add(entry.bytes);
+        totalQueueLatencyNanos.add(queueLatency);
+        totalSendNanos.add(sendNanos);
+        maxQueueLatencyNanos.accumulateAndGet(queueLatency, Math::max);
+        maxSendNanos.accumulateAndGet(sendNanos, Math::max);
+    }
+
+    private void disconnectSlowConsumer(SessionOutbound outbound) {
+        slowConsumerDisconnects.increment();
+        WebSocketSession session = outbound.session;
+        log.warn("WebSocket客户端消费过慢，断开连接: session={}", session.getId());
+        // 关闭握手可能阻塞在慢连接上，放到写线程执行
+        writerPool.execute(() -> {
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception e) {
+                log.debug("关闭慢客户端连接失败: session={}", session.getId(), e);
+            }
+        });
+    }
+
+    /**
+     * 待发送消息
+     */
+    private static final class Entry {
+        private final WebSocketMessage<?> message;
+        private final int bytes;
+        private final boolean droppable;
+        private final int turn;
+        private final Runnable onDone;
+        private final long enqueueNanos = System.nanoTime();
+
+        private Entry(WebSocketMessage<?> message, int bytes, boolean droppable, int turn, Runnable onDone) {
+            this.message = message;
+            this.bytes = bytes;
+            this.droppable = droppable;
+            this.turn = turn;
+            this.onDone = onDone;
+        }
+
+        private void done() {
+            if (onDone != null) {
+                try {
+                    onDone.run();
+                } catch (Exception e) {
+                    log.warn("下行消息回调异常", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 单个会话的下行队列（队列操作在对象锁内完成，网络写在锁外）
+     */
+    private final class SessionOutbound {
+        private final WebSocketSession session;
+        private final ArrayDeque<Entry> priority = new ArrayDeque<>();
+        private final ArrayDeque<Entry> tokens = new ArrayDeque<>();
+        private long queuedBytes = 0;
+        /**
+         * 最近一次 flush 的轮次，之后入队的更早轮次消息直接丢弃（检查轮次与入队之间发生打断的情况）
+         */
+        private int flushedTurn = -1;
+        private boolean draining = false;
+        private boolean closed = false;
+
+        private SessionOutbound(WebSocketSession session) {
+            this.session = session;
+        }
+
+        /**
+         * 入队并检查高水位
+         *
+         * @return 是否需要提交写任务
+         */
+        private boolean offer(Entry entry, Lane lane) {
+            boolean disconnect = false;
+            boolean schedule = false;
+            synchronized (this) {
+                if (closed) {
+                    entry.done();
+                    return false;
+                }
+                if (entry.turn >= 0 && entry.turn < flushedTurn) {
+                    flushedMessages.increment();
+                    entry.done();
+                    return false;
+                }
+                (lane == Lane.PRIORITY ? priority : tokens).addLast(entry);
+                queuedBytes += entry.bytes;
+
+                if (queuedBytes > highWaterMarkBytes) {
+                    if (policy == SlowConsumerPolicy.DROP_STALE_TOKENS) {
+                        dropStaleTokens();
+                    }
+                    disconnect = policy == SlowConsumerPolicy.DISCONNECT
+                            || queuedBytes > highWaterMarkBytes * HARD_LIMIT_FACTOR;
+                }
+                if (disconnect) {
+                    clear();
+                    closed = true;
+                } else if (!draining) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+            if (disconnect) {
+                disconnectSlowConsumer(this);
+            }
+            return schedule;
+        }
+
+        private void dropStaleTokens() {
+            int dropped = 0;
+            Iterator<Entry> iterator = tokens.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.droppable) {
+                    iterator.remove();
+                    queuedBytes -= entry.bytes;
+                    entry.done();
+                    dropped++;
+                }
+            }
+            if (dropped > 0) {
+                droppedMessages.add(dropped);
+                log.debug("WebSocket下行队列超过高水位，丢弃过期token: session={}, dropped={}",
+                        session.getId(), dropped);
+            }
+        }
+
+        /**
+         * 移除旧轮次的消息并把 flush 消息插到队首
+         *
+         * @param removed 输出：移除的消息数
+         * @return 是否需要提交写任务
+         */
+        private boolean flush(Entry flushEntry, int currentTurn, int[] removed) {
+            synchronized (this) {
+                if (closed) {
+                    flushEntry.done();
+                    return false;
+                }
+                flushedTurn = Math.max(flushedTurn, currentTurn);
+                removed[0] = removeStale(priority, currentTurn) + removeStale(tokens, currentTurn);
+                priority.addFirst(flushEntry);
+                queuedBytes += flushEntry.bytes;
+                if (draining) {
+                    return false;
+                }
+                draining = true;
+                return true;
+            }
+        }
+
+        private int removeStale(ArrayDeque<Entry> queue, int currentTurn) {
+            int removed = 0;
+            Iterator<Entry> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.turn >= 0 && entry.turn < currentTurn) {
+                    iterator.remove();
+                    queuedBytes -= entry.bytes;
+                    entry.done();
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        /**
+         * 取下一条消息：PRIORITY 优先；队列空时清除 drain 标记
+         */
+        private synchronized Entry poll() {
+            if (closed) {
+                draining = false;
+                return null;
+            }
+            Entry entry = priority.pollFirst();
+            if (entry == null) {
+                entry = tokens.pollFirst();
+            }
+            if (entry == null) {
+                draining = false;
+                return null;
+            }
+            queuedBytes -= entry.bytes;
+            return entry;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            clear();
+        }
+
+        private void clear() {
+            priority.forEach(Entry::done);
+            tokens.forEach(Entry::done);
+            priority.clear();
+            tokens.clear();
+            queuedBytes = 0;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.miaomiao.assistant.websocket.session;
 
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -9,8 +10,6 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -81,21 +80,16 @@ public class PerformanceMetrics {
     private volatile boolean audioSaveEnabled = true;
 
     /**
-     * 异步文件保存线程池（单线程，保证顺序）
+     * 异步文件保存（串行执行保证顺序，共享阻塞调用执行器，不为每个会话创建线程）
      */
-    private final ExecutorService fileSaveExecutor;
+    private final BlockingTaskExecutor.SerialExecutor fileSaveExecutor;
 
-    public PerformanceMetrics(String sessionId) {
+    public PerformanceMetrics(String sessionId, BlockingTaskExecutor.SerialExecutor fileSaveExecutor) {
         this.sessionId = sessionId;
         // 创建会话特定的输出目录
         String timestamp = LocalDateTime.now().format(DATE_FORMATTER);
         this.sessionOutputDir = OUTPUT_DIR + File.separator + sessionId + "_" + timestamp;
-        // 创建单线程线程池用于异步保存文件
-        this.fileSaveExecutor = Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, "TTS-FileSave-" + sessionId);
-            t.setDaemon(true);
-            return t;
-        });
+        this.fileSaveExecutor = fileSaveExecutor;
         ensureOutputDirectoryExists();
     }
 
@@ -255,17 +249,14 @@ public class PerformanceMetrics {
     }
 
     /**
-     * 关闭线程池，等待所有文件保存完成
+     * 等待所有文件保存完成
      */
     public void shutdown() {
-        fileSaveExecutor.shutdown();
         try {
-            if (!fileSaveExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
-                fileSaveExecutor.shutdownNow();
-                log.warn("文件保存线程池关闭超时，强制终止");
+            if (!fileSaveExecutor.awaitIdle(10, TimeUnit.SECONDS)) {
+                log.warn("等待文件保存超时，剩余任务继续在后台执行");
             }
         } catch (InterruptedException e) {
-            fileSaveExecutor.shutdownNow();
             Thread.currentThread().interrupt();
         }
     }
@@ -1,5 +1,7 @@
 package com.miaomiao.assistant.websocket.session;
 
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
+import com.miaomiao.assistant.websocket.service.pipeline.TTSPacingScheduler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
@@ -18,11 +20,24 @@ public class SessionManager {
 
     private final Map<String, SessionState> sessionStates = new ConcurrentHashMap<>();
 
+    private final OutboundWriter outboundWriter;
+
+    private final TTSPacingScheduler ttsPacingScheduler;
+
+    private final BlockingTaskExecutor blockingTaskExecutor;
+
+    public SessionManager(OutboundWriter outboundWriter, TTSPacingScheduler ttsPacingScheduler,
+                          BlockingTaskExecutor blockingTaskExecutor) {
+        this.outboundWriter = outboundWriter;
+        this.ttsPacingScheduler = ttsPacingScheduler;
+        this.blockingTaskExecutor = blockingTaskExecutor;
+    }
+
     /**
      * 创建新会话
      */
     public SessionState createSession(WebSocketSession session) {
-        SessionState state = new SessionState(session);
+        SessionState state = new SessionState(session, blockingTaskExecutor.newSerialExecutor());
         sessionStates.put(session.getId(), state);
         return state;
     }
@@ -47,6 +62,8 @@ public class SessionManager {
      */
     public void removeSession(String sessionId) {
         SessionState state = sessionStates.remove(sessionId);
+        ttsPacingScheduler.unregister(sessionId);
+        outboundWriter.unregister(sessionId);
         if (state != null) {
             state.cleanup();
             log.debug("移除会话状态: {}", sessionId);
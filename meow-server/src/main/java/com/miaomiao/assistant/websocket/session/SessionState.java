@@ -1,21 +1,24 @@
 package com.miaomiao.assistant.websocket.session;
 
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
 import com.miaomiao.assistant.model.llm.AppChatMessage;
+import com.miaomiao.assistant.websocket.service.pipeline.OpusUplinkDecoder;
+import com.miaomiao.assistant.websocket.service.pipeline.VoiceActivityDetector;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.socket.WebSocketSession;
 import reactor.core.Disposable;
+import reactor.core.Disposables;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * WebSocket会话状态管理
- * 管理单个WebSocket连接的状态，包括音频缓冲、对话历史等
+ * 管理单个WebSocket连接的状态，包括语音输入、对话历史等
  */
 @Slf4j
 public class SessionState {
@@ -23,7 +26,15 @@ public class SessionState {
     @Getter
     private final WebSocketSession session;
 
-    private final ByteArrayOutputStream audioBuffer = new ByteArrayOutputStream();
+    /**
+     * 当前语音输入（每段语音一个，音频块到达即推送给 ASR）
+     */
+    private StreamingAudioInput audioInput;
+
+    /**
+     * 服务端 VAD 已提前结束当前语音，丢弃客户端随后发来的音频直到 last=true
+     */
+    private boolean audioInputEndpointed = false;
 
     private final List<AppChatMessage> conversationHistory = new CopyOnWriteArrayList<>();
 
@@ -32,38 +43,100 @@ public class SessionState {
      */
     private final AtomicReference<Disposable> activeDisposable = new AtomicReference<>();
 
+    /**
+     * 进行中的 ASR 识别、TTS 合成订阅，中止时一并取消（取消向上传递到提供商请求）
+     */
+    private final AtomicReference<Disposable.Composite> upstreamRequests =
+            new AtomicReference<>(Disposables.composite());
+
     @Getter
     private volatile boolean aborted = false;
 
+    /**
+     * 当前对话轮次：每轮开始和中止时递增，LLM token、TTS 音频带上所属轮次，轮次过期的在各环节直接丢弃
+     */
+    private final AtomicInteger turn = new AtomicInteger(0);
+
     /**
      * 性能指标跟踪
      */
     @Getter
     private final PerformanceMetrics performanceMetrics;
 
-    public SessionState(WebSocketSession session) {
+    /**
+     * @param fileSaveExecutor 性能数据/音频文件的串行写入执行器
+     */
+    public SessionState(WebSocketSession session, BlockingTaskExecutor.SerialExecutor fileSaveExecutor) {
         this.session = session;
-        this.performanceMetrics = new PerformanceMetrics(session.getId());
+        this.performanceMetrics = new PerformanceMetrics(session.getId(), fileSaveExecutor);
+    }
+
+    /**
+     * 当前语音输入，没有进行中的语音时为 null
+     */
+    public synchronized StreamingAudioInput getAudioInput() {
+        return audioInput;
+    }
+
+    /**
+     * 开始新的一段语音输入（取消尚未结束的上一段）
+     *
+     * @param vad     服务端 VAD，未启用时为 null
+     * @param decoder 上行 Opus 解码器，客户端发送 WAV 时为 null
+     */
+    public synchronized StreamingAudioInput startAudioInput(VoiceActivityDetector vad, OpusUplinkDecoder decoder) {
+        if (audioInput != null) {
+            audioInput.cancel();
+        }
+        audioInputEndpointed = false;
+        audioInput = new StreamingAudioInput(vad, decoder);
+        return audioInput;
     }
 
     /**
-     * 累积音频数据到缓冲区
+     * 服务端 VAD 判定说完，提前结束当前语音输入
+     *
+     * @param clientFinished 客户端是否也已发送 last=true
      */
-    public synchronized void accumulateAudio(byte[] data) {
-        try {
-            audioBuffer.write(data);
-        } catch (IOException e) {
-            throw new RuntimeException("累积音频失败", e);
+    public synchronized void endpointAudioInput(boolean clientFinished) {
+        finishAudioInput();
+        audioInputEndpointed = !clientFinished;
+    }
+
+    /**
+     * 当前语音已被服务端 VAD 提前结束时，处理客户端随后发来的音频块
+     *
+     * @return 是否应丢弃该音频块
+     */
+    public synchronized boolean skipEndpointedAudio(boolean last) {
+        if (!audioInputEndpointed) {
+            return false;
+        }
+        if (last) {
+            audioInputEndpointed = false;
         }
+        return true;
     }
 
     /**
-     * 获取并清空音频缓冲区
+     * 当前语音输入结束
      */
-    public synchronized byte[] getAndClearAudioBuffer() {
-        byte[] data = audioBuffer.toByteArray();
-        audioBuffer.reset();
-        return data;
+    public synchronized void finishAudioInput() {
+        if (audioInput != null) {
+            audioInput.complete();
+            audioInput = null;
+        }
+    }
+
+    /**
+     * 取消当前语音输入
+     */
+    public synchronized void cancelAudioInput() {
+        audioInputEndpointed = false;
+        if (audioInput != null) {
+            audioInput.cancel();
+            audioInput = null;
+        }
     }
 
     /**
@@ -96,15 +169,59 @@ public class SessionState {
     }
 
     /**
-     * 中止当前操作，取消活跃的流订阅
+     * 登记进行中的 ASR 识别或 TTS 合成订阅，中止时取消
+     */
+    public void addUpstreamRequest(Disposable request) {
+        upstreamRequests.get().add(request);
+    }
+
+    /**
+     * 订阅正常结束后移除登记
+     */
+    public void removeUpstreamRequest(Disposable request) {
+        upstreamRequests.get().remove(request);
+    }
+
+    /**
+     * 开始新一轮对话，之前轮次的 LLM token 和 TTS 音频不再发送
+     *
+     * @return 新的轮次
+     */
+    public int beginTurn() {
+        return turn.incrementAndGet();
+    }
+
+    /**
+     * 当前对话轮次
+     */
+    public int getTurn() {
+        return turn.get();
+    }
+
+    /**
+     * 是否为当前轮次（轮次过期的帧直接丢弃）
+     */
+    public boolean isCurrentTurn(int candidate) {
+        return turn.get() == candidate;
+    }
+
+    /**
+     * 中止当前操作：当前轮次立即过期，取消活跃的流订阅和进行中的 ASR/TTS 请求
      */
     public void abort() {
         this.aborted = true;
+        turn.incrementAndGet();
         Disposable disposable = activeDisposable.getAndSet(null);
         if (disposable != null && !disposable.isDisposed()) {
             disposable.dispose();
             log.info("已取消活跃的流订阅，会话: {}", getSessionId());
         }
+        Disposable.Composite requests = upstreamRequests.getAndSet(Disposables.composite());
+        int count = requests.size();
+        requests.dispose();
+        if (count > 0) {
+            log.info("已取消 {} 个进行中的 ASR/TTS 请求，会话: {}", count, getSessionId());
+        }
     }
 
     /**
@@ -119,11 +236,7 @@ public class SessionState {
      */
     public void cleanup() {
         abort();  // 先取消所有活跃流
-        try {
-            audioBuffer.close();
-        } catch (IOException e) {
-            // 忽略
-        }
+        cancelAudioInput();
         // 关闭性能指标的文件保存线程池
         performanceMetrics.shutdown();
     }
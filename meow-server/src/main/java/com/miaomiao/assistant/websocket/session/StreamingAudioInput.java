@@ -0,0 +1,91 @@
+package com.miaomiao.assistant.websocket.session;
+
+import com.miaomiao.assistant.websocket.service.pipeline.OpusUplinkDecoder;
+import com.miaomiao.assistant.websocket.service.pipeline.VoiceActivityDetector;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 一段语音输入（从第一块音频到 last=true）
+ * <p>
+ * 入站音频块到达即复制并推送给 ASR，ASR 在第一块到达时就开始消费，不再等整段语音结束。
+ * 只由该会话的 WebSocket 消息处理线程写入。
+ */
+public class StreamingAudioInput {
+
+    private final Sinks.Many<ByteBuffer> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+    private long receivedBytes = 0;
+
+    /**
+     * 服务端 VAD（未启用时为 null）
+     */
+    @Getter
+    private final VoiceActivityDetector vad;
+
+    /**
+     * 上行 Opus 解码器（客户端发送 WAV 时为 null），语音结束或取消时关闭
+     */
+    @Getter
+    private final OpusUplinkDecoder decoder;
+
+    public StreamingAudioInput(VoiceActivityDetector vad) {
+        this(vad, null);
+    }
+
+    public StreamingAudioInput(VoiceActivityDetector vad, OpusUplinkDecoder decoder) {
+        this.vad = vad;
+        this.decoder = decoder;
+    }
+
+    /**
+     * 音频流（只能订阅一次）
+     */
+    public Flux<ByteBuffer> asFlux() {
+        return sink.asFlux();
+    }
+
+    /**
+     * 推送一块音频（data 是入站帧的只读视图，这里复制一份）
+     */
+    public void append(ByteBuffer data) {
+        int length = data.remaining();
+        if (length == 0) {
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        copy.put(data).flip();
+        receivedBytes += length;
+        sink.tryEmitNext(copy);
+    }
+
+    /**
+     * 语音结束
+     */
+    public void complete() {
+        closeDecoder();
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * 取消（用户终止或会话关闭），ASR 收到 {@link CancellationException}
+     */
+    public void cancel() {
+        closeDecoder();
+        sink.tryEmitError(new CancellationException("语音输入已取消"));
+    }
+
+    private void closeDecoder() {
+        if (decoder != null) {
+            decoder.close();
+        }
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+}
@@ -1,9 +1,12 @@
 package com.miaomiao.assistant.websocket.session;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaomiao.assistant.websocket.message.FlushMessage;
 import com.miaomiao.assistant.websocket.message.LLMTokenMessage;
 import com.miaomiao.assistant.websocket.message.STTMessage;
+import com.miaomiao.assistant.websocket.message.VadMessage;
 import com.miaomiao.assistant.websocket.message.WSMessage;
+import com.miaomiao.assistant.websocket.protocol.AudioFrameBufferPool;
 import com.miaomiao.assistant.websocket.protocol.BinaryAudioFrame;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -12,37 +15,37 @@ import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * WebSocket消息发送器
- * 负责将各类消息序列化并发送到客户端
+ * 负责将各类消息序列化并交给 {@link OutboundWriter} 异步发送到客户端
+ * <p>
+ * 音频和控制消息走 PRIORITY 通道，打字效果 token 走 TOKEN 通道
  */
 @Slf4j
 @Component
 public class WebSocketMessageSender {
 
     private final ObjectMapper objectMapper;
+    private final OutboundWriter outboundWriter;
+    private final AudioFrameBufferPool audioBufferPool;
 
-    public WebSocketMessageSender(ObjectMapper objectMapper) {
+    public WebSocketMessageSender(ObjectMapper objectMapper, OutboundWriter outboundWriter,
+                                  AudioFrameBufferPool audioBufferPool) {
         this.objectMapper = objectMapper;
+        this.outboundWriter = outboundWriter;
+        this.audioBufferPool = audioBufferPool;
     }
 
     /**
-     * 发送通用消息（线程安全）
+     * 发送通用消息（线程安全，不阻塞）
      */
     public void sendMessage(WebSocketSession session, WSMessage message) throws IOException {
-        if (session == null || !session.isOpen()) {
-            log.warn("WebSocket会话已关闭，无法发送消息");
-            return;
-        }
-        String json = objectMapper.writeValueAsString(message);
-        synchronized (session) {
-            if (session.isOpen()) {
-                session.sendMessage(new TextMessage(json));
-            }
-        }
+        sendJson(session, message, OutboundWriter.Lane.PRIORITY, false);
     }
 
     /**
@@ -53,21 +56,30 @@ public class WebSocketMessageSender {
     }
 
     /**
-     * 发送LLM流式Token消息（用于前端打字效果）
+     * 发送LLM流式Token消息（用于前端打字效果），轮次已过期时丢弃
      *
      * @param state       会话状态
-     * @param token       当前token
-     * @param accumulated 累积文本
+     * @param turn        所属对话轮次
+     * @param seq         本轮消息序号
+     * @param token       增量文本
+     * @param accumulated 累积文本（仅 checkpoint 携带，否则为 null）
      * @param finished    是否完成
      */
-    public void sendLLMToken(SessionState state, String token, String accumulated, boolean finished) throws IOException {
+    public void sendLLMToken(SessionState state, int turn, long seq, String token, String accumulated,
+                             boolean finished) throws IOException {
+        if (!state.isCurrentTurn(turn)) {
+            return;
+        }
         LLMTokenMessage message = new LLMTokenMessage();
         message.setType("llm_token");
+        message.setTurn(turn);
+        message.setSeq(seq);
         message.setToken(token);
         message.setAccumulated(accumulated);
         message.setFinished(finished);
         message.setTimestamp(System.currentTimeMillis());
-        sendMessage(state, message);
+        // 非 checkpoint 的增量在客户端过慢时可以丢弃，前端等下一个 checkpoint 重新同步
+        sendJson(state.getSession(), message, OutboundWriter.Lane.TOKEN, accumulated == null && !finished, turn);
     }
 
     /**
@@ -83,31 +95,63 @@ public class WebSocketMessageSender {
     }
 
     /**
-     * 发送TTS音频消息
+     * 发送服务端 VAD 事件（speech_start / speech_end）
+     */
+    public void sendVadEvent(SessionState state, String event, long offsetMs) throws IOException {
+        VadMessage vadMessage = new VadMessage();
+        vadMessage.setType("vad");
+        vadMessage.setEvent(event);
+        vadMessage.setOffsetMs(offsetMs);
+        vadMessage.setTimestamp(System.currentTimeMillis());
+        sendMessage(state, vadMessage);
+    }
+
+    /**
+     * 发送TTS音频消息，轮次已过期时丢弃
+     *
+     * 一条消息可以打包多个 Opus 包，帧直接编码进池化缓冲区，写出完成后归还。
      *
-     * @param state    会话状态
-     * @param opusData Opus音频数据
-     * @param finished 是否是本段TTS的最后一帧
+     * @param state       会话状态
+     * @param turn        所属对话轮次（写入二进制帧头）
+     * @param opusPackets Opus 包（不含长度头），空列表表示分段结束标记；本方法返回后调用方可复用该列表
+     * @param finished    是否是本段TTS的最后一帧
      */
-    public void sendTTSAudio(SessionState state, byte[] opusData, boolean finished) throws IOException {
+    public void sendTTSAudio(SessionState state, int turn, List<byte[]> opusPackets, boolean finished) throws IOException {
         if (state == null || state.getSession() == null || !state.getSession().isOpen()) {
             log.warn("WebSocket会话已关闭，无法发送TTS音频");
             return;
         }
+        if (!state.isCurrentTurn(turn)) {
+            return;
+        }
 
-        WebSocketSession session = state.getSession();
-        byte[] payload = opusData == null ? new byte[0] : opusData;
-        byte[] frameBytes = BinaryAudioFrame.serverTTS("opus", payload, finished).encode();
+        ByteBuffer buffer = audioBufferPool.acquire(BinaryAudioFrame.serverTTSLength(opusPackets, turn));
+        BinaryAudioFrame.encodeServerTTS(buffer, opusPackets, finished, turn);
+        buffer.flip();
+        outboundWriter.enqueue(state.getSession(), new BinaryMessage(buffer), OutboundWriter.Lane.PRIORITY, false,
+                turn, () -> audioBufferPool.release(buffer));
+    }
 
-        synchronized (session) {
-            if (session.isOpen()) {
-                session.sendMessage(new BinaryMessage(frameBytes));
-            }
+    /**
+     * 打断后通知客户端清空播放：移除下行队列中旧轮次尚未写出的 token 和音频，flush 消息插到队首立即写出
+     *
+     * @param state 会话状态（已中止，轮次已递增）
+     * @return 移除的消息数
+     */
+    public int sendFlush(SessionState state) throws IOException {
+        WebSocketSession session = state.getSession();
+        if (session == null || !session.isOpen()) {
+            return 0;
         }
+        FlushMessage message = new FlushMessage();
+        message.setType("flush");
+        message.setTurn(state.getTurn());
+        message.setTimestamp(System.currentTimeMillis());
+        return outboundWriter.flush(session, message.getTurn(), new TextMessage(objectMapper.writeValueAsString(message)));
     }
 
     /**
-     * 发送错误消息（线程安全）
+     * 发送错误消息（线程安全，不阻塞）
      */
     public void sendError(WebSocketSession session, String error) throws IOException {
         if (session == null || !session.isOpen()) {
@@ -120,11 +164,7 @@ public class WebSocketMessageSender {
         errorData.put("timestamp", System.currentTimeMillis());
 
         String json = objectMapper.writeValueAsString(errorData);
-        synchronized (session) {
-            if (session.isOpen()) {
-                session.sendMessage(new TextMessage(json));
-            }
-        }
+        outboundWriter.enqueue(session, new TextMessage(json), OutboundWriter.Lane.PRIORITY, false);
     }
 
     /**
@@ -133,4 +173,19 @@ public class WebSocketMessageSender {
     public void sendError(SessionState state, String error) throws IOException {
         sendError(state.getSession(), error);
     }
+
+    private void sendJson(WebSocketSession session, WSMessage message,
+                          OutboundWriter.Lane lane, boolean droppable) throws IOException {
+        sendJson(session, message, lane, droppable, -1);
+    }
+
+    private void sendJson(WebSocketSession session, WSMessage message,
+                          OutboundWriter.Lane lane, boolean droppable, int turn) throws IOException {
+        if (session == null || !session.isOpen()) {
+            log.warn("WebSocket会话已关闭，无法发送消息");
+            return;
+        }
+        String json = objectMapper.writeValueAsString(message);
+        outboundWriter.enqueue(session, new TextMessage(json), lane, droppable, turn, null);
+    }
 }
@@ -0,0 +1,125 @@
+package com.miaomiao.assistant.codec.ffm;
+
+import com.miaomiao.assistant.codec.OpusFrameEncoder;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * 通过 FFM 调用 libopus 的编码器
+ * <p>
+ * 编码器状态和输出缓冲区分配在该编码器自己的 {@link Arena} 中，关闭时一起释放：
+ * 1. {@link #encodeFrame(byte[], int, int)}：输入 PCM 以堆上数组直接传给 opus_encode（不复制），只把输出的包复制成数组
+ * 2. {@link #encodeFrame(MemorySegment, MemorySegment)}：PCM 和输出都在堆外（例如 {@code MemorySegment.ofBuffer} 包装的池化帧缓冲区），
+ * 编码结果直接写进目标位置，中间没有任何数组
+ * <p>
+ * 编码器池会在不同线程间租借编码器，因此使用共享 Arena；同一时刻仍只允许一个线程使用。
+ */
+public class FfmOpusFrameEncoder implements OpusFrameEncoder {
+
+    private final FfmOpusFrameEncoderFactory lib;
+    private final Arena arena = Arena.ofShared();
+    private final MemorySegment state;
+    private final MemorySegment packet;
+    private final int frameSize;
+    private final int frameBytes;
+    private boolean closed = false;
+
+    FfmOpusFrameEncoder(FfmOpusFrameEncoderFactory lib, int sampleRate, int channels, int bitrate, int frameSize) {
+        this.lib = lib;
+        this.frameSize = frameSize;
+        this.frameBytes = frameSize * channels * 2;
+        this.packet = arena.allocate(FfmOpusFrameEncoderFactory.MAX_PACKET_BYTES);
+        try {
+            MemorySegment error = arena.allocate(JAVA_INT);
+            this.state = (MemorySegment) lib.encoderCreate.invokeExact(sampleRate, channels,
+                    FfmOpusFrameEncoderFactory.OPUS_APPLICATION_AUDIO, error);
+            int code = error.get(JAVA_INT, 0);
+            if (code != FfmOpusFrameEncoderFactory.OPUS_OK || state.equals(MemorySegment.NULL)) {
+                throw new IllegalStateException("opus_encoder_create 失败: " + code);
+            }
+            int ctl = (int) lib.encoderCtlInt.invokeExact(state, FfmOpusFrameEncoderFactory.OPUS_SET_BITRATE_REQUEST, bitrate);
+            if (ctl != FfmOpusFrameEncoderFactory.OPUS_OK) {
+                throw new IllegalStateException("OPUS_SET_BITRATE 失败: " + ctl);
+            }
+        } catch (RuntimeException | Error e) {
+            arena.close();
+            throw e;
+        } catch (Throwable e) {
+            arena.close();
+            throw new IllegalStateException("创建 Opus 编码器失败", e);
+        }
+    }
+
+    @Override
+    public byte[] encodeFrame(byte[] pcm, int offset, int length) {
+        checkFrame(length);
+        int written = encode(MemorySegment.ofArray(pcm).asSlice(offset, length), packet);
+        return packet.asSlice(0, written).toArray(JAVA_BYTE);
+    }
+
+    /**
+     * 从堆外 PCM 直接编码到目标内存
+     *
+     * @param pcm    一帧 16位PCM数据(小端序)
+     * @param target 输出位置，剩余空间不足时按其大小截断（libopus 返回 OPUS_BUFFER_TOO_SMALL）
+     * @return 写入的字节数
+     */
+    public int encodeFrame(MemorySegment pcm, MemorySegment target) {
+        checkFrame(pcm.byteSize());
+        return encode(pcm, target);
+    }
+
+    private int encode(MemorySegment pcm, MemorySegment target) {
+        if (closed) {
+            throw new IllegalStateException("Opus 编码器已关闭");
+        }
+        int maxBytes = (int) Math.min(target.byteSize(), FfmOpusFrameEncoderFactory.MAX_PACKET_BYTES);
+        int written;
+        try {
+            written = (int) lib.encode.invokeExact(state, pcm, frameSize, target, maxBytes);
+        } catch (Throwable e) {
+            throw new IllegalStateException("opus_encode 调用失败", e);
+        }
+        if (written < 0) {
+            throw new IllegalStateException("opus_encode 失败: " + written);
+        }
+        return written;
+    }
+
+    private void checkFrame(long length) {
+        if (length != frameBytes) {
+            throw new IllegalArgumentException("PCM 长度必须为一帧 " + frameBytes + " 字节: " + length);
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (closed) {
+            return;
+        }
+        try {
+            int ignored = (int) lib.encoderCtl.invokeExact(state, FfmOpusFrameEncoderFactory.OPUS_RESET_STATE);
+        } catch (Throwable e) {
+            throw new IllegalStateException("OPUS_RESET_STATE 失败", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            lib.encoderDestroy.invokeExact(state);
+        } catch (Throwable e) {
+            throw new IllegalStateException("opus_encoder_destroy 失败", e);
+        } finally {
+            arena.close();
+        }
+    }
+}
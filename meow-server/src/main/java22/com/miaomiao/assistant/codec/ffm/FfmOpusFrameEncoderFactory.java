@@ -0,0 +1,102 @@
+package com.miaomiao.assistant.codec.ffm;
+
+import com.miaomiao.assistant.codec.OpusFrameEncoder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * ffm 编码后端：通过 Foreign Function &amp; Memory API 直接调用 libopus
+ * <p>
+ * opus-jni 的 native 库静态链接了 libopus 并导出了 opus_* 符号，这里从 {@code NativeLibraryLoader} 加载的同一个库文件中查找，
+ * 不需要额外的 libopus。编码参数与 opus-jni 一致（OPUS_APPLICATION_AUDIO + OPUS_SET_BITRATE）。
+ * <p>
+ * 由 {@code OpusCodec} 在 opus.backend=ffm 时反射创建；只在 java22 profile 下编译。
+ */
+@Slf4j
+public class FfmOpusFrameEncoderFactory implements OpusFrameEncoder.Factory {
+
+    static final int OPUS_OK = 0;
+    static final int OPUS_APPLICATION_AUDIO = 2049;
+    static final int OPUS_SET_BITRATE_REQUEST = 4002;
+    static final int OPUS_RESET_STATE = 4028;
+
+    /**
+     * opus_encode 输出缓冲区大小（libopus 建议的单包上限）
+     */
+    static final int MAX_PACKET_BYTES = 4000;
+
+    /**
+     * OpusEncoder *opus_encoder_create(opus_int32 Fs, int channels, int application, int *error)
+     */
+    final MethodHandle encoderCreate;
+
+    /**
+     * opus_int32 opus_encode(OpusEncoder *st, const opus_int16 *pcm, int frame_size, unsigned char *data, opus_int32 max_data_bytes)
+     * <p>
+     * 以 critical 方式链接：调用很短且不回调 Java，允许直接传入堆上数组（{@link MemorySegment#ofArray(byte[])}），不需要先复制到堆外
+     */
+    final MethodHandle encode;
+
+    /**
+     * int opus_encoder_ctl(OpusEncoder *st, int request, ...)，带一个 int 可变参数
+     */
+    final MethodHandle encoderCtlInt;
+
+    /**
+     * int opus_encoder_ctl(OpusEncoder *st, int request)，不带可变参数（OPUS_RESET_STATE）
+     */
+    final MethodHandle encoderCtl;
+
+    /**
+     * void opus_encoder_destroy(OpusEncoder *st)
+     */
+    final MethodHandle encoderDestroy;
+
+    /**
+     * @param libraryFile {@code NativeLibraryLoader} 加载的库文件；为 null 时从当前类加载器已加载的库中查找
+     */
+    public FfmOpusFrameEncoderFactory(Path libraryFile) {
+        SymbolLookup lookup = libraryFile == null
+                ? SymbolLookup.loaderLookup()
+                : SymbolLookup.libraryLookup(libraryFile, Arena.global());
+        Linker linker = Linker.nativeLinker();
+        this.encoderCreate = linker.downcallHandle(find(lookup, "opus_encoder_create"),
+                FunctionDescriptor.of(ADDRESS, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS));
+        this.encode = linker.downcallHandle(find(lookup, "opus_encode"),
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, ADDRESS, JAVA_INT, ADDRESS, JAVA_INT),
+                Linker.Option.critical(true));
+        this.encoderCtlInt = linker.downcallHandle(find(lookup, "opus_encoder_ctl"),
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT),
+                Linker.Option.firstVariadicArg(2));
+        this.encoderCtl = linker.downcallHandle(find(lookup, "opus_encoder_ctl"),
+                FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT),
+                Linker.Option.firstVariadicArg(2));
+        this.encoderDestroy = linker.downcallHandle(find(lookup, "opus_encoder_destroy"),
+                FunctionDescriptor.ofVoid(ADDRESS));
+        log.info("ffm Opus 编码后端初始化完成: library={}", libraryFile == null ? "<loader>" : libraryFile);
+    }
+
+    private static MemorySegment find(SymbolLookup lookup, String name) {
+        return lookup.find(name).orElseThrow(() -> new UnsatisfiedLinkError("找不到 libopus 符号: " + name));
+    }
+
+    @Override
+    public FfmOpusFrameEncoder create(int sampleRate, int channels, int bitrate, int frameSize) {
+        return new FfmOpusFrameEncoder(this, sampleRate, channels, bitrate, frameSize);
+    }
+
+    @Override
+    public String name() {
+        return "ffm";
+    }
+}
@@ -0,0 +1,157 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.websocket.protocol.AudioFrameBufferPool;
+import com.miaomiao.assistant.websocket.protocol.BinaryAudioFrame;
+import com.miaomiao.assistant.websocket.session.StreamingAudioInput;
+import org.springframework.web.socket.BinaryMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 音频帧编解码的内存分配测试工具
+ * <p>
+ * 统计每秒音频在入站（客户端音频帧解码 + 推送给 ASR）和出站（TTS Opus 包编码成二进制帧）两条路径上的堆分配字节数，
+ * 对比原实现（payload 复制 + ByteArrayOutputStream，出站每帧加长度头复制一次、再分配一个堆缓冲区）与
+ * 只读视图 + 流式语音输入 + 池化缓冲区的实现。不含 native 编码器本身返回的数组（两种实现相同）。
+ * <p>
+ * 使用 com.sun.management.ThreadMXBean 统计当前线程的分配量，预热后取多轮最小值。
+ */
+public class AudioFrameAllocationBenchmark {
+
+    /**
+     * 20ms 一帧，每秒 50 帧；64kbps 下每个 Opus 包约 160 字节
+     */
+    private static final int TTS_FRAMES_PER_SECOND = 50;
+    private static final int OPUS_PACKET_SIZE = 160;
+
+    /**
+     * 入站按 250ms 一块、每块 1KB（约 32kbps 的 webm/opus）
+     */
+    private static final int CLIENT_CHUNKS_PER_SECOND = 4;
+    private static final int CLIENT_CHUNK_SIZE = 1024;
+
+    private static final int AUDIO_SECONDS = 1_000;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        byte[] packet = new byte[OPUS_PACKET_SIZE];
+        byte[] clientFrame = BinaryAudioFrame.clientAudio("audio/webm;codecs=opus", new byte[CLIENT_CHUNK_SIZE], false).encode();
+
+        System.out.printf("出站（TTS）: 原实现 %8.0f B/音频秒    新实现 %8.0f B/音频秒%n",
+                measure(() -> legacyOutbound(packet)),
+                measure(new PooledOutbound(packet)));
+        System.out.printf("入站（ASR）: 原实现 %8.0f B/音频秒    新实现 %8.0f B/音频秒%n",
+                measure(() -> legacyInbound(clientFrame)),
+                measure(new ViewInbound(clientFrame)));
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static double measure(Runnable oneAudioSecond) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS + 2; round++) {
+            long threadId = Thread.currentThread().getId();
+            long before = THREAD_BEAN.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < AUDIO_SECONDS; i++) {
+                oneAudioSecond.run();
+            }
+            long allocated = THREAD_BEAN.getThreadAllocatedBytes(threadId) - before;
+            if (round >= 2) {
+                best = Math.min(best, allocated);
+            }
+        }
+        return (double) best / AUDIO_SECONDS;
+    }
+
+    // ========== 出站 ==========
+
+    /**
+     * 原实现：编码器给包加 2 字节长度头（复制一次），再编码成帧（新的堆缓冲区 + format 字节）
+     */
+    private static void legacyOutbound(byte[] packet) {
+        for (int i = 0; i < TTS_FRAMES_PER_SECOND; i++) {
+            byte[] frame = new byte[2 + packet.length];
+            frame[0] = (byte) (packet.length & 0xFF);
+            frame[1] = (byte) ((packet.length >> 8) & 0xFF);
+            System.arraycopy(packet, 0, frame, 2, packet.length);
+
+            byte[] formatBytes = "opus".getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(4 + formatBytes.length + frame.length);
+            buffer.put(BinaryAudioFrame.MAGIC).put(BinaryAudioFrame.TYPE_SERVER_TTS).put((byte) 0)
+                    .put((byte) formatBytes.length).put(formatBytes).put(frame);
+            sink += new BinaryMessage(buffer.array()).getPayloadLength();
+        }
+    }
+
+    private static final class PooledOutbound implements Runnable {
+        private final List<byte[]> packets;
+        private final AudioFrameBufferPool pool = new AudioFrameBufferPool(2048, 64);
+
+        private PooledOutbound(byte[] packet) {
+            this.packets = List.of(packet);
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < TTS_FRAMES_PER_SECOND; i++) {
+                // 与 WebSocketMessageSender.sendTTSAudio 相同的编码路径（带轮次）
+                ByteBuffer buffer = pool.acquire(BinaryAudioFrame.serverTTSLength(packets, 1));
+                BinaryAudioFrame.encodeServerTTS(buffer, packets, false, 1);
+                buffer.flip();
+                sink += new BinaryMessage(buffer).getPayloadLength();
+                pool.release(buffer);
+            }
+        }
+    }
+
+    // ========== 入站 ==========
+
+    /**
+     * 原实现：解码时复制 format 和 payload，会话缓冲区用 ByteArrayOutputStream，结束时 toByteArray
+     */
+    private static void legacyInbound(byte[] clientFrame) {
+        ByteArrayOutputStream audioBuffer = new ByteArrayOutputStream();
+        for (int i = 0; i < CLIENT_CHUNKS_PER_SECOND; i++) {
+            ByteBuffer buffer = ByteBuffer.wrap(clientFrame).asReadOnlyBuffer();
+            buffer.position(3);
+            int formatLength = Byte.toUnsignedInt(buffer.get());
+            byte[] formatBytes = new byte[formatLength];
+            buffer.get(formatBytes);
+            sink += new String(formatBytes, StandardCharsets.UTF_8).length();
+            byte[] payload = new byte[buffer.remaining()];
+            buffer.get(payload);
+            audioBuffer.writeBytes(payload);
+        }
+        sink += audioBuffer.toByteArray().length;
+    }
+
+    private static final class ViewInbound implements Runnable {
+        private final byte[] clientFrame;
+
+        private ViewInbound(byte[] clientFrame) {
+            this.clientFrame = clientFrame;
+        }
+
+        @Override
+        public void run() {
+            StreamingAudioInput input = new StreamingAudioInput(null);
+            input.asFlux().subscribe(chunk -> sink += chunk.remaining());
+            for (int i = 0; i < CLIENT_CHUNKS_PER_SECOND; i++) {
+                BinaryAudioFrame frame = BinaryAudioFrame.decode(ByteBuffer.wrap(clientFrame));
+                sink += frame.getFormat().length();
+                input.append(frame.getPayload());
+            }
+            input.complete();
+        }
+    }
+}
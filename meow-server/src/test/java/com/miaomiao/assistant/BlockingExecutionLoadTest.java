@@ -0,0 +1,122 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阻塞调用执行方式的负载测试工具
+ * <p>
+ * 模拟 N 个并发会话（默认 1000），每个会话进行 3 轮对话，两轮之间间隔 500ms。每轮对话的阻塞阶段与实际链路一致：
+ * - ASR：在阻塞执行器上等待最终识别结果（阻塞 300ms）
+ * - LLM：在阻塞执行器上同步发起请求并等待首个 token（阻塞 200ms）
+ * - TTS：3 句并行，每句在 TTS 工作线程上阻塞等待提供商音频流（150ms）
+ * 对 platform（有界线程池，execution.platform.max-threads 默认 200，TTS 工作线程默认 64）和 virtual（Java 21+）
+ * 分别统计每轮对话延迟的 p50/p99 和 JVM 平台线程数峰值。
+ * <p>
+ * 用法：BlockingExecutionLoadTest [会话数]
+ */
+public class BlockingExecutionLoadTest {
+
+    private static final int TURNS = 3;
+    private static final long THINK_MS = 500;
+    private static final long ASR_MS = 300;
+    private static final long LLM_MS = 200;
+    private static final long TTS_MS = 150;
+    private static final int SENTENCES = 3;
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        System.out.printf("%d 个并发会话，每个 %d 轮；理想单轮延迟 %dms%n", sessions, TURNS, ASR_MS + LLM_MS + TTS_MS);
+        run("platform", sessions);
+        if (BlockingTaskExecutor.isVirtualThreadSupported()) {
+            run("virtual", sessions);
+        } else {
+            System.out.printf("virtual：当前运行时 Java %d 不支持虚拟线程，跳过（需要 Java 21+）%n",
+                    Runtime.version().feature());
+        }
+    }
+
+    private static void run(String mode, int sessions) throws Exception {
+        BlockingTaskExecutor executor = new BlockingTaskExecutor(mode, 200, 100_000);
+        ExecutorService ttsPool = executor.newWorkerPool("TTS-Worker-", 64);
+        // 两轮之间的间隔用定时器实现，不占用执行器线程
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        int baselineThreads = threads.getThreadCount();
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        Random random = new Random(5);
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < sessions; s++) {
+            // 会话在 1 秒内陆续开始
+            long delayMs = random.nextInt(1000);
+            CompletableFuture<Void> session = delay(timer, delayMs);
+            for (int t = 0; t < TURNS; t++) {
+                boolean last = t == TURNS - 1;
+                session = session
+                        .thenCompose(ignored -> turn(executor, ttsPool, latencies))
+                        .thenCompose(ignored -> last ? CompletableFuture.completedFuture(null) : delay(timer, THINK_MS));
+            }
+            all.add(session);
+        }
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.MINUTES);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-8s 轮数 %5d  p50 %6.0fms  p99 %6.0fms  最大 %6.0fms  平台线程峰值 %4d（基线 %d）  总耗时 %dms%n",
+                mode, sorted.size(), percentile(sorted, 0.50), percentile(sorted, 0.99),
+                sorted.get(sorted.size() - 1) / 1e6, threads.getPeakThreadCount(), baselineThreads, elapsedMs);
+
+        timer.shutdownNow();
+        ttsPool.shutdownNow();
+        executor.shutdown();
+    }
+
+    private static CompletableFuture<Void> turn(BlockingTaskExecutor executor, ExecutorService ttsPool,
+                                                List<Long> latencies) {
+        long turnStart = System.nanoTime();
+        return CompletableFuture.runAsync(() -> sleep(ASR_MS), executor)
+                .thenRunAsync(() -> sleep(LLM_MS), executor)
+                .thenCompose(ignored -> {
+                    List<CompletableFuture<Void>> sentences = new ArrayList<>();
+                    for (int i = 0; i < SENTENCES; i++) {
+                        sentences.add(CompletableFuture.runAsync(() -> sleep(TTS_MS), ttsPool));
+                    }
+                    return CompletableFuture.allOf(sentences.toArray(new CompletableFuture<?>[0]));
+                })
+                .thenRun(() -> latencies.add(System.nanoTime() - turnStart));
+    }
+
+    private static CompletableFuture<Void> delay(ScheduledExecutorService timer, long delayMs) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        timer.schedule(() -> future.complete(null), delayMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
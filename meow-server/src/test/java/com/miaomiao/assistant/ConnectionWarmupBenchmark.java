@@ -0,0 +1,169 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.config.AIServiceConfig;
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
+import com.miaomiao.assistant.config.ConnectionWarmupService;
+import com.miaomiao.assistant.config.SharedHttpClient;
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
+import com.miaomiao.assistant.model.llm.AppChatMessage;
+import com.miaomiao.assistant.model.llm.LLMManager;
+import com.miaomiao.assistant.model.llm.LLMOptions;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+/**
+ * 连接预热的冷/热首 token 对比工具
+ * <p>
+ * 本地启动一个 TLS 的模拟 LLM 服务（自签证书，SSE 立即返回第一个 token），每轮新建共享 HTTP 客户端和 LLMManager：
+ * - 冷：直接发起流式请求，首 token 时间包含 TCP + TLS 握手
+ * - 热：先由 {@link ConnectionWarmupService} 预热连接并等待完成（模拟用户说话期间后台预热），再发起请求
+ * 输出两者首 token 时间的 p50/p90。本机回环地址没有网络往返，真实环境的差距还要加上 1~2 个 RTT。
+ * <p>
+ * 用法：ConnectionWarmupBenchmark [轮数]
+ */
+public class ConnectionWarmupBenchmark {
+
+    private static final String PASSWORD = "changeit";
+    private static final String PROVIDER = "zhipu-coding-mock";
+    private static final String MODEL = "mock";
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        Path keyStore = createSelfSignedKeyStore();
+        // OkHttp 使用平台默认的信任库
+        System.setProperty("javax.net.ssl.trustStore", keyStore.toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", PASSWORD);
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+
+        HttpsServer server = startMockServer(keyStore);
+        String baseUrl = "https://127.0.0.1:" + server.getAddress().getPort() + "/chat";
+        BlockingTaskExecutor executor = new BlockingTaskExecutor("platform", 8, 100);
+        try {
+            // 预热 JIT 和 JSSE，不计入结果
+            for (int i = 0; i < 5; i++) {
+                firstTokenMs(baseUrl, executor, false);
+                firstTokenMs(baseUrl, executor, true);
+            }
+            List<Double> cold = new ArrayList<>();
+            List<Double> warm = new ArrayList<>();
+            for (int i = 0; i < rounds; i++) {
+                cold.add(firstTokenMs(baseUrl, executor, false));
+                warm.add(firstTokenMs(baseUrl, executor, true));
+            }
+            System.out.printf("%d 轮，本地 TLS 模拟服务%n", rounds);
+            print("冷（请求时建立连接）", cold);
+            print("热（会话建立/语音开始时预热）", warm);
+        } finally {
+            executor.shutdown();
+            server.stop(0);
+            Files.deleteIfExists(keyStore);
+        }
+    }
+
+    private static double firstTokenMs(String baseUrl, BlockingTaskExecutor executor, boolean warmup)
+            throws Exception {
+        AIServiceConfig config = new AIServiceConfig();
+        AIServiceConfig.ProviderConfig providerConfig = new AIServiceConfig.ProviderConfig();
+        providerConfig.setApiKey("key");
+        providerConfig.setBaseUrl(baseUrl);
+        providerConfig.setLlmModels(Set.of(MODEL));
+        config.getProviders().put(PROVIDER, providerConfig);
+        SharedHttpClient httpClient = new SharedHttpClient(config, 256, 64, 32, 300, true);
+        try {
+            LLMManager llmManager = new LLMManager(config, null, httpClient,
+                    new AdaptiveConcurrencyLimiter(false, 8, 1, 64, 0.75, 2.0, 5000, 1000));
+            llmManager.init();
+            if (warmup) {
+                ConnectionWarmupService warmupService = new ConnectionWarmupService(List.of(llmManager), executor,
+                        true, 60);
+                warmupService.warmup("benchmark");
+                while (warmupService.getMetrics().succeeded() + warmupService.getMetrics().failed() == 0) {
+                    Thread.sleep(1);
+                }
+            }
+            long start = System.nanoTime();
+            llmManager.chatStream(PROVIDER + ":" + MODEL, List.of(new AppChatMessage("user", "你好")),
+                            LLMOptions.of(MODEL))
+                    .next()
+                    .block(Duration.ofSeconds(10));
+            return (System.nanoTime() - start) / 1e6;
+        } finally {
+            httpClient.shutdown();
+        }
+    }
+
+    private static HttpsServer startMockServer(Path keyStorePath) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStorePath)) {
+            keyStore.load(in, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), null, null);
+
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            if (!"/chat".equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(("data: {\"choices\":[{\"delta\":{\"content\":\"喵\"}}]}\n\n"
+                        + "data: [DONE]\n\n").getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * 用 JDK 自带的 keytool 生成 127.0.0.1 的自签证书
+     */
+    private static Path createSelfSignedKeyStore() throws Exception {
+        Path keyStore = Files.createTempFile("warmup-benchmark", ".p12");
+        Files.delete(keyStore);
+        Path keytool = Path.of(System.getProperty("java.home"), "bin", "keytool");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "mock",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=127.0.0.1",
+                "-ext", "SAN=ip:127.0.0.1,dns:localhost", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keyStore.toString(),
+                "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("keytool 生成证书失败: " + output);
+        }
+        return keyStore;
+    }
+
+    private static void print(String label, List<Double> values) {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        System.out.printf("%-24s 首 token p50=%.2fms p90=%.2fms%n", label,
+                sorted.get(sorted.size() / 2), sorted.get((int) (sorted.size() * 0.9)));
+    }
+}
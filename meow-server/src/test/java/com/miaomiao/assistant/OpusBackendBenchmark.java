@@ -0,0 +1,96 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.codec.OpusFrameEncoder;
+import com.miaomiao.assistant.config.NativeLibraryLoader;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opus 编码后端对比测试工具（需要在 meow-server 目录下运行，以加载 native/ 下的 opus 库）
+ * <p>
+ * 对每个可用的后端（jni；JDK 22+ 且启用 java22 profile 构建时还有 ffm）逐帧编码同一段 24kHz PCM，统计：
+ * - 每帧编码耗时（包含跨越 Java/native 边界的开销）
+ * - 每帧堆分配字节数（jni 每帧在 native 侧复制输入并新建输出数组）
+ * ffm 运行时建议加 --enable-native-access=ALL-UNNAMED。
+ */
+public class OpusBackendBenchmark {
+
+    private static final int SAMPLE_RATE = 24000;
+    private static final int FRAME_SIZE = 480;
+    private static final int FRAME_BYTES = FRAME_SIZE * 2;
+    private static final int FRAMES = 50_000;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        NativeLibraryLoader loader = new NativeLibraryLoader();
+        loader.init();
+        if (!loader.isLoaded()) {
+            throw new IllegalStateException("找不到 opus native 库，请在 meow-server 目录下运行");
+        }
+        byte[] pcm = synthesize();
+
+        // createEncoderFactory 是包内方法，这里通过反射调用，和服务启动时按 opus.backend 选择后端的逻辑一致
+        Method create = Class.forName("com.miaomiao.assistant.codec.OpusCodec")
+                .getDeclaredMethod("createEncoderFactory", String.class, NativeLibraryLoader.class);
+        create.setAccessible(true);
+        List<OpusFrameEncoder.Factory> factories = new ArrayList<>();
+        for (String backend : new String[]{"jni", "ffm"}) {
+            OpusFrameEncoder.Factory factory = (OpusFrameEncoder.Factory) create.invoke(null, backend, loader);
+            if (factory.name().equals(backend)) {
+                factories.add(factory);
+            } else {
+                System.out.printf("后端 %s 不可用（JDK %d），跳过%n", backend, Runtime.version().feature());
+            }
+        }
+
+        System.out.printf("每轮 %d 帧（%.1fs 音频），取 %d 轮最快%n", FRAMES, FRAMES * FRAME_SIZE / (double) SAMPLE_RATE, ROUNDS);
+        for (OpusFrameEncoder.Factory factory : factories) {
+            OpusFrameEncoder encoder = factory.create(SAMPLE_RATE, 1, 64000, FRAME_SIZE);
+            long bestNanos = Long.MAX_VALUE;
+            long allocated = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                encoder.reset();
+                long allocatedBefore = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                for (int i = 0; i < FRAMES; i++) {
+                    int offset = (i * FRAME_BYTES) % (pcm.length - FRAME_BYTES);
+                    sink += encoder.encodeFrame(pcm, offset, FRAME_BYTES).length;
+                }
+                long elapsed = System.nanoTime() - start;
+                if (elapsed < bestNanos) {
+                    bestNanos = elapsed;
+                    allocated = THREAD_BEAN.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                }
+            }
+            encoder.close();
+            System.out.printf("  %-4s %7.2fµs/帧  %6.0f B/帧%n", factory.name(),
+                    bestNanos / 1000.0 / FRAMES, (double) allocated / FRAMES);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * 10 秒两个音调叠加的 PCM
+     */
+    private static byte[] synthesize() {
+        int samples = SAMPLE_RATE * 10;
+        byte[] pcm = new byte[samples * 2];
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            short value = (short) (8000 * Math.sin(2 * Math.PI * 180 * t) + 3000 * Math.sin(2 * Math.PI * 450 * t));
+            pcm[i * 2] = (byte) value;
+            pcm[i * 2 + 1] = (byte) (value >> 8);
+        }
+        return pcm;
+    }
+}
@@ -0,0 +1,185 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.codec.OpusCodec;
+import com.miaomiao.assistant.codec.OpusEncoderStream;
+import com.miaomiao.assistant.config.NativeLibraryLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Opus 编码器对比测试工具（需要在 meow-server 目录下运行，以加载 native/ 下的 opus 库）
+ * <p>
+ * 模拟 TTS 流式返回：每句 1-3 秒的 24kHz PCM，按 2-6KB 的随机分块到达。对比：
+ * - 原实现：每个分块调用一次 encodePcmToOpus 的旧逻辑（每次新建/销毁 native 编码器、每帧复制、每次调用都把尾部补 0）
+ * - 新实现：每句从编码器池租借一个编码流，跨分块保留不足一帧的数据，只在句尾补 0
+ * 统计每句的编码耗时、堆分配字节数、新建的 native 编码器数和补 0 引入的多余静音。
+ */
+public class OpusEncoderPoolBenchmark {
+
+    private static final int SAMPLE_RATE = 24000;
+    private static final int FRAME_SIZE = 480;
+    private static final int FRAME_BYTES = FRAME_SIZE * 2;
+    private static final int SENTENCES = 200;
+    private static final int ROUNDS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        NativeLibraryLoader loader = new NativeLibraryLoader();
+        loader.init();
+        if (!loader.isLoaded()) {
+            throw new IllegalStateException("找不到 opus native 库，请在 meow-server 目录下运行");
+        }
+
+        List<List<byte[]>> sentences = synthesize(new Random(7));
+        long pcmBytes = sentences.stream().flatMap(List::stream).mapToLong(chunk -> chunk.length).sum();
+        double audioMs = pcmBytes / 2.0 / SAMPLE_RATE * 1000;
+        OpusCodec codec = new OpusCodec();
+
+        Result legacy = null;
+        Result pooled = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            legacy = best(legacy, run(() -> legacy(sentences)));
+            pooled = best(pooled, run(() -> pooled(codec, sentences)));
+        }
+
+        System.out.printf("%d 句，音频 %.1fs，每句平均 %d 个分块%n", SENTENCES, audioMs / 1000,
+                sentences.stream().mapToInt(List::size).sum() / SENTENCES);
+        print("原实现（每次调用新建编码器）", legacy);
+        print("新实现（编码器池 + 编码流）", pooled);
+        System.out.printf("新建 native 编码器：原实现 %d 个，新实现 %d 个（池指标 %s）%n",
+                legacy.encoders(), codec.getEncoderPoolMetrics().created(), codec.getEncoderPoolMetrics());
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void print(String name, Result result) {
+        System.out.printf("  %-24s %8.1fµs/句  %9.0f B/句  输出 %6d 帧（多余静音 %6.1fms/句）%n", name,
+                result.nanos() / 1000.0 / SENTENCES, (double) result.allocatedBytes() / SENTENCES,
+                result.frames(), result.paddingMs() / SENTENCES);
+    }
+
+    private static Result best(Result current, Result candidate) {
+        return current == null || candidate.nanos() < current.nanos() ? candidate : current;
+    }
+
+    private static Result run(java.util.function.Supplier<Result> body) {
+        long allocated = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        Result result = body.get();
+        long elapsed = System.nanoTime() - start;
+        return new Result(elapsed, THREAD_BEAN.getCurrentThreadAllocatedBytes() - allocated,
+                result.frames(), result.paddingMs(), result.encoders());
+    }
+
+    /**
+     * 原实现：每个分块一次 encodePcmToOpus（新建编码器、逐帧复制、尾部补 0）
+     */
+    private static Result legacy(List<List<byte[]>> sentences) {
+        long frames = 0;
+        double paddingMs = 0;
+        long encoders = 0;
+        for (List<byte[]> chunks : sentences) {
+            for (byte[] pcm : chunks) {
+                net.labymod.opus.OpusCodec codec = newCodec();
+                encoders++;
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                int offset = 0;
+                while (offset < pcm.length) {
+                    byte[] frame = new byte[FRAME_BYTES];
+                    int length = Math.min(FRAME_BYTES, pcm.length - offset);
+                    System.arraycopy(pcm, offset, frame, 0, length);
+                    byte[] encoded = codec.encodeFrame(frame);
+                    out.write(encoded.length & 0xFF);
+                    out.write((encoded.length >> 8) & 0xFF);
+                    out.write(encoded, 0, encoded.length);
+                    paddingMs += (FRAME_BYTES - length) / 2.0 / SAMPLE_RATE * 1000;
+                    offset += FRAME_BYTES;
+                    frames++;
+                }
+                sink += out.size();
+                codec.destroy();
+            }
+        }
+        return new Result(0, 0, frames, paddingMs, encoders);
+    }
+
+    /**
+     * 新实现：每句一个池化的编码流
+     */
+    private static Result pooled(OpusCodec codec, List<List<byte[]>> sentences) {
+        long frames = 0;
+        double paddingMs = 0;
+        for (List<byte[]> chunks : sentences) {
+            int total = 0;
+            try (OpusEncoderStream encoder = codec.openEncoderStream()) {
+                for (byte[] pcm : chunks) {
+                    total += pcm.length;
+                    for (byte[] packet : encoder.write(pcm)) {
+                        sink += packet.length;
+                        frames++;
+                    }
+                }
+                for (byte[] packet : encoder.finish()) {
+                    sink += packet.length;
+                    frames++;
+                }
+            }
+            int tail = total % FRAME_BYTES;
+            if (tail > 0) {
+                paddingMs += (FRAME_BYTES - tail) / 2.0 / SAMPLE_RATE * 1000;
+            }
+        }
+        return new Result(0, 0, frames, paddingMs, 0);
+    }
+
+    private static net.labymod.opus.OpusCodec newCodec() {
+        return net.labymod.opus.OpusCodec.newBuilder()
+                .withSampleRate(SAMPLE_RATE)
+                .withChannels(1)
+                .withBitrate(64000)
+                .withFrameSize(FRAME_SIZE)
+                .build();
+    }
+
+    /**
+     * 合成测试句子：多个正弦音调叠加，按随机大小分块
+     */
+    private static List<List<byte[]>> synthesize(Random random) {
+        List<List<byte[]>> sentences = new ArrayList<>();
+        for (int s = 0; s < SENTENCES; s++) {
+            int samples = SAMPLE_RATE + random.nextInt(SAMPLE_RATE * 2);
+            byte[] pcm = new byte[samples * 2];
+            double pitch = 120 + random.nextInt(120);
+            for (int i = 0; i < samples; i++) {
+                double t = (double) i / SAMPLE_RATE;
+                short value = (short) (8000 * Math.sin(2 * Math.PI * pitch * t) + 3000 * Math.sin(2 * Math.PI * pitch * 2.5 * t));
+                pcm[i * 2] = (byte) value;
+                pcm[i * 2 + 1] = (byte) (value >> 8);
+            }
+            List<byte[]> chunks = new ArrayList<>();
+            int offset = 0;
+            while (offset < pcm.length) {
+                // 分块大小为奇数字节也要能处理
+                int length = Math.min(pcm.length - offset, 2048 + random.nextInt(4096));
+                byte[] chunk = new byte[length];
+                System.arraycopy(pcm, offset, chunk, 0, length);
+                chunks.add(chunk);
+                offset += length;
+            }
+            sentences.add(chunks);
+        }
+        return sentences;
+    }
+
+    private record Result(long nanos, long allocatedBytes, long frames, double paddingMs, long encoders) {
+    }
+}
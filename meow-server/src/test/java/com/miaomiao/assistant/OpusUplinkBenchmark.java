@@ -0,0 +1,157 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.codec.OpusCodec;
+import com.miaomiao.assistant.config.NativeLibraryLoader;
+import com.miaomiao.assistant.websocket.service.pipeline.OpusUplinkDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 语音上行对比测试工具（需要在 meow-server 目录下运行，以加载 native/ 下的 opus 库）
+ * <p>
+ * 合成若干段 16kHz 语音，对比：
+ * - 原实现：录音结束后把整段转成 WAV 一次发送
+ * - 新实现：每 100ms 把期间编码出的 Opus 包（20ms 帧，24kbps）作为一帧发送，服务端逐块解码成 WAV
+ * 按不同的上行带宽估算“说完 -> 服务端拿到完整音频（并解码完）”的延迟，并统计上传字节数和服务端解码耗时。
+ * 带宽按线路速率计算，不含 RTT 和 WebSocket/TCP 开销。
+ */
+public class OpusUplinkBenchmark {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE / 50;
+    private static final int FRAMES_PER_SEND = 5;
+    private static final int BITRATE = 24000;
+    private static final int UTTERANCES = 20;
+    private static final int[] UPLINK_KBPS = {128, 384, 1000};
+
+    public static void main(String[] args) {
+        NativeLibraryLoader loader = new NativeLibraryLoader();
+        loader.init();
+        if (!loader.isLoaded()) {
+            throw new IllegalStateException("找不到 opus native 库，请在 meow-server 目录下运行");
+        }
+        OpusCodec codec = new OpusCodec();
+        Random random = new Random(11);
+
+        long wavBytes = 0;
+        long opusBytes = 0;
+        double audioSeconds = 0;
+        long decodeNanos = 0;
+        double[] wavLatency = new double[UPLINK_KBPS.length];
+        double[] opusLatency = new double[UPLINK_KBPS.length];
+        for (int u = 0; u < UTTERANCES; u++) {
+            short[] speech = synthesize(random);
+            double seconds = (double) speech.length / SAMPLE_RATE;
+            audioSeconds += seconds;
+            int wav = 44 + speech.length * 2;
+            wavBytes += wav;
+
+            List<byte[]> sends = encode(speech);
+            long utteranceOpus = sends.stream().mapToLong(send -> send.length).sum();
+            opusBytes += utteranceOpus;
+
+            // 服务端逐块解码
+            long lastDecodeNanos = 0;
+            try (OpusUplinkDecoder decoder = new OpusUplinkDecoder(codec.openDecoderStream(SAMPLE_RATE))) {
+                for (byte[] send : sends) {
+                    long start = System.nanoTime();
+                    decoder.decode(ByteBuffer.wrap(send));
+                    lastDecodeNanos = System.nanoTime() - start;
+                    decodeNanos += lastDecodeNanos;
+                }
+            }
+
+            for (int i = 0; i < UPLINK_KBPS.length; i++) {
+                double bytesPerMs = UPLINK_KBPS[i] * 1000 / 8.0 / 1000;
+                // 原实现：说完后才开始发送整段 WAV
+                wavLatency[i] += wav / bytesPerMs;
+                // 新实现：边说边发，说完时还在排队的数据 + 最后一帧的发送和解码
+                double queueMs = 0;
+                double sendIntervalMs = FRAMES_PER_SEND * 20;
+                for (byte[] send : sends) {
+                    queueMs = Math.max(0, queueMs - sendIntervalMs) + send.length / bytesPerMs;
+                }
+                opusLatency[i] += queueMs + lastDecodeNanos / 1e6;
+            }
+        }
+
+        System.out.printf("%d 段语音，共 %.1fs%n", UTTERANCES, audioSeconds);
+        System.out.printf("上传字节：WAV %d（%.1f kbps），Opus %d（%.1f kbps），减少 %.1f 倍%n",
+                wavBytes, wavBytes * 8 / audioSeconds / 1000, opusBytes, opusBytes * 8 / audioSeconds / 1000,
+                (double) wavBytes / opusBytes);
+        System.out.printf("服务端解码耗时：%.1fµs/音频秒%n", decodeNanos / 1000.0 / audioSeconds);
+        System.out.println("说完 -> 服务端拿到完整音频的平均延迟：");
+        for (int i = 0; i < UPLINK_KBPS.length; i++) {
+            System.out.printf("  上行 %5d kbps：原实现 %7.1fms，新实现 %6.1fms%n", UPLINK_KBPS[i],
+                    wavLatency[i] / UTTERANCES, opusLatency[i] / UTTERANCES);
+        }
+    }
+
+    /**
+     * 按 20ms 一帧编码，每 5 帧打包成一次发送的 payload（[2字节小端长度][Opus包]...）
+     */
+    private static List<byte[]> encode(short[] speech) {
+        net.labymod.opus.OpusCodec encoder = net.labymod.opus.OpusCodec.newBuilder()
+                .withSampleRate(SAMPLE_RATE)
+                .withChannels(1)
+                .withBitrate(BITRATE)
+                .withFrameSize(FRAME_SAMPLES)
+                .build();
+        try {
+            List<byte[]> sends = new ArrayList<>();
+            ByteArrayOutputStream send = new ByteArrayOutputStream();
+            byte[] frame = new byte[FRAME_SAMPLES * 2];
+            int frames = 0;
+            for (int offset = 0; offset < speech.length; offset += FRAME_SAMPLES) {
+                java.util.Arrays.fill(frame, (byte) 0);
+                for (int i = 0; i < FRAME_SAMPLES && offset + i < speech.length; i++) {
+                    frame[i * 2] = (byte) speech[offset + i];
+                    frame[i * 2 + 1] = (byte) (speech[offset + i] >> 8);
+                }
+                byte[] packet = encoder.encodeFrame(frame);
+                send.write(packet.length & 0xFF);
+                send.write((packet.length >> 8) & 0xFF);
+                send.write(packet, 0, packet.length);
+                if (++frames % FRAMES_PER_SEND == 0) {
+                    sends.add(send.toByteArray());
+                    send.reset();
+                }
+            }
+            if (send.size() > 0) {
+                sends.add(send.toByteArray());
+            }
+            return sends;
+        } finally {
+            encoder.destroy();
+        }
+    }
+
+    /**
+     * 合成一段 2-6 秒的语音：音节（基频 + 谐波，起止渐变）和停顿交替，-60dBFS 底噪
+     */
+    private static short[] synthesize(Random random) {
+        int total = SAMPLE_RATE * (2 + random.nextInt(5));
+        short[] samples = new short[total];
+        int position = 0;
+        while (position < total) {
+            int syllable = SAMPLE_RATE * (120 + random.nextInt(160)) / 1000;
+            double pitch = 120 + random.nextInt(120);
+            for (int i = 0; i < syllable && position < total; i++, position++) {
+                double t = (double) i / SAMPLE_RATE;
+                double envelope = Math.sin(Math.PI * i / syllable);
+                double value = envelope * (0.3 * Math.sin(2 * Math.PI * pitch * t)
+                        + 0.15 * Math.sin(2 * Math.PI * pitch * 2 * t));
+                samples[position] = (short) (value * Short.MAX_VALUE + random.nextGaussian() * 30);
+            }
+            int pause = SAMPLE_RATE * (40 + random.nextInt(200)) / 1000;
+            for (int i = 0; i < pause && position < total; i++, position++) {
+                samples[position] = (short) (random.nextGaussian() * 30);
+            }
+        }
+        return samples;
+    }
+}
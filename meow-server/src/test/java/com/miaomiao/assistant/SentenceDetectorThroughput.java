@@ -0,0 +1,94 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.websocket.service.pipeline.SentenceDetector;
+import opennlp.tools.sentdetect.SentenceDetectorME;
+import opennlp.tools.sentdetect.SentenceModel;
+
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 句子检测吞吐量测试工具
+ * <p>
+ * 在 1 / 8 / 32 个线程下对比：
+ * - 单个 SentenceDetectorME 加全局锁（原单例实现并发安全的最简做法）
+ * - 当前 SentenceDetector（对象池 + 中文快速路径）
+ * 分别测试纯中文文本和中英混合文本，输出每秒检测次数。
+ */
+public class SentenceDetectorThroughput {
+
+    private static final int[] THREADS = {1, 8, 32};
+    private static final long DURATION_MS = 3000;
+
+    private static final String[] CHINESE_TEXTS = {
+            "今天天气不错，我们去公园散步吧。",
+            "主人你好呀！",
+            "这个问题我想了很久；答案其实很简单。",
+            "你今天吃饭了吗？"
+    };
+
+    private static final String[] MIXED_TEXTS = {
+            "Mr. Wang is here. He says hi.",
+            "The price is $29.95 today. Buy now!",
+            "今天天气不错。Let's go.",
+            "Hello world! 你好世界。"
+    };
+
+    public static void main(String[] args) throws Exception {
+        SentenceDetectorME shared;
+        try (InputStream in = SentenceDetectorThroughput.class.getResourceAsStream("/models/opennlp-en-ud-ewt-sentence-1.2-2.5.0.bin")) {
+            shared = new SentenceDetectorME(new SentenceModel(in));
+        }
+        SentenceDetector pooled = SentenceDetector.getInstance();
+
+        for (String[] texts : new String[][]{CHINESE_TEXTS, MIXED_TEXTS}) {
+            System.out.println("\n========== " + (texts == CHINESE_TEXTS ? "纯中文" : "中英混合") + " ==========");
+            for (int threads : THREADS) {
+                double locked = measure(threads, texts, text -> {
+                    synchronized (shared) {
+                        return shared.sentPosDetect(text).length;
+                    }
+                });
+                double current = measure(threads, texts, pooled::matchEndOfSentence);
+                System.out.printf("threads=%-3d 全局锁: %,12.0f ops/s    对象池+快速路径: %,12.0f ops/s%n",
+                        threads, locked, current);
+            }
+        }
+    }
+
+    private static double measure(int threads, String[] texts, Detection detection) throws Exception {
+        // 预热
+        runFor(threads, texts, detection, 1000);
+        return runFor(threads, texts, detection, DURATION_MS) * 1000.0 / DURATION_MS;
+    }
+
+    private static long runFor(int threads, String[] texts, Detection detection, long durationMs) throws Exception {
+        AtomicLong ops = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                long count = 0;
+                long sink = 0;
+                while (System.nanoTime() < deadline) {
+                    sink += detection.detect(texts[(int) ((count + offset) % texts.length)]);
+                    count++;
+                }
+                ops.addAndGet(count + (sink == Long.MIN_VALUE ? 1 : 0));
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        return ops.get();
+    }
+
+    @FunctionalInterface
+    private interface Detection {
+        int detect(String text);
+    }
+}
@@ -0,0 +1,62 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.websocket.service.pipeline.TextAggregator;
+
+/**
+ * TextAggregator 单 token 开销测试工具
+ * <p>
+ * 分别以不同长度的 LLM 回复逐 token 调用 append，输出每个 token 的平均耗时。
+ * 增量实现下单 token 开销应与回复长度无关（不随缓冲区增长）。
+ * <p>
+ * 项目未引入 JMH，这里用预热 + 多轮取最优的方式近似。
+ */
+public class TextAggregatorBenchmark {
+
+    private static final int[] RESPONSE_TOKENS = {1_000, 10_000, 100_000};
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 5;
+
+    public static void main(String[] args) {
+        String[] sentenceTokens = {"今天", "天气", "不错", "，", "我们", "去", "公园", "散步", "吧", "。"};
+        // 没有句子结束标点的长文本：缓冲区会一直增长，原实现每个字符都要复制整个缓冲区
+        String[] unbrokenTokens = {"今天", "天气", "不错", "我们", "去", "公园", "散步", "吧"};
+
+        for (TextAggregator.AggregationStrategy strategy : TextAggregator.AggregationStrategy.values()) {
+            System.out.println("\n========== " + strategy + " ==========");
+            for (int tokens : RESPONSE_TOKENS) {
+                System.out.printf("tokens=%-7d 有句读: %8.1f ns/token    无句读: %8.1f ns/token%n",
+                        tokens,
+                        measure(strategy, sentenceTokens, tokens),
+                        measure(strategy, unbrokenTokens, tokens));
+            }
+        }
+    }
+
+    private static double measure(TextAggregator.AggregationStrategy strategy, String[] vocabulary, int tokens) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += run(strategy, vocabulary, tokens);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long start = System.nanoTime();
+            sink += run(strategy, vocabulary, tokens);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+        return (double) best / tokens;
+    }
+
+    private static long run(TextAggregator.AggregationStrategy strategy, String[] vocabulary, int tokens) {
+        TextAggregator aggregator = new TextAggregator(
+                TextAggregator.AggregationConfig.create().strategy(strategy));
+        long results = 0;
+        for (int i = 0; i < tokens; i++) {
+            results += aggregator.append(vocabulary[i % vocabulary.length]).size();
+        }
+        TextAggregator.AggregateResult last = aggregator.complete();
+        return results + (last == null ? 0 : last.getText().length());
+    }
+}
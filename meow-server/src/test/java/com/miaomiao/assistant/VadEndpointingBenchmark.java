@@ -0,0 +1,174 @@
+package com.miaomiao.assistant;
+
+import com.miaomiao.assistant.websocket.service.pipeline.VoiceActivityDetector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 服务端 VAD 断句延迟测试工具
+ * <p>
+ * 用法：传入若干录音文件（16 位 PCM 的 WAV）；不传参数时使用合成的语音（音节 + 音节间停顿 + 底噪 + 尾部静音）。
+ * 按 20ms 一块模拟实时上传，对不同的静音时长配置统计：
+ * - 断句延迟：检测到说完的位置 - 实际说完的位置（录音以最后一个能量在峰值 35dB 以内的帧为准）
+ * - 误断句：在实际说完之前就判定说完
+ * - 检测耗时：每秒音频的 CPU 时间
+ */
+public class VadEndpointingBenchmark {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHUNK_MS = 20;
+    private static final int[] SILENCE_MS = {300, 500, 800};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Recording> recordings = new LinkedHashMap<>();
+        if (args.length == 0) {
+            Random random = new Random(42);
+            for (int i = 1; i <= 5; i++) {
+                recordings.put("synthetic-" + i, synthesize(random));
+            }
+        } else {
+            for (String arg : args) {
+                byte[] wav = Files.readAllBytes(Path.of(arg));
+                recordings.put(Path.of(arg).getFileName().toString(), new Recording(wav, estimateSpeechEnd(wav)));
+            }
+        }
+
+        for (int silenceMs : SILENCE_MS) {
+            VoiceActivityDetector.Config config = new VoiceActivityDetector.Config(-45f, 0.35f, 120, silenceMs);
+            System.out.printf("%n静音时长 %dms:%n", silenceMs);
+            long totalDelay = 0;
+            int endpointed = 0;
+            for (Map.Entry<String, Recording> entry : recordings.entrySet()) {
+                Recording recording = entry.getValue();
+                Result result = run(recording.wav(), config);
+                String outcome;
+                if (result.endpointMs() < 0) {
+                    outcome = "未断句";
+                } else if (result.endpointMs() < recording.speechEndMs()) {
+                    outcome = "误断句";
+                } else {
+                    long delay = result.endpointMs() - recording.speechEndMs();
+                    totalDelay += delay;
+                    endpointed++;
+                    outcome = "延迟 " + delay + "ms";
+                }
+                System.out.printf("  %-16s 说完@%5dms  断句@%5dms  %-10s 检测耗时 %.1fµs/音频秒%n",
+                        entry.getKey(), recording.speechEndMs(), result.endpointMs(), outcome, result.cpuMicrosPerSecond());
+            }
+            if (endpointed > 0) {
+                System.out.printf("  平均断句延迟 %dms（%d/%d）%n", totalDelay / endpointed, endpointed, recordings.size());
+            }
+        }
+    }
+
+    private static Result run(byte[] wav, VoiceActivityDetector.Config config) {
+        // 预热
+        for (int i = 0; i < 20; i++) {
+            feed(new VoiceActivityDetector(config), wav);
+        }
+        VoiceActivityDetector vad = new VoiceActivityDetector(config);
+        long start = System.nanoTime();
+        feed(vad, wav);
+        long elapsed = System.nanoTime() - start;
+        double audioSeconds = (wav.length - 44) / 2.0 / SAMPLE_RATE;
+        return new Result(vad.isEndpointed() ? vad.getEndpointMs() : -1, elapsed / 1000.0 / audioSeconds);
+    }
+
+    private static void feed(VoiceActivityDetector vad, byte[] wav) {
+        int chunkBytes = SAMPLE_RATE * CHUNK_MS / 1000 * 2;
+        for (int offset = 0; offset < wav.length && !vad.isEndpointed(); offset += chunkBytes) {
+            vad.feed(ByteBuffer.wrap(wav, offset, Math.min(chunkBytes, wav.length - offset)));
+        }
+    }
+
+    /**
+     * 录音的实际说完位置：最后一个能量在峰值 35dB 以内的 20ms 帧（只支持 44 字节标准头的单声道 WAV）
+     */
+    private static long estimateSpeechEnd(byte[] wav) {
+        ByteBuffer buffer = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        int sampleRate = buffer.getInt(24);
+        int frameSamples = sampleRate * CHUNK_MS / 1000;
+        List<Double> energies = new ArrayList<>();
+        double peak = 0;
+        for (int offset = 44; offset + frameSamples * 2 <= wav.length; offset += frameSamples * 2) {
+            double energy = 0;
+            for (int i = 0; i < frameSamples; i++) {
+                double sample = buffer.getShort(offset + i * 2);
+                energy += sample * sample;
+            }
+            energies.add(energy);
+            peak = Math.max(peak, energy);
+        }
+        for (int i = energies.size() - 1; i >= 0; i--) {
+            if (energies.get(i) > 0 && 10 * Math.log10(peak / energies.get(i)) <= 35) {
+                return (long) (i + 1) * CHUNK_MS;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 合成一段语音：300ms 前导静音，3-6 个词（每词 2-4 个音节，音节间 40-100ms、词间 150-350ms 停顿），1.5s 尾部静音，-60dBFS 底噪
+     */
+    private static Recording synthesize(Random random) {
+        List<Short> samples = new ArrayList<>();
+        addSilence(samples, 300, random);
+        int words = 3 + random.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                addSyllable(samples, 120 + random.nextInt(160), 120 + random.nextInt(120), random);
+                if (s < syllables - 1) {
+                    addSilence(samples, 40 + random.nextInt(60), random);
+                }
+            }
+            if (w < words - 1) {
+                addSilence(samples, 150 + random.nextInt(200), random);
+            }
+        }
+        long speechEndMs = (long) samples.size() * 1000 / SAMPLE_RATE;
+        addSilence(samples, 1500, random);
+
+        ByteBuffer buffer = ByteBuffer.allocate(44 + samples.size() * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + samples.size() * 2).putInt(0x45564157)
+                .putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16)
+                .putInt(0x61746164).putInt(samples.size() * 2);
+        samples.forEach(buffer::putShort);
+        return new Recording(buffer.array(), speechEndMs);
+    }
+
+    private static void addSyllable(List<Short> samples, int ms, double pitch, Random random) {
+        int count = SAMPLE_RATE * ms / 1000;
+        for (int i = 0; i < count; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            // 起止渐变的包络
+            double envelope = Math.sin(Math.PI * i / count);
+            double value = envelope * (0.3 * Math.sin(2 * Math.PI * pitch * t)
+                    + 0.15 * Math.sin(2 * Math.PI * pitch * 2 * t)
+                    + 0.05 * Math.sin(2 * Math.PI * pitch * 3 * t));
+            samples.add((short) (value * Short.MAX_VALUE + random.nextGaussian() * 30));
+        }
+    }
+
+    private static void addSilence(List<Short> samples, int ms, Random random) {
+        int count = SAMPLE_RATE * ms / 1000;
+        for (int i = 0; i < count; i++) {
+            samples.add((short) (random.nextGaussian() * 30));
+        }
+    }
+
+    private record Recording(byte[] wav, long speechEndMs) {
+    }
+
+    private record Result(long endpointMs, double cpuMicrosPerSecond) {
+    }
+}
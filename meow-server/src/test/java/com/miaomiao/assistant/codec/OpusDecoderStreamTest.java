@@ -0,0 +1,57 @@
+package com.miaomiao.assistant.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流式解码测试：长度头和包在任意位置分块都能凑齐解码；非法长度报错；关闭时释放解码器
+ */
+class OpusDecoderStreamTest {
+
+    private static final int PCM_FRAME_BYTES = 640;
+
+    private final net.labymod.opus.OpusCodec codec = mock(net.labymod.opus.OpusCodec.class);
+
+    @Test
+    void decodesPacketsSplitAtAnyPosition() {
+        when(codec.decodeFrame(any(byte[].class))).thenAnswer(invocation -> new byte[PCM_FRAME_BYTES]);
+        // 三个包：长度 3、1、5
+        byte[] stream = {3, 0, 1, 2, 3, 1, 0, 9, 5, 0, 1, 2, 3, 4, 5};
+        for (int split = 1; split < stream.length; split++) {
+            OpusDecoderStream decoder = new OpusDecoderStream(codec);
+            int pcm = decoder.decode(ByteBuffer.wrap(stream, 0, split)).length
+                    + decoder.decode(ByteBuffer.wrap(stream, split, stream.length - split)).length;
+            assertEquals(3 * PCM_FRAME_BYTES, pcm, "split=" + split);
+            assertEquals(3, decoder.getPackets());
+            assertFalse(decoder.hasPending());
+        }
+    }
+
+    @Test
+    void keepsTruncatedPacketPending() {
+        when(codec.decodeFrame(any(byte[].class))).thenReturn(new byte[PCM_FRAME_BYTES]);
+        OpusDecoderStream decoder = new OpusDecoderStream(codec);
+        assertEquals(PCM_FRAME_BYTES, decoder.decode(ByteBuffer.wrap(new byte[]{1, 0, 7, 4, 0, 1})).length);
+        assertTrue(decoder.hasPending());
+    }
+
+    @Test
+    void rejectsInvalidLengthAndReleasesOnClose() {
+        OpusDecoderStream decoder = new OpusDecoderStream(codec);
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{0, 0, 1})));
+        decoder.close();
+        decoder.close();
+        verify(codec).destroy();
+        assertThrows(IllegalStateException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{1})));
+    }
+}
@@ -0,0 +1,98 @@
+package com.miaomiao.assistant.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 编码器池测试：归还后复用、超过空闲上限关闭、出错不归还；编码流跨分块保留不足一帧的数据；未知后端回退 jni
+ */
+class OpusEncoderPoolTest {
+
+    private static final int FRAME_BYTES = 960;
+
+    private final List<OpusFrameEncoder> created = new ArrayList<>();
+
+    private OpusEncoderPool newPool(int maxIdle) {
+        return new OpusEncoderPool(() -> {
+            OpusFrameEncoder codec = mock(OpusFrameEncoder.class);
+            when(codec.encodeFrame(any(byte[].class), anyInt(), anyInt())).thenReturn(new byte[]{1});
+            created.add(codec);
+            return codec;
+        }, maxIdle);
+    }
+
+    @Test
+    void reusesReleasedEncodersUpToMaxIdle() {
+        OpusEncoderPool pool = newPool(1);
+        OpusEncoderStream first = new OpusEncoderStream(pool, FRAME_BYTES);
+        OpusEncoderStream second = new OpusEncoderStream(pool, FRAME_BYTES);
+        first.close();
+        second.close();
+        // 归还时重置状态；空闲上限 1：second 的编码器被关闭
+        verify(created.get(0)).reset();
+        verify(created.get(1)).close();
+        verify(created.get(0), never()).close();
+
+        OpusEncoderStream third = new OpusEncoderStream(pool, FRAME_BYTES);
+        third.write(new byte[FRAME_BYTES]);
+        verify(created.get(0)).encodeFrame(any(byte[].class), anyInt(), anyInt());
+        third.close();
+
+        OpusEncoderPool.PoolMetrics metrics = pool.getMetrics();
+        assertEquals(2, metrics.created());
+        assertEquals(1, metrics.reused());
+        assertEquals(1, metrics.idle());
+        assertEquals(0, metrics.leased());
+
+        pool.close();
+        verify(created.get(0)).close();
+    }
+
+    @Test
+    void failedEncoderIsClosedInsteadOfReturned() {
+        OpusEncoderPool pool = newPool(4);
+        OpusEncoderStream stream = new OpusEncoderStream(pool, FRAME_BYTES);
+        when(created.get(0).encodeFrame(any(byte[].class), anyInt(), anyInt())).thenThrow(new IllegalStateException("boom"));
+        assertThrows(IllegalStateException.class, () -> stream.write(new byte[FRAME_BYTES]));
+        stream.close();
+        verify(created.get(0)).close();
+        assertEquals(0, pool.getMetrics().idle());
+    }
+
+    @Test
+    void carriesPartialFrameAcrossChunksAndPadsOnlyAtFinish() {
+        OpusEncoderPool pool = newPool(4);
+        try (OpusEncoderStream stream = new OpusEncoderStream(pool, FRAME_BYTES)) {
+            assertEquals(0, stream.write(new byte[500]).size());
+            assertEquals(1, stream.write(new byte[500]).size());
+            assertEquals(2, stream.write(new byte[1900]).size());
+            // 剩余 20 字节只在结束时补 0 编码
+            assertEquals(1, stream.finish().size());
+            assertEquals(0, stream.finish().size());
+        }
+        assertSame(created.get(0), created.get(created.size() - 1));
+        assertEquals(1, pool.getMetrics().idle());
+    }
+
+    @Test
+    void unknownOrUnavailableBackendFallsBackToJni() {
+        assertEquals("jni", OpusCodec.createEncoderFactory("jni", null).name());
+        assertEquals("jni", OpusCodec.createEncoderFactory("nope", null).name());
+        // JDK 22 以下没有编译 ffm 后端
+        if (Runtime.version().feature() < 22) {
+            assertEquals("jni", OpusCodec.createEncoderFactory("ffm", null).name());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.miaomiao.assistant.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockingTaskExecutorTest {
+
+    private BlockingTaskExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void serialExecutorRunsTasksInSubmissionOrder() throws Exception {
+        executor = new BlockingTaskExecutor("platform", 8, 100);
+        BlockingTaskExecutor.SerialExecutor serial = executor.newSerialExecutor();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 100; i++) {
+            int index = i;
+            serial.execute(() -> order.add(index));
+        }
+
+        assertTrue(serial.awaitIdle(5, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, order);
+    }
+
+    @Test
+    void platformModeRejectsWhenQueueIsFull() throws Exception {
+        executor = new BlockingTaskExecutor("platform", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> {
+        });
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        assertEquals(1, executor.getMetrics().rejected());
+        release.countDown();
+    }
+
+    @Test
+    void virtualModeFallsBackToPlatformWhenUnsupported() {
+        executor = new BlockingTaskExecutor("virtual", 4, 10);
+
+        BlockingTaskExecutor.Mode expected = BlockingTaskExecutor.isVirtualThreadSupported()
+                ? BlockingTaskExecutor.Mode.VIRTUAL
+                : BlockingTaskExecutor.Mode.PLATFORM;
+        assertEquals(expected, executor.getMode());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
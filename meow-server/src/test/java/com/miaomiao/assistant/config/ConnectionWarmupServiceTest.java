@@ -0,0 +1,103 @@
+package com.miaomiao.assistant.config;
+
+import com.miaomiao.assistant.model.AbstractModelManager;
+import com.miaomiao.assistant.model.BaseModelProvider;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConnectionWarmupServiceTest {
+
+    @Test
+    void providersSharingKeyAreWarmedOnceAndRecentWarmupIsSkipped() {
+        CountingProvider llm = new CountingProvider("http:https://api.example.com/", false);
+        CountingProvider asr = new CountingProvider("http:https://api.example.com/", false);
+        CountingProvider tts = new CountingProvider("zhipu-sdk@1", false);
+        ConnectionWarmupService service = new ConnectionWarmupService(
+                List.of(manager(llm), manager(asr, tts)), Runnable::run, true, 60);
+
+        service.warmup("session-open");
+        service.warmup("speech-start");
+
+        assertEquals(1, llm.warmups.get() + asr.warmups.get());
+        assertEquals(1, tts.warmups.get());
+        ConnectionWarmupService.WarmupMetrics metrics = service.getMetrics();
+        assertEquals(2, metrics.triggers());
+        assertEquals(2, metrics.succeeded());
+        assertEquals(2, metrics.skipped());
+        assertEquals(2, metrics.targets());
+    }
+
+    @Test
+    void failedWarmupIsRetriedOnNextTrigger() {
+        CountingProvider provider = new CountingProvider("http:https://down.example.com/", true);
+        ConnectionWarmupService service = new ConnectionWarmupService(
+                List.of(manager(provider)), Runnable::run, true, 60);
+
+        service.warmup("session-open");
+        service.warmup("speech-start");
+
+        assertEquals(2, provider.warmups.get());
+        assertEquals(2, service.getMetrics().failed());
+    }
+
+    @Test
+    void disabledServiceDoesNothing() {
+        CountingProvider provider = new CountingProvider("http:https://api.example.com/", false);
+        ConnectionWarmupService service = new ConnectionWarmupService(
+                List.of(manager(provider)), Runnable::run, false, 60);
+
+        service.warmup("session-open");
+
+        assertEquals(0, provider.warmups.get());
+        assertEquals(0, service.getMetrics().triggers());
+    }
+
+    private static AbstractModelManager manager(BaseModelProvider... providers) {
+        return new AbstractModelManager(new AIServiceConfig()) {
+            @Override
+            protected ModelType modelType() {
+                return ModelType.LLM;
+            }
+
+            @Override
+            protected BaseModelProvider createProvider(String name) {
+                return null;
+            }
+
+            @Override
+            public Collection<BaseModelProvider> getProviders() {
+                return List.of(providers);
+            }
+        };
+    }
+
+    private static final class CountingProvider extends BaseModelProvider {
+        private final String key;
+        private final boolean fail;
+        private final AtomicInteger warmups = new AtomicInteger();
+
+        private CountingProvider(String key, boolean fail) {
+            this.key = key;
+            this.fail = fail;
+        }
+
+        @Override
+        public String warmupKey() {
+            return key;
+        }
+
+        @Override
+        public void warmup() throws IOException {
+            warmups.incrementAndGet();
+            if (fail) {
+                throw new IOException("connection refused");
+            }
+        }
+    }
+}
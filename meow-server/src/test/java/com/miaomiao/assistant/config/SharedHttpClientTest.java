@@ -0,0 +1,111 @@
+package com.miaomiao.assistant.config;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedHttpClientTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private SharedHttpClient sharedHttpClient;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/slow", exchange -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        AIServiceConfig aiServiceConfig = new AIServiceConfig();
+        AIServiceConfig.ProviderConfig providerConfig = new AIServiceConfig.ProviderConfig();
+        providerConfig.setMaxConcurrentRequests(2);
+        aiServiceConfig.getProviders().put("limited", providerConfig);
+        sharedHttpClient = new SharedHttpClient(aiServiceConfig, 256, 64, 8, 60, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        sharedHttpClient.shutdown();
+    }
+
+    @Test
+    void providerLimitQueuesExtraCallsAndConnectionsAreReused() throws Exception {
+        OkHttpClient client = sharedHttpClient.clientFor("limited");
+        assertSame(client, sharedHttpClient.clientFor("limited"));
+
+        CountDownLatch done = new CountDownLatch(4);
+        Request request = new Request.Builder()
+                .url("http://127.0.0.1:" + server.getAddress().getPort() + "/slow")
+                .build();
+        for (int i = 0; i < 4; i++) {
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    done.countDown();
+                }
+            });
+        }
+
+        SharedHttpClient.DispatcherMetrics dispatcher = sharedHttpClient.getMetrics().dispatchers().get("limited");
+        assertEquals(2, dispatcher.maxRequestsPerHost());
+        assertEquals(2, dispatcher.runningCalls());
+        assertEquals(2, dispatcher.queuedCalls());
+
+        Thread.sleep(50);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        SharedHttpClient.HttpClientMetrics metrics = sharedHttpClient.getMetrics();
+        assertEquals(4, metrics.calls());
+        assertEquals(4, metrics.connectionsAcquired());
+        // 排队的两个请求复用前两个请求释放的 HTTP/1.1 连接
+        assertEquals(2, metrics.connectionsCreated());
+        assertTrue(metrics.maxQueueWaitMs() >= 50, "排队请求的等待时间应被统计");
+    }
+
+    @Test
+    void unconfiguredProviderUsesDefaultPerHostLimit() {
+        sharedHttpClient.clientFor("other");
+
+        assertEquals(64, sharedHttpClient.getMetrics().dispatchers().get("other").maxRequestsPerHost());
+    }
+}
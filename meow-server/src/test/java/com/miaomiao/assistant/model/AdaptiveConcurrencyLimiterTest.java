@@ -0,0 +1,85 @@
+package com.miaomiao.assistant.model;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final String KEY = "zhipu:glm-tts";
+
+    @Test
+    void queuesBeyondLimitAndRejectsAfterDeadline() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 100);
+        AtomicInteger subscribed = new AtomicInteger();
+        Flux<String> pending = Flux.<String>never().doOnSubscribe(s -> subscribed.incrementAndGet());
+
+        Disposable first = limiter.limit(KEY, pending).subscribe();
+        Disposable second = limiter.limit(KEY, pending).subscribe();
+
+        assertEquals(2, subscribed.get());
+        assertThrows(RejectedExecutionException.class,
+                () -> limiter.limit(KEY, pending).blockLast(Duration.ofSeconds(5)));
+        assertEquals(2, subscribed.get());
+        AdaptiveConcurrencyLimiter.LimitMetrics metrics = limiter.getMetrics().get(KEY);
+        assertEquals(1, metrics.rejected());
+        assertEquals(0, metrics.queued());
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    void queuedCallStartsWhenPermitIsReleased() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 5000);
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicInteger secondSubscribed = new AtomicInteger();
+
+        limiter.limit(KEY, upstream.asFlux()).subscribe();
+        Disposable second = limiter.limit(KEY, Flux.<String>never()
+                .doOnSubscribe(s -> secondSubscribed.incrementAndGet())).subscribe();
+        assertEquals(1, limiter.getMetrics().get(KEY).queued());
+
+        upstream.tryEmitComplete();
+
+        assertEquals(1, secondSubscribed.get());
+        assertEquals(0, limiter.getMetrics().get(KEY).queued());
+        // 取消只归还名额，不调整上限
+        second.dispose();
+        assertEquals(0, limiter.getMetrics().get(KEY).inflight());
+    }
+
+    @Test
+    void errorsShrinkLimitAndSuccessesUnderLoadGrowIt() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 5000);
+
+        limiter.limit(KEY, Flux.just("ok")).blockLast();
+        assertEquals(3, limiter.getLimit(KEY));
+
+        assertThrows(IllegalStateException.class, () -> limiter.limit(KEY,
+                Flux.<String>error(new IllegalStateException("429 Too Many Requests"))).blockLast());
+        assertEquals(1, limiter.getLimit(KEY));
+        assertEquals(1, limiter.getMetrics().get(KEY).drops());
+    }
+
+    @Test
+    void disabledLimiterPassesCallsThrough() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(false, 1, 1, 1, 0.5, 2.0, 0, 0);
+
+        limiter.limit(KEY, Flux.never()).subscribe();
+
+        assertEquals("ok", limiter.limit(KEY, Flux.just("ok")).blockLast());
+        assertEquals(Integer.MAX_VALUE, limiter.getLimit(KEY));
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int initialLimit, long maxWaitMs) {
+        return new AdaptiveConcurrencyLimiter(true, initialLimit, 1, 64, 0.5, 2.0, maxWaitMs, 100);
+    }
+}
@@ -0,0 +1,141 @@
+package com.miaomiao.assistant.model.asr;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流式 ASR 上传测试：本地模拟提供商边说边上传，服务端在最后一块音频产生之前就收到了数据
+ */
+class StreamingASRUploadTest {
+
+    private static final int CHUNKS = 5;
+    private static final int CHUNK_SIZE = 1024;
+    private static final long CHUNK_INTERVAL_MS = 60;
+
+    private HttpServer server;
+    private final AtomicLong firstByteNanos = new AtomicLong();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/asr", exchange -> {
+            long total = 0;
+            byte[] buffer = new byte[4096];
+            try (InputStream body = exchange.getRequestBody()) {
+                int read;
+                while ((read = body.read(buffer)) > 0) {
+                    firstByteNanos.compareAndSet(0, System.nanoTime());
+                    total += read;
+                }
+            }
+            byte[] response = ("received " + total + " bytes").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void uploadOverlapsWithSpeech() {
+        MockStreamingASRProvider provider = new MockStreamingASRProvider(
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/asr");
+        Sinks.Many<ByteBuffer> speech = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicLong lastChunkNanos = new AtomicLong();
+
+        // 模拟用户说话：每 60ms 到达一块音频
+        Schedulers.boundedElastic().schedule(() -> {
+            for (int i = 0; i < CHUNKS; i++) {
+                sleep(CHUNK_INTERVAL_MS);
+                if (i == CHUNKS - 1) {
+                    lastChunkNanos.set(System.nanoTime());
+                }
+                speech.tryEmitNext(ByteBuffer.wrap(new byte[CHUNK_SIZE]));
+            }
+            speech.tryEmitComplete();
+        });
+
+        List<ASRResult> results = provider.speechToTextStream(speech.asFlux(), ASROptions.of("mock"))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(List.of(ASRResult.of("received " + CHUNKS * CHUNK_SIZE + " bytes")), results);
+        assertTrue(firstByteNanos.get() > 0 && firstByteNanos.get() < lastChunkNanos.get(),
+                "服务端应在用户说完之前开始收到音频");
+    }
+
+    @Test
+    void collectsNonStreamingAudioInMemory() {
+        byte[] collected = BaseASRModelProvider.collectAudio(Flux.just(
+                        ByteBuffer.wrap(new byte[]{1, 2}),
+                        ByteBuffer.allocateDirect(1).put((byte) 3).flip(),
+                        ByteBuffer.wrap(new byte[]{9, 4, 5}, 1, 2)))
+                .block();
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, collected);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 本地模拟的流式 ASR 提供商：音频块到达即通过 chunked 请求体上传，服务端返回整段识别结果
+     */
+    static class MockStreamingASRProvider extends BaseASRModelProvider {
+
+        private final OkHttpClient client = new OkHttpClient();
+        private final String url;
+
+        MockStreamingASRProvider(String url) {
+            this.providerName = "mock";
+            this.url = url;
+        }
+
+        @Override
+        public Flux<ASRResult> speechToTextStream(Flux<ByteBuffer> audioStream, ASROptions options) {
+            return Mono.fromCallable(() -> {
+                        Request request = new Request.Builder()
+                                .url(url)
+                                .post(new StreamingAudioRequestBody(audioStream, MediaType.get("audio/wav")))
+                                .build();
+                        try (Response response = client.newCall(request).execute()) {
+                            return ASRResult.of(response.body().string());
+                        }
+                    })
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .flux();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.miaomiao.assistant.model.asr;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 流式上传的音频请求体（HTTP chunked）
+ * <p>
+ * OkHttp 写请求体时订阅音频流，每到达一块立即写出并 flush，上传与用户说话同时进行；
+ * 长度未知，只能发送一次（不支持重试）。
+ * <p>
+ * 目前接入的提供商都需要完整文件，仅供 {@link StreamingASRUploadTest} 的模拟提供商使用；
+ * 接入支持 chunked 上传的提供商时再移到 main。
+ */
+class StreamingAudioRequestBody extends RequestBody {
+
+    /**
+     * 写线程等待的最大缓冲块数
+     */
+    private static final int PREFETCH = 32;
+
+    private final Flux<ByteBuffer> audioStream;
+    private final MediaType contentType;
+
+    StreamingAudioRequestBody(Flux<ByteBuffer> audioStream, MediaType contentType) {
+        this.audioStream = audioStream;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        // 在 OkHttp 的请求线程上阻塞等待下一块音频
+        for (ByteBuffer chunk : audioStream.toIterable(PREFETCH)) {
+            while (chunk.hasRemaining()) {
+                sink.write(chunk);
+            }
+            sink.flush();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.miaomiao.assistant.model.llm.provider;
+
+import com.miaomiao.assistant.model.llm.AppChatMessage;
+import com.miaomiao.assistant.model.llm.AppLLMResponse;
+import com.miaomiao.assistant.model.llm.LLMOptions;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HTTP LLM 流式请求取消测试：本地模拟一个持续输出的 SSE 服务，下游取消后连接应被断开
+ */
+class HttpLLMProviderTest {
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch disconnected = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                // 先发一个 token，之后一直发心跳直到客户端断开
+                write(out, "data: {\"choices\":[{\"delta\":{\"content\":\"喵\"}}]}\n\n");
+                for (int i = 0; i < 500; i++) {
+                    Thread.sleep(10);
+                    write(out, ": ping\n\n");
+                }
+            } catch (IOException e) {
+                disconnected.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void cancellingStreamClosesEventSource() throws Exception {
+        HttpLLMProvider provider = new HttpLLMProvider("http-test",
+                "key", "http://127.0.0.1:" + server.getAddress().getPort() + "/chat", new OkHttpClient());
+
+        AppLLMResponse first = provider.chatStream(List.of(new AppChatMessage("user", "你好")), LLMOptions.of("test"))
+                .next()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals("喵", first.text());
+        assertTrue(disconnected.await(5, TimeUnit.SECONDS), "下游取消后 SSE 连接应被断开");
+    }
+
+    @Test
+    void requestIsSentOnSubscribe() throws Exception {
+        HttpLLMProvider provider = new HttpLLMProvider("http-test",
+                "key", "http://127.0.0.1:" + server.getAddress().getPort() + "/chat", new OkHttpClient());
+
+        var stream = provider.chatStream(List.of(new AppChatMessage("user", "你好")), LLMOptions.of("test"));
+        Thread.sleep(100);
+        assertEquals(0, requests.get());
+
+        stream.next().block(Duration.ofSeconds(5));
+        assertEquals(1, requests.get());
+    }
+
+    private static void write(OutputStream out, String data) throws IOException {
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,91 @@
+package com.miaomiao.assistant.websocket.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二进制音频帧测试：解码不复制 payload，TTS 帧直接编码进池化缓冲区且与原编码格式一致
+ */
+class BinaryAudioFrameTest {
+
+    @Test
+    void decodeReturnsReadOnlyViewOfPayload() {
+        byte[] encoded = BinaryAudioFrame.clientAudio("audio/webm;codecs=opus", new byte[]{1, 2, 3}, true).encode();
+        BinaryAudioFrame frame = BinaryAudioFrame.decode(ByteBuffer.wrap(encoded));
+
+        assertEquals(BinaryAudioFrame.TYPE_CLIENT_AUDIO, frame.getMessageType());
+        assertTrue(frame.isFinalChunk());
+        assertEquals("audio/webm;codecs=opus", frame.getFormat());
+        assertEquals(3, frame.getPayloadLength());
+
+        ByteBuffer payload = frame.getPayload();
+        assertTrue(payload.isReadOnly());
+        assertThrows(ReadOnlyBufferException.class, () -> payload.put(0, (byte) 9));
+
+        // 视图共享原始缓冲区
+        encoded[encoded.length - 1] = 7;
+        assertEquals(7, frame.getPayload().get(2));
+    }
+
+    @Test
+    void encodesServerTTSIntoPooledBuffer() {
+        List<byte[]> packets = List.of(new byte[]{10, 20, 30, 40});
+        byte[] framed = {4, 0, 10, 20, 30, 40};
+        byte[] expected = BinaryAudioFrame.serverTTS(BinaryAudioFrame.FORMAT_OPUS, framed, false, 3).encode();
+
+        AudioFrameBufferPool pool = new AudioFrameBufferPool(256, 4);
+        ByteBuffer buffer = pool.acquire(BinaryAudioFrame.serverTTSLength(packets, 3));
+        assertTrue(buffer.isDirect());
+        BinaryAudioFrame.encodeServerTTS(buffer, packets, false, 3);
+        buffer.flip();
+        assertEquals(expected.length, buffer.remaining());
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+        assertArrayEquals(expected, actual);
+
+        pool.release(buffer);
+        assertSame(buffer, pool.acquire(16));
+        assertEquals(1, pool.getAllocatedCount());
+    }
+
+    @Test
+    void encodesEmptySegmentMarker() {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryAudioFrame.serverTTSLength(List.of(), 3));
+        BinaryAudioFrame.encodeServerTTS(buffer, List.of(), true, 3);
+        buffer.flip();
+        BinaryAudioFrame frame = BinaryAudioFrame.decode(buffer);
+        assertTrue(frame.isFinalChunk());
+        assertEquals(3, frame.getTurn());
+        assertEquals(0, frame.getPayloadLength());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void serverTTSFrameCarriesTurn() {
+        List<byte[]> packets = List.of(new byte[]{1, 2, 3}, new byte[]{4, 5});
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryAudioFrame.serverTTSLength(packets, 70000));
+        BinaryAudioFrame.encodeServerTTS(buffer, packets, true, 70000);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        BinaryAudioFrame frame = BinaryAudioFrame.decode(buffer);
+        assertEquals(70000, frame.getTurn());
+        assertTrue(frame.isFinalChunk());
+        assertEquals(BinaryAudioFrame.FORMAT_OPUS, frame.getFormat());
+        assertEquals(2 + 3 + 2 + 2, frame.getPayloadLength());
+
+        // 不带轮次的帧格式不变
+        byte[] legacy = BinaryAudioFrame.serverTTS(BinaryAudioFrame.FORMAT_OPUS, new byte[]{9}, false).encode();
+        assertEquals(BinaryAudioFrame.NO_TURN, BinaryAudioFrame.decode(ByteBuffer.wrap(legacy)).getTurn());
+    }
+}
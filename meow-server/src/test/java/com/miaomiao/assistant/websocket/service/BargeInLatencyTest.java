@@ -0,0 +1,153 @@
+package com.miaomiao.assistant.websocket.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.miaomiao.assistant.config.BlockingTaskExecutor;
+import com.miaomiao.assistant.service.ConversationConfigService;
+import com.miaomiao.assistant.websocket.protocol.AudioFrameBufferPool;
+import com.miaomiao.assistant.websocket.protocol.BinaryAudioFrame;
+import com.miaomiao.assistant.websocket.service.pipeline.UpstreamCancellationTracker;
+import com.miaomiao.assistant.websocket.session.OutboundWriter;
+import com.miaomiao.assistant.websocket.session.SessionState;
+import com.miaomiao.assistant.websocket.session.WebSocketMessageSender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 打断延迟测试：收到 terminate 到最后一个旧轮次 TTS 帧写出的时间
+ * <p>
+ * 客户端每条消息写出耗时 1ms，TTS 以每 0.2ms 一帧的速度产出，下行队列持续积压；
+ * 打断后工作线程仍在继续产出旧轮次的帧（模拟在途任务），这些帧应在发送前丢弃，排队的旧帧应被移除。
+ */
+class BargeInLatencyTest {
+
+    private static final long SEND_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_BARGE_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private OutboundWriter writer;
+    private BlockingTaskExecutor blockingTaskExecutor;
+
+    /**
+     * 最后一个旧轮次 TTS 帧写完的时间、flush 消息写完的时间
+     */
+    private final AtomicLong lastStaleFrameNanos = new AtomicLong();
+    private final AtomicLong flushSentNanos = new AtomicLong();
+    private volatile int staleTurn = -1;
+
+    @BeforeEach
+    void setUp() {
+        writer = new OutboundWriter(2, 64L << 20, "drop-stale-tokens");
+        blockingTaskExecutor = new BlockingTaskExecutor("platform", 2, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+        blockingTaskExecutor.shutdown();
+    }
+
+    @Test
+    void terminateStopsStaleAudioWithinTenMilliseconds() throws Exception {
+        WebSocketSession session = slowSession();
+        WebSocketMessageSender messageSender = new WebSocketMessageSender(new ObjectMapper(), writer,
+                new AudioFrameBufferPool(2048, 64));
+        ConversationService conversationService = new ConversationService(mock(ASRService.class),
+                mock(LLMService.class), mock(TTSService.class), messageSender, mock(ConversationConfigService.class),
+                mock(SpeculativeLLMStarter.class), blockingTaskExecutor, new UpstreamCancellationTracker());
+        SessionState state = new SessionState(session, blockingTaskExecutor.newSerialExecutor());
+
+        // 预热打断路径（类加载、Jackson 序列化器），避免把冷启动耗时算进打断延迟
+        conversationService.terminateCurrentResponse(state);
+        Thread.sleep(20);
+        lastStaleFrameNanos.set(0);
+        flushSentNanos.set(0);
+
+        int turn = state.beginTurn();
+        staleTurn = turn;
+        AtomicBoolean producing = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            List<byte[]> packets = List.of(new byte[60]);
+            while (producing.get()) {
+                try {
+                    messageSender.sendTTSAudio(state, turn, packets, false);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                LockSupport.parkNanos(200_000);
+            }
+        }, "tts-producer");
+        producer.start();
+
+        // 等下行队列积压后打断
+        Thread.sleep(100);
+        long terminateNanos = System.nanoTime();
+        conversationService.terminateCurrentResponse(state);
+
+        // 打断后工作线程继续产出一段时间
+        Thread.sleep(50);
+        producing.set(false);
+        producer.join();
+        Thread.sleep(20);
+
+        assertTrue(lastStaleFrameNanos.get() > 0, "打断前应已写出旧轮次 TTS 帧");
+        assertTrue(flushSentNanos.get() >= terminateNanos, "旧轮次的 flush 消息应在打断后写出");
+        long lastFrameLatency = lastStaleFrameNanos.get() - terminateNanos;
+        long flushLatency = flushSentNanos.get() - terminateNanos;
+        assertTrue(lastFrameLatency < MAX_BARGE_IN_NANOS,
+                "最后一个旧轮次 TTS 帧应在打断后 10ms 内写出，实际 " + lastFrameLatency / 1e6 + "ms");
+        assertTrue(flushLatency < MAX_BARGE_IN_NANOS,
+                "flush 应在打断后 10ms 内写出，实际 " + flushLatency / 1e6 + "ms");
+    }
+
+    /**
+     * 每条消息写出耗时 1ms 的客户端
+     */
+    private WebSocketSession slowSession() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("barge-in");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            sleepNanos(SEND_NANOS);
+            long now = System.nanoTime();
+            if (message instanceof BinaryMessage binary) {
+                BinaryAudioFrame frame = BinaryAudioFrame.decode(binary.getPayload().duplicate());
+                if (frame.getTurn() == staleTurn) {
+                    lastStaleFrameNanos.set(now);
+                }
+            } else if (message instanceof TextMessage text && text.getPayload().contains("\"flush\"")) {
+                // 只记录让旧轮次过期的 flush（轮次大于旧轮次），预热时的 flush 不算
+                int flushTurn = OBJECT_MAPPER.readTree(text.getPayload()).path("turn").asInt(-1);
+                if (staleTurn >= 0 && flushTurn > staleTurn) {
+                    flushSentNanos.compareAndSet(0, now);
+                }
+            }
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private static void sleepNanos(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
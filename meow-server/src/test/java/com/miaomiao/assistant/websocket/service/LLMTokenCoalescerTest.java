@@ -0,0 +1,99 @@
+package com.miaomiao.assistant.websocket.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * token 合并发送测试：按 seq 拼接增量能还原完整文本，checkpoint 与刷新窗口按配置生效
+ */
+class LLMTokenCoalescerTest {
+
+    private record Frame(long seq, String delta, String accumulated, boolean finished) {
+    }
+
+    private final List<Frame> frames = new CopyOnWriteArrayList<>();
+
+    private LLMTokenCoalescer create(long flushIntervalMs, int maxPendingTokens, int checkpointInterval) {
+        return new LLMTokenCoalescer(
+                (seq, delta, accumulated, finished) -> frames.add(new Frame(seq, delta, accumulated, finished)),
+                Schedulers.single(), flushIntervalMs, maxPendingTokens, checkpointInterval);
+    }
+
+    @Test
+    void coalescesBurstIntoFramesAndRebuildsText() {
+        LLMTokenCoalescer coalescer = create(10_000, 4, 3);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            String token = "t" + i + "，";
+            expected.append(token);
+            coalescer.append(token);
+        }
+        coalescer.finish();
+
+        // 30 个 token 每 4 个一帧 + 结束帧
+        assertEquals(8, frames.size());
+        StringBuilder rebuilt = new StringBuilder();
+        for (int i = 0; i < frames.size(); i++) {
+            Frame frame = frames.get(i);
+            assertEquals(i, frame.seq());
+            rebuilt.append(frame.delta());
+            boolean checkpoint = frame.finished() || (i + 1) % 3 == 0;
+            if (checkpoint) {
+                assertEquals(rebuilt.toString(), frame.accumulated());
+            } else {
+                assertNull(frame.accumulated());
+            }
+        }
+        assertTrue(frames.get(frames.size() - 1).finished());
+        assertEquals(expected.toString(), rebuilt.toString());
+        assertEquals(expected.toString(), coalescer.getAccumulated());
+    }
+
+    @Test
+    void flushesPendingTokensWhenWindowElapses() throws InterruptedException {
+        LLMTokenCoalescer coalescer = create(20, 100, 100);
+        coalescer.append("你好");
+        coalescer.append("，主人");
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (frames.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, frames.size());
+        assertEquals("你好，主人", frames.get(0).delta());
+
+        coalescer.finish();
+        assertEquals(2, frames.size());
+        assertEquals("", frames.get(1).delta());
+        assertEquals("你好，主人", frames.get(1).accumulated());
+    }
+
+    @Test
+    void fullModeSendsEveryTokenWithAccumulated() {
+        LLMTokenCoalescer coalescer = create(0, 1, 1);
+        coalescer.append("a");
+        coalescer.append("b");
+        assertEquals(2, frames.size());
+        assertEquals("b", frames.get(1).delta());
+        assertNotNull(frames.get(1).accumulated());
+        assertEquals("ab", frames.get(1).accumulated());
+    }
+
+    @Test
+    void closeWithoutFlushDropsPendingTokens() {
+        LLMTokenCoalescer coalescer = create(10_000, 100, 100);
+        coalescer.append("被中断的内容");
+        coalescer.close(false);
+        coalescer.append("之后的内容");
+        coalescer.finish();
+        assertTrue(frames.isEmpty());
+    }
+}
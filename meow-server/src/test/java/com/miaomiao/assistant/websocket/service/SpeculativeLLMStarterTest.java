@@ -0,0 +1,102 @@
+package com.miaomiao.assistant.websocket.service;
+
+import com.miaomiao.assistant.model.llm.AppLLMResponse;
+import com.miaomiao.assistant.websocket.ConversationConfig;
+import com.miaomiao.assistant.websocket.session.SessionState;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * LLM 推测执行测试：中间结果稳定后发起、最终结果一致时提交、不一致时断开
+ */
+class SpeculativeLLMStarterTest {
+
+    private final LLMService llmService = mock(LLMService.class);
+    private final SessionState state = mock(SessionState.class);
+    private final ConversationConfig config = ConversationConfig.builder().build();
+    private final List<Sinks.Many<AppLLMResponse>> upstreams = new ArrayList<>();
+    private final List<Boolean> cancelled = new ArrayList<>();
+
+    private SpeculativeLLMStarter newStarter() {
+        when(llmService.prefetch(any(), anyString(), any())).thenAnswer(invocation -> {
+            Sinks.Many<AppLLMResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+            int index = upstreams.size();
+            upstreams.add(upstream);
+            cancelled.add(false);
+            Flux<AppLLMResponse> source = upstream.asFlux().doOnCancel(() -> cancelled.set(index, true));
+            return PrefetchedLLMStream.start(invocation.getArgument(1), source);
+        });
+        return new SpeculativeLLMStarter(llmService, true, 30);
+    }
+
+    @Test
+    void commitsStablePartialAndReplaysBufferedResponses() {
+        SpeculativeLLMStarter starter = newStarter();
+        SpeculativeLLMStarter.Speculation speculation = starter.begin(state, config);
+        speculation.onPartial("今天天气");
+        speculation.onPartial("今天天气怎么样");
+        verify(llmService, timeout(1000)).prefetch(eq(state), eq("今天天气怎么样"), any());
+        verify(llmService, never()).prefetch(eq(state), eq("今天天气"), any());
+
+        upstreams.get(0).tryEmitNext(new AppLLMResponse("晴", false));
+        upstreams.get(0).tryEmitNext(new AppLLMResponse("天", true));
+        upstreams.get(0).tryEmitComplete();
+
+        PrefetchedLLMStream prefetched = speculation.commit("今天天气怎么样？");
+        assertEquals("今天天气怎么样", prefetched.getText());
+        assertEquals(List.of("晴", "天"), prefetched.asFlux().map(AppLLMResponse::text).collectList().block());
+
+        SpeculativeLLMStarter.SpeculationMetrics metrics = starter.getMetrics();
+        assertEquals(1, metrics.started());
+        assertEquals(1, metrics.hits());
+        assertEquals(1.0, metrics.hitRate());
+        assertTrue(metrics.avgSavedMs() > 0);
+    }
+
+    @Test
+    void cancelsSpeculationWhenFinalTranscriptDiffers() {
+        SpeculativeLLMStarter starter = newStarter();
+        SpeculativeLLMStarter.Speculation speculation = starter.begin(state, config);
+        speculation.onPartial("帮我订");
+        verify(llmService, timeout(1000)).prefetch(eq(state), eq("帮我订"), any());
+
+        assertNull(speculation.commit("帮我订一张明天的机票"));
+        assertTrue(cancelled.get(0));
+        assertEquals(1, starter.getMetrics().misses());
+        assertEquals(0.0, starter.getMetrics().hitRate());
+    }
+
+    @Test
+    void ignoresPartialsAfterCommitAndWhenDisabled() throws InterruptedException {
+        SpeculativeLLMStarter starter = newStarter();
+        SpeculativeLLMStarter.Speculation speculation = starter.begin(state, config);
+        speculation.onPartial("你好");
+        assertNull(speculation.commit("你好"));
+        speculation.onPartial("你好呀");
+
+        SpeculativeLLMStarter disabled = new SpeculativeLLMStarter(llmService, false, 0);
+        disabled.begin(state, config).onPartial("你好");
+
+        Thread.sleep(100);
+        verify(llmService, never()).prefetch(any(), anyString(), any());
+        assertFalse(SpeculativeLLMStarter.sameUtterance("你好", "你好呀"));
+        assertEquals(0, starter.getMetrics().started());
+    }
+}
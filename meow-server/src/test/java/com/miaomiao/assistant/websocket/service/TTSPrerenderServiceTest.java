@@ -0,0 +1,65 @@
+package com.miaomiao.assistant.websocket.service;
+
+import com.miaomiao.assistant.websocket.service.pipeline.TextAggregator;
+import com.miaomiao.assistant.websocket.service.pipeline.TextPreProcessorPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预渲染常用语的切分与对话链路一致：回复开头或中间出现的常用语，每个提交给 TTS 的句子都有预渲染条目
+ */
+class TTSPrerenderServiceTest {
+
+    private static final String[] PHRASES = {
+            "又是你啊，说吧，什么事？",
+            "行了行了，知道了。",
+            "你说啥？没听清，再说一遍。"
+    };
+
+    @Test
+    void phraseOpeningReplyHitsPrerenderedSegments() {
+        for (String phrase : PHRASES) {
+            Set<String> prerendered = TTSPrerenderService.runtimeSegments(phrase);
+            for (String submitted : submittedTexts(phrase, TTSService.AGGREGATION_STRATEGY)) {
+                assertTrue(prerendered.contains(submitted), phrase + " -> " + submitted + " not in " + prerendered);
+            }
+        }
+    }
+
+    @Test
+    void phraseInMiddleOfReplyHitsPrerenderedSegments() {
+        for (String phrase : PHRASES) {
+            Set<String> prerendered = TTSPrerenderService.runtimeSegments(phrase);
+            // 前面已经有一句话，常用语按完整句子切分
+            List<String> submitted = submittedTexts("好的。" + phrase, TTSService.AGGREGATION_STRATEGY);
+            for (String text : submitted.subList(1, submitted.size())) {
+                assertTrue(prerendered.contains(text), phrase + " -> " + text + " not in " + prerendered);
+            }
+        }
+    }
+
+    /**
+     * 模拟对话链路：逐字流式输入聚合器，聚合结果经过预处理后提交给 TTS
+     */
+    private static List<String> submittedTexts(String reply, TextAggregator.AggregationStrategy strategy) {
+        TextAggregator aggregator = new TextAggregator(TextAggregator.AggregationConfig.create().strategy(strategy));
+        List<TextAggregator.AggregateResult> results = new ArrayList<>();
+        for (int i = 0; i < reply.length(); i++) {
+            results.addAll(aggregator.append(reply.substring(i, i + 1)));
+        }
+        TextAggregator.AggregateResult last = aggregator.complete();
+        if (last != null) {
+            results.add(last);
+        }
+        List<String> texts = new ArrayList<>();
+        for (TextAggregator.AggregateResult result : results) {
+            texts.addAll(TextPreProcessorPipeline.getInstance().process(result.getText()));
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,57 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.codec.OpusDecoderStream;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 上行 Opus 解码测试：只在第一块前加 WAV 头，输出可以直接交给服务端 VAD；格式识别
+ */
+class OpusUplinkDecoderTest {
+
+    @Test
+    void prefixesWavHeaderOnceAndFeedsVad() {
+        OpusDecoderStream stream = mock(OpusDecoderStream.class);
+        // 20ms 16kHz 的响亮正弦波
+        byte[] pcm = new byte[640];
+        ByteBuffer samples = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 320; i++) {
+            samples.putShort((short) (12000 * Math.sin(2 * Math.PI * 200 * i / 16000.0)));
+        }
+        when(stream.decode(any(ByteBuffer.class))).thenReturn(pcm);
+
+        OpusUplinkDecoder decoder = new OpusUplinkDecoder(stream);
+        ByteBuffer first = decoder.decode(ByteBuffer.wrap(new byte[10]));
+        ByteBuffer second = decoder.decode(ByteBuffer.wrap(new byte[10]));
+        assertEquals(44 + 640, first.remaining());
+        assertEquals(640, second.remaining());
+        assertEquals(0x46464952, first.order(ByteOrder.LITTLE_ENDIAN).getInt(0));
+        assertEquals(16000, first.getInt(24));
+        assertEquals(20, decoder.getOpusBytes());
+        assertEquals(1280, decoder.getPcmBytes());
+
+        VoiceActivityDetector vad = new VoiceActivityDetector(new VoiceActivityDetector.Config(-45f, 0.35f, 40, 300));
+        vad.feed(first);
+        vad.feed(second);
+        assertTrue(vad.isSupported());
+        assertTrue(vad.isSpeechStarted());
+    }
+
+    @Test
+    void recognizesRawOpusFormatOnly() {
+        assertTrue(OpusUplinkDecoder.isOpus("opus"));
+        assertTrue(OpusUplinkDecoder.isOpus("audio/opus; rate=16000"));
+        assertFalse(OpusUplinkDecoder.isOpus("audio/webm;codecs=opus"));
+        assertFalse(OpusUplinkDecoder.isOpus("wav"));
+        assertFalse(OpusUplinkDecoder.isOpus(null));
+    }
+}
@@ -0,0 +1,171 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 有序分段分发器压力测试：大量分段乱序完成时，发送顺序必须与提交顺序一致
+ */
+class OrderedSegmentDispatcherTest {
+
+    private static final int SEGMENTS = 2000;
+    private static final int MAX_FRAMES_PER_SEGMENT = 20;
+    private static final int WORKERS = 16;
+
+    @Test
+    void keepsOrderUnderOutOfOrderCompletion() throws Exception {
+        for (int round = 0; round < 5; round++) {
+            runRound();
+        }
+    }
+
+    private void runRound() throws Exception {
+        List<long[]> sent = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean concurrentSend = new AtomicBoolean(false);
+        AtomicInteger sending = new AtomicInteger(0);
+        OrderedSegmentDispatcher dispatcher = new OrderedSegmentDispatcher((packets, isLast) -> {
+            if (sending.incrementAndGet() != 1) {
+                concurrentSend.set(true);
+            }
+            if (isLast) {
+                sent.add(new long[]{-1, -1});
+            }
+            for (byte[] packet : packets) {
+                sent.add(decode(packet));
+            }
+            sending.decrementAndGet();
+        }, null, null, new AudioFramePacker.Config(5, 1));
+
+        int[] frameCounts = new int[SEGMENTS];
+        List<TTSSegment> segments = new ArrayList<>(SEGMENTS);
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        CountDownLatch finished = new CountDownLatch(SEGMENTS);
+        try {
+            for (int seq = 0; seq < SEGMENTS; seq++) {
+                // 分段数量远大于环形缓冲区初始容量，覆盖扩容路径
+                TTSSegment segment = dispatcher.newSegment("s" + seq);
+                segments.add(segment);
+                frameCounts[seq] = ThreadLocalRandom.current().nextInt(0, MAX_FRAMES_PER_SEGMENT + 1);
+            }
+            // 打乱完成顺序，每个分段的帧在不同时间点到达
+            List<Integer> order = new ArrayList<>();
+            for (int seq = 0; seq < SEGMENTS; seq++) {
+                order.add(seq);
+            }
+            Collections.shuffle(order);
+            for (int seq : order) {
+                TTSSegment segment = segments.get(seq);
+                int frames = frameCounts[seq];
+                workers.execute(() -> {
+                    for (int i = 0; i < frames; i++) {
+                        segment.publish(encode(segment.getSequence(), i));
+                        if (ThreadLocalRandom.current().nextInt(8) == 0) {
+                            Thread.yield();
+                        }
+                    }
+                    if (frames == 0) {
+                        segment.fail("empty");
+                    } else {
+                        segment.complete();
+                    }
+                    finished.countDown();
+                });
+            }
+            dispatcher.complete();
+            assertTrue(finished.await(30, TimeUnit.SECONDS));
+            dispatcher.getCompletionFuture().get(10, TimeUnit.SECONDS);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        assertFalse(concurrentSend.get(), "同一时刻只能有一个线程发送");
+        assertTrue(dispatcher.isAllCompleted());
+
+        List<long[]> expected = new ArrayList<>();
+        for (int seq = 0; seq < SEGMENTS; seq++) {
+            for (int i = 0; i < frameCounts[seq]; i++) {
+                expected.add(new long[]{seq, i});
+            }
+            if (frameCounts[seq] > 0) {
+                expected.add(new long[]{-1, -1});
+            }
+        }
+        assertEquals(expected.size(), sent.size());
+        for (int i = 0; i < expected.size(); i++) {
+            long[] want = expected.get(i);
+            long[] got = sent.get(i);
+            assertEquals(want[0], got[0], "第 " + i + " 帧的分段序号");
+            assertEquals(want[1], got[1], "第 " + i + " 帧的帧序号");
+        }
+    }
+
+    @Test
+    void stopsSendingAfterCancel() throws Exception {
+        AtomicInteger sentFrames = new AtomicInteger(0);
+        OrderedSegmentDispatcher dispatcher = new OrderedSegmentDispatcher(
+                (packets, isLast) -> sentFrames.addAndGet(packets.size()), null, null);
+        TTSSegment first = dispatcher.newSegment("first");
+        TTSSegment second = dispatcher.newSegment("second");
+
+        second.publish(encode(1, 0));
+        second.complete();
+        assertEquals(0, sentFrames.get(), "后续分段必须等待队首分段");
+
+        first.publish(encode(0, 0));
+        assertEquals(1, sentFrames.get());
+
+        dispatcher.cancel();
+        assertTrue(dispatcher.getCompletionFuture().isDone());
+        first.publish(encode(0, 1));
+        first.complete();
+        assertEquals(1, sentFrames.get(), "中断后不再发送");
+    }
+
+    @Test
+    void packsReadyFramesOnceClientHasLead() {
+        List<Integer> bundleSizes = new ArrayList<>();
+        OrderedSegmentDispatcher dispatcher = new OrderedSegmentDispatcher((packets, isLast) -> {
+            if (!isLast) {
+                bundleSizes.add(packets.size());
+            }
+        }, null, null, new AudioFramePacker.Config(4, 20));
+        TTSSegment segment = dispatcher.newSegment("s");
+
+        // 第一条消息只带 1 帧，之后播放余量增长，已就绪的帧按最多 4 帧打包
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            frames.add(encode(0, i));
+        }
+        segment.publishAll(frames);
+        segment.complete();
+
+        assertEquals(1, bundleSizes.get(0));
+        assertEquals(20, bundleSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(bundleSizes.size() < 10, "打包后消息数应明显少于帧数: " + bundleSizes);
+        assertTrue(bundleSizes.stream().allMatch(size -> size <= 4));
+    }
+
+    private static byte[] encode(int sequence, int index) {
+        return ByteBuffer.allocate(8).putInt(sequence).putInt(index).array();
+    }
+
+    private static long[] decode(byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        return new long[]{buffer.getInt(), buffer.getInt()};
+    }
+}
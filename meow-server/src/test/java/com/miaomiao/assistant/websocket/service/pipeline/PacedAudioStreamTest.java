@@ -0,0 +1,114 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按播放速率下发测试：补发到目标余量、到低水位才唤醒、欠载计数、关闭时丢弃排队的帧
+ */
+class PacedAudioStreamTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(1_000 * MS);
+    private final List<Runnable> timers = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+    private final List<Integer> sentBundles = new ArrayList<>();
+    private final List<Boolean> sentLast = new ArrayList<>();
+
+    private PacedAudioStream newStream() {
+        return new PacedAudioStream("s1",
+                (packets, isLast) -> {
+                    sentBundles.add(packets.size());
+                    sentLast.add(isLast);
+                },
+                (task, delayNanos) -> {
+                    timers.add(task);
+                    delays.add(delayNanos);
+                },
+                clock::get, 200, 5);
+    }
+
+    private static List<byte[]> frames(int count) {
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            frames.add(new byte[]{(byte) i});
+        }
+        return frames;
+    }
+
+    private void fireLatestTimer(long advanceMs) {
+        clock.addAndGet(advanceMs * MS);
+        timers.get(timers.size() - 1).run();
+    }
+
+    @Test
+    void releasesUpToLeadTargetThenWaitsForLowWater() {
+        PacedAudioStream stream = newStream();
+        stream.offer(frames(50), false);
+
+        // 首条 1 帧，之后每条最多 5 帧，补到 200ms（10 帧）为止
+        assertEquals(List.of(1, 5, 4), sentBundles);
+        assertEquals(1, timers.size());
+        // 余量 200ms，低水位 100ms，100ms 后唤醒
+        assertEquals(100 * MS, delays.get(0));
+
+        fireLatestTimer(100);
+        assertEquals(List.of(1, 5, 4, 5), sentBundles);
+        assertEquals(100 * MS, delays.get(1));
+
+        TTSPacingScheduler.StreamMetrics metrics = stream.snapshot();
+        assertEquals(200, metrics.leadMs());
+        assertEquals(35, metrics.queuedFrames());
+        assertEquals(15, metrics.sentFrames());
+        assertEquals(0, metrics.underruns());
+    }
+
+    @Test
+    void sendsSegmentEndRightAfterLastFrameAndCountsUnderrun() {
+        PacedAudioStream stream = newStream();
+        stream.offer(frames(3), false);
+        stream.offer(List.of(), true);
+        assertEquals(List.of(1, 2, 0), sentBundles);
+        assertEquals(List.of(false, false, true), sentLast);
+        assertTrue(timers.isEmpty());
+
+        // 下一句迟到 100ms：客户端已播完 60ms 音频，空等 40ms
+        clock.addAndGet(100 * MS);
+        stream.offer(frames(1), false);
+        TTSPacingScheduler.StreamMetrics metrics = stream.snapshot();
+        assertEquals(1, metrics.underruns());
+        assertEquals(40, metrics.underrunMs());
+
+        stream.offer(List.of(), true);
+        stream.complete();
+        assertTrue(stream.getDrainedFuture().isDone());
+        assertFalse(stream.snapshot().active());
+    }
+
+    @Test
+    void closeDropsQueuedFramesImmediately() {
+        PacedAudioStream stream = newStream();
+        stream.offer(frames(30), false);
+        stream.offer(List.of(), true);
+        stream.complete();
+        assertFalse(stream.getDrainedFuture().isDone());
+
+        stream.close();
+        assertTrue(stream.getDrainedFuture().isDone());
+        assertEquals(20, stream.snapshot().droppedFrames());
+
+        // 关闭后唤醒和写入都不再发送
+        int sent = sentBundles.size();
+        fireLatestTimer(100);
+        stream.offer(frames(5), false);
+        assertEquals(sent, sentBundles.size());
+    }
+}
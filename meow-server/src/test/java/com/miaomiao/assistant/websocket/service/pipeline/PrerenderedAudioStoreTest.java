@@ -0,0 +1,103 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.model.tts.TTSOptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预渲染音频库测试：重启后可读、索引尾部损坏时忽略、内存缓存未命中时从音频库载入
+ */
+class PrerenderedAudioStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private PrerenderedAudioStore open() {
+        return new PrerenderedAudioStore(true, dir.toString(), 1 << 20);
+    }
+
+    @Test
+    void entriesSurviveReopen() {
+        PrerenderedAudioStore store = open();
+        assertTrue(store.put("a", List.of(new byte[]{1, 2, 3}, new byte[]{4})));
+        assertTrue(store.put("b", List.of(new byte[300])));
+        assertFalse(store.put("a", List.of(new byte[]{9})));
+        store.close();
+
+        PrerenderedAudioStore reopened = open();
+        List<byte[]> frames = reopened.get("a");
+        assertEquals(2, frames.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, frames.get(0));
+        assertArrayEquals(new byte[]{4}, frames.get(1));
+        assertEquals(300, reopened.get("b").get(0).length);
+        assertNull(reopened.get("c"));
+        assertEquals(2, reopened.getMetrics().entries());
+        reopened.close();
+    }
+
+    @Test
+    void ignoresTornIndexTailAndCorruptData() throws IOException {
+        PrerenderedAudioStore store = open();
+        store.put("a", List.of(new byte[]{1, 2, 3}));
+        store.put("b", List.of(new byte[]{4, 5, 6}));
+        store.close();
+
+        // 索引尾部写了一半、"b" 的数据被改坏
+        try (FileChannel index = FileChannel.open(dir.resolve("index.dat"), StandardOpenOption.WRITE)) {
+            index.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 5, 'x'}), index.size());
+        }
+        try (FileChannel segments = FileChannel.open(dir.resolve("segments.dat"), StandardOpenOption.WRITE)) {
+            segments.write(ByteBuffer.wrap(new byte[]{9}), segments.size() - 1);
+        }
+
+        PrerenderedAudioStore reopened = open();
+        assertNotNull(reopened.get("a"));
+        assertFalse(reopened.contains("b"));
+        // 截掉损坏的尾部后可以继续追加
+        assertTrue(reopened.put("c", List.of(new byte[]{7})));
+        reopened.close();
+        PrerenderedAudioStore again = open();
+        assertArrayEquals(new byte[]{7}, again.get("c").get(0));
+        again.close();
+    }
+
+    @Test
+    void cacheLoadsFromStoreAndPersistsFrequentSentences() throws InterruptedException {
+        PrerenderedAudioStore store = open();
+        TTSAudioCache cache = new TTSAudioCache(true, 16, 1 << 20, 64, store, 2);
+        TTSOptions options = TTSOptions.builder().voice("v").speed(1.0f).volume(1.0f).format("pcm").build();
+        store.put(cache.storeKey("zhipu:glm-tts", "嗯。", options), List.of(new byte[]{1}, new byte[]{2}));
+
+        TTSAudioCache.Flight flight = cache.getIfPresent("zhipu:glm-tts", "嗯。", options);
+        assertNotNull(flight);
+        assertEquals(2, flight.getFrameCount());
+        assertEquals(1, cache.getMetrics().storeLoads());
+
+        // 合成出的句子命中两次后写入音频库
+        TTSAudioCache.Flight synthesized = cache.claim("zhipu:glm-tts", "行吧。", options).flight();
+        synthesized.publish(List.of(new byte[]{3}));
+        synthesized.complete();
+        cache.getIfPresent("zhipu:glm-tts", "行吧。", options);
+        cache.getIfPresent("zhipu:glm-tts", "行吧。", options);
+        String key = cache.storeKey("zhipu:glm-tts", "行吧。", options);
+        for (int i = 0; i < 100 && !store.contains(key); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(store.contains(key));
+        store.close();
+    }
+}
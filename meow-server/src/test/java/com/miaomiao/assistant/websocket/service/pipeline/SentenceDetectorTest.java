@@ -0,0 +1,71 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SentenceDetector 测试：快速路径、结束偏移以及并发检测结果一致
+ */
+class SentenceDetectorTest {
+
+    private static final String[] SAMPLES = {
+            "今天天气不错。我们去公园吧。",
+            "你好！",
+            "Mr. Wang is here. He says hi.",
+            "The price is $29.95 today. Buy now!",
+            "  Hello world. Second sentence.",
+            "喵喵喵，主人你好",
+            "Hello。World.",
+            "Dr. Smith 说：明天见。",
+            "e.g. this one? Yes.",
+    };
+
+    private final SentenceDetector detector = SentenceDetector.getInstance();
+
+    @Test
+    void unambiguousPunctuationUsesFastPath() {
+        assertEquals(7, detector.matchEndOfSentence("今天天气不错。我们去公园吧。"));
+        assertEquals(3, detector.matchEndOfSentence("你好！  "));
+        assertEquals(0, detector.matchEndOfSentence("喵喵喵，主人你好"));
+    }
+
+    @Test
+    void returnsEndOffsetWhenTextHasLeadingWhitespace() {
+        String text = "  Hello world. Second sentence.";
+        int end = detector.matchEndOfSentence(text);
+        assertEquals("  Hello world.", text.substring(0, end));
+    }
+
+    @Test
+    void concurrentDetectionMatchesSequential() throws Exception {
+        int[] expected = new int[SAMPLES.length];
+        for (int i = 0; i < SAMPLES.length; i++) {
+            expected[i] = detector.matchEndOfSentence(SAMPLES[i]);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; round < 2000; round++) {
+                        int i = round % SAMPLES.length;
+                        assertEquals(expected[i], detector.matchEndOfSentence(SAMPLES[i]), SAMPLES[i]);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 流式 Markdown 过滤器测试：过滤结果正确，且与 token 的切分方式无关
+ */
+class StreamingMarkdownStripperTest {
+
+    @Test
+    void stripsMarkdown() {
+        assertStripped("这是**重点**和*斜体*，还有~~删除~~喵~", "这是重点和斜体，还有删除喵~");
+        assertStripped("## 标题\n正文", "标题\n正文");
+        assertStripped("- 第一项\n- 第二项\n1. 有序\n2. 列表", "第一项\n第二项\n有序\n列表");
+        assertStripped("> 引用内容", "引用内容");
+        assertStripped("看[这个链接](https://example.com/a_(b))吧", "看这个链接吧");
+        assertStripped("图片![猫](http://x/cat.png)在这", "图片 图片 在这");
+        assertStripped("调用`foo()`方法", "调用foo()方法");
+        assertStripped("上面\n---\n下面", "上面\n\n下面");
+        assertStripped("变量 snake_case 和 _斜体_", "变量 snake_case 和 斜体");
+        assertStripped("开心😀😺！", "开心！");
+        assertStripped("价格是3.14元，-5度", "价格是3.14元，-5度");
+        assertStripped("3.14 是圆周率", "3.14 是圆周率");
+        assertStripped("#话题 不是标题", "#话题 不是标题");
+        assertStripped("多个   空格\n\n\n\n空行", "多个 空格\n\n空行");
+    }
+
+    @Test
+    void keepsBracketsThatAreNotLinks() {
+        assertStripped("[注意]别碰这个", "[注意]别碰这个");
+        assertStripped("数组[0]和[1]", "数组[0]和[1]");
+        assertStripped("未闭合[括号\n下一行", "未闭合[括号\n下一行");
+        assertStripped("末尾[未闭合", "末尾[未闭合");
+        assertStripped("末尾[闭合]", "末尾[闭合]");
+        assertStripped("[[嵌套](url)]和[**粗体**]", "[嵌套]和[粗体]");
+    }
+
+    @Test
+    void keepsAsterisksThatAreNotMarkdown() {
+        assertStripped("3*4=12", "3*4=12");
+        assertStripped("算一下 a * b 的值", "算一下 a * b 的值");
+        assertStripped("结果是 2*3*4，**注意**单位", "结果是 2*3*4，注意单位");
+        assertStripped("* 第一项\n* 第二项\n***\n*斜体*结尾", "第一项\n第二项\n\n斜体结尾");
+        assertStripped("**粗体**开头", "粗体开头");
+        assertStripped("末尾 *", "末尾 *");
+    }
+
+    @Test
+    void dropsCodeBlockSpanningSentences() {
+        String text = "示例如下。\n```java\nSystem.out.println(\"hi. there!\");\nint a = 1;\n```\n这样就可以了。";
+        assertStripped(text, "示例如下。\n 代码已省略 \n这样就可以了。");
+    }
+
+    @Test
+    void resultIsIndependentOfChunking() {
+        String[] samples = {
+                "示例如下。\n```python\nprint('a.b')\n```\n好的~**完成**！",
+                "## 步骤\n1. 打开[官网](https://a.com/x)\n2. 点击`下载`\n- 注意_事项_\n> 提示\n---\n结束😀",
+                "snake_case_name 和 __init__ 以及 ~~旧~~ 新!![图](u) end",
+                "* 列表项 3*4=12\n***\na * b 和 **粗体**、*斜体*",
+                "[注意] 数组[0] 和[链接](http://a.b/c) 未闭合[括号\n[末尾"
+        };
+        Random random = new Random(7);
+        for (String sample : samples) {
+            String expected = stripWhole(sample);
+            for (int round = 0; round < 200; round++) {
+                StreamingMarkdownStripper stripper = new StreamingMarkdownStripper();
+                StringBuilder actual = new StringBuilder();
+                int pos = 0;
+                while (pos < sample.length()) {
+                    int end = Math.min(sample.length(), pos + 1 + random.nextInt(4));
+                    actual.append(stripper.process(sample.substring(pos, end)));
+                    pos = end;
+                }
+                actual.append(stripper.flush());
+                assertEquals(expected, actual.toString(), sample);
+            }
+        }
+    }
+
+    private static void assertStripped(String input, String expected) {
+        assertEquals(expected, stripWhole(input), input);
+    }
+
+    private static String stripWhole(String input) {
+        StreamingMarkdownStripper stripper = new StreamingMarkdownStripper();
+        return stripper.process(input) + stripper.flush();
+    }
+}
@@ -0,0 +1,128 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.model.tts.TTSOptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TTS 音频缓存测试：单飞合并、回放 + 实时转发、失败不缓存、按字节淘汰
+ */
+class TTSAudioCacheTest {
+
+    private static final String MODEL = "zhipu:glm-tts";
+    private final TTSOptions options = TTSOptions.builder().voice("tongtong").speed(1.0f).volume(1.0f).format("pcm").build();
+
+    private static List<byte[]> frames(int count, int size) {
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            frames.add(new byte[size]);
+        }
+        return frames;
+    }
+
+    private static class RecordingListener implements TTSAudioCache.Listener {
+        int frames;
+        boolean completed;
+        String error;
+        int deliveredOnError = -1;
+
+        @Override
+        public void onFrames(List<byte[]> opusPackets) {
+            frames += opusPackets.size();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+        @Override
+        public void onError(String reason, int deliveredFrames) {
+            error = reason;
+            deliveredOnError = deliveredFrames;
+        }
+    }
+
+    @Test
+    void concurrentRequestsShareOneSynthesisAndLaterRequestsHit() {
+        TTSAudioCache cache = new TTSAudioCache(true, 16, 1 << 20, 64, null, 0);
+        TTSAudioCache.Claim leader = cache.claim(MODEL, "你好呀！", options);
+        assertTrue(leader.leader());
+        leader.flight().publish(frames(3, 40));
+
+        // 另一个会话在合成中途请求同一句话（首尾空白不影响）
+        TTSAudioCache.Claim follower = cache.claim(MODEL, "  你好呀！ ", options);
+        assertFalse(follower.leader());
+        assertSame(leader.flight(), follower.flight());
+        RecordingListener listener = new RecordingListener();
+        follower.flight().subscribe(listener);
+        assertEquals(3, listener.frames);
+
+        leader.flight().publish(frames(2, 40));
+        leader.flight().complete();
+        assertEquals(5, listener.frames);
+        assertTrue(listener.completed);
+
+        RecordingListener hit = new RecordingListener();
+        TTSAudioCache.Flight cached = cache.getIfPresent(MODEL, "你好呀！", options);
+        assertNotNull(cached);
+        cached.subscribe(hit);
+        assertEquals(5, hit.frames);
+        assertTrue(hit.completed);
+
+        // 音色不同不命中
+        TTSOptions otherVoice = TTSOptions.builder().voice("xiaochen").speed(1.0f).volume(1.0f).format("pcm").build();
+        assertNull(cache.getIfPresent(MODEL, "你好呀！", otherVoice));
+
+        TTSAudioCache.CacheMetrics metrics = cache.getMetrics();
+        assertEquals(1, metrics.misses());
+        assertEquals(1, metrics.joins());
+        assertEquals(1, metrics.hits());
+        assertEquals(1, metrics.entries());
+    }
+
+    @Test
+    void failedSynthesisIsNotCachedAndFollowersAreNotified() {
+        TTSAudioCache cache = new TTSAudioCache(true, 16, 1 << 20, 64, null, 0);
+        TTSAudioCache.Claim leader = cache.claim(MODEL, "稍等一下", options);
+        RecordingListener listener = new RecordingListener();
+        cache.claim(MODEL, "稍等一下", options).flight().subscribe(listener);
+
+        leader.flight().fail("合成方已中断");
+        assertEquals("合成方已中断", listener.error);
+        assertEquals(0, listener.deliveredOnError);
+        assertNull(cache.getIfPresent(MODEL, "稍等一下", options));
+        assertTrue(cache.claim(MODEL, "稍等一下", options).leader());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverByteLimitAndSkipsLongText() {
+        // 每句 10 帧 * (100 + 24) 字节，上限只够两句
+        TTSAudioCache cache = new TTSAudioCache(true, 16, 2600, 8, null, 0);
+        for (String text : List.of("一", "二", "三")) {
+            TTSAudioCache.Flight flight = cache.claim(MODEL, text, options).flight();
+            flight.publish(frames(10, 100));
+            flight.complete();
+            if (text.equals("二")) {
+                // 访问“一”，使“二”成为最久未使用
+                assertNotNull(cache.getIfPresent(MODEL, "一", options));
+            }
+        }
+        assertNotNull(cache.getIfPresent(MODEL, "一", options));
+        assertNull(cache.getIfPresent(MODEL, "二", options));
+        assertNotNull(cache.getIfPresent(MODEL, "三", options));
+        assertEquals(1, cache.getMetrics().evictions());
+        assertEquals(2480, cache.getMetrics().cachedBytes());
+
+        assertNull(cache.claim(MODEL, "这是一句超过长度上限的长句子", options));
+    }
+}
@@ -0,0 +1,194 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import com.miaomiao.assistant.model.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 全局 TTS 调度器测试：工作线程池换成手动单步执行，按执行顺序验证公平排队、队首优先、并发上限和取消
+ */
+class TTSWorkerSchedulerTest {
+
+    private static final String MODEL = "zhipu:glm-tts";
+
+    private final SteppedExecutor executor = new SteppedExecutor();
+    private final List<String> executed = new ArrayList<>();
+
+    @Test
+    void sessionsWithEqualWeightInterleave() {
+        TTSWorkerScheduler scheduler = scheduler(1, disabledLimiter());
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, "A", "A" + i, false, 1.0, 4);
+        }
+        for (int i = 1; i <= 4; i++) {
+            submit(scheduler, "B", "B" + i, false, 1.0, 4);
+        }
+
+        executor.runAll();
+
+        assertEquals(List.of("A1", "B1", "A2", "B2", "A3", "B3", "A4", "B4"), executed);
+    }
+
+    @Test
+    void weightedSessionGetsProportionalShare() {
+        TTSWorkerScheduler scheduler = scheduler(1, disabledLimiter());
+        for (int i = 1; i <= 6; i++) {
+            submit(scheduler, "A", "A" + i, false, 2.0, 4);
+        }
+        for (int i = 1; i <= 6; i++) {
+            submit(scheduler, "B", "B" + i, false, 1.0, 4);
+        }
+
+        executor.runSteps(6);
+
+        long shareA = executed.stream().filter(name -> name.startsWith("A")).count();
+        assertEquals(4, shareA, executed.toString());
+        assertEquals(2, executed.size() - shareA, executed.toString());
+    }
+
+    @Test
+    void headOfLineTicketJumpsAheadOfQueuedWork() {
+        TTSWorkerScheduler scheduler = scheduler(1, disabledLimiter());
+        submit(scheduler, "A", "A1", false, 1.0, 4);
+        submit(scheduler, "A", "A2", false, 1.0, 4);
+        submit(scheduler, "A", "A3", false, 1.0, 4);
+        // B 先提交一个开销很大的后续句子，队首句子的开始标签因此远大于 A 的排队任务
+        scheduler.submit("B", MODEL, false, 1000, 1.0, 4, () -> executed.add("B1"));
+        submit(scheduler, "B", "B-head", true, 1.0, 4);
+
+        executor.runAll();
+
+        assertEquals(List.of("A1", "B-head", "B1", "A2", "A3"), executed);
+    }
+
+    @Test
+    void sessionCapAndModelLimitAreRespected() {
+        TTSWorkerScheduler scheduler = scheduler(4, disabledLimiter());
+        for (int i = 1; i <= 5; i++) {
+            submit(scheduler, "A", "A" + i, false, 1.0, 2);
+        }
+        assertEquals(2, executor.pending());
+        assertEquals(2, scheduler.getMetrics().get(MODEL).running());
+
+        SteppedExecutor limitedExecutor = new SteppedExecutor();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 1, 1, 64, 0.75, 2.0, 5000, 100);
+        TTSWorkerScheduler limited = new TTSWorkerScheduler(4, limitedExecutor, limiter);
+        for (String session : List.of("A", "B", "C")) {
+            limited.submit(session, MODEL, false, 10, 1.0, 4, () -> executed.add(session));
+        }
+        assertEquals(1, limitedExecutor.pending());
+        TTSWorkerScheduler.LaneMetrics metrics = limited.getMetrics().get(MODEL);
+        assertEquals(1, metrics.limit());
+        assertEquals(2, metrics.queued());
+    }
+
+    @Test
+    void cancelledTicketNeverRuns() {
+        TTSWorkerScheduler scheduler = scheduler(1, disabledLimiter());
+        TTSWorkerScheduler.Ticket dispatched = submit(scheduler, "A", "A1", false, 1.0, 4);
+        TTSWorkerScheduler.Ticket queued = submit(scheduler, "A", "A2", false, 1.0, 4);
+        submit(scheduler, "A", "A3", false, 1.0, 4);
+
+        // 排队中的任务被移除；已交给工作线程但尚未开始的任务执行时跳过
+        assertTrue(queued.cancel());
+        assertFalse(dispatched.cancel());
+        executor.runAll();
+
+        assertEquals(List.of("A3"), executed);
+        assertEquals(0, scheduler.getMetrics().get(MODEL).queued());
+    }
+
+    @Test
+    void promoteReordersQueuedTicket() {
+        TTSWorkerScheduler scheduler = scheduler(1, disabledLimiter());
+        submit(scheduler, "A", "A1", false, 1.0, 4);
+        submit(scheduler, "A", "A2", false, 1.0, 4);
+        TTSWorkerScheduler.Ticket third = submit(scheduler, "A", "A3", false, 1.0, 4);
+        submit(scheduler, "B", "B1", false, 1.0, 4);
+
+        third.promoteToHeadOfLine();
+        executor.runAll();
+
+        assertEquals(List.of("A1", "A3", "B1", "A2"), executed);
+    }
+
+    private TTSWorkerScheduler scheduler(int maxConcurrencyPerModel, AdaptiveConcurrencyLimiter limiter) {
+        return new TTSWorkerScheduler(maxConcurrencyPerModel, executor, limiter);
+    }
+
+    private TTSWorkerScheduler.Ticket submit(TTSWorkerScheduler scheduler, String sessionId, String name,
+                                             boolean headOfLine, double weight, int sessionConcurrency) {
+        return scheduler.submit(sessionId, MODEL, headOfLine, 10, weight, sessionConcurrency,
+                () -> executed.add(name));
+    }
+
+    private static AdaptiveConcurrencyLimiter disabledLimiter() {
+        return new AdaptiveConcurrencyLimiter(false, 8, 1, 64, 0.75, 2.0, 5000, 100);
+    }
+
+    /**
+     * 手动单步执行的线程池：提交的任务先排队，由测试逐个在当前线程执行
+     */
+    private static final class SteppedExecutor extends AbstractExecutorService {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean shutdown = false;
+
+        int pending() {
+            return tasks.size();
+        }
+
+        void runSteps(int steps) {
+            for (int i = 0; i < steps && !tasks.isEmpty(); i++) {
+                tasks.pollFirst().run();
+            }
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.pollFirst().run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.addLast(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            List<Runnable> remaining = new ArrayList<>(tasks);
+            tasks.clear();
+            return remaining;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.isEmpty();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return isTerminated();
+        }
+    }
+}
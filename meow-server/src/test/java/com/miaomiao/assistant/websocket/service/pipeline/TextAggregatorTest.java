@@ -0,0 +1,253 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import opennlp.tools.sentdetect.SentenceDetectorME;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.util.Span;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 增量 TextAggregator 与原实现的对拍测试：随机 token 流下三种策略的输出必须完全一致
+ */
+class TextAggregatorTest {
+
+    private static final String[] VOCABULARY = {
+            "你好", "，", "。", "！", "？", "；", "：", "、", "～", "~", "…", "．", "｡",
+            "Mr.", " Wang", " Dr.", " Smith", "$29.", "95", " is", " the", " price", ".", "!", "?", ";", ",",
+            " ", "  ", "\n", "今天天气不错", "我们去公园吧", "Hello", " world", "e.g.", " U.S.", " OK",
+            "喵", "主人", "3.14", "，然后", "。\n", "! ", "? ", ". ", "...", "!!"
+    };
+
+    /**
+     * 对拍专用的检测器，不经过 SentenceDetector 的对象池和快速路径
+     */
+    private static SentenceDetectorME legacyDetector;
+
+    @BeforeAll
+    static void loadModel() throws Exception {
+        try (InputStream in = TextAggregatorTest.class.getResourceAsStream("/models/opennlp-en-ud-ewt-sentence-1.2-2.5.0.bin")) {
+            assertNotNull(in);
+            legacyDetector = new SentenceDetectorME(new SentenceModel(in));
+        }
+    }
+
+    @Test
+    void matchesLegacyImplementation() {
+        Random random = new Random(20240601L);
+        for (int round = 0; round < 400; round++) {
+            List<String> tokens = randomTokens(random, 1 + random.nextInt(120));
+            for (TextAggregator.AggregationStrategy strategy : TextAggregator.AggregationStrategy.values()) {
+                int maxTokenLength = 5 + random.nextInt(60);
+                TextAggregator.AggregationConfig config = TextAggregator.AggregationConfig.create()
+                        .strategy(strategy)
+                        .maxTokenLength(maxTokenLength);
+                TextAggregator aggregator = new TextAggregator(config);
+                LegacyTextAggregator legacy = new LegacyTextAggregator(strategy, maxTokenLength);
+
+                for (String token : tokens) {
+                    assertSameResults(legacy.append(token), aggregator.append(token), strategy, tokens);
+                    assertEquals(legacy.buffer.toString(), aggregator.getBufferContent(), strategy + " " + tokens);
+                }
+                TextAggregator.AggregateResult expected = legacy.complete();
+                TextAggregator.AggregateResult actual = aggregator.complete();
+                assertSameResults(expected == null ? List.of() : List.of(expected),
+                        actual == null ? List.of() : List.of(actual), strategy, tokens);
+            }
+        }
+    }
+
+    @Test
+    void worksWithoutNlpDetection() {
+        TextAggregator aggregator = new TextAggregator(TextAggregator.AggregationConfig.create()
+                .useNlpDetection(false));
+        List<TextAggregator.AggregateResult> results = aggregator.append("你好。Hello world. 再见");
+        assertEquals(2, results.size());
+        assertEquals("你好。", results.get(0).getText());
+        assertEquals("Hello world.", results.get(1).getText());
+        assertEquals("再见", aggregator.complete().getText());
+    }
+
+    private static List<String> randomTokens(Random random, int count) {
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+        }
+        return tokens;
+    }
+
+    private static void assertSameResults(List<TextAggregator.AggregateResult> expected,
+                                          List<TextAggregator.AggregateResult> actual,
+                                          TextAggregator.AggregationStrategy strategy,
+                                          List<String> tokens) {
+        String context = strategy + " " + tokens;
+        assertEquals(expected.size(), actual.size(), context);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getText(), actual.get(i).getText(), context);
+            assertEquals(expected.get(i).getType(), actual.get(i).getType(), context);
+            assertEquals(expected.get(i).isFinal(), actual.get(i).isFinal(), context);
+        }
+    }
+
+    /**
+     * 原实现（每个字符都复制一次缓冲区），仅用于对拍；句子边界检测独立实现，不调用 SentenceDetector
+     */
+    private static class LegacyTextAggregator {
+
+        private static final Set<Character> FIRST_SENTENCE_PUNCTUATIONS = Set.of(
+                '，', ',', '、', '。', '.', '？', '?', '！', '!', '；', ';', '：', ':', '~'
+        );
+        private static final Set<Character> SENTENCE_ENDING_PUNCTUATION = Set.of(
+                '.', '!', '?', ';', '…',
+                '。', '？', '！', '；', '．', '｡'
+        );
+        private static final Set<Character> LATIN = Set.of('.', '!', '?', ';', '…');
+        private static final Set<Character> UNAMBIGUOUS = Set.of(
+                '。', '？', '！', '；', '．', '｡', '।', '॥', '؟', '؛', '۔', '၊', '။',
+                '។', '៕', '།', '༎', '։', '՜', '՞', '።', '፧', '፨'
+        );
+
+        private final TextAggregator.AggregationStrategy strategy;
+        private final int maxTokenLength;
+        private final StringBuilder buffer = new StringBuilder();
+        private boolean firstSentenceSent = false;
+        private boolean needsLookahead = false;
+
+        LegacyTextAggregator(TextAggregator.AggregationStrategy strategy, int maxTokenLength) {
+            this.strategy = strategy;
+            this.maxTokenLength = maxTokenLength;
+        }
+
+        List<TextAggregator.AggregateResult> append(String text) {
+            List<TextAggregator.AggregateResult> results = new ArrayList<>();
+            for (char ch : text.toCharArray()) {
+                buffer.append(ch);
+                TextAggregator.AggregateResult result = check(ch);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return results;
+        }
+
+        private TextAggregator.AggregateResult check(char ch) {
+            String bufferText = buffer.toString();
+            if (needsLookahead) {
+                if (!Character.isWhitespace(ch)) {
+                    needsLookahead = false;
+                    return extract(bufferText);
+                }
+                return null;
+            }
+            char lastChar = bufferText.charAt(bufferText.length() - 1);
+            if (LATIN.contains(lastChar)) {
+                needsLookahead = true;
+                return null;
+            }
+            if (SENTENCE_ENDING_PUNCTUATION.contains(lastChar)) {
+                return extract(bufferText);
+            }
+            return null;
+        }
+
+        private TextAggregator.AggregateResult extract(String bufferText) {
+            switch (strategy) {
+                case TOKEN:
+                    if (buffer.length() >= maxTokenLength) {
+                        String tokenText = bufferText.substring(0, maxTokenLength);
+                        buffer.setLength(0);
+                        buffer.append(bufferText.substring(maxTokenLength));
+                        return new TextAggregator.AggregateResult(tokenText, TextAggregator.AggregationType.TOKEN, false);
+                    }
+                    return null;
+                case HYBRID:
+                    if (!firstSentenceSent) {
+                        for (int i = 0; i < bufferText.length(); i++) {
+                            if (FIRST_SENTENCE_PUNCTUATIONS.contains(bufferText.charAt(i))) {
+                                String sentenceText = bufferText.substring(0, i + 1).trim();
+                                buffer.setLength(0);
+                                buffer.append(bufferText.substring(i + 1));
+                                firstSentenceSent = true;
+                                return new TextAggregator.AggregateResult(sentenceText,
+                                        TextAggregator.AggregationType.FIRST_SENTENCE, false);
+                            }
+                        }
+                        return null;
+                    }
+                    return sentence(bufferText);
+                case SENTENCE:
+                default:
+                    return sentence(bufferText);
+            }
+        }
+
+        private TextAggregator.AggregateResult sentence(String bufferText) {
+            int endPos = matchEndOfSentence(bufferText);
+            if (endPos > 0) {
+                String sentenceText = bufferText.substring(0, endPos).trim();
+                buffer.setLength(0);
+                buffer.append(bufferText.substring(endPos));
+                return new TextAggregator.AggregateResult(sentenceText, TextAggregator.AggregationType.SENTENCE, false);
+            }
+            return null;
+        }
+
+        /**
+         * 句子边界：第一个明确标点之前没有拉丁语系标点时直接取该标点，否则按 OpenNLP 的第一个句子的结束偏移
+         */
+        private static int matchEndOfSentence(String text) {
+            text = text.stripTrailing();
+            if (text.isEmpty()) {
+                return 0;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char ch = text.charAt(i);
+                if (UNAMBIGUOUS.contains(ch)) {
+                    return i + 1;
+                }
+                if (LATIN.contains(ch)) {
+                    break;
+                }
+            }
+            Span[] sentences = legacyDetector.sentPosDetect(text);
+            if (sentences == null || sentences.length == 0) {
+                return 0;
+            }
+            Span firstSentence = sentences[0];
+            if (sentences.length == 1 && firstSentence.getStart() == 0 && firstSentence.getEnd() == text.length()) {
+                char lastChar = text.charAt(text.length() - 1);
+                if (LATIN.contains(lastChar) || UNAMBIGUOUS.contains(lastChar)) {
+                    return text.length();
+                }
+                for (int i = 0; i < text.length(); i++) {
+                    if (UNAMBIGUOUS.contains(text.charAt(i))) {
+                        return i + 1;
+                    }
+                }
+                return 0;
+            }
+            if (sentences.length > 1) {
+                return firstSentence.getEnd();
+            }
+            return 0;
+        }
+
+        TextAggregator.AggregateResult complete() {
+            String remaining = buffer.toString().trim();
+            buffer.setLength(0);
+            needsLookahead = false;
+            if (remaining.isEmpty()) {
+                return null;
+            }
+            return new TextAggregator.AggregateResult(remaining, TextAggregator.AggregationType.FINAL, true);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpstreamCancellationTrackerTest {
+
+    private final UpstreamCancellationTracker tracker = new UpstreamCancellationTracker();
+
+    @Test
+    void countsCancellationBeforeCompletionAndPropagatesUpstream() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean upstreamCancelled = new AtomicBoolean(false);
+        Disposable subscription = tracker.track(UpstreamCancellationTracker.Stage.LLM,
+                        upstream.asFlux().doOnCancel(() -> upstreamCancelled.set(true)))
+                .subscribe();
+
+        subscription.dispose();
+
+        assertTrue(upstreamCancelled.get());
+        UpstreamCancellationTracker.StageMetrics llm = tracker.getMetrics().llm();
+        assertEquals(1, llm.started());
+        assertEquals(1, llm.cancelled());
+    }
+
+    @Test
+    void completedStreamIsNotCountedAsCancelled() {
+        Flux<Integer> tracked = tracker.track(UpstreamCancellationTracker.Stage.TTS, Flux.just(1, 2, 3));
+
+        tracked.blockLast();
+        tracked.take(1).blockLast();
+
+        UpstreamCancellationTracker.StageMetrics tts = tracker.getMetrics().tts();
+        assertEquals(2, tts.started());
+        // take(1) 在第一个元素后取消上游，算作取消；完整消费的不算
+        assertEquals(1, tts.cancelled());
+        assertEquals(0, tracker.getMetrics().asr().started());
+    }
+
+    @Test
+    void recordsDequeuedTtsTasks() {
+        tracker.recordTtsDequeued(3);
+        tracker.recordTtsDequeued(0);
+
+        assertEquals(3, tracker.getMetrics().ttsTasksDequeued());
+    }
+}
@@ -0,0 +1,111 @@
+package com.miaomiao.assistant.websocket.service.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 服务端 VAD 测试：跨音频块解析 WAV 头、检测开始说话和断句、过滤高过零率的底噪
+ */
+class VoiceActivityDetectorTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final VoiceActivityDetector.Config CONFIG = new VoiceActivityDetector.Config(-45f, 0.35f, 120, 600);
+
+    @Test
+    void detectsSpeechAndEndpointsAfterSilence() {
+        // 300ms 静音 + 1000ms 语音 + 1500ms 静音
+        byte[] wav = wav(silence(300), voice(1000), silence(1500));
+        VoiceActivityDetector vad = new VoiceActivityDetector(CONFIG);
+
+        int accepted = feedInChunks(vad, wav, 1280);
+
+        assertTrue(vad.isSupported());
+        assertTrue(vad.isSpeechStarted());
+        assertEquals(300, vad.getSpeechStartMs());
+        assertTrue(vad.isEndpointed());
+        assertEquals(1300 + 600, vad.getEndpointMs());
+        // 断句之后的音频不再属于本段语音
+        assertEquals(44 + (1300 + 600) * SAMPLE_RATE / 1000 * 2, accepted);
+    }
+
+    @Test
+    void ignoresLowLevelHiss() {
+        byte[] wav = wav(hiss(2000));
+        VoiceActivityDetector vad = new VoiceActivityDetector(CONFIG);
+        feedInChunks(vad, wav, 640);
+        assertFalse(vad.isSpeechStarted());
+        assertFalse(vad.isEndpointed());
+    }
+
+    @Test
+    void passesThroughNonWavAudio() {
+        VoiceActivityDetector vad = new VoiceActivityDetector(CONFIG);
+        byte[] webm = new byte[4096];
+        webm[0] = 0x1A;
+        assertEquals(webm.length, vad.feed(ByteBuffer.wrap(webm)));
+        assertFalse(vad.isSupported());
+    }
+
+    private static int feedInChunks(VoiceActivityDetector vad, byte[] data, int chunkSize) {
+        int accepted = 0;
+        for (int offset = 0; offset < data.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, data.length - offset);
+            accepted += vad.feed(ByteBuffer.wrap(data, offset, length));
+        }
+        return accepted;
+    }
+
+    private static short[] silence(int ms) {
+        return new short[SAMPLE_RATE * ms / 1000];
+    }
+
+    /**
+     * 有声段：200Hz 基频加谐波
+     */
+    private static short[] voice(int ms) {
+        short[] samples = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double value = 0.25 * Math.sin(2 * Math.PI * 200 * t) + 0.1 * Math.sin(2 * Math.PI * 400 * t);
+            samples[i] = (short) (value * Short.MAX_VALUE);
+        }
+        return samples;
+    }
+
+    /**
+     * 约 -40dBFS 的白噪声（能量过阈值但过零率高）
+     */
+    private static short[] hiss(int ms) {
+        Random random = new Random(7);
+        short[] samples = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 330);
+        }
+        return samples;
+    }
+
+    private static byte[] wav(short[]... parts) {
+        int sampleCount = 0;
+        for (short[] part : parts) {
+            sampleCount += part.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(44 + sampleCount * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0x46464952).putInt(36 + sampleCount * 2).putInt(0x45564157)
+                .putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * 2).putShort((short) 2).putShort((short) 16)
+                .putInt(0x61746164).putInt(sampleCount * 2);
+        for (short[] part : parts) {
+            for (short sample : part) {
+                buffer.putShort(sample);
+            }
+        }
+        return buffer.array();
+    }
+}
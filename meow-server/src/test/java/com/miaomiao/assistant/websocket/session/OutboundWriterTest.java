@@ -0,0 +1,146 @@
+package com.miaomiao.assistant.websocket.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 下行写出器测试：优先通道先写、慢客户端按策略丢弃 token 或断开
+ */
+class OutboundWriterTest {
+
+    private OutboundWriter writer;
+
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    /**
+     * 第一条消息写出时阻塞，模拟慢客户端
+     */
+    private final CountDownLatch firstSendStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstSend = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        releaseFirstSend.countDown();
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    private WebSocketSession slowSession() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            if (sent.isEmpty()) {
+                firstSendStarted.countDown();
+                releaseFirstSend.await(5, TimeUnit.SECONDS);
+            }
+            sent.add((String) message.getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void priorityLaneOvertakesQueuedTokens() throws Exception {
+        writer = new OutboundWriter(2, 1 << 20, "drop-stale-tokens");
+        WebSocketSession session = slowSession();
+
+        writer.enqueue(session, new TextMessage("token-0"), OutboundWriter.Lane.TOKEN, true);
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        writer.enqueue(session, new TextMessage("token-1"), OutboundWriter.Lane.TOKEN, true);
+        writer.enqueue(session, new TextMessage("token-2"), OutboundWriter.Lane.TOKEN, false);
+        writer.enqueue(session, new TextMessage("audio-0"), OutboundWriter.Lane.PRIORITY, false);
+        writer.enqueue(session, new TextMessage("audio-1"), OutboundWriter.Lane.PRIORITY, false);
+        assertEquals(4, writer.getMetrics().queuedMessages());
+
+        releaseFirstSend.countDown();
+        awaitSent(5);
+        assertEquals(List.of("token-0", "audio-0", "audio-1", "token-1", "token-2"), sent);
+        assertEquals(5, writer.getMetrics().sentMessages());
+    }
+
+    @Test
+    void flushRemovesStaleTurnAndJumpsQueue() throws Exception {
+        writer = new OutboundWriter(2, 1 << 20, "drop-stale-tokens");
+        WebSocketSession session = slowSession();
+
+        writer.enqueue(session, new TextMessage("audio-1-0"), OutboundWriter.Lane.PRIORITY, false, 1, null);
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        writer.enqueue(session, new TextMessage("audio-1-1"), OutboundWriter.Lane.PRIORITY, false, 1, null);
+        writer.enqueue(session, new TextMessage("token-1"), OutboundWriter.Lane.TOKEN, true, 1, null);
+        writer.enqueue(session, new TextMessage("stt"), OutboundWriter.Lane.PRIORITY, false);
+
+        assertEquals(2, writer.flush(session, 2, new TextMessage("flush")));
+        // 打断前已通过轮次检查、flush 之后才入队的旧帧也应丢弃
+        writer.enqueue(session, new TextMessage("audio-1-2"), OutboundWriter.Lane.PRIORITY, false, 1, null);
+        writer.enqueue(session, new TextMessage("audio-2-0"), OutboundWriter.Lane.PRIORITY, false, 2, null);
+
+        releaseFirstSend.countDown();
+        awaitSent(4);
+        assertEquals(List.of("audio-1-0", "flush", "stt", "audio-2-0"), sent);
+        assertEquals(3, writer.getMetrics().flushedMessages());
+    }
+
+    @Test
+    void dropsStaleTokensAboveHighWaterMark() throws Exception {
+        writer = new OutboundWriter(2, 64, "drop-stale-tokens");
+        WebSocketSession session = slowSession();
+
+        writer.enqueue(session, new TextMessage("first"), OutboundWriter.Lane.PRIORITY, false);
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            writer.enqueue(session, new TextMessage("delta-" + i), OutboundWriter.Lane.TOKEN, true);
+        }
+        writer.enqueue(session, new TextMessage("checkpoint"), OutboundWriter.Lane.TOKEN, false);
+
+        releaseFirstSend.countDown();
+        awaitSent(2);
+        Thread.sleep(50);
+        assertTrue(writer.getMetrics().droppedMessages() > 0);
+        assertTrue(sent.size() < 22);
+        assertEquals("checkpoint", sent.get(sent.size() - 1));
+    }
+
+    @Test
+    void disconnectsSlowConsumer() throws Exception {
+        writer = new OutboundWriter(2, 64, "disconnect");
+        WebSocketSession session = slowSession();
+
+        writer.enqueue(session, new TextMessage("first"), OutboundWriter.Lane.PRIORITY, false);
+        assertTrue(firstSendStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            writer.enqueue(session, new TextMessage("delta-" + i), OutboundWriter.Lane.TOKEN, true);
+        }
+
+        verify(session, timeout(5_000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, writer.getMetrics().slowConsumerDisconnects());
+        assertEquals(0, writer.getMetrics().queuedMessages());
+    }
+}